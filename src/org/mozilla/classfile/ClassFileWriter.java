@@ -863,6 +863,131 @@ public class ClassFileWriter {
         }
     }
 
+    /**
+     * Add an invokedynamic instruction. The bootstrap method and its static
+     * arguments are recorded in the BootstrapMethods attribute of the class.
+     * Only supported if {@link #isInvokeDynamicSupported()} returns true.
+     *
+     * @param methodName the name passed to the bootstrap method
+     * @param methodType the type descriptor of the call site
+     * @param bsm the bootstrap method
+     * @param bsmArgs the static arguments of the bootstrap method, which
+     *        must be Integer, Long, Float, Double, String or MHandle
+     *        instances
+     */
+    public void addInvokeDynamic(String methodName, String methodType,
+                                 MHandle bsm, Object... bsmArgs)
+    {
+        if (DEBUGCODE) {
+            System.out.println("Add invokedynamic, "+methodName+", "
+                               +methodType);
+        }
+        if (!isInvokeDynamicSupported()) {
+            throw new IllegalStateException(
+                "invokedynamic needs class file version 51");
+        }
+        int parameterInfo = sizeOfParameters(methodType);
+        int stackDiff = (short)parameterInfo;
+
+        int newStack = itsStackTop + stackDiff;
+        if (newStack < 0 || Short.MAX_VALUE < newStack) badStack(newStack);
+
+        int bootstrapIndex = addBootstrapMethod(bsm, bsmArgs);
+        short indyIndex = itsConstantPool.addInvokeDynamic(
+                              methodName, methodType, bootstrapIndex);
+        addToCodeBuffer(ByteCode.INVOKEDYNAMIC);
+        addToCodeInt16(indyIndex);
+        addToCodeInt16(0);
+
+        itsStackTop = (short)newStack;
+        if (newStack > itsMaxStack) itsMaxStack = (short)newStack;
+        if (DEBUGSTACK) {
+            System.out.println("After invokedynamic stack = "+itsStackTop);
+        }
+    }
+
+    /**
+     * Returns true if the generated classes may use invokedynamic, which
+     * needs class file version 51 (Java 7) or later. Like the other
+     * bytecode features, this follows the version of the runtime classes.
+     */
+    public static boolean isInvokeDynamicSupported()
+    {
+        return MajorVersion >= 51;
+    }
+
+    private int addBootstrapMethod(MHandle bsm, Object[] bsmArgs)
+    {
+        // bootstrap_method_ref, num_bootstrap_arguments, arguments
+        byte[] entry = new byte[4 + 2 * bsmArgs.length];
+        char[] key = new char[1 + bsmArgs.length];
+        key[0] = (char)itsConstantPool.addMethodHandle(bsm);
+        int offset = putInt16(key[0], entry, 0);
+        offset = putInt16(bsmArgs.length, entry, offset);
+        for (int i = 0; i != bsmArgs.length; ++i) {
+            key[i + 1] = (char)itsConstantPool.addBootstrapArgument(bsmArgs[i]);
+            offset = putInt16(key[i + 1], entry, offset);
+        }
+        if (itsBootstrapMethodIndexes == null) {
+            itsBootstrapMethodIndexes = new ObjToIntMap();
+            itsBootstrapMethods = new ObjArray();
+        } else {
+            int index = itsBootstrapMethodIndexes.get(new String(key), -1);
+            if (index != -1) {
+                return index;
+            }
+        }
+        int index = itsBootstrapMethods.size();
+        itsBootstrapMethods.add(entry);
+        itsBootstrapMethodIndexes.put(new String(key), index);
+        itsBootstrapMethodsLength += entry.length;
+        return index;
+    }
+
+    /**
+     * A CONSTANT_MethodHandle entry, used to refer to bootstrap methods
+     * and as a static argument of bootstrap methods.
+     */
+    public static final class MHandle
+    {
+        public MHandle(byte tag, String owner, String name, String desc)
+        {
+            this.tag = tag;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof MHandle)) { return false; }
+            MHandle x = (MHandle)obj;
+            return tag == x.tag
+                && owner.equals(x.owner)
+                && name.equals(x.name)
+                && desc.equals(x.desc);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return tag + owner.hashCode() * name.hashCode()
+                   * desc.hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            return owner + '.' + name + desc + " (" + tag + ")";
+        }
+
+        final byte tag;
+        final String owner;
+        final String name;
+        final String desc;
+    }
+
     /**
      * Generate code to load the given integer on stack.
      *
@@ -2185,6 +2310,21 @@ public class ClassFileWriter {
                         push(TypeInfo.fromType(returnType, itsConstantPool));
                     }
                     break;
+                case ByteCode.INVOKEDYNAMIC:
+                    index = getOperand(bci + 1, 2);
+                    methodType = (String)
+                            itsConstantPool.getConstantData(index);
+                    parameterCount = sizeOfParameters(methodType) >>> 16;
+                    for (int i = 0; i < parameterCount; i++) {
+                        pop();
+                    }
+                    rParen = methodType.indexOf(')');
+                    returnType = methodType.substring(rParen + 1);
+                    returnType = descriptorToInternalName(returnType);
+                    if (!returnType.equals("V")) {
+                        push(TypeInfo.fromType(returnType, itsConstantPool));
+                    }
+                    break;
                 case ByteCode.GETFIELD:
                     pop();
                 case ByteCode.GETSTATIC:
@@ -2741,6 +2881,9 @@ public class ClassFileWriter {
         if (itsSourceFileNameIndex != 0) {
             itsConstantPool.addUtf8("SourceFile");
         }
+        if (itsBootstrapMethods != null) {
+            itsConstantPool.addUtf8("BootstrapMethods");
+        }
 
         size += 8; //writeLong(FileHeaderConstant);
         size += itsConstantPool.getWriteSize();
@@ -2760,13 +2903,17 @@ public class ClassFileWriter {
             size += ((ClassFileMethod)(itsMethods.get(i))).getWriteSize();
         }
 
+        size += 2; //writeShort(attributes count);
         if (itsSourceFileNameIndex != 0) {
-            size += 2; //writeShort(1);  attributes count
             size += 2; //writeShort(sourceFileAttributeNameIndex);
             size += 4; //writeInt(2);
             size += 2; //writeShort(itsSourceFileNameIndex);
-        }else {
-            size += 2; //out.writeShort(0);  no attributes
+        }
+        if (itsBootstrapMethods != null) {
+            size += 2; //writeShort(bootstrapMethodsAttributeNameIndex);
+            size += 4; //writeInt(attribute length);
+            size += 2; //writeShort(itsBootstrapMethods.size());
+            size += itsBootstrapMethodsLength;
         }
 
         return size;
@@ -2809,13 +2956,29 @@ public class ClassFileWriter {
             ClassFileMethod method = (ClassFileMethod)itsMethods.get(i);
             offset = method.write(data, offset);
         }
+        int attributesCount = 0;
+        if (itsSourceFileNameIndex != 0) {
+            ++attributesCount;
+        }
+        if (itsBootstrapMethods != null) {
+            ++attributesCount;
+        }
+        offset = putInt16(attributesCount, data, offset);
         if (itsSourceFileNameIndex != 0) {
-            offset = putInt16(1, data, offset); // attributes count
             offset = putInt16(sourceFileAttributeNameIndex, data, offset);
             offset = putInt32(2, data, offset);
             offset = putInt16(itsSourceFileNameIndex, data, offset);
-        } else {
-            offset = putInt16(0, data, offset); // no attributes
+        }
+        if (itsBootstrapMethods != null) {
+            offset = putInt16(itsConstantPool.addUtf8("BootstrapMethods"),
+                              data, offset);
+            offset = putInt32(2 + itsBootstrapMethodsLength, data, offset);
+            offset = putInt16(itsBootstrapMethods.size(), data, offset);
+            for (int i = 0; i < itsBootstrapMethods.size(); i++) {
+                byte[] entry = (byte[])itsBootstrapMethods.get(i);
+                System.arraycopy(entry, 0, data, offset, entry.length);
+                offset += entry.length;
+            }
         }
 
         if (offset != dataSize) {
@@ -3188,6 +3351,7 @@ public class ClassFileWriter {
                 return 4;
 
             case ByteCode.GOTO_W:
+            case ByteCode.INVOKEDYNAMIC:
             case ByteCode.INVOKEINTERFACE:
             case ByteCode.JSR_W:
                 return 5;
@@ -3390,6 +3554,7 @@ public class ClassFileWriter {
             case ByteCode.IF_ICMPNE:
             case ByteCode.ILOAD:
             case ByteCode.INSTANCEOF:
+            case ByteCode.INVOKEDYNAMIC:
             case ByteCode.INVOKEINTERFACE:
             case ByteCode.INVOKESPECIAL:
             case ByteCode.INVOKESTATIC:
@@ -3571,6 +3736,7 @@ public class ClassFileWriter {
             case ByteCode.IMPDEP2:
             case ByteCode.INEG:
             case ByteCode.INSTANCEOF:
+            case ByteCode.INVOKEDYNAMIC:
             case ByteCode.INVOKESTATIC:
             case ByteCode.L2D:
             case ByteCode.LALOAD:
@@ -4067,6 +4233,7 @@ public class ClassFileWriter {
                 case ByteCode.INVOKESPECIAL:    return "invokespecial";
                 case ByteCode.INVOKESTATIC:     return "invokestatic";
                 case ByteCode.INVOKEINTERFACE:  return "invokeinterface";
+                case ByteCode.INVOKEDYNAMIC:    return "invokedynamic";
                 case ByteCode.NEW:              return "new";
                 case ByteCode.NEWARRAY:         return "newarray";
                 case ByteCode.ANEWARRAY:        return "anewarray";
@@ -4253,6 +4420,11 @@ public class ClassFileWriter {
     private short itsSuperClassIndex;
     private short itsSourceFileNameIndex;
 
+    // BootstrapMethods attribute entries, null if there are none
+    private ObjArray itsBootstrapMethods;
+    private ObjToIntMap itsBootstrapMethodIndexes;
+    private int itsBootstrapMethodsLength;
+
     private static final int MIN_LABEL_TABLE_SIZE = 32;
     private int[] itsLabelTable;
     private int itsLabelTableTop;
@@ -4424,7 +4596,9 @@ final class ConstantPool
         CONSTANT_Long = 5,
         CONSTANT_Double = 6,
         CONSTANT_NameAndType = 12,
-        CONSTANT_Utf8 = 1;
+        CONSTANT_Utf8 = 1,
+        CONSTANT_MethodHandle = 15,
+        CONSTANT_InvokeDynamic = 18;
 
     int write(byte[] data, int offset)
     {
@@ -4690,6 +4864,74 @@ final class ConstantPool
         return (short)(itsTopIndex++);
     }
 
+    short addMethodHandle(ClassFileWriter.MHandle mh)
+    {
+        int theIndex = itsMethodHandleHash.get(mh, -1);
+        if (theIndex == -1) {
+            short ref;
+            if (mh.tag <= ByteCode.MH_PUTSTATIC) {
+                ref = addFieldRef(mh.owner, mh.name, mh.desc);
+            } else if (mh.tag == ByteCode.MH_INVOKEINTERFACE) {
+                ref = addInterfaceMethodRef(mh.owner, mh.name, mh.desc);
+            } else {
+                ref = addMethodRef(mh.owner, mh.name, mh.desc);
+            }
+            ensure(4);
+            itsPool[itsTop++] = CONSTANT_MethodHandle;
+            itsPool[itsTop++] = mh.tag;
+            itsTop = ClassFileWriter.putInt16(ref, itsPool, itsTop);
+            theIndex = itsTopIndex++;
+            itsMethodHandleHash.put(mh, theIndex);
+            itsPoolTypes.put(theIndex, CONSTANT_MethodHandle);
+        }
+        return (short)theIndex;
+    }
+
+    short addInvokeDynamic(String methodName, String methodType,
+                           int bootstrapIndex)
+    {
+        String key = bootstrapIndex + ":" + methodName + methodType;
+        int theIndex = itsInvokeDynamicHash.get(key, -1);
+        if (theIndex == -1) {
+            short ntIndex = addNameAndType(methodName, methodType);
+            ensure(5);
+            itsPool[itsTop++] = CONSTANT_InvokeDynamic;
+            itsTop = ClassFileWriter.putInt16(bootstrapIndex, itsPool, itsTop);
+            itsTop = ClassFileWriter.putInt16(ntIndex, itsPool, itsTop);
+            theIndex = itsTopIndex++;
+            itsInvokeDynamicHash.put(key, theIndex);
+            // the stack map only needs the call site type
+            setConstantData(theIndex, methodType);
+            itsPoolTypes.put(theIndex, CONSTANT_InvokeDynamic);
+        }
+        return (short)theIndex;
+    }
+
+    /**
+     * Adds a static argument of a bootstrap method to the pool.
+     */
+    short addBootstrapArgument(Object value)
+    {
+        int index;
+        if (value instanceof String) {
+            index = addConstant((String)value);
+        } else if (value instanceof Integer) {
+            index = addConstant(((Integer)value).intValue());
+        } else if (value instanceof Long) {
+            index = addConstant(((Long)value).longValue());
+        } else if (value instanceof Float) {
+            index = addConstant(((Float)value).floatValue());
+        } else if (value instanceof Double) {
+            index = addConstant(((Double)value).doubleValue());
+        } else if (value instanceof ClassFileWriter.MHandle) {
+            index = addMethodHandle((ClassFileWriter.MHandle)value);
+        } else {
+            throw new IllegalArgumentException(
+                "bad bootstrap argument " + value);
+        }
+        return (short)index;
+    }
+
     Object getConstantData(int index)
     {
         return itsConstantData.getObject(index);
@@ -4727,6 +4969,8 @@ final class ConstantPool
     private ObjToIntMap itsFieldRefHash = new ObjToIntMap();
     private ObjToIntMap itsMethodRefHash = new ObjToIntMap();
     private ObjToIntMap itsClassHash = new ObjToIntMap();
+    private ObjToIntMap itsMethodHandleHash = new ObjToIntMap();
+    private ObjToIntMap itsInvokeDynamicHash = new ObjToIntMap();
 
     private int itsTop;
     private int itsTopIndex;
@@ -0,0 +1,140 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.UniqueIDs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses many sources in parallel on a fork-join pool.
+ * <p>
+ * Each source is parsed by its own {@link Parser} with its own
+ * {@link UniqueIDs} allocator, so the parses share no mutable state. When
+ * all of them are done the node ids of each tree are moved past those of
+ * the trees before it. The ids of a batch are therefore 1, 2, 3... in the
+ * order the sources are given, exactly as if the sources had been parsed
+ * one after another from one fresh allocator, whatever the scheduling of
+ * the parses. Like those of any allocator, they are not unique among the
+ * nodes of other parses.
+ * <p>
+ * All parses use the same {@link CompilerEnvirons}, which must not be
+ * changed while a batch runs, and report to its error reporter, which must
+ * be safe to call from several threads. The default reporter is.
+ *
+ * @since 1.7 Release 5
+ */
+public class BatchParser
+{
+    private final CompilerEnvirons compilerEnv;
+    private final int parallelism;
+
+    public BatchParser(CompilerEnvirons compilerEnv)
+    {
+        this(compilerEnv, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of threads that parse at the same time
+     */
+    public BatchParser(CompilerEnvirons compilerEnv, int parallelism)
+    {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(String.valueOf(parallelism));
+        }
+        this.compilerEnv = compilerEnv;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Parses each of {@code sources}.
+     *
+     * @param sources the source strings
+     * @param sourceURIs the name of each source for error messages, or
+     *        {@code null} if the sources have no names
+     * @return the parse trees, in the order of {@code sources}
+     * @throws EvaluatorException the error of the first source, in the order
+     *         of {@code sources}, that failed to parse
+     */
+    public List<AstRoot> parse(List<String> sources, List<String> sourceURIs)
+    {
+        int count = sources.size();
+        if (sourceURIs != null && sourceURIs.size() != count) {
+            throw new IllegalArgumentException(
+                "sources and sourceURIs differ in length");
+        }
+        List<ParseTask> tasks = new ArrayList<ParseTask>(count);
+        for (int i = 0; i != count; ++i) {
+            tasks.add(new ParseTask(sources.get(i),
+                                    sourceURIs == null ? null
+                                                       : sourceURIs.get(i)));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Future<AstRoot>> results;
+        try {
+            results = pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<AstRoot> roots = new ArrayList<AstRoot>(count);
+        int nextBase = 0;
+        for (int i = 0; i != count; ++i) {
+            AstRoot root;
+            try {
+                root = results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+            UniqueIDs ids = tasks.get(i).ids;
+            ids.shift(nextBase);
+            ids.forgetNodes();
+            nextBase += ids.size();
+            roots.add(root);
+        }
+        return roots;
+    }
+
+    private class ParseTask implements Callable<AstRoot>
+    {
+        private final String source;
+        private final String sourceURI;
+        final UniqueIDs ids = UniqueIDs.tracking();
+
+        ParseTask(String source, String sourceURI)
+        {
+            this.source = source;
+            this.sourceURI = sourceURI;
+        }
+
+        public AstRoot call()
+        {
+            Parser parser = new Parser(compilerEnv);
+            parser.setIdAllocator(ids);
+            return parser.parse(source, sourceURI, 1);
+        }
+    }
+}
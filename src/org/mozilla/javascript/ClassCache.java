@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript;
 
+import java.lang.reflect.Member;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.io.Serializable;
@@ -22,10 +23,20 @@ public class ClassCache implements Serializable
 {
     private static final long serialVersionUID = -8866246036237312215L;
     private static final Object AKEY = "ClassCache";
+    // Marks methods that can only be called with reflection
+    private static final Invoker NO_INVOKER = new Invoker(null) {
+        @Override
+        public Object invoke(Object target, Object[] args)
+        {
+            throw new IllegalStateException();
+        }
+    };
     private volatile boolean cachingIsEnabled = true;
     private transient Map<Class<?>,JavaMembers> classTable;
     private transient Map<JavaAdapter.JavaAdapterSignature,Class<?>> classAdapterCache;
     private transient Map<Class<?>,Object> interfaceAdapterCache;
+    private transient Map<Member,Invoker> invokerCache;
+    private volatile boolean invokerOptimizationIsEnabled;
     private int generatedClassSerial;
     private Scriptable associatedScope;
 
@@ -85,6 +96,7 @@ public class ClassCache implements Serializable
         classTable = null;
         classAdapterCache = null;
         interfaceAdapterCache = null;
+        invokerCache = null;
     }
 
     /**
@@ -144,26 +156,78 @@ public class ClassCache implements Serializable
     }
 
     /**
-     * @deprecated
-     * The method always returns false.
+     * Check if Java methods called from scripts use generated invokers
+     * instead of reflection.
      * @see #setInvokerOptimizationEnabled(boolean enabled)
      */
     public boolean isInvokerOptimizationEnabled()
     {
-        return false;
+        return invokerOptimizationIsEnabled;
     }
 
     /**
-     * @deprecated
-     * The method does nothing.
-     * Invoker optimization is no longer used by Rhino.
-     * On modern JDK like 1.4 or 1.5 the disadvantages of the optimization
-     * like increased memory usage or longer initialization time overweight
-     * small speed increase that can be gained using generated proxy class
-     * to replace reflection.
+     * Set whether Java methods called from scripts use generated invokers.
+     * <p>
+     * When enabled, the first call to a public method of a public class
+     * generates a small class that converts the arguments to the parameter
+     * types of the method and calls it directly, without reflection.
+     * This speeds up scripts that call the same Java methods very often,
+     * at the cost of one loaded class per method called.
+     * Methods with variable arity and methods the generated classes can
+     * not access are still called with reflection.
+     * <p>
+     * Changing the setting empties the caches.
+     * Invoker optimization is disabled by default.
+     *
+     * @param enabled if true, invoker optimization is enabled
      */
     public synchronized void setInvokerOptimizationEnabled(boolean enabled)
     {
+        if (enabled == invokerOptimizationIsEnabled)
+            return;
+        clearCaches();
+        invokerOptimizationIsEnabled = enabled;
+    }
+
+    /**
+     * Return the generated invoker for the method or null if it must be
+     * called with reflection. Invokers are shared by the boxes of the same
+     * method and remembered in the box for the next calls.
+     */
+    Invoker getInvoker(Context cx, MemberBox member)
+    {
+        Invoker invoker = member.invoker;
+        if (invoker == null) {
+            Map<Member,Invoker> invokers = invokerCache;
+            if (invokers == null) {
+                invokers = new ConcurrentHashMap<Member,Invoker>(16, 0.75f, 1);
+                if (cachingIsEnabled) {
+                    invokerCache = invokers;
+                }
+            }
+            invoker = invokers.get(member.member());
+            if (invoker == null) {
+                invoker = InvokerGenerator.canInvoke(cx, member)
+                        ? InvokerGenerator.createInvoker(this, member)
+                        : NO_INVOKER;
+                invokers.put(member.member(), invoker);
+            }
+            member.invoker = invoker;
+        }
+        return invoker == NO_INVOKER ? null : invoker;
+    }
+
+    /**
+     * Make the method be called with reflection from now on, after its
+     * invoker failed to link to it.
+     */
+    void rejectInvoker(MemberBox member)
+    {
+        Map<Member,Invoker> invokers = invokerCache;
+        if (invokers != null) {
+            invokers.put(member.member(), NO_INVOKER);
+        }
+        member.invoker = NO_INVOKER;
     }
 
     /**
@@ -0,0 +1,131 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Cache for the class files generated by the optimizer, so that scripts
+ * compiled by an earlier run do not need to be parsed and compiled again.
+ * <p>
+ * Entries are arrays of class names and class bytes in the format returned
+ * by {@link org.mozilla.javascript.optimizer.ClassCompiler#compileToClassFiles
+ * ClassCompiler.compileToClassFiles}: elements with even indexes hold class
+ * names and the following element holds the class file as byte[]. The key
+ * of an entry is built by {@link #makeKey} from everything that affects the
+ * generated classes.
+ * <p>
+ * A cache is used by {@link Context} when compiling scripts and functions
+ * with optimization level 0 or above, see
+ * {@link Context#setCompiledScriptCache(CompiledScriptCache)}, and by
+ * {@link org.mozilla.javascript.optimizer.ClassCompiler}. Compilation
+ * warnings are only reported when a script is actually compiled, not when
+ * its classes come from the cache.
+ * <p>
+ * Implementations must be thread-safe.
+ *
+ * @see DiskCompiledScriptCache
+ */
+public abstract class CompiledScriptCache
+{
+    /**
+     * Return the class files stored for the key, or null if there are none.
+     */
+    public abstract Object[] get(String key);
+
+    /**
+     * Store the class files generated for the key.
+     */
+    public abstract void put(String key, Object[] classFiles);
+
+    /**
+     * Build the key for the classes compiled from the given source.
+     * <p>
+     * The key is a hex encoded SHA-256 hash of the source text and
+     * location, the compiler settings that change the generated code and
+     * the Rhino version, so a new Rhino release never picks up classes
+     * generated by an older one.
+     *
+     * @param compilerEnv the compiler settings
+     * @param source the source text
+     * @param sourceName the source name that is recorded in the classes
+     * @param lineno the starting line number
+     * @param extra further strings that affect the generated classes,
+     *        such as class names chosen by the caller; may contain nulls
+     */
+    public static String makeKey(CompilerEnvirons compilerEnv, String source,
+                                 String sourceName, int lineno,
+                                 String... extra)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ScriptRuntime.getMessage0("implementation.version"));
+        sb.append('\n').append(getSettingsFingerprint(compilerEnv));
+        sb.append('\n').append(sourceName);
+        sb.append('\n').append(lineno);
+        for (String s : extra) {
+            sb.append('\n').append(s);
+        }
+        // The source goes last, as its length is not recorded
+        sb.append('\n').append(source);
+
+        byte[] digest;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            digest = md.digest(sb.toString().getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i != digest.length; ++i) {
+            hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+            hex[2 * i + 1] = Character.forDigit(digest[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Return a string that differs for compiler settings that generate
+     * different code from the same source.
+     */
+    static String getSettingsFingerprint(CompilerEnvirons compilerEnv)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(compilerEnv.getOptimizationLevel());
+        sb.append('\n').append(compilerEnv.getLanguageVersion());
+        sb.append('\n');
+        appendFlag(sb, compilerEnv.isGenerateDebugInfo());
+        appendFlag(sb, compilerEnv.isReservedKeywordAsIdentifier());
+        appendFlag(sb, compilerEnv.isAllowMemberExprAsFunctionName());
+        appendFlag(sb, compilerEnv.isXmlAvailable());
+        appendFlag(sb, compilerEnv.isGeneratingSource());
+        appendFlag(sb, compilerEnv.isStrictMode());
+        appendFlag(sb, compilerEnv.reportWarningAsError());
+        appendFlag(sb, compilerEnv.isGenerateObserverCount());
+        appendFlag(sb, compilerEnv.isGenerateInvokeDynamic());
+        appendFlag(sb, compilerEnv.getAllowSharpComments());
+        if (compilerEnv.activationNames != null) {
+            Object[] names = compilerEnv.activationNames.toArray();
+            Arrays.sort(names);
+            for (Object name : names) {
+                sb.append('\n').append(name);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendFlag(StringBuilder sb, boolean flag)
+    {
+        sb.append(flag ? '1' : '0');
+    }
+}
@@ -25,6 +25,7 @@ public class CompilerEnvirons
         strictMode = false;
         warningAsError = false;
         generateObserverCount = false;
+        generateInvokeDynamic = false;
         allowSharpComments = false;
     }
 
@@ -51,6 +52,8 @@ public class CompilerEnvirons
 
         // Observer code generation in compiled code :
         generateObserverCount = cx.generateObserverCount;
+
+        generateInvokeDynamic = cx.hasFeature(Context.FEATURE_INVOKEDYNAMIC);
     }
 
     public final ErrorReporter getErrorReporter()
@@ -195,6 +198,24 @@ public class CompilerEnvirons
         this.generateObserverCount = generateObserverCount;
     }
 
+    /**
+     * @return true iff compiled code will use invokedynamic call sites
+     */
+    public boolean isGenerateInvokeDynamic() {
+        return generateInvokeDynamic;
+    }
+
+    /**
+     * Turn on or off generation of invokedynamic call sites for property
+     * access, name lookup, calls and addition in JVM byte code. This needs
+     * Java 7 or later; on older runtimes the setting is ignored.
+     * @param generateInvokeDynamic if true, generated code will link its
+     * dynamic operations through Rhino's bootstrap methods.
+     */
+    public void setGenerateInvokeDynamic(boolean generateInvokeDynamic) {
+        this.generateInvokeDynamic = generateInvokeDynamic;
+    }
+
     public boolean isRecordingComments() {
         return recordingComments;
     }
@@ -211,6 +232,20 @@ public class CompilerEnvirons
         recordingLocalJsDocComments = record;
     }
 
+    public boolean isRecordingSourceText() {
+        return recordingSourceText;
+    }
+
+    /**
+     * Keep the source text in the {@link org.mozilla.javascript.ast.AstRoot}
+     * of a parse, so that the CFG labels of its nodes are cut from the text
+     * instead of being generated with toSource().
+     * @see org.mozilla.javascript.ast.AstRoot#setSourceText(String)
+     */
+    public void setRecordingSourceText(boolean record) {
+        recordingSourceText = record;
+    }
+
     /**
      * Turn on or off full error recovery.  In this mode, parse errors do not
      * throw an exception, and the parser attempts to build a full syntax tree
@@ -236,6 +271,29 @@ public class CompilerEnvirons
         return ideMode;
     }
 
+    public boolean isLeanParsing() {
+        return leanParsing;
+    }
+
+    /**
+     * Puts the parser in "lean" mode, for batch tools that parse many
+     * sources and only need their syntax trees.  Turning it on also turns
+     * off the recording of comments, JsDoc comments and source text and the
+     * IDE mode.  The nodes of a lean parse are created without ids, and are
+     * numbered from the shared counter when {@code AstNode.getID()} is first
+     * called for them, unless the parser was given its own id allocator.
+     * @see #leanEnvirons()
+     */
+    public void setLeanParsing(boolean lean) {
+        leanParsing = lean;
+        if (lean) {
+            recordingComments = false;
+            recordingLocalJsDocComments = false;
+            recordingSourceText = false;
+            ideMode = false;
+        }
+    }
+
     public Set<String> getActivationNames() {
         return activationNames;
     }
@@ -273,6 +331,18 @@ public class CompilerEnvirons
         return env;
     }
 
+    /**
+     * Returns a {@code CompilerEnvirons} for parsing many sources as fast
+     * as possible, when only their syntax trees are needed.
+     * @see #setLeanParsing(boolean)
+     */
+    public static CompilerEnvirons leanEnvirons() {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setLanguageVersion(Context.VERSION_1_8);
+        env.setLeanParsing(true);
+        return env;
+    }
+
     private ErrorReporter errorReporter;
 
     private int languageVersion;
@@ -285,11 +355,14 @@ public class CompilerEnvirons
     private boolean strictMode;
     private boolean warningAsError;
     private boolean generateObserverCount;
+    private boolean generateInvokeDynamic;
     private boolean recordingComments;
     private boolean recordingLocalJsDocComments;
+    private boolean recordingSourceText;
     private boolean recoverFromErrors;
     private boolean warnTrailingComma;
     private boolean ideMode;
+    private boolean leanParsing;
     private boolean allowSharpComments;
     Set<String> activationNames;
 }
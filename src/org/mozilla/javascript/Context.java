@@ -290,6 +290,31 @@ public class Context
      */
     public static final int FEATURE_V8_EXTENSIONS = 14;
 
+    /**
+     * Controls whether compiled code uses invokedynamic call sites for
+     * property access, name lookup, calls and addition instead of calling
+     * into the runtime directly. It only has an effect with optimization
+     * level 0 or above and when Rhino runs on Java 7 or later; otherwise
+     * the regular code is generated.
+     * <p>
+     * By default {@link #hasFeature(int)} returns false.
+     * @since 1.7 Release 5
+     */
+    public static final int FEATURE_INVOKEDYNAMIC = 15;
+
+    /**
+     * Controls whether Java lists and maps are wrapped as
+     * {@link NativeJavaList} and {@link NativeJavaMap}, which let scripts
+     * read and write their elements with the index operator, use
+     * <tt>length</tt> on lists and enumerate the elements with
+     * <tt>for..in</tt> and <tt>for each..in</tt>, besides calling their
+     * methods as usual.
+     * <p>
+     * By default {@link #hasFeature(int)} returns false.
+     * @since 1.7 Release 5
+     */
+    public static final int FEATURE_JAVA_COLLECTION_ACCESS = 16;
+
     public static final String languageVersionProperty = "language version";
     public static final String errorReporterProperty   = "error reporter";
 
@@ -2066,6 +2091,33 @@ public class Context
         return wrapFactory;
     }
 
+    /**
+     * Set the cache for the classes of compiled scripts and functions.
+     * <p>
+     * With a cache, scripts and functions compiled with optimization level
+     * 0 or above are looked up in the cache first and their classes are
+     * stored there after compilation. The cache is not used while a
+     * debugger is attached.
+     * @param cache the cache, or null to compile every script
+     * @see CompiledScriptCache
+     * @since 1.7 Release 5
+     */
+    public final void setCompiledScriptCache(CompiledScriptCache cache)
+    {
+        if (sealed) onSealedMutation();
+        this.compiledScriptCache = cache;
+    }
+
+    /**
+     * Return the cache for the classes of compiled scripts, or null if
+     * none is set.
+     * @since 1.7 Release 5
+     */
+    public final CompiledScriptCache getCompiledScriptCache()
+    {
+        return compiledScriptCache;
+    }
+
     /**
      * Return the current debugger.
      * @return the debugger, or null if none is attached.
@@ -2342,6 +2394,51 @@ public class Context
             }
         }
 
+        String cacheKey = null;
+        if (compiledScriptCache != null && compiler == null
+            && debugger == null && optimizationLevel >= 0
+            && codegenClass != null)
+        {
+            if (sourceReader != null) {
+                sourceString = Kit.readReader(sourceReader);
+                sourceReader = null;
+            }
+            cacheKey = CompiledScriptCache.makeKey(
+                compilerEnv, sourceString, sourceName, lineno,
+                returnFunction ? "function" : "script");
+            Object[] classFiles = compiledScriptCache.get(cacheKey);
+            if (classFiles != null) {
+                return createExecutable(createCompiler(), scope, classFiles,
+                                        securityDomain, returnFunction);
+            }
+        }
+
+        InterpreterDataCache idataCache = null;
+        Object idataKey = null;
+        if (compiler == null && debugger == null
+            && (optimizationLevel < 0 || codegenClass == null))
+        {
+            idataCache = InterpreterDataCache.getInstance();
+            if (idataCache.isEnabled()) {
+                if (sourceReader != null) {
+                    sourceString = Kit.readReader(sourceReader);
+                    sourceReader = null;
+                }
+                idataKey = InterpreterDataCache.makeKey(
+                    compilerEnv, sourceString, sourceName, lineno,
+                    returnFunction);
+                InterpreterData idata = idataCache.get(idataKey);
+                if (idata != null) {
+                    if (returnFunction) {
+                        return InterpretedFunction.createFunction(
+                            this, scope, idata, securityDomain);
+                    }
+                    return InterpretedFunction.createScript(idata,
+                                                            securityDomain);
+                }
+            }
+        }
+
         Parser p = new Parser(compilerEnv, compilationErrorReporter);
         if (returnFunction) {
             p.calledByCompileFunction = true;
@@ -2380,6 +2477,11 @@ public class Context
         Object bytecode = compiler.compile(compilerEnv,
                                            tree, tree.getEncodedSource(),
                                            returnFunction);
+        if (cacheKey != null && bytecode instanceof Object[]) {
+            compiledScriptCache.put(cacheKey, (Object[])bytecode);
+        } else if (idataKey != null && bytecode instanceof InterpreterData) {
+            idataCache.put(idataKey, (InterpreterData)bytecode);
+        }
         if (debugger != null) {
             if (sourceString == null) Kit.codeBug();
             if (bytecode instanceof DebuggableScript) {
@@ -2390,6 +2492,14 @@ public class Context
             }
         }
 
+        return createExecutable(compiler, scope, bytecode, securityDomain,
+                                returnFunction);
+    }
+
+    private Object createExecutable(Evaluator compiler, Scriptable scope,
+                                    Object bytecode, Object securityDomain,
+                                    boolean returnFunction)
+    {
         Object result;
         if (returnFunction) {
             result = compiler.createFunctionObject(this, scope, bytecode, securityDomain);
@@ -2566,6 +2676,7 @@ public class Context
     private int optimizationLevel;
     private int maximumInterpreterStackDepth;
     private WrapFactory wrapFactory;
+    private CompiledScriptCache compiledScriptCache;
     Debugger debugger;
     private Object debuggerData;
     private int enterCount;
@@ -282,6 +282,12 @@ public class ContextFactory
 
           case Context.FEATURE_V8_EXTENSIONS:
             return true;
+
+          case Context.FEATURE_INVOKEDYNAMIC:
+            return false;
+
+          case Context.FEATURE_JAVA_COLLECTION_ACCESS:
+            return false;
         }
         // It is a bug to call the method with unknown featureIndex
         throw new IllegalArgumentException(String.valueOf(featureIndex));
@@ -0,0 +1,295 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * {@link CompiledScriptCache} that keeps one file per entry in a directory,
+ * so compiled scripts survive JVM restarts.
+ * <p>
+ * Every file ends with a CRC-32 checksum of its contents. Files that are
+ * truncated, corrupted or written by an incompatible version are deleted
+ * when they are read and treated as missing. Files are written to a
+ * temporary name and then renamed, so several JVMs can share a directory.
+ * <p>
+ * The total size of the entries is kept below a limit. When a new entry
+ * exceeds it, the least recently used entries are deleted; reading an
+ * entry updates its modification time, which is what recency is based on.
+ *
+ * @since 1.7 Release 5
+ */
+public class DiskCompiledScriptCache extends CompiledScriptCache
+{
+    private static final int MAGIC = 0x52434331; // "RCC1"
+    private static final String SUFFIX = ".rcc";
+
+    private final File directory;
+    private final long maxSize;
+    private long size;
+
+    /**
+     * Create a cache in the given directory, which is created if needed.
+     *
+     * @param directory the directory holding the cache files
+     * @param maxSize the maximum total size of the cache files in bytes
+     */
+    public DiskCompiledScriptCache(File directory, long maxSize)
+    {
+        if (maxSize <= 0) throw new IllegalArgumentException();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException(
+                "Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        for (File file : listEntries()) {
+            size += file.length();
+        }
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    public long getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Return the total size of the cache files written or found by this
+     * instance.
+     */
+    public synchronized long getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public synchronized Object[] get(String key)
+    {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        Object[] classFiles;
+        try {
+            classFiles = read(file);
+        } catch (IOException ex) {
+            classFiles = null;
+        }
+        if (classFiles == null) {
+            remove(file);
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return classFiles;
+    }
+
+    @Override
+    public synchronized void put(String key, Object[] classFiles)
+    {
+        byte[] data = encode(classFiles);
+        if (data.length > maxSize) {
+            return;
+        }
+        File file = getFile(key);
+        File temp = new File(directory, key + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            long oldLength = file.length();
+            if (file.exists() && !file.delete()) {
+                temp.delete();
+                return;
+            }
+            size -= oldLength;
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return;
+            }
+            size += data.length;
+        } catch (IOException ex) {
+            // The cache is only an optimization, compiled classes are
+            // simply not kept if they cannot be written
+            temp.delete();
+            return;
+        }
+        if (size > maxSize) {
+            evict(file);
+        }
+    }
+
+    /**
+     * Delete all cache files.
+     */
+    public synchronized void clear()
+    {
+        for (File file : listEntries()) {
+            file.delete();
+        }
+        size = 0;
+    }
+
+    private File getFile(String key)
+    {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private File[] listEntries()
+    {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        File[] entries = new File[count];
+        System.arraycopy(files, 0, entries, 0, count);
+        return entries;
+    }
+
+    private void remove(File file)
+    {
+        long length = file.length();
+        if (file.delete()) {
+            size -= length;
+        }
+    }
+
+    // Delete the least recently used entries, except the one just added,
+    // until the cache fits into its limit again. The size is recomputed
+    // from the directory as other processes may have added entries.
+    private void evict(File keep)
+    {
+        File[] files = listEntries();
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        size = 0;
+        for (int i = 0; i != files.length; ++i) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = Integer.valueOf(i);
+            size += files[i].length();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                long x = lastModified[a.intValue()];
+                long y = lastModified[b.intValue()];
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        for (int i = 0; i != order.length && size > maxSize; ++i) {
+            File file = files[order[i].intValue()];
+            if (!file.equals(keep)) {
+                remove(file);
+            }
+        }
+    }
+
+    private static byte[] encode(Object[] classFiles)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(classFiles.length / 2);
+            for (int i = 0; i < classFiles.length; i += 2) {
+                byte[] classBytes = (byte[])classFiles[i + 1];
+                out.writeUTF((String)classFiles[i]);
+                out.writeInt(classBytes.length);
+                out.write(classBytes);
+            }
+            out.flush();
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+        } catch (IOException ex) {
+            throw Kit.initCause(new IllegalStateException(), ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Return the class files stored in the file, or null if the file is
+    // not a valid cache entry.
+    private static Object[] read(File file) throws IOException
+    {
+        long length = file.length();
+        if (length < 16 || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] data = new byte[(int)length];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset != data.length) {
+                int n = in.read(data, offset, data.length - offset);
+                if (n < 0) {
+                    return null;
+                }
+                offset += n;
+            }
+        } finally {
+            in.close();
+        }
+        int bodyLength = data.length - 8;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, bodyLength);
+        long checksum = 0;
+        for (int i = bodyLength; i != data.length; ++i) {
+            checksum = (checksum << 8) | (data[i] & 0xFF);
+        }
+        if (checksum != crc.getValue()) {
+            return null;
+        }
+        DataInputStream din = new DataInputStream(
+            new ByteArrayInputStream(data, 0, bodyLength));
+        if (din.readInt() != MAGIC) {
+            return null;
+        }
+        int count = din.readInt();
+        if (count <= 0 || count > bodyLength) {
+            return null;
+        }
+        Object[] classFiles = new Object[2 * count];
+        for (int i = 0; i != count; ++i) {
+            classFiles[2 * i] = din.readUTF();
+            int classLength = din.readInt();
+            if (classLength < 0 || classLength > bodyLength) {
+                return null;
+            }
+            byte[] classBytes = new byte[classLength];
+            din.readFully(classBytes);
+            classFiles[2 * i + 1] = classBytes;
+        }
+        return classFiles;
+    }
+}
@@ -608,6 +608,8 @@ public abstract class IdScriptableObject extends ScriptableObject
             if (prototypeValues != null)
                 throw new IllegalStateException();
             prototypeValues = values;
+            // prototype ids shadow slots on put, which shapes don't track
+            dropShape();
         }
     }
 
@@ -0,0 +1,943 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import org.mozilla.javascript.ast.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Applies a text edit to a parse tree by reparsing only the statement that
+ * encloses the edit.
+ * <p>
+ * The statements considered are those directly in the body of the script or
+ * of a function. The innermost of them that encloses the edit is parsed on
+ * its own from the edited text, inside a dummy function if it comes from a
+ * function body, and the statements parsed replace it in the tree. All the
+ * other nodes are kept, with their ids, criteria, dependencies and fixed
+ * positions; the positions and line numbers of the nodes after the edit are
+ * moved by the size of the edit.
+ * <p>
+ * A statement is only reparsed on its own when that gives the same tree as
+ * parsing the whole edited source. Otherwise the next enclosing statement is
+ * tried, and in the end the whole source is parsed again. This happens when
+ * the edit touches the first token of the statement, or the statement does
+ * not end in a semicolon and the next token could continue it, as automatic
+ * semicolon insertion could then split the edited text differently; when the
+ * edited text is not one or more whole statements; when the function is a
+ * generator; when the edit changes the directives at the start of a body;
+ * and when an enclosing node keeps positions, such as those of XML literals
+ * or array comprehensions, that are not moved. Statements in strict mode
+ * code are parsed in strict mode.
+ * <p>
+ * The tree must have been parsed with its source text recorded, see
+ * {@link CompilerEnvirons#setRecordingSourceText}, as the edit is applied to
+ * that text. Only the syntax tree is kept up to date: the symbol tables,
+ * function and regexp lists and encoded source that the parser records for
+ * code generation are not, so compile a fresh parse of the edited source
+ * rather than the edited tree. Warnings in a statement reparsed on its own
+ * are not reported.
+ *
+ * @since 1.7 Release 5
+ */
+public class IncrementalParser
+{
+    // Statements of a function body are parsed as the body of this function
+    private static final String FUNCTION_PREFIX = "function f(){";
+    private static final String FUNCTION_SUFFIX = "\n}";
+    // Statements in strict code are parsed after this directive
+    private static final String STRICT_PREFIX = "\"use strict\";";
+
+    // Node classes whose positions, other than those of their children, are
+    // all moved by moveInnerPositions and moveAbsolutePositions
+    private static final Set<Class<?>> MOVABLE = new HashSet<Class<?>>(
+        Arrays.<Class<?>>asList(
+            ArrayLiteral.class, Assignment.class, AstRoot.class, Block.class,
+            CatchClause.class, ConditionalExpression.class, DoLoop.class,
+            ElementGet.class, ExpressionStatement.class, ForInLoop.class,
+            ForLoop.class, FunctionCall.class, FunctionNode.class,
+            IfStatement.class, InfixExpression.class, LabeledStatement.class,
+            LetNode.class, NewExpression.class, ObjectLiteral.class,
+            ObjectProperty.class, ParenthesizedExpression.class,
+            PropertyGet.class, ReturnStatement.class, Scope.class,
+            SwitchCase.class, SwitchStatement.class, ThrowStatement.class,
+            TryStatement.class, UnaryExpression.class,
+            VariableDeclaration.class, VariableInitializer.class,
+            WhileLoop.class, WithStatement.class));
+
+    private final CompilerEnvirons compilerEnv;
+
+    public IncrementalParser(CompilerEnvirons compilerEnv)
+    {
+        this.compilerEnv = compilerEnv;
+    }
+
+    /**
+     * Replaces {@code length} characters of the source of {@code root} at
+     * {@code offset} by {@code text}, and updates the tree to match.
+     *
+     * @param root a tree parsed with its source text recorded. Unless the
+     *        whole source has to be parsed again, it is updated in place.
+     * @param offset the offset of the edit in the source text of the tree
+     * @param length the number of characters replaced
+     * @param text the text replacing them
+     * @return the updated tree and the nodes replaced in it
+     * @throws IllegalArgumentException if the source text of the tree was not
+     *         recorded
+     * @throws EvaluatorException if the edited source does not parse
+     */
+    public Result reparse(AstRoot root, int offset, int length, String text)
+    {
+        String oldSource = root.getSourceText();
+        if (oldSource == null) {
+            throw new IllegalArgumentException(
+                "the source text of the tree was not recorded");
+        }
+        if (offset < 0 || length < 0 || offset + length > oldSource.length()) {
+            throw new IndexOutOfBoundsException(
+                "edit at " + offset + " of " + length + " characters in a source of "
+                + oldSource.length());
+        }
+        Edit edit = new Edit(root, oldSource, offset, length, text);
+
+        // Find the statements enclosing the edit, from the outermost
+        List<AstNode> units = new ArrayList<AstNode>();
+        List<Integer> unitStarts = new ArrayList<Integer>();
+        AstNode node = root;
+        int start = root.getPosition();
+        for (;;) {
+            AstNode next = null;
+            int nextStart = 0;
+            for (AstNode kid : children(node)) {
+                int kidStart = start + kid.getPosition();
+                int kidEnd = kidStart + kid.getLength();
+                if (kidStart < offset && offset + length < kidEnd) {
+                    next = kid;
+                    nextStart = kidStart;
+                    break;
+                }
+                if (next == null && kidStart <= offset
+                    && offset + length <= kidEnd)
+                {
+                    next = kid;
+                    nextStart = kidStart;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            node = next;
+            start = nextStart;
+            if (isUnit(node) && start < offset
+                && offset + length < start + node.getLength())
+            {
+                units.add(node);
+                unitStarts.add(start);
+            }
+        }
+
+        for (int i = units.size() - 1; i >= 0; --i) {
+            Result result = edit.reparse(units.get(i), unitStarts.get(i));
+            if (result != null) {
+                return result;
+            }
+        }
+
+        AstRoot newRoot = new Parser(compilerEnv).parse(
+            edit.source, root.getSourceName(), root.getBaseLineno());
+        newRoot.setSourceText(edit.source);
+        return new Result(newRoot, Collections.<AstNode>singletonList(root),
+                          Collections.<AstNode>singletonList(newRoot), true);
+    }
+
+    /**
+     * Whether the node is a statement directly in the body of the script or
+     * of a function.
+     */
+    private static boolean isUnit(AstNode node)
+    {
+        AstNode parent = node.getParent();
+        if (parent instanceof AstRoot) {
+            return true;
+        }
+        if (parent instanceof Block
+            && parent.getParent() instanceof FunctionNode)
+        {
+            FunctionNode fn = (FunctionNode)parent.getParent();
+            return fn.getBody() == parent && !fn.isExpressionClosure();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of the directive the statement is, or {@code null}
+     * if it is not one, as the parser does.
+     */
+    private static String getDirective(Node node)
+    {
+        if (node instanceof ExpressionStatement) {
+            AstNode e = ((ExpressionStatement)node).getExpression();
+            if (e instanceof StringLiteral) {
+                return ((StringLiteral)e).getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the statements before the node in its parent are all
+     * directives, so that the node could be one too.
+     */
+    private static boolean isInPrologue(AstNode node)
+    {
+        for (Node n = node.getParent().getFirstChild(); n != node;
+             n = n.getNext())
+        {
+            if (getDirective(n) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the body has a "use strict" directive.
+     */
+    private static boolean hasUseStrict(AstNode body)
+    {
+        for (Node n = body.getFirstChild(); n != null; n = n.getNext()) {
+            String directive = getDirective(n);
+            if (directive == null) {
+                return false;
+            }
+            if (directive.equals("use strict")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the node is in strict mode code: in a script or a function
+     * with a "use strict" directive, or in a function nested in one.
+     */
+    private static boolean isStrict(AstRoot root, AstNode node)
+    {
+        if (root.isInStrictMode()) {
+            return true;
+        }
+        for (AstNode a = node.getParent(); a != null; a = a.getParent()) {
+            if (a instanceof FunctionNode
+                && hasUseStrict(((FunctionNode)a).getBody()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<AstNode> children(final AstNode node)
+    {
+        final List<AstNode> kids = new ArrayList<AstNode>();
+        node.visit(new NodeVisitor() {
+            public boolean visit(AstNode n) {
+                if (n == node) {
+                    return true;
+                }
+                kids.add(n);
+                return false;
+            }
+        });
+        return kids;
+    }
+
+    private static int moved(int position, int end, int delta)
+    {
+        return position >= end ? position + delta : position;
+    }
+
+    /**
+     * Moves by {@code delta} the positions the node keeps relative to
+     * itself, other than those of its children, that are at or after
+     * {@code end}.
+     */
+    private static void moveInnerPositions(AstNode node, int end, int delta)
+    {
+        if (node instanceof ObjectProperty) {
+            // Its operator position is absolute
+        } else if (node instanceof InfixExpression) {
+            InfixExpression infix = (InfixExpression)node;
+            infix.setOperatorPosition(
+                moved(infix.getOperatorPosition(), end, delta));
+        } else if (node instanceof FunctionCall) {
+            FunctionCall call = (FunctionCall)node;
+            call.setLp(moved(call.getLp(), end, delta));
+            call.setRp(moved(call.getRp(), end, delta));
+        } else if (node instanceof FunctionNode) {
+            FunctionNode fn = (FunctionNode)node;
+            fn.setLp(moved(fn.getLp(), end, delta));
+            fn.setRp(moved(fn.getRp(), end, delta));
+        } else if (node instanceof ConditionalExpression) {
+            ConditionalExpression cond = (ConditionalExpression)node;
+            cond.setQuestionMarkPosition(
+                moved(cond.getQuestionMarkPosition(), end, delta));
+            cond.setColonPosition(moved(cond.getColonPosition(), end, delta));
+        } else if (node instanceof IfStatement) {
+            IfStatement ifs = (IfStatement)node;
+            ifs.setLp(moved(ifs.getLp(), end, delta));
+            ifs.setRp(moved(ifs.getRp(), end, delta));
+            ifs.setElsePosition(moved(ifs.getElsePosition(), end, delta));
+        } else if (node instanceof Loop) {
+            Loop loop = (Loop)node;
+            loop.setLp(moved(loop.getLp(), end, delta));
+            loop.setRp(moved(loop.getRp(), end, delta));
+            if (node instanceof DoLoop) {
+                DoLoop doLoop = (DoLoop)node;
+                doLoop.setWhilePosition(
+                    moved(doLoop.getWhilePosition(), end, delta));
+            } else if (node instanceof ForInLoop) {
+                ForInLoop forIn = (ForInLoop)node;
+                forIn.setInPosition(moved(forIn.getInPosition(), end, delta));
+                forIn.setEachPosition(
+                    moved(forIn.getEachPosition(), end, delta));
+            }
+        } else if (node instanceof TryStatement) {
+            TryStatement tryStmt = (TryStatement)node;
+            tryStmt.setFinallyPosition(
+                moved(tryStmt.getFinallyPosition(), end, delta));
+        } else if (node instanceof CatchClause) {
+            CatchClause clause = (CatchClause)node;
+            clause.setIfPosition(moved(clause.getIfPosition(), end, delta));
+        } else if (node instanceof SwitchStatement) {
+            SwitchStatement sw = (SwitchStatement)node;
+            sw.setLp(moved(sw.getLp(), end, delta));
+            sw.setRp(moved(sw.getRp(), end, delta));
+        } else if (node instanceof LetNode) {
+            LetNode let = (LetNode)node;
+            let.setLp(moved(let.getLp(), end, delta));
+            let.setRp(moved(let.getRp(), end, delta));
+        }
+    }
+
+    /**
+     * Moves by {@code delta} the positions that the parser records as
+     * absolute rather than relative to the node, that are at or after
+     * {@code end}.
+     */
+    private static void moveAbsolutePositions(AstNode node, int end,
+                                              int delta)
+    {
+        if (node instanceof ObjectProperty) {
+            ObjectProperty prop = (ObjectProperty)node;
+            prop.setOperatorPosition(
+                moved(prop.getOperatorPosition(), end, delta));
+        } else if (node instanceof ElementGet) {
+            ElementGet get = (ElementGet)node;
+            get.setLb(moved(get.getLb(), end, delta));
+            get.setRb(moved(get.getRb(), end, delta));
+        } else if (node instanceof CatchClause) {
+            CatchClause clause = (CatchClause)node;
+            clause.setLp(moved(clause.getLp(), end, delta));
+            clause.setRp(moved(clause.getRp(), end, delta));
+        } else if (node instanceof WithStatement) {
+            WithStatement with = (WithStatement)node;
+            with.setLp(moved(with.getLp(), end, delta));
+            with.setRp(moved(with.getRp(), end, delta));
+        }
+    }
+
+    /**
+     * Whether the line number of the node is that of its first token. Other
+     * nodes may have the line number of a later token.
+     */
+    private static boolean isLinenoAtStart(AstNode node)
+    {
+        return node instanceof ScriptNode
+            || (node.getParent() instanceof FunctionNode
+                && ((FunctionNode)node.getParent()).getBody() == node);
+    }
+
+    private static int countLines(String s, int from, int to)
+    {
+        int lines = 0;
+        for (int i = from; i < to; ++i) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\u2028' || c == '\u2029'
+                || (c == '\r' && (i + 1 == to || s.charAt(i + 1) != '\n')))
+            {
+                ++lines;
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isOperatorChar(char c)
+    {
+        return "+-*/%&|^!~<>=?:.".indexOf(c) >= 0;
+    }
+
+    private static int tokenEnd(String s, int pos)
+    {
+        int i = pos + 1;
+        if (Character.isJavaIdentifierStart(s.charAt(pos))) {
+            while (i < s.length() && Character.isJavaIdentifierPart(s.charAt(i))) {
+                ++i;
+            }
+        } else if (isOperatorChar(s.charAt(pos))) {
+            while (i < s.length() && isOperatorChar(s.charAt(i))) {
+                ++i;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Whether a statement starting at {@code pos} cannot continue the code
+     * before it, whatever its first token.
+     */
+    private static boolean followsStatementEnd(String s, int pos)
+    {
+        int i = pos - 1;
+        while (i >= 0 && Character.isWhitespace(s.charAt(i))) {
+            --i;
+        }
+        return i < 0 || s.charAt(i) == ';' || s.charAt(i) == '{';
+    }
+
+    /**
+     * Whether the code after {@code pos} cannot continue a statement that
+     * ends at {@code pos} without a semicolon.
+     */
+    private static boolean precedesStatementStart(String s, int pos)
+    {
+        boolean newline = false;
+        int i = pos;
+        int n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '/' && i + 1 < n && s.charAt(i + 1) == '/') {
+                while (i < n && countLines(s, i, i + 1) == 0) {
+                    ++i;
+                }
+            } else if (c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                int end = s.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return false;
+                }
+                newline |= countLines(s, i, end) != 0;
+                i = end + 2;
+            } else if (Character.isWhitespace(c)) {
+                newline |= countLines(s, i, i + 1) != 0;
+                ++i;
+            } else {
+                break;
+            }
+        }
+        if (i == n) {
+            return true;
+        }
+        char c = s.charAt(i);
+        if (c == ';' || c == '}') {
+            return true;
+        }
+        if (!newline) {
+            return false;
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            String word = s.substring(i, tokenEnd(s, i));
+            return !word.equals("in") && !word.equals("instanceof");
+        }
+        return Character.isDigit(c) || "\"'{!~".indexOf(c) >= 0;
+    }
+
+    /**
+     * Collects the errors of a snippet parse rather than reporting them.
+     */
+    private static class SnippetReporter implements ErrorReporter
+    {
+        int errors;
+
+        public void warning(String message, String sourceName, int line,
+                            String lineSource, int lineOffset)
+        {
+        }
+
+        public void error(String message, String sourceName, int line,
+                          String lineSource, int lineOffset)
+        {
+            ++errors;
+        }
+
+        public EvaluatorException runtimeError(String message,
+                                               String sourceName, int line,
+                                               String lineSource,
+                                               int lineOffset)
+        {
+            return new EvaluatorException(message, sourceName, line,
+                                          lineSource, lineOffset);
+        }
+    }
+
+    private class Edit
+    {
+        final AstRoot root;
+        final String oldSource;
+        final String source;
+        final int offset;
+        final int length;
+        final int delta;
+        final int lineDelta;
+        final int editLine;
+
+        Edit(AstRoot root, String oldSource, int offset, int length,
+             String text)
+        {
+            this.root = root;
+            this.oldSource = oldSource;
+            this.source = oldSource.substring(0, offset) + text
+                + oldSource.substring(offset + length);
+            this.offset = offset;
+            this.length = length;
+            this.delta = text.length() - length;
+            this.lineDelta = countLines(text, 0, text.length())
+                - countLines(oldSource, offset, offset + length);
+            this.editLine = root.getBaseLineno()
+                + countLines(oldSource, 0, offset);
+        }
+
+        /**
+         * Reparses the statement on its own and splices it into the tree, or
+         * returns {@code null} if that would not give the tree of a full
+         * parse.
+         */
+        Result reparse(AstNode unit, int start)
+        {
+            AstNode parent = unit.getParent();
+            for (AstNode a = parent; a != null; a = a.getParent()) {
+                if (!MOVABLE.contains(a.getClass())) {
+                    return null;
+                }
+                // The line number may be that of a token before or after
+                // the edit
+                if (lineDelta != 0 && a.lineno == editLine
+                    && !isLinenoAtStart(a))
+                {
+                    return null;
+                }
+            }
+            FunctionNode fn = parent instanceof AstRoot
+                ? null : (FunctionNode)parent.getParent();
+            if (fn != null && fn.isGenerator()) {
+                return null;
+            }
+            int end = start + unit.getLength();
+            if (offset < tokenEnd(oldSource, start)
+                && !followsStatementEnd(oldSource, start))
+            {
+                return null;
+            }
+            if (oldSource.charAt(end - 1) != ';'
+                && !precedesStatementStart(oldSource, end))
+            {
+                return null;
+            }
+            // Directives change how the rest of the body is parsed
+            boolean inPrologue = isInPrologue(unit);
+            if (inPrologue && getDirective(unit) != null) {
+                return null;
+            }
+
+            // A JsDoc comment before the statement is attached to one of
+            // its nodes, so parse it along
+            int from = start;
+            for (Comment doc : jsDocs(unit)) {
+                from = Math.min(from, doc.getPosition());
+            }
+            String text = source.substring(from, end + delta);
+            boolean strict = isStrict(root, unit);
+            String prefix = (fn == null ? "" : FUNCTION_PREFIX)
+                + (strict ? STRICT_PREFIX : "");
+            String snippet = prefix + text
+                + (fn == null ? "" : FUNCTION_SUFFIX);
+            int base = prefix.length();
+            int lineno = root.getBaseLineno()
+                + countLines(oldSource, 0, from);
+
+            SnippetReporter reporter = new SnippetReporter();
+            AstRoot snippetRoot;
+            try {
+                snippetRoot = new Parser(compilerEnv, reporter).parse(
+                    snippet, root.getSourceName(), lineno);
+            } catch (RhinoException e) {
+                return null;
+            }
+            if (reporter.errors != 0) {
+                return null;
+            }
+            ScriptNode snippetScope = snippetRoot;
+            AstNode list = snippetRoot;
+            if (fn != null) {
+                if (!(snippetRoot.getFirstChild() instanceof FunctionNode)
+                    || snippetRoot.getFirstChild() != snippetRoot.getLastChild())
+                {
+                    return null;
+                }
+                FunctionNode wrapper = (FunctionNode)snippetRoot.getFirstChild();
+                if (wrapper.isGenerator()) {
+                    return null;
+                }
+                snippetScope = wrapper;
+                list = wrapper.getBody();
+            }
+            if (strict) {
+                Node directive = list.getFirstChild();
+                if (!STRICT_PREFIX.equals(
+                        ((AstNode)directive).toSource().trim()))
+                {
+                    return null;
+                }
+                list.removeChild(directive);
+            }
+            if (!list.hasChildren()) {
+                return null;
+            }
+            AstNode first = (AstNode)list.getFirstChild();
+            if (inPrologue && getDirective(first) != null) {
+                return null;
+            }
+            AstNode last = (AstNode)list.getLastChild();
+            if (first.getAbsolutePosition() - base != start - from
+                || last.getAbsolutePosition() + last.getLength() - base
+                   != text.length())
+            {
+                return null;
+            }
+
+            Map<ReturnStatement,Integer> closureLines =
+                closureLines(list, 0, 0);
+            closureLines.putAll(closureLines(root, end, lineDelta));
+            List<AstNode> added = splice(unit, start, list, from - base);
+            moveComments(snippetRoot, added, from, end, from - base);
+            relinkScopes(unit, added, fn == null ? root : fn, snippetScope);
+            for (Map.Entry<ReturnStatement,Integer> e
+                     : closureLines.entrySet())
+            {
+                placeClosureReturn(e.getKey(), e.getValue().intValue());
+            }
+            root.setSourceText(source);
+            return new Result(root, Collections.singletonList(unit), added,
+                              false);
+        }
+
+        /**
+         * Replaces the unit by the statements of the list, and moves the
+         * nodes after it.
+         */
+        private List<AstNode> splice(AstNode unit, int start, AstNode list,
+                                     final int shift)
+        {
+            AstNode parent = unit.getParent();
+            int parentStart = start - unit.getPosition();
+            List<AstNode> added = new ArrayList<AstNode>();
+            while (list.hasChildren()) {
+                AstNode stmt = (AstNode)list.getFirstChild();
+                int stmtStart = stmt.getAbsolutePosition() + shift;
+                list.removeChild(stmt);
+                stmt.setParent(parent);
+                stmt.setPosition(stmtStart - parentStart);
+                parent.addChildBefore(stmt, unit);
+                added.add(stmt);
+                stmt.visit(new NodeVisitor() {
+                    public boolean visit(AstNode node) {
+                        moveAbsolutePositions(node, 0, shift);
+                        return true;
+                    }
+                });
+            }
+            int childEnd = unit.getPosition() + unit.getLength();
+            int end = start + unit.getLength();
+            parent.removeChild(unit);
+
+            Set<AstNode> skip = Collections.newSetFromMap(
+                new IdentityHashMap<AstNode, Boolean>());
+            skip.addAll(added);
+            for (AstNode a = parent; a != null; a = a.getParent()) {
+                for (AstNode kid : children(a)) {
+                    if (kid.getPosition() >= childEnd && !skip.contains(kid)) {
+                        kid.setPosition(kid.getPosition() + delta);
+                        moveSubtree(kid, end);
+                    }
+                }
+                moveInnerPositions(a, childEnd, delta);
+                moveAbsolutePositions(a, end, delta);
+                if (a.lineno > editLine) {
+                    a.lineno += lineDelta;
+                }
+                int oldLength = a.getLength();
+                a.setLength(oldLength + delta);
+                if (a instanceof ScriptNode) {
+                    ((ScriptNode)a).shiftEndLineno(lineDelta);
+                }
+                childEnd = a.getPosition() + oldLength;
+            }
+            return added;
+        }
+
+        /**
+         * Moves the line numbers and absolute positions in a subtree after
+         * the edit.
+         */
+        private void moveSubtree(AstNode subtree, final int end)
+        {
+            if (lineDelta == 0 && delta == 0) {
+                return;
+            }
+            final boolean ownsComments = root.getComments() != null;
+            subtree.visit(new NodeVisitor() {
+                public boolean visit(AstNode node) {
+                    moveAbsolutePositions(node, end, delta);
+                    if (node.lineno != -1) {
+                        node.lineno += lineDelta;
+                    }
+                    if (node instanceof ScriptNode) {
+                        ((ScriptNode)node).shiftEndLineno(lineDelta);
+                    }
+                    // JsDoc comments not in the comment set of the root are
+                    // only reachable from here
+                    Comment doc = node.getJsDocNode();
+                    if (doc != null && !(ownsComments && doc.getParent() == root)) {
+                        moveComment(doc);
+                    }
+                    return true;
+                }
+            });
+        }
+
+        private void moveComment(Comment comment)
+        {
+            comment.setPosition(comment.getPosition() + delta);
+            if (comment.lineno != -1) {
+                comment.lineno += lineDelta;
+            }
+        }
+
+        /**
+         * Replaces the comments of the old statement by those of the snippet
+         * and moves the comments after it.
+         */
+        private void moveComments(AstRoot snippetRoot, List<AstNode> added,
+                                  int from, int end, int shift)
+        {
+            Set<Comment> moved = Collections.newSetFromMap(
+                new IdentityHashMap<Comment, Boolean>());
+            SortedSet<Comment> comments = root.getComments();
+            SortedSet<Comment> snippetComments = snippetRoot.getComments();
+            if (comments != null || snippetComments != null) {
+                SortedSet<Comment> kept =
+                    new TreeSet<Comment>(new AstNode.PositionComparator());
+                if (comments != null) {
+                    for (Comment c : comments) {
+                        if (c.getPosition() >= end) {
+                            moveComment(c);
+                            kept.add(c);
+                        } else if (c.getPosition() < from) {
+                            kept.add(c);
+                        }
+                    }
+                }
+                if (snippetComments != null) {
+                    for (Comment c : snippetComments) {
+                        c.setPosition(c.getPosition() + shift);
+                        moved.add(c);
+                        kept.add(c);
+                    }
+                }
+                root.setComments(kept);
+            }
+            for (Comment doc : jsDocs(added)) {
+                if (moved.add(doc)) {
+                    doc.setPosition(doc.getPosition() + shift);
+                }
+            }
+        }
+
+        /**
+         * Makes the scopes of the new statements children of the scope of
+         * the old one.
+         */
+        private void relinkScopes(AstNode unit, List<AstNode> added,
+                                  ScriptNode scope,
+                                  ScriptNode snippetScope)
+        {
+            List<Scope> kids = scope.getChildScopes();
+            if (kids != null) {
+                kids.removeAll(scopes(Collections.singletonList(unit), scope));
+            }
+            for (Scope s : scopes(added, null)) {
+                if (s.getParentScope() == snippetScope) {
+                    scope.addChildScope(s);
+                } else if (s.getTop() == snippetScope) {
+                    s.setTop(scope);
+                } else if (s.getTop() == snippetScope.getTop()) {
+                    s.setTop(scope.getTop());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the line numbers of the return statements of the expression
+     * closures in the subtree whose body starts at or after {@code from},
+     * moved by {@code lineDelta}. The parser uses that line number as the
+     * absolute position of the statement, see {@link #placeClosureReturn}.
+     */
+    private static Map<ReturnStatement,Integer> closureLines(
+        AstNode subtree, final int from, final int lineDelta)
+    {
+        final Map<ReturnStatement,Integer> lines =
+            new IdentityHashMap<ReturnStatement,Integer>();
+        subtree.visit(new NodeVisitor() {
+            public boolean visit(AstNode n) {
+                if (n instanceof ReturnStatement
+                    && n.getProp(Node.EXPRESSION_CLOSURE_PROP) != null)
+                {
+                    int bodyStart = n.getParent().getAbsolutePosition();
+                    if (bodyStart >= from) {
+                        lines.put((ReturnStatement)n, Integer.valueOf(
+                            bodyStart + n.getPosition() + lineDelta));
+                    }
+                }
+                return true;
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * Gives the return statement of an expression closure and its value
+     * the positions a full parse does, once its body has been moved.
+     */
+    private static void placeClosureReturn(ReturnStatement ret, int lineno)
+    {
+        AstNode value = ret.getReturnValue();
+        int valueStart = value == null ? 0 : value.getAbsolutePosition();
+        ret.setPosition(lineno - ret.getParent().getAbsolutePosition());
+        if (value != null) {
+            value.setPosition(valueStart - lineno);
+        }
+    }
+
+    private static List<Comment> jsDocs(AstNode node)
+    {
+        return jsDocs(Collections.singletonList(node));
+    }
+
+    private static List<Comment> jsDocs(List<AstNode> nodes)
+    {
+        final List<Comment> docs = new ArrayList<Comment>();
+        for (AstNode node : nodes) {
+            node.visit(new NodeVisitor() {
+                public boolean visit(AstNode n) {
+                    if (n.getJsDocNode() != null) {
+                        docs.add(n.getJsDocNode());
+                    }
+                    return true;
+                }
+            });
+        }
+        return docs;
+    }
+
+    /**
+     * Returns the scopes in the subtrees, or only those whose parent is
+     * {@code parent} if it is not {@code null}.
+     */
+    private static List<Scope> scopes(List<AstNode> nodes, final Scope parent)
+    {
+        final List<Scope> scopes = new ArrayList<Scope>();
+        for (AstNode node : nodes) {
+            node.visit(new NodeVisitor() {
+                public boolean visit(AstNode n) {
+                    if (n instanceof Scope && (parent == null
+                        || ((Scope)n).getParentScope() == parent))
+                    {
+                        scopes.add((Scope)n);
+                    }
+                    return true;
+                }
+            });
+        }
+        return scopes;
+    }
+
+    /**
+     * The outcome of {@link IncrementalParser#reparse}.
+     */
+    public static class Result
+    {
+        private final AstRoot root;
+        private final List<AstNode> replacedNodes;
+        private final List<AstNode> insertedNodes;
+        private final boolean fullReparse;
+
+        Result(AstRoot root, List<AstNode> replacedNodes,
+               List<AstNode> insertedNodes, boolean fullReparse)
+        {
+            this.root = root;
+            this.replacedNodes = replacedNodes;
+            this.insertedNodes = insertedNodes;
+            this.fullReparse = fullReparse;
+        }
+
+        /**
+         * Returns the tree of the edited source. This is the tree that was
+         * edited, unless the whole source was parsed again.
+         */
+        public AstRoot getRoot()
+        {
+            return root;
+        }
+
+        /**
+         * Returns the nodes removed from the tree: the statement that was
+         * reparsed, or the old root if the whole source was parsed again.
+         * They keep their positions and parent from before the edit.
+         */
+        public List<AstNode> getReplacedNodes()
+        {
+            return replacedNodes;
+        }
+
+        /**
+         * Returns the nodes that took the place of the replaced nodes, in
+         * source order.
+         */
+        public List<AstNode> getInsertedNodes()
+        {
+            return insertedNodes;
+        }
+
+        /**
+         * Returns whether the whole source was parsed again.
+         */
+        public boolean isFullReparse()
+        {
+            return fullReparse;
+        }
+    }
+}
@@ -893,6 +893,8 @@ public final class Interpreter extends Icode implements Evaluator
         final int EXCEPTION_COST = 100;
 
         String stringReg = null;
+        // string table index of stringReg, for the name caches
+        int stringIndexReg = -1;
         int indexReg = -1;
 
         if (cx.lastInterpreterFrame != null) {
@@ -1236,6 +1238,16 @@ switch (op) {
     case Token.GETPROP : {
         Object lhs = stack[stackTop];
         if (lhs == DBL_MRK) lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+        if (lhs instanceof NativeArray || lhs instanceof CharSequence) {
+            // Array and string lengths can not be redefined
+            if (stringReg.equals("length")) {
+                stack[stackTop] = DBL_MRK;
+                sDbl[stackTop] = (lhs instanceof NativeArray)
+                    ? ((NativeArray)lhs).getLength()
+                    : ((CharSequence)lhs).length();
+                continue Loop;
+            }
+        }
         stack[stackTop] = ScriptRuntime.getObjectProp(lhs, stringReg, cx, frame.scope);
         continue Loop;
     }
@@ -1249,6 +1261,9 @@ switch (op) {
         continue Loop;
     }
     case Icode_PROP_INC_DEC : {
+        // Unlike array elements, properties are stored boxed, so an
+        // unboxed path would still allocate the stored Double, and for a
+        // number value the generic code allocates nothing else
         Object lhs = stack[stackTop];
         if (lhs == DBL_MRK) lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
         stack[stackTop] = ScriptRuntime.propIncrDecr(lhs, stringReg,
@@ -1305,8 +1320,9 @@ switch (op) {
     case Icode_NAME_AND_THIS :
         // stringReg: name
         ++stackTop;
-        stack[stackTop] = ScriptRuntime.getNameFunctionAndThis(stringReg,
-                                                               cx, frame.scope);
+        stack[stackTop] = getNameCache(frame.idata, stringIndexReg,
+                                       stringReg)
+                              .getNameFunctionAndThis(cx, frame.scope);
         ++stackTop;
         stack[stackTop] = ScriptRuntime.lastStoredScriptable(cx);
         continue Loop;
@@ -1549,7 +1565,8 @@ switch (op) {
         sDbl[stackTop] = frame.idata.itsDoubleTable[indexReg];
         continue Loop;
     case Token.NAME :
-        stack[++stackTop] = ScriptRuntime.name(cx, frame.scope, stringReg);
+        stack[++stackTop] = getNameCache(frame.idata, stringIndexReg,
+                                         stringReg).name(cx, frame.scope);
         continue Loop;
     case Icode_NAME_INC_DEC :
         stack[++stackTop] = ScriptRuntime.nameIncrDecr(frame.scope, stringReg,
@@ -1856,27 +1873,34 @@ switch (op) {
         frame.pc += 4;
         continue Loop;
     case Icode_REG_STR_C0:
+        stringIndexReg = 0;
         stringReg = strings[0];
         continue Loop;
     case Icode_REG_STR_C1:
+        stringIndexReg = 1;
         stringReg = strings[1];
         continue Loop;
     case Icode_REG_STR_C2:
+        stringIndexReg = 2;
         stringReg = strings[2];
         continue Loop;
     case Icode_REG_STR_C3:
+        stringIndexReg = 3;
         stringReg = strings[3];
         continue Loop;
     case Icode_REG_STR1:
-        stringReg = strings[0xFF & iCode[frame.pc]];
+        stringIndexReg = 0xFF & iCode[frame.pc];
+        stringReg = strings[stringIndexReg];
         ++frame.pc;
         continue Loop;
     case Icode_REG_STR2:
-        stringReg = strings[getIndex(iCode, frame.pc)];
+        stringIndexReg = getIndex(iCode, frame.pc);
+        stringReg = strings[stringIndexReg];
         frame.pc += 2;
         continue Loop;
     case Icode_REG_STR4:
-        stringReg = strings[getInt(iCode, frame.pc)];
+        stringIndexReg = getInt(iCode, frame.pc);
+        stringReg = strings[stringIndexReg];
         frame.pc += 4;
         continue Loop;
     default :
@@ -2081,6 +2105,23 @@ switch (op) {
                : ScriptRuntime.wrapNumber(interpreterResultDbl);
     }
 
+    private static NameCache getNameCache(InterpreterData idata,
+                                          int stringIndex, String name)
+    {
+        // Racing threads may each create a cache, which is harmless
+        NameCache[] caches = idata.itsNameCaches;
+        if (caches == null) {
+            caches = new NameCache[idata.itsStringTable.length];
+            idata.itsNameCaches = caches;
+        }
+        NameCache cache = caches[stringIndex];
+        if (cache == null) {
+            cache = new NameCache(name);
+            caches[stringIndex] = cache;
+        }
+        return cache;
+    }
+
     private static int doInOrInstanceof(Context cx, int op, Object[] stack,
                                         double[] sDbl, int stackTop) {
         Object rhs = stack[stackTop];
@@ -2206,6 +2247,16 @@ switch (op) {
             value = ScriptRuntime.getObjectElem(lhs, id, cx, frame.scope);
         } else {
             double d = sDbl[stackTop + 1];
+            if (lhs instanceof NativeArray) {
+                // Read numbers that are stored unboxed without boxing them
+                NativeArray array = (NativeArray)lhs;
+                int index = (int)d;
+                if (index == d && array.isNumberElement(index)) {
+                    stack[stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = array.getDouble(index);
+                    return stackTop;
+                }
+            }
             value = ScriptRuntime.getObjectIndex(lhs, d, cx);
         }
         stack[stackTop] = value;
@@ -2217,6 +2268,21 @@ switch (op) {
         stackTop -= 2;
         Object rhs = stack[stackTop + 2];
         if (rhs == DOUBLE_MARK) {
+            Object lhs = stack[stackTop];
+            if (lhs instanceof NativeArray &&
+                stack[stackTop + 1] == DOUBLE_MARK)
+            {
+                double d = sDbl[stackTop + 1];
+                int index = (int)d;
+                double value = sDbl[stackTop + 2];
+                if (index == d &&
+                    ((NativeArray)lhs).putDouble(index, value))
+                {
+                    stack[stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = value;
+                    return stackTop;
+                }
+            }
             rhs = ScriptRuntime.wrapNumber(sDbl[stackTop + 2]);
         }
         Object lhs = stack[stackTop];
@@ -2237,6 +2303,27 @@ switch (op) {
 
     private static int doElemIncDec(Context cx, CallFrame frame, byte[] iCode,
                                     Object[] stack, double[] sDbl, int stackTop) {
+        if (stack[stackTop] == DOUBLE_MARK &&
+            stack[stackTop - 1] instanceof NativeArray)
+        {
+            NativeArray array = (NativeArray)stack[stackTop - 1];
+            double d = sDbl[stackTop];
+            int index = (int)d;
+            if (index == d && array.isNumberElement(index)) {
+                int incrDecrMask = iCode[frame.pc];
+                double value = array.getDouble(index);
+                double result = ((incrDecrMask & Node.DECR_FLAG) == 0)
+                                ? value + 1.0 : value - 1.0;
+                if (array.putDouble(index, result)) {
+                    --stackTop;
+                    stack[stackTop] = DOUBLE_MARK;
+                    sDbl[stackTop] = ((incrDecrMask & Node.POST_FLAG) != 0)
+                                     ? value : result;
+                    ++frame.pc;
+                    return stackTop;
+                }
+            }
+        }
         Object rhs = stack[stackTop];
         if (rhs == DOUBLE_MARK) rhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
         --stackTop;
@@ -50,6 +50,8 @@ final class InterpreterData implements Serializable, DebuggableScript
     int itsFunctionType;
 
     String[] itsStringTable;
+    // NameCache for free variable lookups of each string, created on use
+    transient NameCache[] itsNameCaches;
     double[] itsDoubleTable;
     InterpreterData[] itsNestedFunctions;
     Object[] itsRegExpLiterals;
@@ -0,0 +1,216 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the code that the interpreter generates for
+ * scripts and functions compiled through {@link Context}.
+ * <p>
+ * When the cache is enabled, compiling a source that was already compiled
+ * with the same name, line number and compiler settings skips parsing and
+ * code generation: the new script or function object shares the compiled
+ * code of the earlier one. The interpreted code is never modified once it
+ * is generated, so it can be shared by all contexts and threads.
+ * <p>
+ * The cache holds at most {@link #getMaxSize()} sources and evicts the
+ * least recently used one when it is full. It is disabled by default, as
+ * it keeps the compiled code of every cached source alive; enable it with
+ * {@link #setMaxSize(int)}. Compilation warnings are only reported when a
+ * source is actually compiled, and the cache is bypassed while a debugger
+ * is attached, as well as for code passed to eval().
+ *
+ * @since 1.7 Release 5
+ */
+public final class InterpreterDataCache
+{
+    private static final InterpreterDataCache instance
+        = new InterpreterDataCache();
+
+    private static final class Key
+    {
+        private final String settings;
+        private final String source;
+        private final String sourceName;
+        private final int lineno;
+        private final boolean function;
+        private final int hash;
+
+        Key(String settings, String source, String sourceName, int lineno,
+            boolean function)
+        {
+            this.settings = settings;
+            this.source = source;
+            this.sourceName = sourceName;
+            this.lineno = lineno;
+            this.function = function;
+            int h = source.hashCode();
+            h = 31 * h + sourceName.hashCode();
+            h = 31 * h + settings.hashCode();
+            h = 31 * h + lineno;
+            this.hash = function ? ~h : h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return hash == other.hash
+                && lineno == other.lineno
+                && function == other.function
+                && source.equals(other.source)
+                && sourceName.equals(other.sourceName)
+                && settings.equals(other.settings);
+        }
+    }
+
+    private final LinkedHashMap<Key,InterpreterData> map
+        = new LinkedHashMap<Key,InterpreterData>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Key,InterpreterData> eldest)
+            {
+                if (size() > maxSize) {
+                    ++evictionCount;
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    private int maxSize;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    private InterpreterDataCache()
+    {
+    }
+
+    /**
+     * Return the cache shared by all contexts.
+     */
+    public static InterpreterDataCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Return the maximum number of cached sources, 0 if the cache is
+     * disabled.
+     */
+    public synchronized int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum number of cached sources. Setting it to 0 disables
+     * the cache; a smaller size evicts the least recently used entries
+     * right away.
+     */
+    public synchronized void setMaxSize(int maxSize)
+    {
+        if (maxSize < 0) throw new IllegalArgumentException();
+        this.maxSize = maxSize;
+        while (map.size() > maxSize) {
+            Key eldest = map.keySet().iterator().next();
+            map.remove(eldest);
+            ++evictionCount;
+        }
+    }
+
+    /**
+     * Return the number of cached sources.
+     */
+    public synchronized int size()
+    {
+        return map.size();
+    }
+
+    /**
+     * Return the number of compilations that were served by the cache.
+     */
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    /**
+     * Return the number of compilations that had to generate code while
+     * the cache was enabled.
+     */
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * Return the number of entries removed to make room for new ones.
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictionCount;
+    }
+
+    /**
+     * Remove all entries and reset the statistics.
+     */
+    public synchronized void clear()
+    {
+        map.clear();
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    synchronized boolean isEnabled()
+    {
+        return maxSize > 0;
+    }
+
+    static Object makeKey(CompilerEnvirons compilerEnv, String source,
+                          String sourceName, int lineno,
+                          boolean returnFunction)
+    {
+        return new Key(CompiledScriptCache.getSettingsFingerprint(compilerEnv),
+                       source, sourceName, lineno, returnFunction);
+    }
+
+    synchronized InterpreterData get(Object key)
+    {
+        InterpreterData idata = map.get(key);
+        if (idata != null) {
+            ++hitCount;
+        } else {
+            ++missCount;
+        }
+        return idata;
+    }
+
+    synchronized void put(Object key, InterpreterData idata)
+    {
+        if (maxSize > 0) {
+            map.put((Key)key, idata);
+        }
+    }
+}
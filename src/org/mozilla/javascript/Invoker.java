@@ -0,0 +1,109 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+/**
+ * Base class of the classes generated to call a Java method from scripts
+ * without reflection when
+ * {@link ClassCache#setInvokerOptimizationEnabled(boolean)} is on.
+ * A generated invoker converts the JavaScript arguments to the parameter
+ * types of its method and calls the method directly.
+ * <p>
+ * This is an internal engine class. It is public only so that invokers
+ * defined by other class loaders can extend it.
+ *
+ * @see InvokerGenerator
+ */
+public abstract class Invoker
+{
+    private final Class<?>[] argTypes;
+
+    protected Invoker(Class<?>[] argTypes)
+    {
+        this.argTypes = argTypes;
+    }
+
+    /**
+     * Call the method.
+     *
+     * @param target the object to call the method on, ignored if the
+     *        method is static
+     * @param args the JavaScript arguments, as many as the method has
+     *        parameters
+     * @return the result boxed as with reflection, or null if the method
+     *         returns void
+     */
+    public abstract Object invoke(Object target, Object[] args);
+
+    /**
+     * Convert the argument of the parameter at {@code index} with
+     * {@link Context#jsToJava(Object, Class)}.
+     */
+    protected final Object coerce(Object value, int index)
+    {
+        return Context.jsToJava(value, argTypes[index]);
+    }
+
+    public static boolean toBoolean(Object value)
+    {
+        if (value instanceof Boolean) {
+            return ((Boolean)value).booleanValue();
+        }
+        return ((Boolean)Context.jsToJava(value, Boolean.TYPE)).booleanValue();
+    }
+
+    public static byte toByte(Object value)
+    {
+        return ((Byte)Context.jsToJava(value, Byte.TYPE)).byteValue();
+    }
+
+    public static short toShort(Object value)
+    {
+        return ((Short)Context.jsToJava(value, Short.TYPE)).shortValue();
+    }
+
+    public static char toChar(Object value)
+    {
+        return ((Character)Context.jsToJava(value, Character.TYPE)).charValue();
+    }
+
+    public static int toInt(Object value)
+    {
+        if (value != null && value.getClass() == ScriptRuntime.IntegerClass) {
+            return ((Integer)value).intValue();
+        }
+        return ((Integer)Context.jsToJava(value, Integer.TYPE)).intValue();
+    }
+
+    public static long toLong(Object value)
+    {
+        return ((Long)Context.jsToJava(value, Long.TYPE)).longValue();
+    }
+
+    public static float toFloat(Object value)
+    {
+        return ((Float)Context.jsToJava(value, Float.TYPE)).floatValue();
+    }
+
+    public static double toDouble(Object value)
+    {
+        if (value != null && (value.getClass() == ScriptRuntime.DoubleClass
+                              || value.getClass() == ScriptRuntime.IntegerClass))
+        {
+            return ((Number)value).doubleValue();
+        }
+        return ((Double)Context.jsToJava(value, Double.TYPE)).doubleValue();
+    }
+
+    public static String toJavaString(Object value)
+    {
+        if (value instanceof String) {
+            return (String)value;
+        }
+        return (String)Context.jsToJava(value, ScriptRuntime.StringClass);
+    }
+}
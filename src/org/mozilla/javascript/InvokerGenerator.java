@@ -0,0 +1,264 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.mozilla.classfile.ByteCode;
+import org.mozilla.classfile.ClassFileWriter;
+
+/**
+ * Generates the {@link Invoker} subclasses that call Java methods without
+ * reflection. Each invoker is specialized for one method: it converts every
+ * argument straight to the type of its parameter, then calls the method
+ * with invokevirtual, invokeinterface or invokestatic.
+ */
+final class InvokerGenerator
+{
+    private static final String INVOKER_CLASS = "org.mozilla.javascript.Invoker";
+
+    // Class.getModule() and Module.isExported(String) when Rhino runs on
+    // Java 9 or later, null before
+    private static final Method getModule;
+    private static final Method isExported;
+
+    static {
+        Method moduleGetter = null;
+        Method exportTest = null;
+        try {
+            moduleGetter = Class.class.getMethod("getModule");
+            exportTest = moduleGetter.getReturnType().getMethod(
+                "isExported", String.class);
+        } catch (Exception ex) {
+            moduleGetter = null;
+        }
+        getModule = moduleGetter;
+        isExported = exportTest;
+    }
+
+    private InvokerGenerator() { }
+
+    /**
+     * Check if a generated invoker can call the method. It must be a public,
+     * fixed arity method of a class that code in any package can access, and
+     * the classes in its signature must be the ones the application class
+     * loader finds. The classes the invoker casts to must be accessible too.
+     */
+    static boolean canInvoke(Context cx, MemberBox member)
+    {
+        if (!member.isMethod() || member.vararg) {
+            return false;
+        }
+        Method method = member.method();
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers())
+            || !isAccessible(declaringClass))
+        {
+            return false;
+        }
+        if (declaringClass.isInterface() && member.isStatic()) {
+            // Needs an interface method reference for invokestatic
+            return false;
+        }
+        ClassLoader loader = cx.getApplicationClassLoader();
+        if (!isVisible(loader, declaringClass)
+            || !isVisible(loader, method.getReturnType()))
+        {
+            return false;
+        }
+        for (Class<?> type : member.argTypes) {
+            if (!isVisible(loader, type) || !isAccessible(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if the class is public, nested only in public classes, and in
+     * a package its module exports to everyone. Generated invokers live in
+     * the unnamed module and can only link to such classes.
+     */
+    private static boolean isAccessible(Class<?> type)
+    {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        if (getModule == null) {
+            return true;
+        }
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        String packageName = dot < 0 ? "" : name.substring(0, dot);
+        try {
+            Object module = getModule.invoke(type);
+            return ((Boolean)isExported.invoke(module, packageName))
+                .booleanValue();
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Check if the error comes from the invoker failing to link to the
+     * classes or the method it calls, before the method itself ran.
+     */
+    static boolean isLinkFailure(Invoker invoker, LinkageError err)
+    {
+        StackTraceElement[] trace = err.getStackTrace();
+        return trace.length != 0
+            && trace[0].getClassName().equals(invoker.getClass().getName());
+    }
+
+    private static boolean isVisible(ClassLoader loader, Class<?> type)
+    {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive()
+            || Kit.classOrNull(loader, type.getName()) == type;
+    }
+
+    /**
+     * Generate, load and instantiate the invoker of a method that
+     * {@link #canInvoke} accepted.
+     */
+    static Invoker createInvoker(ClassCache cache, MemberBox member)
+    {
+        String className = "invoker" + cache.newClassSerialNumber();
+        byte[] code = createInvokerCode(className, member.method(),
+                                        member.argTypes);
+        Class<?> invokerClass = JavaAdapter.loadAdapterClass(className, code);
+        try {
+            Constructor<?> ctor = invokerClass.getConstructor(Class[].class);
+            return (Invoker)ctor.newInstance((Object)member.argTypes);
+        } catch (Exception ex) {
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    static byte[] createInvokerCode(String className, Method method,
+                                    Class<?>[] argTypes)
+    {
+        ClassFileWriter cfw = new ClassFileWriter(className, INVOKER_CLASS,
+                                                  "<invoker>");
+
+        cfw.startMethod("<init>", "([Ljava/lang/Class;)V",
+                        ClassFileWriter.ACC_PUBLIC);
+        cfw.add(ByteCode.ALOAD_0);
+        cfw.add(ByteCode.ALOAD_1);
+        cfw.addInvoke(ByteCode.INVOKESPECIAL, INVOKER_CLASS, "<init>",
+                      "([Ljava/lang/Class;)V");
+        cfw.add(ByteCode.RETURN);
+        cfw.stopMethod((short)2);
+
+        cfw.startMethod("invoke",
+                        "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+                        (short)(ClassFileWriter.ACC_PUBLIC
+                                | ClassFileWriter.ACC_FINAL));
+        Class<?> declaringClass = method.getDeclaringClass();
+        String declaringName = declaringClass.getName();
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        if (!isStatic) {
+            cfw.add(ByteCode.ALOAD_1);  // target
+            cfw.add(ByteCode.CHECKCAST, declaringName);
+        }
+        for (int i = 0; i != argTypes.length; ++i) {
+            generateCoercion(cfw, argTypes[i], i);
+        }
+
+        Class<?> returnType = method.getReturnType();
+        StringBuilder sig = new StringBuilder();
+        JavaAdapter.appendMethodSignature(argTypes, returnType, sig);
+        int opcode = isStatic ? ByteCode.INVOKESTATIC
+                   : declaringClass.isInterface() ? ByteCode.INVOKEINTERFACE
+                   : ByteCode.INVOKEVIRTUAL;
+        cfw.addInvoke(opcode, declaringName, method.getName(), sig.toString());
+
+        if (returnType == Void.TYPE) {
+            cfw.add(ByteCode.ACONST_NULL);
+        } else if (returnType.isPrimitive()) {
+            generateBoxing(cfw, returnType);
+        }
+        cfw.add(ByteCode.ARETURN);
+        cfw.stopMethod((short)3);
+        return cfw.toByteArray();
+    }
+
+    /**
+     * Push args[index] converted to {@code type}: primitives and strings go
+     * through the static helpers of {@link Invoker}, other types through
+     * {@link Invoker#coerce} followed by a cast.
+     */
+    private static void generateCoercion(ClassFileWriter cfw, Class<?> type,
+                                         int index)
+    {
+        if (type.isPrimitive()) {
+            loadArg(cfw, index);
+            String name = type == Boolean.TYPE ? "toBoolean"
+                        : type == Byte.TYPE ? "toByte"
+                        : type == Short.TYPE ? "toShort"
+                        : type == Character.TYPE ? "toChar"
+                        : type == Integer.TYPE ? "toInt"
+                        : type == Long.TYPE ? "toLong"
+                        : type == Float.TYPE ? "toFloat"
+                        : "toDouble";
+            StringBuilder sig = new StringBuilder();
+            JavaAdapter.appendMethodSignature(
+                new Class<?>[] { ScriptRuntime.ObjectClass }, type, sig);
+            cfw.addInvoke(ByteCode.INVOKESTATIC, INVOKER_CLASS, name,
+                          sig.toString());
+        } else if (type == ScriptRuntime.StringClass) {
+            loadArg(cfw, index);
+            cfw.addInvoke(ByteCode.INVOKESTATIC, INVOKER_CLASS, "toJavaString",
+                          "(Ljava/lang/Object;)Ljava/lang/String;");
+        } else {
+            cfw.add(ByteCode.ALOAD_0);
+            loadArg(cfw, index);
+            cfw.addPush(index);
+            cfw.addInvoke(ByteCode.INVOKEVIRTUAL, INVOKER_CLASS, "coerce",
+                          "(Ljava/lang/Object;I)Ljava/lang/Object;");
+            if (type != ScriptRuntime.ObjectClass) {
+                cfw.add(ByteCode.CHECKCAST, type.getName());
+            }
+        }
+    }
+
+    private static void loadArg(ClassFileWriter cfw, int index)
+    {
+        cfw.add(ByteCode.ALOAD_2);  // args
+        cfw.addPush(index);
+        cfw.add(ByteCode.AALOAD);
+    }
+
+    private static void generateBoxing(ClassFileWriter cfw, Class<?> type)
+    {
+        Class<?> boxType = type == Boolean.TYPE ? ScriptRuntime.BooleanClass
+                         : type == Byte.TYPE ? ScriptRuntime.ByteClass
+                         : type == Short.TYPE ? ScriptRuntime.ShortClass
+                         : type == Character.TYPE ? ScriptRuntime.CharacterClass
+                         : type == Integer.TYPE ? ScriptRuntime.IntegerClass
+                         : type == Long.TYPE ? ScriptRuntime.LongClass
+                         : type == Float.TYPE ? ScriptRuntime.FloatClass
+                         : ScriptRuntime.DoubleClass;
+        StringBuilder sig = new StringBuilder();
+        JavaAdapter.appendMethodSignature(new Class<?>[] { type }, boxType,
+                                          sig);
+        cfw.addInvoke(ByteCode.INVOKESTATIC, boxType.getName(), "valueOf",
+                      sig.toString());
+    }
+}
@@ -6,8 +6,10 @@
 
 package org.mozilla.javascript;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.reflect.Modifier.isProtected;
 import static java.lang.reflect.Modifier.isPublic;
@@ -35,12 +37,15 @@ class JavaMembers
                 throw Context.reportRuntimeError1("msg.access.prohibited",
                                                   cl.getName());
             }
-            this.members = new HashMap<String,Object>();
-            this.staticMembers = new HashMap<String,Object>();
+            this.members = new ConcurrentHashMap<String,Object>(16, 0.75f, 1);
+            this.staticMembers = new ConcurrentHashMap<String,Object>(16, 0.75f, 1);
             this.cl = cl;
-            boolean includePrivate = cx.hasFeature(
+            this.scope = scope;
+            this.includePrivate = cx.hasFeature(
                     Context.FEATURE_ENHANCED_JAVA_ACCESS);
-            reflect(scope, includeProtected, includePrivate);
+            this.reflection = ClassReflection.get(cl, includeProtected,
+                                                  includePrivate);
+            reflectConstructors();
         } finally {
             Context.exit();
         }
@@ -48,8 +53,7 @@ class JavaMembers
 
     boolean has(String name, boolean isStatic)
     {
-        Map<String,Object> ht = isStatic ? staticMembers : members;
-        Object obj = ht.get(name);
+        Object obj = lookup(name, isStatic);
         if (obj != null) {
             return true;
         }
@@ -59,11 +63,10 @@ class JavaMembers
     Object get(Scriptable scope, String name, Object javaObject,
                boolean isStatic)
     {
-        Map<String,Object> ht = isStatic ? staticMembers : members;
-        Object member = ht.get(name);
+        Object member = lookup(name, isStatic);
         if (!isStatic && member == null) {
             // Try to get static member from instance (LC3)
-            member = staticMembers.get(name);
+            member = lookup(name, true);
         }
         if (member == null) {
             member = this.getExplicitFunction(scope, name,
@@ -101,10 +104,10 @@ class JavaMembers
              Object value, boolean isStatic)
     {
         Map<String,Object> ht = isStatic ? staticMembers : members;
-        Object member = ht.get(name);
+        Object member = lookup(name, isStatic);
         if (!isStatic && member == null) {
             // Try to get static member from instance (LC3)
-            member = staticMembers.get(name);
+            member = lookup(name, true);
         }
         if (member == null)
             throw reportMemberNotFound(name);
@@ -164,6 +167,9 @@ class JavaMembers
 
     Object[] getIds(boolean isStatic)
     {
+        if (!(isStatic ? staticMembersComplete : membersComplete)) {
+            reflectAll(isStatic);
+        }
         Map<String,Object> map = isStatic ? staticMembers : members;
         return map.keySet().toArray(new Object[map.size()]);
     }
@@ -216,7 +222,6 @@ class JavaMembers
         int sigStart = name.indexOf('(');
         if (sigStart < 0) { return null; }
 
-        Map<String,Object> ht = isStatic ? staticMembers : members;
         MemberBox[] methodsOrCtors = null;
         boolean isCtor = (isStatic && sigStart == 0);
 
@@ -226,10 +231,10 @@ class JavaMembers
         } else {
             // Explicit request for an overloaded method
             String trueName = name.substring(0,sigStart);
-            Object obj = ht.get(trueName);
+            Object obj = lookup(trueName, isStatic);
             if (!isStatic && obj == null) {
                 // Try to get static member from instance (LC3)
-                obj = staticMembers.get(trueName);
+                obj = lookup(trueName, true);
             }
             if (obj instanceof NativeJavaMethod) {
                 NativeJavaMethod njm = (NativeJavaMethod)obj;
@@ -271,12 +276,13 @@ class JavaMembers
                 ht.put(name, fun);
             } else {
                 String trueName = methodOrCtor.getName();
-                member = ht.get(trueName);
+                member = lookup(trueName, isStatic);
 
                 if (member instanceof NativeJavaMethod &&
                     ((NativeJavaMethod)member).methods.length > 1 ) {
                     NativeJavaMethod fun =
                         new NativeJavaMethod(methodOrCtor, name);
+                    fun.invokers = invokers;
                     fun.setPrototype(prototype);
                     ht.put(name, fun);
                     member = fun;
@@ -408,224 +414,330 @@ class JavaMembers
         }
     }
 
-    private void reflect(Scriptable scope,
-                         boolean includeProtected,
-                         boolean includePrivate)
+    /**
+     * The reflected methods, fields and constructors of a class. Unlike
+     * JavaMembers it holds nothing tied to a scope, so it is shared by the
+     * ClassCache objects of all scopes.
+     */
+    private static final class ClassReflection
     {
-        // We reflect methods first, because we want overloaded field/method
-        // names to be allocated to the NativeJavaMethod before the field
-        // gets in the way.
-
-        Method[] methods = discoverAccessibleMethods(cl, includeProtected,
-                                                     includePrivate);
-        for (Method method : methods) {
-            int mods = method.getModifiers();
-            boolean isStatic = Modifier.isStatic(mods);
-            Map<String,Object> ht = isStatic ? staticMembers : members;
-            String name = method.getName();
-            Object value = ht.get(name);
-            if (value == null) {
-                ht.put(name, method);
-            } else {
-                ObjArray overloadedMethods;
-                if (value instanceof ObjArray) {
-                    overloadedMethods = (ObjArray)value;
-                } else {
-                    if (!(value instanceof Method)) Kit.codeBug();
-                    // value should be instance of Method as at this stage
-                    // staticMembers and members can only contain methods
-                    overloadedMethods = new ObjArray();
-                    overloadedMethods.add(value);
-                    ht.put(name, overloadedMethods);
+        // Values are soft so the reflection of a class does not keep its
+        // class loader alive
+        private static final Map<Class<?>,SoftReference<?>[]> cache =
+            new WeakHashMap<Class<?>,SoftReference<?>[]>();
+
+        private final Map<String,Method[]> methods =
+            new HashMap<String,Method[]>();
+        private final Map<String,Method[]> staticMethods =
+            new HashMap<String,Method[]>();
+        private final Map<String,Field> fields = new HashMap<String,Field>();
+        private final Map<String,Field> staticFields =
+            new HashMap<String,Field>();
+        final Constructor<?>[] constructors;
+
+        /**
+         * Return the reflection of the class, from the cache if the
+         * security manager can't make it differ between callers.
+         */
+        static ClassReflection get(Class<?> cl, boolean includeProtected,
+                                   boolean includePrivate)
+        {
+            if (System.getSecurityManager() != null) {
+                return new ClassReflection(cl, includeProtected,
+                                           includePrivate);
+            }
+            // Protected members make no difference with private ones
+            int level = includePrivate ? 2 : includeProtected ? 1 : 0;
+            SoftReference<?>[] refs;
+            synchronized (cache) {
+                refs = cache.get(cl);
+                if (refs == null) {
+                    refs = new SoftReference<?>[3];
+                    cache.put(cl, refs);
                 }
-                overloadedMethods.add(method);
             }
+            SoftReference<?> ref = refs[level];
+            ClassReflection reflection = ref == null ? null
+                                       : (ClassReflection)ref.get();
+            if (reflection == null) {
+                reflection = new ClassReflection(cl, includeProtected,
+                                                 includePrivate);
+                refs[level] = new SoftReference<ClassReflection>(reflection);
+            }
+            return reflection;
         }
 
-        // replace Method instances by wrapped NativeJavaMethod objects
-        // first in staticMembers and then in members
-        for (int tableCursor = 0; tableCursor != 2; ++tableCursor) {
-            boolean isStatic = (tableCursor == 0);
-            Map<String,Object> ht = isStatic ? staticMembers : members;
-            for (Map.Entry<String, Object> entry: ht.entrySet()) {
-                MemberBox[] methodBoxes;
-                Object value = entry.getValue();
-                if (value instanceof Method) {
-                    methodBoxes = new MemberBox[1];
-                    methodBoxes[0] = new MemberBox((Method)value);
-                } else {
-                    ObjArray overloadedMethods = (ObjArray)value;
-                    int N = overloadedMethods.size();
-                    if (N < 2) Kit.codeBug();
-                    methodBoxes = new MemberBox[N];
-                    for (int i = 0; i != N; ++i) {
-                        Method method = (Method)overloadedMethods.get(i);
-                        methodBoxes[i] = new MemberBox(method);
-                    }
-                }
-                NativeJavaMethod fun = new NativeJavaMethod(methodBoxes);
-                if (scope != null) {
-                    ScriptRuntime.setFunctionProtoAndParent(fun, scope);
+        private ClassReflection(Class<?> cl, boolean includeProtected,
+                                boolean includePrivate)
+        {
+            Map<String,List<Method>> overloads =
+                new LinkedHashMap<String,List<Method>>();
+            Map<String,List<Method>> staticOverloads =
+                new LinkedHashMap<String,List<Method>>();
+            for (Method method : discoverAccessibleMethods(cl,
+                                                           includeProtected,
+                                                           includePrivate))
+            {
+                boolean isStatic = Modifier.isStatic(method.getModifiers());
+                Map<String,List<Method>> ht = isStatic ? staticOverloads
+                                                       : overloads;
+                List<Method> list = ht.get(method.getName());
+                if (list == null) {
+                    list = new ArrayList<Method>(1);
+                    ht.put(method.getName(), list);
                 }
-                ht.put(entry.getKey(), fun);
+                list.add(method);
+            }
+            for (Map.Entry<String,List<Method>> e : overloads.entrySet()) {
+                List<Method> list = e.getValue();
+                methods.put(e.getKey(), list.toArray(new Method[list.size()]));
+            }
+            for (Map.Entry<String,List<Method>> e : staticOverloads.entrySet()) {
+                List<Method> list = e.getValue();
+                staticMethods.put(e.getKey(),
+                                  list.toArray(new Method[list.size()]));
             }
-        }
 
-        // Reflect fields.
-        Field[] fields = getAccessibleFields(includeProtected, includePrivate);
-        for (Field field : fields) {
-            String name = field.getName();
-            int mods = field.getModifiers();
-            try {
-                boolean isStatic = Modifier.isStatic(mods);
-                Map<String,Object> ht = isStatic ? staticMembers : members;
-                Object member = ht.get(name);
-                if (member == null) {
-                    ht.put(name, field);
-                } else if (member instanceof NativeJavaMethod) {
-                    NativeJavaMethod method = (NativeJavaMethod) member;
-                    FieldAndMethods fam
-                        = new FieldAndMethods(scope, method.methods, field);
-                    Map<String,FieldAndMethods> fmht = isStatic ? staticFieldAndMethods
-                                              : fieldAndMethods;
-                    if (fmht == null) {
-                        fmht = new HashMap<String,FieldAndMethods>();
-                        if (isStatic) {
-                            staticFieldAndMethods = fmht;
-                        } else {
-                            fieldAndMethods = fmht;
-                        }
-                    }
-                    fmht.put(name, fam);
-                    ht.put(name, fam);
-                } else if (member instanceof Field) {
-                    Field oldField = (Field) member;
-                    // If this newly reflected field shadows an inherited field,
-                    // then replace it. Otherwise, since access to the field
-                    // would be ambiguous from Java, no field should be
+            Field[] accessibleFields = getAccessibleFields(cl, includeProtected,
+                                                           includePrivate);
+            for (Field field : accessibleFields) {
+                String name = field.getName();
+                int mods = field.getModifiers();
+                try {
+                    boolean isStatic = Modifier.isStatic(mods);
+                    Map<String,Field> ht = isStatic ? staticFields : fields;
+                    Field oldField = ht.get(name);
+                    // If this newly reflected field shadows an inherited
+                    // field, then replace it. Otherwise, since access to the
+                    // field would be ambiguous from Java, no field should be
                     // reflected.
-                    // For now, the first field found wins, unless another field
-                    // explicitly shadows it.
-                    if (oldField.getDeclaringClass().
-                            isAssignableFrom(field.getDeclaringClass()))
+                    // For now, the first field found wins, unless another
+                    // field explicitly shadows it. A field that shares its
+                    // name with methods is always replaced.
+                    if (oldField == null
+                        || getMethods(isStatic).containsKey(name)
+                        || oldField.getDeclaringClass().
+                               isAssignableFrom(field.getDeclaringClass()))
                     {
                         ht.put(name, field);
                     }
-                } else {
-                    // "unknown member type"
-                    Kit.codeBug();
+                } catch (SecurityException e) {
+                    // skip this field
+                    Context.reportWarning("Could not access field "
+                            + name + " of class " + cl.getName() +
+                            " due to lack of privileges.");
                 }
-            } catch (SecurityException e) {
-                // skip this field
-                Context.reportWarning("Could not access field "
-                        + name + " of class " + cl.getName() +
-                        " due to lack of privileges.");
-            }
-        }
-
-        // Create bean properties from corresponding get/set methods first for
-        // static members and then for instance members
-        for (int tableCursor = 0; tableCursor != 2; ++tableCursor) {
-            boolean isStatic = (tableCursor == 0);
-            Map<String,Object> ht = isStatic ? staticMembers : members;
-
-            Map<String,BeanProperty> toAdd = new HashMap<String,BeanProperty>();
-
-            // Now, For each member, make "bean" properties.
-            for (String name: ht.keySet()) {
-                // Is this a getter?
-                boolean memberIsGetMethod = name.startsWith("get");
-                boolean memberIsSetMethod = name.startsWith("set");
-                boolean memberIsIsMethod = name.startsWith("is");
-                if (memberIsGetMethod || memberIsIsMethod
-                        || memberIsSetMethod) {
-                    // Double check name component.
-                    String nameComponent
-                        = name.substring(memberIsIsMethod ? 2 : 3);
-                    if (nameComponent.length() == 0)
-                        continue;
-
-                    // Make the bean property name.
-                    String beanPropertyName = nameComponent;
-                    char ch0 = nameComponent.charAt(0);
-                    if (Character.isUpperCase(ch0)) {
-                        if (nameComponent.length() == 1) {
-                            beanPropertyName = nameComponent.toLowerCase();
-                        } else {
-                            char ch1 = nameComponent.charAt(1);
-                            if (!Character.isUpperCase(ch1)) {
-                                beanPropertyName = Character.toLowerCase(ch0)
-                                                   +nameComponent.substring(1);
-                            }
-                        }
-                    }
+            }
 
-                    // If we already have a member by this name, don't do this
-                    // property.
-                    if (toAdd.containsKey(beanPropertyName))
-                        continue;
-                    Object v = ht.get(beanPropertyName);
-                    if (v != null) {
-                        // A private field shouldn't mask a public getter/setter
-                        if (!includePrivate || !(v instanceof Member) ||
-                            !Modifier.isPrivate(((Member)v).getModifiers()))
-
-                        {
-                            continue;
-                        }
-                    }
+            constructors = getAccessibleConstructors(cl, includePrivate);
+        }
 
-                    // Find the getter method, or if there is none, the is-
-                    // method.
-                    MemberBox getter = null;
-                    getter = findGetter(isStatic, ht, "get", nameComponent);
-                    // If there was no valid getter, check for an is- method.
-                    if (getter == null) {
-                        getter = findGetter(isStatic, ht, "is", nameComponent);
-                    }
+        Map<String,Method[]> getMethods(boolean isStatic)
+        {
+            return isStatic ? staticMethods : methods;
+        }
 
-                    // setter
-                    MemberBox setter = null;
-                    NativeJavaMethod setters = null;
-                    String setterName = "set".concat(nameComponent);
-
-                    if (ht.containsKey(setterName)) {
-                        // Is this value a method?
-                        Object member = ht.get(setterName);
-                        if (member instanceof NativeJavaMethod) {
-                            NativeJavaMethod njmSet = (NativeJavaMethod)member;
-                            if (getter != null) {
-                                // We have a getter. Now, do we have a matching
-                                // setter?
-                                Class<?> type = getter.method().getReturnType();
-                                setter = extractSetMethod(type, njmSet.methods,
-                                                            isStatic);
-                            } else {
-                                // No getter, find any set method
-                                setter = extractSetMethod(njmSet.methods,
-                                                            isStatic);
-                            }
-                            if (njmSet.methods.length > 1) {
-                                setters = njmSet;
-                            }
-                        }
-                    }
-                    // Make the property.
-                    BeanProperty bp = new BeanProperty(getter, setter,
-                                                       setters);
-                    toAdd.put(beanPropertyName, bp);
+        Map<String,Field> getFields(boolean isStatic)
+        {
+            return isStatic ? staticFields : fields;
+        }
+
+        boolean hasMember(String name, boolean isStatic)
+        {
+            return getMethods(isStatic).containsKey(name)
+                || getFields(isStatic).containsKey(name);
+        }
+    }
+
+    /**
+     * Return the member of the given name, or null if the class has none.
+     * Members are reflected the first time they are looked up.
+     */
+    private Object lookup(String name, boolean isStatic)
+    {
+        Map<String,Object> ht = isStatic ? staticMembers : members;
+        Object member = ht.get(name);
+        if (member == null
+            && !(isStatic ? staticMembersComplete : membersComplete)
+            && hasMemberOrBeanProperty(name, isStatic))
+        {
+            member = reflectMember(name, isStatic);
+        }
+        return member;
+    }
+
+    /**
+     * Tell from the shared reflection, without taking the lock, whether
+     * reflectMember would find anything. Names that are not members, such
+     * as the properties scripts test for, are then missed without locking.
+     */
+    private boolean hasMemberOrBeanProperty(String name, boolean isStatic)
+    {
+        return reflection.hasMember(name, isStatic)
+            || beanNameComponent(name, isStatic) != null;
+    }
+
+    private synchronized Object reflectMember(String name, boolean isStatic)
+    {
+        Map<String,Object> ht = isStatic ? staticMembers : members;
+        Object member = ht.get(name);
+        if (member != null) {
+            return member;
+        }
+        // Methods come first, as overloaded field/method names are
+        // allocated to a FieldAndMethods object.
+        Method[] methods = reflection.getMethods(isStatic).get(name);
+        Field field = reflection.getFields(isStatic).get(name);
+        if (methods != null) {
+            MemberBox[] methodBoxes = new MemberBox[methods.length];
+            for (int i = 0; i != methods.length; ++i) {
+                methodBoxes[i] = new MemberBox(methods[i]);
+            }
+            if (field != null) {
+                member = new FieldAndMethods(scope, methodBoxes, field);
+            } else {
+                NativeJavaMethod fun = new NativeJavaMethod(methodBoxes);
+                fun.invokers = invokers;
+                if (scope != null) {
+                    ScriptRuntime.setFunctionProtoAndParent(fun, scope);
                 }
+                member = fun;
+            }
+        } else {
+            // A private field shouldn't mask a public getter/setter
+            if (field == null || (includePrivate
+                                  && Modifier.isPrivate(field.getModifiers())))
+            {
+                member = reflectBeanProperty(name, isStatic);
+            }
+            if (member == null) {
+                member = field;
+            }
+        }
+        if (member != null) {
+            ht.put(name, member);
+        }
+        return member;
+    }
+
+    /**
+     * Reflect every member, so the table can be enumerated.
+     */
+    private synchronized void reflectAll(boolean isStatic)
+    {
+        List<String> names = new ArrayList<String>();
+        names.addAll(reflection.getMethods(isStatic).keySet());
+        names.addAll(reflection.getFields(isStatic).keySet());
+        for (String name : names) {
+            lookup(name, isStatic);
+            // Make "bean" properties from get/is/set members
+            boolean memberIsIsMethod = name.startsWith("is");
+            if (memberIsIsMethod || name.startsWith("get")
+                || name.startsWith("set"))
+            {
+                String nameComponent = name.substring(memberIsIsMethod ? 2 : 3);
+                if (nameComponent.length() != 0) {
+                    lookup(beanPropertyName(nameComponent), isStatic);
+                }
+            }
+        }
+        if (isStatic) {
+            staticMembersComplete = true;
+        } else {
+            membersComplete = true;
+        }
+    }
+
+    /**
+     * Make the bean property name from the name component of its getter
+     * or setter.
+     */
+    private static String beanPropertyName(String nameComponent)
+    {
+        char ch0 = nameComponent.charAt(0);
+        if (Character.isUpperCase(ch0)) {
+            if (nameComponent.length() == 1) {
+                return nameComponent.toLowerCase();
+            }
+            char ch1 = nameComponent.charAt(1);
+            if (!Character.isUpperCase(ch1)) {
+                return Character.toLowerCase(ch0) + nameComponent.substring(1);
+            }
+        }
+        return nameComponent;
+    }
+
+    /**
+     * Return the name component of the get, is or set members that make
+     * the bean property of the given name, or null if there are none.
+     */
+    private String beanNameComponent(String name, boolean isStatic)
+    {
+        if (name.length() == 0) {
+            return null;
+        }
+        String capitalized = Character.toUpperCase(name.charAt(0))
+                             + name.substring(1);
+        for (String nameComponent : new String[] { capitalized, name }) {
+            if (name.equals(beanPropertyName(nameComponent))
+                && (reflection.hasMember("get".concat(nameComponent), isStatic)
+                    || reflection.hasMember("is".concat(nameComponent),
+                                            isStatic)
+                    || reflection.hasMember("set".concat(nameComponent),
+                                            isStatic)))
+            {
+                return nameComponent;
             }
+        }
+        return null;
+    }
+
+    private BeanProperty reflectBeanProperty(String name, boolean isStatic)
+    {
+        String nameComponent = beanNameComponent(name, isStatic);
+        if (nameComponent == null) {
+            return null;
+        }
+
+        // Find the getter method, or if there is none, the is-
+        // method.
+        MemberBox getter = null;
+        getter = findGetter(isStatic, "get", nameComponent);
+        // If there was no valid getter, check for an is- method.
+        if (getter == null) {
+            getter = findGetter(isStatic, "is", nameComponent);
+        }
 
-            // Add the new bean properties.
-            for (String key: toAdd.keySet()) {
-                Object value = toAdd.get(key);
-                ht.put(key, value);
+        // setter
+        MemberBox setter = null;
+        NativeJavaMethod setters = null;
+
+        // Is this value a method?
+        Object member = lookup("set".concat(nameComponent), isStatic);
+        if (member instanceof NativeJavaMethod) {
+            NativeJavaMethod njmSet = (NativeJavaMethod)member;
+            if (getter != null) {
+                // We have a getter. Now, do we have a matching
+                // setter?
+                Class<?> type = getter.method().getReturnType();
+                setter = extractSetMethod(type, njmSet.methods,
+                                          isStatic);
+            } else {
+                // No getter, find any set method
+                setter = extractSetMethod(njmSet.methods,
+                                          isStatic);
+            }
+            if (njmSet.methods.length > 1) {
+                setters = njmSet;
             }
         }
+        // Make the property.
+        return new BeanProperty(getter, setter, setters);
+    }
 
-        // Reflect constructors
-        Constructor<?>[] constructors = getAccessibleConstructors(includePrivate);
+    private void reflectConstructors()
+    {
+        Constructor<?>[] constructors = reflection.constructors;
         MemberBox[] ctorMembers = new MemberBox[constructors.length];
         for (int i = 0; i != constructors.length; ++i) {
             ctorMembers[i] = new MemberBox(constructors[i]);
@@ -633,7 +745,8 @@ class JavaMembers
         ctors = new NativeJavaMethod(ctorMembers, cl.getSimpleName());
     }
 
-    private Constructor<?>[] getAccessibleConstructors(boolean includePrivate)
+    private static Constructor<?>[] getAccessibleConstructors(Class<?> cl,
+                                                              boolean includePrivate)
     {
       // The JVM currently doesn't allow changing access on java.lang.Class
       // constructors, so don't try
@@ -653,8 +766,9 @@ class JavaMembers
       return cl.getConstructors();
     }
 
-    private Field[] getAccessibleFields(boolean includeProtected,
-                                        boolean includePrivate) {
+    private static Field[] getAccessibleFields(Class<?> cl,
+                                               boolean includeProtected,
+                                               boolean includePrivate) {
         if (includePrivate || includeProtected) {
             try {
                 List<Field> fieldsList = new ArrayList<Field>();
@@ -685,17 +799,15 @@ class JavaMembers
         return cl.getFields();
     }
 
-    private MemberBox findGetter(boolean isStatic, Map<String,Object> ht, String prefix,
+    private MemberBox findGetter(boolean isStatic, String prefix,
                                  String propertyName)
     {
         String getterName = prefix.concat(propertyName);
-        if (ht.containsKey(getterName)) {
-            // Check that the getter is a method.
-            Object member = ht.get(getterName);
-            if (member instanceof NativeJavaMethod) {
-                NativeJavaMethod njmGet = (NativeJavaMethod) member;
-                return extractGetMethod(njmGet.methods, isStatic);
-            }
+        // Check that the getter is a method.
+        Object member = lookup(getterName, isStatic);
+        if (member instanceof NativeJavaMethod) {
+            NativeJavaMethod njmGet = (NativeJavaMethod) member;
+            return extractGetMethod(njmGet.methods, isStatic);
         }
         return null;
     }
@@ -771,16 +883,20 @@ class JavaMembers
     Map<String,FieldAndMethods> getFieldAndMethodsObjects(Scriptable scope,
             Object javaObject, boolean isStatic)
     {
-        Map<String,FieldAndMethods> ht = isStatic ? staticFieldAndMethods : fieldAndMethods;
-        if (ht == null)
-            return null;
-        int len = ht.size();
-        Map<String,FieldAndMethods> result = new HashMap<String,FieldAndMethods>(len);
-        for (FieldAndMethods fam: ht.values()) {
+        Map<String,Method[]> methods = reflection.getMethods(isStatic);
+        Map<String,FieldAndMethods> result = null;
+        for (String name : reflection.getFields(isStatic).keySet()) {
+            if (!methods.containsKey(name)) {
+                continue;
+            }
+            FieldAndMethods fam = (FieldAndMethods) lookup(name, isStatic);
             FieldAndMethods famNew = new FieldAndMethods(scope, fam.methods,
                                                          fam.field);
             famNew.javaObject = javaObject;
-            result.put(fam.field.getName(), famNew);
+            if (result == null) {
+                result = new HashMap<String,FieldAndMethods>();
+            }
+            result.put(name, famNew);
         }
         return result;
     }
@@ -830,6 +946,9 @@ class JavaMembers
             }
         }
 
+        if (cache.isInvokerOptimizationEnabled()) {
+            members.useInvokers(cache);
+        }
         if (cache.isCachingEnabled()) {
             ct.put(cl, members);
             if (cl != dynamicType) {
@@ -841,6 +960,22 @@ class JavaMembers
         return members;
     }
 
+    /**
+     * Let the methods of the class be called with the generated invokers
+     * of the cache.
+     */
+    private synchronized void useInvokers(ClassCache cache)
+    {
+        invokers = cache;
+        for (Map<String,Object> ht : Arrays.asList(members, staticMembers)) {
+            for (Object member : ht.values()) {
+                if (member instanceof NativeJavaMethod) {
+                    ((NativeJavaMethod)member).invokers = cache;
+                }
+            }
+        }
+    }
+
     RuntimeException reportMemberNotFound(String memberName)
     {
         return Context.reportRuntimeError2(
@@ -848,10 +983,14 @@ class JavaMembers
     }
 
     private Class<?> cl;
+    private Scriptable scope;
+    private boolean includePrivate;
+    private ClassReflection reflection;
     private Map<String,Object> members;
-    private Map<String,FieldAndMethods> fieldAndMethods;
     private Map<String,Object> staticMembers;
-    private Map<String,FieldAndMethods> staticFieldAndMethods;
+    private volatile boolean membersComplete;
+    private volatile boolean staticMembersComplete;
+    private ClassCache invokers;
     NativeJavaMethod ctors; // we use NativeJavaMethod for ctor overload resolution
 }
 
@@ -25,6 +25,7 @@ final class MemberBox implements Serializable
     transient Class<?>[] argTypes;
     transient Object delegateTo;
     transient boolean vararg;
+    transient Invoker invoker;
 
 
     MemberBox(Method method)
@@ -151,6 +152,28 @@ final class MemberBox implements Serializable
         }
     }
 
+    /**
+     * Call the method with a generated invoker, which converts the
+     * JavaScript arguments itself.
+     */
+    Object invoke(Invoker invoker, Object target, Object[] args)
+    {
+        try {
+            return invoker.invoke(target, args);
+        } catch (ContinuationPending ex) {
+            // Must allow ContinuationPending exceptions to propagate unhindered
+            throw ex;
+        } catch (LinkageError err) {
+            if (InvokerGenerator.isLinkFailure(invoker, err)) {
+                // The caller calls the method with reflection instead
+                throw err;
+            }
+            throw Context.throwAsScriptRuntimeEx(err);
+        } catch (Throwable ex) {
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
     Object newInstance(Object[] args)
     {
         Constructor<?> ctor = ctor();
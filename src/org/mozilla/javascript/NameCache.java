@@ -0,0 +1,127 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+/**
+ * Cache for the top scope part of the lookup of a free variable name.
+ * <p>
+ * Compiled classes allocate one instance per distinct name and the
+ * interpreter one per entry of a function's string table. The scope chain
+ * below the top scope is still searched as usual; once the lookup reaches
+ * the top scope, the cache remembers the slot that holds the name there,
+ * so later lookups skip the hash lookup. Adding other names to the top
+ * scope does not affect a cached binding. Removing or redefining the
+ * property marks its slot as deleted, which invalidates the entry, as does
+ * reaching the site with a different top scope.
+ * <p>
+ * Entries are immutable and only ever replaced as a whole, so a cache can
+ * be shared by all threads without locking.
+ * <p>
+ * This class is used by generated code and is not part of the public API.
+ */
+public final class NameCache
+{
+    private static final class Entry
+    {
+        final Scriptable scope;
+        final ScriptableObject.Slot slot;
+
+        Entry(Scriptable scope, ScriptableObject.Slot slot)
+        {
+            this.scope = scope;
+            this.slot = slot;
+        }
+    }
+
+    private final String name;
+    private Entry entry;
+
+    public NameCache(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#name(Context, Scriptable, String)}.
+     */
+    public Object name(Context cx, Scriptable scope)
+    {
+        if (scope.getParentScope() == null && !cx.useDynamicScope) {
+            Object value = getCached(scope);
+            if (value != Scriptable.NOT_FOUND) {
+                return value;
+            }
+        }
+        return ScriptRuntime.name(cx, scope, name, this);
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#getNameFunctionAndThis(String, Context,
+     * Scriptable)}. As with the uncached version, the caller must call
+     * {@link ScriptRuntime#lastStoredScriptable(Context)} immediately after
+     * calling this method.
+     */
+    public Callable getNameFunctionAndThis(Context cx, Scriptable scope)
+    {
+        if (scope.getParentScope() == null && !cx.useDynamicScope) {
+            Object value = getCached(scope);
+            if (value instanceof Callable) {
+                // The top scope is the this object of the call
+                if (cx.scratchScriptable != null)
+                    throw new IllegalStateException();
+                cx.scratchScriptable = scope;
+                return (Callable)value;
+            }
+        }
+        return ScriptRuntime.getNameFunctionAndThis(name, cx, scope, this);
+    }
+
+    /**
+     * Returns the value of the name in the given top scope, including its
+     * prototype chain, or {@link Scriptable#NOT_FOUND}.
+     */
+    Object getTopScopeProperty(Scriptable scope)
+    {
+        Object value = getCached(scope);
+        if (value != Scriptable.NOT_FOUND) {
+            return value;
+        }
+        value = ScriptableObject.getProperty(scope, name);
+        if (value != Scriptable.NOT_FOUND
+            && scope instanceof ScriptableObject)
+        {
+            ScriptableObject.Slot slot
+                = ((ScriptableObject)scope).getNamedSlot(name);
+            // Only cache what a plain slot lookup returns, objects that
+            // compute the property in get() must keep being asked.
+            if (slot != null && slot.value == value) {
+                entry = new Entry(scope, slot);
+            }
+        }
+        return value;
+    }
+
+    private Object getCached(Scriptable scope)
+    {
+        Entry e = entry;
+        if (e != null && e.scope == scope) {
+            Object value = e.slot.getValue(scope);
+            // Read the value first: deleting clears it after setting the flag
+            if (!e.slot.wasDeleted) {
+                return value;
+            }
+        }
+        return Scriptable.NOT_FOUND;
+    }
+}
@@ -63,8 +63,14 @@ public class NativeArray extends IdScriptableObject implements List
             int intLength = (int) lengthArg;
             if (intLength < DEFAULT_INITIAL_CAPACITY)
                 intLength = DEFAULT_INITIAL_CAPACITY;
-            dense = new Object[intLength];
-            Arrays.fill(dense, Scriptable.NOT_FOUND);
+            if (lengthArg == 0) {
+                // No holes yet, so start out with unboxed elements
+                denseKind = KIND_INT;
+                denseInts = new int[intLength];
+            } else {
+                dense = new Object[intLength];
+                Arrays.fill(dense, Scriptable.NOT_FOUND);
+            }
         }
         length = lengthArg;
     }
@@ -72,8 +78,50 @@ public class NativeArray extends IdScriptableObject implements List
     public NativeArray(Object[] array)
     {
         denseOnly = true;
-        dense = array;
-        length = array.length;
+        initDense(array);
+    }
+
+    /**
+     * Use values as the elements, unboxing them if they are all numbers.
+     */
+    private void initDense(Object[] values)
+    {
+        int kind = getElementKind(values);
+        if (kind == KIND_INT) {
+            denseInts = new int[values.length];
+            for (int i = 0; i != values.length; ++i) {
+                denseInts[i] = ((Integer)values[i]).intValue();
+            }
+        } else if (kind == KIND_DOUBLE) {
+            denseDoubles = new double[values.length];
+            for (int i = 0; i != values.length; ++i) {
+                denseDoubles[i] = ((Number)values[i]).doubleValue();
+            }
+        }
+        dense = kind == KIND_OBJECT ? values : null;
+        if (kind != KIND_INT) {
+            denseInts = null;
+        }
+        denseKind = kind;
+        length = values.length;
+    }
+
+    /**
+     * Return the most specific element kind that can hold all values.
+     */
+    private static int getElementKind(Object[] values)
+    {
+        int kind = KIND_INT;
+        for (Object value : values) {
+            if (value instanceof Integer) {
+                continue;
+            } else if (value instanceof Double) {
+                kind = KIND_DOUBLE;
+            } else {
+                return KIND_OBJECT;
+            }
+        }
+        return kind;
     }
 
     @Override
@@ -341,7 +389,10 @@ public class NativeArray extends IdScriptableObject implements List
     {
         if (!denseOnly && isGetterOrSetter(null, index, false))
             return super.get(index, start);
-        if (dense != null && 0 <= index && index < dense.length)
+        if (denseKind != KIND_OBJECT) {
+            if (0 <= index && index < length)
+                return getNumber(index);
+        } else if (dense != null && 0 <= index && index < dense.length)
             return dense[index];
         return super.get(index, start);
     }
@@ -351,7 +402,10 @@ public class NativeArray extends IdScriptableObject implements List
     {
         if (!denseOnly && isGetterOrSetter(null, index, false))
             return super.has(index, start);
-        if (dense != null && 0 <= index && index < dense.length)
+        if (denseKind != KIND_OBJECT) {
+            if (0 <= index && index < length)
+                return true;
+        } else if (dense != null && 0 <= index && index < dense.length)
             return dense[index] != NOT_FOUND;
         return super.has(index, start);
     }
@@ -401,14 +455,17 @@ public class NativeArray extends IdScriptableObject implements List
             // If the object is sealed, super will throw exception
             long index = toArrayIndex(id);
             if (index >= length) {
+                setDenseOnly(false);
                 length = index + 1;
-                denseOnly = false;
             }
         }
     }
 
     private boolean ensureCapacity(int capacity)
     {
+        if (denseKind != KIND_OBJECT) {
+            return ensureNumberCapacity(capacity);
+        }
         if (capacity > dense.length) {
             if (capacity > MAX_PRE_GROW_SIZE) {
                 denseOnly = false;
@@ -424,9 +481,187 @@ public class NativeArray extends IdScriptableObject implements List
         return true;
     }
 
+    private boolean ensureNumberCapacity(int capacity)
+    {
+        int oldCapacity = denseKind == KIND_INT ? denseInts.length
+                                                : denseDoubles.length;
+        if (capacity > oldCapacity) {
+            if (capacity > MAX_PRE_GROW_SIZE) {
+                setDenseOnly(false);
+                return false;
+            }
+            capacity = Math.max(capacity, (int)(oldCapacity * GROW_FACTOR));
+            if (denseKind == KIND_INT) {
+                int[] newInts = new int[capacity];
+                System.arraycopy(denseInts, 0, newInts, 0, (int)length);
+                denseInts = newInts;
+            } else {
+                double[] newDoubles = new double[capacity];
+                System.arraycopy(denseDoubles, 0, newDoubles, 0, (int)length);
+                denseDoubles = newDoubles;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the element at index, which must be below length, boxed.
+     * Only valid while the elements are stored unboxed.
+     */
+    private Object getNumber(int index)
+    {
+        if (denseKind == KIND_INT) {
+            return Integer.valueOf(denseInts[index]);
+        }
+        return Double.valueOf(denseDoubles[index]);
+    }
+
+    /**
+     * Return true if the element at index is a number stored unboxed, so
+     * that the interpreter can read it with {@link #getDouble(int)}.
+     */
+    boolean isNumberElement(int index)
+    {
+        return denseKind != KIND_OBJECT && 0 <= index && index < length;
+    }
+
+    double getDouble(int index)
+    {
+        if (denseKind == KIND_INT) {
+            return denseInts[index];
+        }
+        return denseDoubles[index];
+    }
+
+    /**
+     * Store value at index without boxing it. Return false, without any
+     * change, if the elements are boxed or the store needs the generic
+     * {@link #put(int, Scriptable, Object)}.
+     */
+    boolean putDouble(int index, double value)
+    {
+        if (denseKind == KIND_OBJECT || isSealed() || index < 0 ||
+            index > length)
+        {
+            return false;
+        }
+        if (index == length) {
+            if (!isExtensible() || index + 1 > MAX_PRE_GROW_SIZE ||
+                !ensureCapacity(index + 1))
+            {
+                return false;
+            }
+            length = (long)index + 1;
+        }
+        // The value would be stored as a Double
+        convertDense(KIND_DOUBLE);
+        denseDoubles[index] = value;
+        return true;
+    }
+
+    /**
+     * Return the array that holds the dense elements, of any kind.
+     */
+    private Object getDenseArray()
+    {
+        switch (denseKind) {
+          case KIND_INT:
+            return denseInts;
+          case KIND_DOUBLE:
+            return denseDoubles;
+        }
+        return dense;
+    }
+
+    /**
+     * Copy len dense elements starting at srcPos to dest, boxing them if
+     * necessary.
+     */
+    private void copyDense(int srcPos, Object[] dest, int destPos, int len)
+    {
+        if (denseKind == KIND_OBJECT) {
+            System.arraycopy(dense, srcPos, dest, destPos, len);
+            return;
+        }
+        for (int i = 0; i != len; ++i) {
+            dest[destPos + i] = getNumber(srcPos + i);
+        }
+    }
+
+    /**
+     * Store value at index, which must be below the capacity of the dense
+     * storage and, unless the elements are boxed, below length. Switches
+     * to a more general element kind if the current one cannot hold value.
+     */
+    private void setDense(int index, Object value)
+    {
+        if (denseKind == KIND_INT) {
+            if (value instanceof Integer) {
+                denseInts[index] = ((Integer)value).intValue();
+                return;
+            }
+            convertDense(value instanceof Double ? KIND_DOUBLE : KIND_OBJECT);
+        }
+        if (denseKind == KIND_DOUBLE) {
+            if (value instanceof Double || value instanceof Integer) {
+                denseDoubles[index] = ((Number)value).doubleValue();
+                return;
+            }
+            convertDense(KIND_OBJECT);
+        }
+        dense[index] = value;
+    }
+
+    /**
+     * Move the elements to the storage for kind. Element kinds only ever
+     * become more general: int to double, and either of them to boxed
+     * values in dense, which is the only kind that can hold holes.
+     */
+    private void convertDense(int kind)
+    {
+        if (kind == denseKind || denseKind == KIND_OBJECT) {
+            return;
+        }
+        int len = (int)length;
+        if (kind == KIND_DOUBLE) {
+            denseDoubles = new double[denseInts.length];
+            for (int i = 0; i != len; ++i) {
+                denseDoubles[i] = denseInts[i];
+            }
+            denseInts = null;
+        } else {
+            int capacity = denseKind == KIND_INT ? denseInts.length
+                                                 : denseDoubles.length;
+            dense = new Object[capacity];
+            for (int i = 0; i != len; ++i) {
+                dense[i] = getNumber(i);
+            }
+            Arrays.fill(dense, len, capacity, Scriptable.NOT_FOUND);
+            denseInts = null;
+            denseDoubles = null;
+        }
+        denseKind = kind;
+    }
+
     @Override
     public void put(int index, Scriptable start, Object value)
     {
+        if (denseKind != KIND_OBJECT && start == this && !isSealed() &&
+            0 <= index)
+        {
+            if (!isExtensible() && this.length <= index) {
+                return;
+            } else if (index < this.length) {
+                setDense(index, value);
+                return;
+            } else if (index == this.length && ensureCapacity(index + 1)) {
+                this.length = (long)index + 1;
+                setDense(index, value);
+                return;
+            }
+            // Leaves a hole
+            convertDense(KIND_OBJECT);
+        }
         if (start == this && !isSealed() && dense != null && 0 <= index &&
             (denseOnly || !isGetterOrSetter(null, index, true)))
         {
@@ -460,6 +695,11 @@ public class NativeArray extends IdScriptableObject implements List
     @Override
     public void delete(int index)
     {
+        if (denseKind != KIND_OBJECT && 0 <= index && index < length &&
+            !isSealed())
+        {
+            convertDense(KIND_OBJECT);
+        }
         if (dense != null && 0 <= index && index < dense.length &&
             !isSealed() && (denseOnly || !isGetterOrSetter(null, index, true)))
         {
@@ -473,6 +713,16 @@ public class NativeArray extends IdScriptableObject implements List
     public Object[] getIds()
     {
         Object[] superIds = super.getIds();
+        if (denseKind != KIND_OBJECT) {
+            int N = (int)length;
+            int superLength = superIds.length;
+            Object[] ids = new Object[N + superLength];
+            for (int i = 0; i != N; ++i) {
+                ids[i] = Integer.valueOf(i);
+            }
+            System.arraycopy(superIds, 0, ids, N, superLength);
+            return ids;
+        }
         if (dense == null) { return superIds; }
         int N = dense.length;
         long currentLength = length;
@@ -547,6 +797,9 @@ public class NativeArray extends IdScriptableObject implements List
 
     @Override
     public int getAttributes(int index) {
+        if (denseKind != KIND_OBJECT && index >= 0 && index < length) {
+            return EMPTY;
+        }
         if (dense != null && index >= 0 && index < dense.length
                 && dense[index] != NOT_FOUND) {
             return EMPTY;
@@ -556,7 +809,12 @@ public class NativeArray extends IdScriptableObject implements List
 
     @Override
     protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
-      if (dense != null) {
+      if (denseKind != KIND_OBJECT) {
+        int index = toDenseIndex(id);
+        if (0 <= index && index < length) {
+          return defaultIndexPropertyDescriptor(getNumber(index));
+        }
+      } else if (dense != null) {
         int index = toDenseIndex(id);
         if (0 <= index && index < dense.length && dense[index] != NOT_FOUND) {
           Object value = dense[index];
@@ -570,6 +828,7 @@ public class NativeArray extends IdScriptableObject implements List
     protected void defineOwnProperty(Context cx, Object id,
                                      ScriptableObject desc,
                                      boolean checkValid) {
+      convertDense(KIND_OBJECT);
       if (dense != null) {
         Object[] values = dense;
         dense = null;
@@ -637,6 +896,9 @@ public class NativeArray extends IdScriptableObject implements List
     void setDenseOnly(boolean denseOnly) {
         if (denseOnly && !this.denseOnly)
             throw new IllegalArgumentException();
+        if (!denseOnly) {
+            convertDense(KIND_OBJECT);
+        }
         this.denseOnly = denseOnly;
     }
 
@@ -659,14 +921,19 @@ public class NativeArray extends IdScriptableObject implements List
         }
 
         if (denseOnly) {
-            if (longVal < length) {
+            if (longVal <= length) {
                 // downcast okay because denseOnly
-                Arrays.fill(dense, (int) longVal, dense.length, NOT_FOUND);
+                if (denseKind == KIND_OBJECT) {
+                    Arrays.fill(dense, (int) longVal, dense.length, NOT_FOUND);
+                }
                 length = longVal;
                 return;
-            } else if (longVal < MAX_PRE_GROW_SIZE &&
-                       longVal < (length * GROW_FACTOR) &&
-                       ensureCapacity((int)longVal))
+            }
+            // Growing the array leaves holes
+            convertDense(KIND_OBJECT);
+            if (longVal < MAX_PRE_GROW_SIZE &&
+                longVal < (length * GROW_FACTOR) &&
+                ensureCapacity((int)longVal))
             {
                 length = longVal;
                 return;
@@ -910,7 +1177,11 @@ public class NativeArray extends IdScriptableObject implements List
                     if (i != 0) {
                         sb.append(separator);
                     }
-                    if (i < na.dense.length) {
+                    if (na.denseKind == KIND_INT) {
+                        sb.append(na.denseInts[i]);
+                    } else if (na.denseKind == KIND_DOUBLE) {
+                        sb.append(ScriptRuntime.toString(na.denseDoubles[i]));
+                    } else if (i < na.dense.length) {
                         Object temp = na.dense[i];
                         if (temp != null && temp != Undefined.instance &&
                             temp != Scriptable.NOT_FOUND)
@@ -959,10 +1230,25 @@ public class NativeArray extends IdScriptableObject implements List
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly) {
-                for (int i=0, j=((int)na.length)-1; i < j; i++,j--) {
-                    Object temp = na.dense[i];
-                    na.dense[i] = na.dense[j];
-                    na.dense[j] = temp;
+                int i = 0, j = ((int)na.length) - 1;
+                if (na.denseKind == KIND_INT) {
+                    for (; i < j; i++, j--) {
+                        int temp = na.denseInts[i];
+                        na.denseInts[i] = na.denseInts[j];
+                        na.denseInts[j] = temp;
+                    }
+                } else if (na.denseKind == KIND_DOUBLE) {
+                    for (; i < j; i++, j--) {
+                        double temp = na.denseDoubles[i];
+                        na.denseDoubles[i] = na.denseDoubles[j];
+                        na.denseDoubles[j] = temp;
+                    }
+                } else {
+                    for (; i < j; i++, j--) {
+                        Object temp = na.dense[i];
+                        na.dense[i] = na.dense[j];
+                        na.dense[j] = temp;
+                    }
                 }
                 return thisObj;
             }
@@ -1071,7 +1357,7 @@ public class NativeArray extends IdScriptableObject implements List
                 na.ensureCapacity((int) na.length + args.length))
             {
                 for (int i = 0; i < args.length; i++) {
-                    na.dense[(int)na.length++] = args[i];
+                    na.setDense((int)na.length++, args[i]);
                 }
                 return ScriptRuntime.wrapNumber(na.length);
             }
@@ -1106,6 +1392,9 @@ public class NativeArray extends IdScriptableObject implements List
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly && na.length > 0) {
                 na.length--;
+                if (na.denseKind != KIND_OBJECT) {
+                    return na.getNumber((int)na.length);
+                }
                 result = na.dense[(int)na.length];
                 na.dense[(int)na.length] = NOT_FOUND;
                 return result;
@@ -1137,6 +1426,13 @@ public class NativeArray extends IdScriptableObject implements List
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
             if (na.denseOnly && na.length > 0) {
+                if (na.denseKind != KIND_OBJECT) {
+                    Object result = na.getNumber(0);
+                    Object array = na.getDenseArray();
+                    na.length--;
+                    System.arraycopy(array, 1, array, 0, (int)na.length);
+                    return result;
+                }
                 na.length--;
                 Object result = na.dense[0];
                 System.arraycopy(na.dense, 1, na.dense, 0, (int)na.length);
@@ -1181,12 +1477,13 @@ public class NativeArray extends IdScriptableObject implements List
             if (na.denseOnly &&
                 na.ensureCapacity((int)na.length + args.length))
             {
-                System.arraycopy(na.dense, 0, na.dense, args.length,
+                Object array = na.getDenseArray();
+                System.arraycopy(array, 0, array, args.length,
                                  (int) na.length);
+                na.length += args.length;
                 for (int i = 0; i < args.length; i++) {
-                    na.dense[i] = args[i];
+                    na.setDense(i, args[i]);
                 }
-                na.length += args.length;
                 return ScriptRuntime.wrapNumber(na.length);
             }
         }
@@ -1273,7 +1570,7 @@ public class NativeArray extends IdScriptableObject implements List
             	if (denseMode) {
                     int intLen = (int) (end - begin);
                     Object[] copy = new Object[intLen];
-                    System.arraycopy(na.dense, (int) begin, copy, 0, intLen);
+                    na.copyDense((int) begin, copy, 0, intLen);
                     result = cx.newArray(scope, copy);
                 } else {
                     Scriptable resultArray = cx.newArray(scope, 0);
@@ -1302,8 +1599,16 @@ public class NativeArray extends IdScriptableObject implements List
         if (denseMode && length + delta < Integer.MAX_VALUE &&
             na.ensureCapacity((int) (length + delta)))
         {
-            System.arraycopy(na.dense, (int) end, na.dense,
+            Object array = na.getDenseArray();
+            System.arraycopy(array, (int) end, array,
                              (int) (begin + argc), (int) (length - end));
+            na.length = length + delta;
+            if (na.denseKind != KIND_OBJECT) {
+                for (int i = 0; i < argc; i++) {
+                    na.setDense((int) begin + i, args[i + 2]);
+                }
+                return result;
+            }
             if (argc > 0) {
                 System.arraycopy(args, 2, na.dense, (int) begin, argc);
             }
@@ -1311,7 +1616,6 @@ public class NativeArray extends IdScriptableObject implements List
                 Arrays.fill(na.dense, (int) (length + delta), (int) length,
                             NOT_FOUND);
             }
-            na.length = length + delta;
             return result;
         }
 
@@ -1368,22 +1672,22 @@ public class NativeArray extends IdScriptableObject implements List
                         length++;
                     }
                 }
-                if (canUseDense && denseResult.ensureCapacity(length)) {
-                    System.arraycopy(denseThis.dense, 0, denseResult.dense,
-                                     0, (int) denseThis.length);
+                if (canUseDense && length <= MAX_PRE_GROW_SIZE) {
+                    Object[] values = new Object[length];
+                    denseThis.copyDense(0, values, 0,
+                                        (int) denseThis.length);
                     int cursor = (int) denseThis.length;
                     for (int i = 0; i < args.length && canUseDense; i++) {
                         if (args[i] instanceof NativeArray) {
                             NativeArray arg = (NativeArray) args[i];
-                            System.arraycopy(arg.dense, 0,
-                                    denseResult.dense, cursor,
-                                    (int)arg.length);
+                            arg.copyDense(0, values, cursor,
+                                          (int)arg.length);
                             cursor += (int)arg.length;
                         } else {
-                            denseResult.dense[cursor++] = args[i];
+                            values[cursor++] = args[i];
                         }
                     }
-                    denseResult.length = length;
+                    denseResult.initDense(values);
                     return result;
                 }
             }
@@ -1509,7 +1813,17 @@ public class NativeArray extends IdScriptableObject implements List
         }
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
-            if (na.denseOnly) {
+            if (na.denseKind != KIND_OBJECT) {
+                if (compareTo instanceof Number) {
+                    double d = ((Number)compareTo).doubleValue();
+                    for (int i=(int)start; i < length; i++) {
+                        if (na.getDouble(i) == d) {
+                            return Long.valueOf(i);
+                        }
+                    }
+                }
+                return NEGATIVE_ONE;
+            } else if (na.denseOnly) {
                 Scriptable proto = na.getPrototype();
                 for (int i=(int)start; i < length; i++) {
                     Object val = na.dense[i];
@@ -1564,7 +1878,17 @@ public class NativeArray extends IdScriptableObject implements List
         }
         if (thisObj instanceof NativeArray) {
             NativeArray na = (NativeArray) thisObj;
-            if (na.denseOnly) {
+            if (na.denseKind != KIND_OBJECT) {
+                if (compareTo instanceof Number) {
+                    double d = ((Number)compareTo).doubleValue();
+                    for (int i=(int)start; i >= 0; i--) {
+                        if (na.getDouble(i) == d) {
+                            return Long.valueOf(i);
+                        }
+                    }
+                }
+                return NEGATIVE_ONE;
+            } else if (na.denseOnly) {
                 Scriptable proto = na.getPrototype();
                 for (int i=(int)start; i >= 0; i--) {
                     Object val = na.dense[i];
@@ -2068,6 +2392,16 @@ public class NativeArray extends IdScriptableObject implements List
      */
     private Object[] dense;
 
+    /**
+     * Unboxed storage for dense arrays without holes whose elements are
+     * all Integer (denseInts) or all Integer or Double (denseDoubles)
+     * values. At most one of dense, denseInts and denseDoubles is in use,
+     * as given by denseKind, and the unboxed kinds imply denseOnly.
+     */
+    private int[] denseInts;
+    private double[] denseDoubles;
+    private int denseKind;
+
     /**
      * True if all numeric properties are stored in <code>dense</code>.
      */
@@ -2083,6 +2417,15 @@ public class NativeArray extends IdScriptableObject implements List
      */
     private static final int DEFAULT_INITIAL_CAPACITY = 10;
 
+    /**
+     * Values of denseKind. Boxed elements are the default so that arrays
+     * serialized before the unboxed kinds existed keep using dense.
+     */
+    private static final int
+        KIND_OBJECT = 0,
+        KIND_INT    = 1,
+        KIND_DOUBLE = 2;
+
     /**
      * The factor to grow <code>dense</code> by.
      */
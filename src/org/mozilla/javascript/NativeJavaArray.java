@@ -74,7 +74,9 @@ public class NativeJavaArray extends NativeJavaObject
     public Object get(int index, Scriptable start) {
         if (0 <= index && index < length) {
             Context cx = Context.getContext();
-            Object obj = Array.get(array, index);
+            Object obj = array instanceof Object[]
+                       ? ((Object[])array)[index]
+                       : Array.get(array, index);
             return cx.getWrapFactory().wrap(cx, this, obj, cls);
         }
         return Undefined.instance;
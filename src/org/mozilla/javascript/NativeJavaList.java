@@ -0,0 +1,147 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.List;
+
+/**
+ * This class reflects Java lists into the JavaScript environment. Besides
+ * the methods of the list, scripts can read and write its elements by index,
+ * read and set <tt>length</tt>, and enumerate the indexes and elements with
+ * <tt>for..in</tt> and <tt>for each..in</tt>. Elements are read and written
+ * with direct calls to the list, without reflection.
+ *
+ * @see Context#FEATURE_JAVA_COLLECTION_ACCESS
+ * @see NativeJavaArray
+ * @see NativeJavaMap
+ */
+
+public class NativeJavaList extends NativeJavaObject
+{
+    static final long serialVersionUID = 6403865639690547921L;
+
+    // Most nulls a write past the end or a longer length adds at once
+    private static final int MAX_PADDING = 1 << 16;
+
+    public NativeJavaList(Scriptable scope, Object list, Class<?> staticType) {
+        super(scope, list, staticType);
+        if (!(list instanceof List)) {
+            throw new RuntimeException("java.util.List expected");
+        }
+    }
+
+    @Override
+    public String getClassName() {
+        return "JavaList";
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> list() {
+        return (List<Object>)javaObject;
+    }
+
+    @Override
+    public boolean has(String id, Scriptable start) {
+        return id.equals("length") || super.has(id, start);
+    }
+
+    @Override
+    public boolean has(int index, Scriptable start) {
+        return 0 <= index && index < list().size();
+    }
+
+    @Override
+    public Object get(String id, Scriptable start) {
+        if (id.equals("length"))
+            return Integer.valueOf(list().size());
+        return super.get(id, start);
+    }
+
+    @Override
+    public Object get(int index, Scriptable start) {
+        List<Object> list = list();
+        if (0 <= index && index < list.size()) {
+            Context cx = Context.getContext();
+            Object obj = list.get(index);
+            return cx.getWrapFactory().wrap(cx, this, obj,
+                                            ScriptRuntime.ObjectClass);
+        }
+        return Undefined.instance;
+    }
+
+    @Override
+    public void put(String id, Scriptable start, Object value) {
+        if (id.equals("length")) {
+            setLength(value);
+        } else {
+            super.put(id, start, value);
+        }
+    }
+
+    /**
+     * Store the element at the index. Storing past the end of the list
+     * first fills the gap with nulls, as JavaScript arrays do with holes,
+     * but a list cannot be sparse, so indexes far past the end are a
+     * RangeError.
+     */
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        List<Object> list = list();
+        if (index < 0 || index - list.size() > MAX_PADDING) {
+            String msg = ScriptRuntime.getMessage2(
+                "msg.java.array.index.out.of.bounds", String.valueOf(index),
+                String.valueOf(list.size() - 1));
+            throw ScriptRuntime.constructError("RangeError", msg);
+        }
+        Object obj = Context.jsToJava(value, ScriptRuntime.ObjectClass);
+        try {
+            int size = list.size();
+            if (index < size) {
+                list.set(index, obj);
+                return;
+            }
+            while (size++ < index) {
+                list.add(null);
+            }
+            list.add(obj);
+        } catch (RuntimeException ex) {
+            // The list may be read only or reject the element
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    private void setLength(Object value) {
+        double d = ScriptRuntime.toNumber(value);
+        long length = ScriptRuntime.toUint32(d);
+        List<Object> list = list();
+        if (length != d || length - list.size() > MAX_PADDING) {
+            String msg = ScriptRuntime.getMessage0("msg.arraylength.bad");
+            throw ScriptRuntime.constructError("RangeError", msg);
+        }
+        try {
+            int size = list.size();
+            if (length < size) {
+                list.subList((int)length, size).clear();
+            }
+            while (size++ < length) {
+                list.add(null);
+            }
+        } catch (RuntimeException ex) {
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    @Override
+    public Object[] getIds() {
+        int length = list().size();
+        Object[] result = new Object[length];
+        int i = length;
+        while (--i >= 0)
+            result[i] = Integer.valueOf(i);
+        return result;
+    }
+}
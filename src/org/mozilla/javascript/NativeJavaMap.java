@@ -0,0 +1,151 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reflects Java maps into the JavaScript environment. Entries
+ * with String and Integer keys become properties of the object, which
+ * scripts can read, write, delete and enumerate with <tt>for..in</tt> and
+ * <tt>for each..in</tt> through direct calls to the map. Keys of other
+ * types are only reachable through the methods of the map, which stay
+ * available as long as no entry has the same name.
+ * <p>
+ * Scripts see both <code>m[1]</code> and <code>m['1']</code> as the same
+ * property, so an index finds the entry with the Integer key, or else the
+ * one with the String key. Writes update the entry that is found, and
+ * new entries always get String keys, as property names are strings.
+ *
+ * @see Context#FEATURE_JAVA_COLLECTION_ACCESS
+ * @see NativeJavaList
+ */
+
+public class NativeJavaMap extends NativeJavaObject
+{
+    static final long serialVersionUID = -3786257752907047381L;
+
+    public NativeJavaMap(Scriptable scope, Object map, Class<?> staticType) {
+        super(scope, map, staticType);
+        if (!(map instanceof Map)) {
+            throw new RuntimeException("java.util.Map expected");
+        }
+    }
+
+    @Override
+    public String getClassName() {
+        return "JavaMap";
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object,Object> map() {
+        return (Map<Object,Object>)javaObject;
+    }
+
+    @Override
+    public boolean has(String id, Scriptable start) {
+        return containsKey(id) || super.has(id, start);
+    }
+
+    @Override
+    public boolean has(int index, Scriptable start) {
+        return containsKey(indexKey(index));
+    }
+
+    @Override
+    public Object get(String id, Scriptable start) {
+        Object result = getEntry(id);
+        return result != NOT_FOUND ? result : super.get(id, start);
+    }
+
+    @Override
+    public Object get(int index, Scriptable start) {
+        return getEntry(indexKey(index));
+    }
+
+    /**
+     * Return the key of the entry for an index: the Integer if the map
+     * has it, or else the String.
+     */
+    private Object indexKey(int index) {
+        Integer key = Integer.valueOf(index);
+        return containsKey(key) ? key : String.valueOf(index);
+    }
+
+    private boolean containsKey(Object key) {
+        try {
+            return map().containsKey(key);
+        } catch (ClassCastException ex) {
+            // Sorted maps compare keys with keys of their own type
+            return false;
+        }
+    }
+
+    private Object getEntry(Object key) {
+        if (!containsKey(key)) {
+            return NOT_FOUND;
+        }
+        Object obj = map().get(key);
+        Context cx = Context.getContext();
+        return cx.getWrapFactory().wrap(cx, this, obj,
+                                        ScriptRuntime.ObjectClass);
+    }
+
+    @Override
+    public void put(String id, Scriptable start, Object value) {
+        putEntry(id, value);
+    }
+
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        putEntry(indexKey(index), value);
+    }
+
+    private void putEntry(Object key, Object value) {
+        Object obj = Context.jsToJava(value, ScriptRuntime.ObjectClass);
+        try {
+            map().put(key, obj);
+        } catch (RuntimeException ex) {
+            // The map may be read only or reject the entry
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        deleteEntry(id);
+    }
+
+    @Override
+    public void delete(int index) {
+        deleteEntry(indexKey(index));
+    }
+
+    private void deleteEntry(Object key) {
+        try {
+            map().remove(key);
+        } catch (RuntimeException ex) {
+            throw Context.throwAsScriptRuntimeEx(ex);
+        }
+    }
+
+    @Override
+    public Object[] getIds() {
+        List<Object> ids = new ArrayList<Object>();
+        for (Object key : map().keySet()) {
+            // Negative numbers are string ids in scripts
+            if (key instanceof String
+                || (key instanceof Integer && ((Integer)key).intValue() >= 0))
+            {
+                ids.add(key);
+            }
+        }
+        return ids.toArray();
+    }
+}
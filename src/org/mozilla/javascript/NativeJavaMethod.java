@@ -8,7 +8,6 @@ package org.mozilla.javascript;
 
 import java.lang.reflect.*;
 import java.util.Arrays;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class reflects Java methods into the JavaScript environment and
@@ -146,8 +145,11 @@ public class NativeJavaMethod extends BaseFunction
 
         MemberBox meth = methods[index];
         Class<?>[] argTypes = meth.argTypes;
+        Invoker invoker = invokers == null ? null
+                                           : invokers.getInvoker(cx, meth);
 
-        if (meth.vararg) {
+        // An invoker marshalls the args itself
+        if (invoker == null && meth.vararg) {
             // marshall the explicit parameters
             Object[] newArgs = new Object[argTypes.length];
             for (int i = 0; i < argTypes.length-1; i++) {
@@ -183,19 +185,9 @@ public class NativeJavaMethod extends BaseFunction
             newArgs[argTypes.length-1] = varArgs;
             // replace the original args with the new one
             args = newArgs;
-        } else {
+        } else if (invoker == null) {
             // First, we marshall the args.
-            Object[] origArgs = args;
-            for (int i = 0; i < args.length; i++) {
-                Object arg = args[i];
-                Object coerced = Context.jsToJava(arg, argTypes[i]);
-                if (coerced != arg) {
-                    if (origArgs == args) {
-                        args = args.clone();
-                    }
-                    args[i] = coerced;
-                }
-            }
+            args = marshallArgs(argTypes, args);
         }
         Object javaObject;
         if (meth.isStatic()) {
@@ -222,7 +214,23 @@ public class NativeJavaMethod extends BaseFunction
             printDebug("Calling ", meth, args);
         }
 
-        Object retval = meth.invoke(javaObject, args);
+        Object retval;
+        if (invoker == null) {
+            retval = meth.invoke(javaObject, args);
+        } else {
+            try {
+                retval = meth.invoke(invoker, javaObject, args);
+            } catch (LinkageError err) {
+                if (!InvokerGenerator.isLinkFailure(invoker, err)) {
+                    throw err;
+                }
+                // The method can not be reached from the invoker, as when
+                // its class is in a package the module does not export
+                invokers.rejectInvoker(meth);
+                retval = meth.invoke(javaObject,
+                                     marshallArgs(argTypes, args));
+            }
+        }
         Class<?> staticType = meth.method().getReturnType();
 
         if (debug) {
@@ -250,31 +258,48 @@ public class NativeJavaMethod extends BaseFunction
 
     int findCachedFunction(Context cx, Object[] args) {
         if (methods.length > 1) {
-            if (overloadCache != null) {
-                for (ResolvedOverload ovl : overloadCache) {
-                    if (ovl.matches(args)) {
-                        return ovl.index;
-                    }
+            // Direct mapped cache from the classes of the args to the
+            // resolved overload: a lookup checks a single slot, and a miss
+            // replaces whatever the slot held before.
+            ResolvedOverload[] cache = overloadCache;
+            if (cache == null) {
+                int size = MIN_OVERLOAD_CACHE_SIZE;
+                while (size < methods.length * 4
+                       && size < MAX_OVERLOAD_CACHE_SIZE) {
+                    size <<= 1;
                 }
-            } else {
-                overloadCache = new CopyOnWriteArrayList<ResolvedOverload>();
+                cache = new ResolvedOverload[size];
+                overloadCache = cache;
             }
-            int index = findFunction(cx, methods, args);
-            // As a sanity measure, don't let the lookup cache grow longer
-            // than twice the number of overloaded methods
-            if (overloadCache.size() < methods.length * 2) {
-                synchronized (overloadCache) {
-                    ResolvedOverload ovl = new ResolvedOverload(args, index);
-                    if (!overloadCache.contains(ovl)) {
-                        overloadCache.add(0, ovl);
-                    }
-                }
+            int hash = ResolvedOverload.hash(args);
+            int slot = (hash ^ (hash >>> 16)) & (cache.length - 1);
+            ResolvedOverload ovl = cache[slot];
+            if (ovl != null && ovl.hash == hash && ovl.matches(args)) {
+                return ovl.index;
             }
+            int index = findFunction(cx, methods, args);
+            cache[slot] = new ResolvedOverload(args, index, hash);
             return index;
         }
         return findFunction(cx, methods, args);
     }
 
+    private static Object[] marshallArgs(Class<?>[] argTypes, Object[] args)
+    {
+        Object[] origArgs = args;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            Object coerced = Context.jsToJava(arg, argTypes[i]);
+            if (coerced != arg) {
+                if (origArgs == args) {
+                    args = args.clone();
+                }
+                args[i] = coerced;
+            }
+        }
+        return args;
+    }
+
     /**
      * Find the index of the correct function to call given the set of methods
      * or constructors and the arguments.
@@ -555,24 +580,47 @@ public class NativeJavaMethod extends BaseFunction
         }
     }
 
+    private static final int MIN_OVERLOAD_CACHE_SIZE = 8;
+    private static final int MAX_OVERLOAD_CACHE_SIZE = 256;
+
     MemberBox[] methods;
     private String functionName;
-    private transient CopyOnWriteArrayList<ResolvedOverload> overloadCache;
+    private transient ResolvedOverload[] overloadCache;
+    // Set when the ClassCache has invoker optimization enabled
+    transient ClassCache invokers;
 }
 
 class ResolvedOverload {
     final Class<?>[] types;
     final int index;
+    final int hash;
 
-    ResolvedOverload(Object[] args, int index) {
+    ResolvedOverload(Object[] args, int index, int hash) {
         this.index = index;
+        this.hash = hash;
         types = new Class<?>[args.length];
         for (int i = 0, l = args.length; i < l; i++) {
-            Object arg = args[i];
-            if (arg instanceof Wrapper)
-                arg = ((Wrapper)arg).unwrap();
-            types[i] = arg == null ? null : arg.getClass();
+            types[i] = argClass(args[i]);
+        }
+    }
+
+    /**
+     * Hashes the classes of the args like {@link Arrays#hashCode} would
+     * hash the types of their overload.
+     */
+    static int hash(Object[] args) {
+        int hash = 1;
+        for (int i = 0, l = args.length; i < l; i++) {
+            Class<?> type = argClass(args[i]);
+            hash = 31 * hash + (type == null ? 0 : type.hashCode());
         }
+        return hash;
+    }
+
+    private static Class<?> argClass(Object arg) {
+        if (arg instanceof Wrapper)
+            arg = ((Wrapper)arg).unwrap();
+        return arg == null ? null : arg.getClass();
     }
 
     boolean matches(Object[] args) {
@@ -580,12 +628,7 @@ class ResolvedOverload {
             return false;
         }
         for (int i = 0, l = args.length; i < l; i++) {
-            Object arg = args[i];
-            if (arg instanceof Wrapper)
-                arg = ((Wrapper)arg).unwrap();
-            if (arg == null) {
-                if (types[i] != null) return false;
-            } else if (arg.getClass() != types[i]) {
+            if (argClass(args[i]) != types[i]) {
                 return false;
             }
         }
@@ -603,6 +646,6 @@ class ResolvedOverload {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(types);
+        return hash;
     }
 }
@@ -25,6 +25,15 @@ public class NativeObject extends IdScriptableObject implements Map
 
     private static final Object OBJECT_TAG = "Object";
 
+    public NativeObject()
+    {
+        // Subclasses may override get/put, so only plain objects keep their
+        // properties in a shared shape.
+        if (getClass() == NativeObject.class) {
+            useSharedShape();
+        }
+    }
+
     static void init(Scriptable scope, boolean sealed)
     {
         NativeObject obj = new NativeObject();
@@ -441,6 +441,49 @@ public class Node implements Iterable<Node>
         return null;
     }
 
+    /**
+     * Return the types of the properties set on this node, or {@code null}
+     * if it has none.
+     */
+    public int[] getPropTypes()
+    {
+        int count = 0;
+        for (PropListItem x = propListHead; x != null; x = x.next) {
+            count++;
+        }
+        if (count == 0) {
+            return null;
+        }
+        int[] types = new int[count];
+        int i = 0;
+        for (PropListItem x = propListHead; x != null; x = x.next) {
+            types[i++] = x.type;
+        }
+        return types;
+    }
+
+    /**
+     * Gives this node its own copy of the property list, which a clone of
+     * a node shares with the original. The property values are not copied.
+     */
+    protected void copyPropertyList()
+    {
+        PropListItem head = null, tail = null;
+        for (PropListItem x = propListHead; x != null; x = x.next) {
+            PropListItem item = new PropListItem();
+            item.type = x.type;
+            item.intValue = x.intValue;
+            item.objectValue = x.objectValue;
+            if (tail == null) {
+                head = item;
+            } else {
+                tail.next = item;
+            }
+            tail = item;
+        }
+        propListHead = head;
+    }
+
     private PropListItem lookupProperty(int propType)
     {
         PropListItem x = propListHead;
@@ -93,6 +93,8 @@ public class Parser
     private String prevNameTokenString = "";
     private int prevNameTokenLineno;
 
+    private UniqueIDs idAllocator;
+
     // Exception to unwind
     private static class ParserException extends RuntimeException
     {
@@ -475,7 +477,11 @@ public class Parser
         }
         this.ts = new TokenStream(this, null, sourceString, lineno);
         try {
-            return parse();
+            AstRoot root = parse();
+            if (compilerEnv.isRecordingSourceText()) {
+                root.setSourceText(sourceString);
+            }
+            return root;
         } catch (IOException iox) {
             // Should never happen
             throw new IllegalStateException();
@@ -493,7 +499,7 @@ public class Parser
         throws IOException
     {
         if (parseFinished) throw new IllegalStateException("parser reused");
-        if (compilerEnv.isIdeMode()) {
+        if (compilerEnv.isIdeMode() || compilerEnv.isRecordingSourceText()) {
             return parse(readFully(sourceReader), sourceURI, lineno);
         }
         try {
@@ -505,7 +511,42 @@ public class Parser
         }
     }
 
+    /**
+     * Returns the allocator that numbers the nodes of this parse, or
+     * {@code null} if they are numbered from the shared counter.
+     */
+    public UniqueIDs getIdAllocator() {
+        return idAllocator;
+    }
+
+    /**
+     * Numbers the nodes created by this parse from {@code ids} instead of
+     * the counter shared by all threads. With a fresh allocator the node
+     * ids of a source are the same on every parse, and parsers running on
+     * different threads do not contend for ids.
+     */
+    public void setIdAllocator(UniqueIDs ids) {
+        this.idAllocator = ids;
+    }
+
     private AstRoot parse() throws IOException
+    {
+        UniqueIDs ids = idAllocator;
+        if (ids == null && compilerEnv.isLeanParsing()) {
+            ids = UniqueIDs.deferred();
+        }
+        if (ids == null) {
+            return parseScript();
+        }
+        UniqueIDs savedIds = UniqueIDs.setCurrent(ids);
+        try {
+            return parseScript();
+        } finally {
+            UniqueIDs.setCurrent(savedIds);
+        }
+    }
+
+    private AstRoot parseScript() throws IOException
     {
         int pos = 0;
         AstRoot root = new AstRoot(pos);
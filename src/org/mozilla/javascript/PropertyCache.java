@@ -0,0 +1,239 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+/**
+ * Inline cache for a single named property access site in compiled code.
+ * <p>
+ * The optimizer allocates one instance per {@code obj.name} site. The
+ * cache remembers, for up to {@link #MAX_ENTRIES} object {@link Shape}s,
+ * where the property was found: either in the object itself or in its
+ * direct prototype. When an object with a known shape reaches the site the
+ * value is read straight out of the object, skipping the hash lookup and
+ * the prototype chain walk. Everything else, including objects whose shape
+ * changed since the entry was recorded, takes the regular
+ * {@link ScriptRuntime} path and may add an entry.
+ * <p>
+ * Shapes are not tied to a scope, so a cache can be shared by all threads
+ * and scopes that run the compiled class. Entries are immutable and are
+ * only ever replaced as a whole, so no locking is needed.
+ * <p>
+ * This class is used by generated code and is not part of the public API.
+ */
+public final class PropertyCache
+{
+    /**
+     * Number of shapes a site remembers before it is considered megamorphic
+     * and stops recording new ones.
+     */
+    public static final int MAX_ENTRIES = 4;
+
+    private static final class Entry
+    {
+        final Shape shape;
+        // shape of the direct prototype, or null for own properties
+        final Shape protoShape;
+        final int index;
+        final Entry next;
+        final int length;
+
+        Entry(Shape shape, Shape protoShape, int index, Entry next)
+        {
+            this.shape = shape;
+            this.protoShape = protoShape;
+            this.index = index;
+            this.next = next;
+            this.length = (next == null) ? 1 : next.length + 1;
+        }
+    }
+
+    private final String name;
+    private Entry entries;
+
+    public PropertyCache(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#getObjectProp(Object, String, Context, Scriptable)}.
+     */
+    public Object getObjectProp(Object obj, Context cx, Scriptable scope)
+    {
+        if (obj instanceof ScriptableObject) {
+            Object value = getCached((ScriptableObject)obj);
+            if (value != Scriptable.NOT_FOUND) {
+                return value;
+            }
+        }
+        Object value = ScriptRuntime.getObjectProp(obj, name, cx, scope);
+        record(obj, true);
+        return value;
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#getObjectProp(Object, String, Context)}.
+     */
+    public Object getObjectProp(Object obj, Context cx)
+    {
+        if (obj instanceof ScriptableObject) {
+            Object value = getCached((ScriptableObject)obj);
+            if (value != Scriptable.NOT_FOUND) {
+                return value;
+            }
+        }
+        Object value = ScriptRuntime.getObjectProp(obj, name, cx);
+        record(obj, true);
+        return value;
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#getObjectProp(Scriptable, String, Context)}.
+     */
+    public Object getObjectProp(Scriptable obj, Context cx)
+    {
+        if (obj instanceof ScriptableObject) {
+            Object value = getCached((ScriptableObject)obj);
+            if (value != Scriptable.NOT_FOUND) {
+                return value;
+            }
+        }
+        Object value = ScriptRuntime.getObjectProp(obj, name, cx);
+        record(obj, true);
+        return value;
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#setObjectProp(Object, String, Object, Context)}.
+     * Only assignments to existing own properties are served from the
+     * cache.
+     */
+    public Object setObjectProp(Object obj, Object value, Context cx)
+    {
+        if (obj instanceof ScriptableObject) {
+            ScriptableObject so = (ScriptableObject)obj;
+            Shape shape = so.getShape();
+            if (shape != null) {
+                for (Entry e = entries; e != null; e = e.next) {
+                    if (e.shape == shape && e.protoShape == null) {
+                        if (so.putShapedValue(e.index, value)) {
+                            return value;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        ScriptRuntime.setObjectProp(obj, name, value, cx);
+        record(obj, false);
+        return value;
+    }
+
+    /**
+     * Cached version of
+     * {@link ScriptRuntime#getPropFunctionAndThis(Object, String, Context,
+     * Scriptable)}. As with the uncached version, the caller must call
+     * {@link ScriptRuntime#lastStoredScriptable(Context)} immediately after
+     * calling this method.
+     */
+    public Callable getPropFunctionAndThis(Object obj, Context cx,
+                                           Scriptable scope)
+    {
+        if (obj instanceof ScriptableObject) {
+            ScriptableObject so = (ScriptableObject)obj;
+            Object value = getCached(so);
+            if (value instanceof Callable) {
+                if (cx.scratchScriptable != null)
+                    throw new IllegalStateException();
+                cx.scratchScriptable = so;
+                return (Callable)value;
+            }
+        }
+        Callable f = ScriptRuntime.getPropFunctionAndThis(obj, name, cx,
+                                                          scope);
+        record(obj, true);
+        return f;
+    }
+
+    private Object getCached(ScriptableObject obj)
+    {
+        Shape shape = obj.getShape();
+        if (shape == null) {
+            return Scriptable.NOT_FOUND;
+        }
+        for (Entry e = entries; e != null; e = e.next) {
+            if (e.shape != shape) {
+                continue;
+            }
+            if (e.protoShape == null) {
+                return obj.getShapedValue(e.index);
+            }
+            // The receiver's shape guarantees it has no own property with
+            // this name, so only the prototype needs to be checked.
+            Scriptable proto = obj.getPrototype();
+            if (proto instanceof ScriptableObject) {
+                ScriptableObject p = (ScriptableObject)proto;
+                if (p.getShape() == e.protoShape) {
+                    return p.getShapedValue(e.index);
+                }
+            }
+        }
+        return Scriptable.NOT_FOUND;
+    }
+
+    private void record(Object obj, boolean allowPrototype)
+    {
+        if (!(obj instanceof ScriptableObject)) {
+            return;
+        }
+        ScriptableObject so = (ScriptableObject)obj;
+        Shape shape = so.getShape();
+        if (shape == null) {
+            return;
+        }
+        Entry head = entries;
+        if (head != null && head.length >= MAX_ENTRIES) {
+            // megamorphic site, keep the entries we have
+            return;
+        }
+        Shape protoShape = null;
+        int index = shape.indexOf(name);
+        if (index < 0) {
+            if (!allowPrototype) {
+                return;
+            }
+            Scriptable proto = so.getPrototype();
+            if (!(proto instanceof ScriptableObject)) {
+                return;
+            }
+            protoShape = ((ScriptableObject)proto).getShape();
+            if (protoShape == null) {
+                return;
+            }
+            index = protoShape.indexOf(name);
+            if (index < 0) {
+                return;
+            }
+        }
+        for (Entry e = head; e != null; e = e.next) {
+            if (e.shape == shape) {
+                // Another shape of the prototype; the existing entry wins
+                return;
+            }
+        }
+        entries = new Entry(shape, protoShape, index, head);
+    }
+}
@@ -1760,22 +1760,34 @@ public class ScriptRuntime {
      * Looks up a name in the scope chain and returns its value.
      */
     public static Object name(Context cx, Scriptable scope, String name)
+    {
+        return name(cx, scope, name, null);
+    }
+
+    /**
+     * Version of {@link #name(Context, Scriptable, String)} that resolves
+     * names bound in the top scope through the given cache, which may be
+     * null.
+     */
+    static Object name(Context cx, Scriptable scope, String name,
+                       NameCache cache)
     {
         Scriptable parent = scope.getParentScope();
         if (parent == null) {
-            Object result = topScopeName(cx, scope, name);
+            Object result = topScopeName(cx, scope, name, cache);
             if (result == Scriptable.NOT_FOUND) {
                 throw notFoundError(scope, name);
             }
             return result;
         }
 
-        return nameOrFunction(cx, scope, parent, name, false);
+        return nameOrFunction(cx, scope, parent, name, false, cache);
     }
 
     private static Object nameOrFunction(Context cx, Scriptable scope,
                                          Scriptable parentScope, String name,
-                                         boolean asFunctionCall)
+                                         boolean asFunctionCall,
+                                         NameCache cache)
     {
         Object result;
         Scriptable thisObj = scope; // It is used only if asFunctionCall==true.
@@ -1828,7 +1840,7 @@ public class ScriptRuntime {
             scope = parentScope;
             parentScope = parentScope.getParentScope();
             if (parentScope == null) {
-                result = topScopeName(cx, scope, name);
+                result = topScopeName(cx, scope, name, cache);
                 if (result == Scriptable.NOT_FOUND) {
                     if (firstXMLObject == null || asFunctionCall) {
                         throw notFoundError(scope, name);
@@ -1856,11 +1868,14 @@ public class ScriptRuntime {
     }
 
     private static Object topScopeName(Context cx, Scriptable scope,
-                                       String name)
+                                       String name, NameCache cache)
     {
         if (cx.useDynamicScope) {
             scope = checkDynamicScope(cx.topCallScope, scope);
         }
+        if (cache != null) {
+            return cache.getTopScopeProperty(scope);
+        }
         return ScriptableObject.getProperty(scope, name);
     }
 
@@ -2207,10 +2222,21 @@ public class ScriptRuntime {
     public static Callable getNameFunctionAndThis(String name,
                                                   Context cx,
                                                   Scriptable scope)
+    {
+        return getNameFunctionAndThis(name, cx, scope, null);
+    }
+
+    /**
+     * Version of {@link #getNameFunctionAndThis(String, Context, Scriptable)}
+     * that resolves names bound in the top scope through the given cache,
+     * which may be null.
+     */
+    static Callable getNameFunctionAndThis(String name, Context cx,
+                                           Scriptable scope, NameCache cache)
     {
         Scriptable parent = scope.getParentScope();
         if (parent == null) {
-            Object result = topScopeName(cx, scope, name);
+            Object result = topScopeName(cx, scope, name, cache);
             if (!(result instanceof Callable)) {
                 if (result == Scriptable.NOT_FOUND) {
                     throw notFoundError(scope, name);
@@ -2225,7 +2251,7 @@ public class ScriptRuntime {
         }
 
         // name will call storeScriptable(cx, thisObj);
-        return (Callable)nameOrFunction(cx, scope, parent, name, true);
+        return (Callable)nameOrFunction(cx, scope, parent, name, true, cache);
     }
 
     /**
@@ -22,6 +22,7 @@ import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.mozilla.javascript.arrays.ExternalArray;
 import org.mozilla.javascript.debug.DebuggableObject;
@@ -119,6 +120,16 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     private transient Slot firstAdded;
     private transient Slot lastAdded;
 
+    // Shared layout of the named properties, or null if the properties are
+    // kept in the slot table above. While an object has a shape it has no
+    // slots, every property is a data property with the attributes recorded
+    // in the shape and the value of the property at position i of the shape
+    // is element i of shapeValues. shapeValues is only replaced inside synchronized (this),
+    // and is null while a replacement is in progress, so unsynchronized
+    // writers can detect that their store may have been lost and retry.
+    private transient volatile Shape shape;
+    private transient volatile AtomicReferenceArray<Object> shapeValues;
+
     // Support for external byte arrays
     private ExternalArray externalArray;
 
@@ -133,9 +144,12 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     // initial slot array size, must be a power of 2
     private static final int INITIAL_SLOT_SIZE = 4;
 
+    private static final AtomicReferenceArray<Object> EMPTY_SHAPE_VALUES
+        = new AtomicReferenceArray<Object>(0);
+
     private boolean isExtensible = true;
 
-    private static class Slot implements Serializable
+    static class Slot implements Serializable
     {
         private static final long serialVersionUID = -6090581677123995491L;
         String name; // This can change due to caching
@@ -425,6 +439,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      */
     public boolean has(String name, Scriptable start)
     {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef != null) {
+            return shapeLocalRef.indexOf(name) >= 0;
+        }
         return null != getSlot(name, 0, SLOT_QUERY);
     }
 
@@ -455,6 +473,23 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      */
     public Object get(String name, Scriptable start)
     {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef != null) {
+            int index = shapeLocalRef.indexOf(name);
+            if (index < 0) {
+                return Scriptable.NOT_FOUND;
+            }
+            AtomicReferenceArray<Object> values = shapeValues;
+            if (values == null) {
+                // another thread is replacing the array, wait for it
+                synchronized (this) {
+                    values = shapeValues;
+                }
+            }
+            if (values != null) {
+                return values.get(index);
+            }
+        }
         Slot slot = getSlot(name, 0, SLOT_QUERY);
         if (slot == null) {
             return Scriptable.NOT_FOUND;
@@ -601,7 +636,7 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      */
     public boolean isConst(String name)
     {
-        Slot slot = getSlot(name, 0, SLOT_QUERY);
+        Slot slot = querySlot(name, 0);
         if (slot == null) {
             return false;
         }
@@ -664,6 +699,13 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      */
     public int getAttributes(String name)
     {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef != null) {
+            int index = shapeLocalRef.indexOf(name);
+            if (index >= 0) {
+                return shapeLocalRef.getAttributes(index);
+            }
+        }
         return findAttributeSlot(name, 0, SLOT_QUERY).getAttributes();
     }
 
@@ -753,7 +795,7 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
         if (isExtensible()) {
             gslot = (GetterSlot)getSlot(name, index, SLOT_MODIFY_GETTER_SETTER);
         } else {
-            Slot slot = unwrapSlot(getSlot(name, index, SLOT_QUERY));
+            Slot slot = unwrapSlot(querySlot(name, index));
             if (!(slot instanceof GetterSlot))
                 return;
             gslot = (GetterSlot) slot;
@@ -790,7 +832,7 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     {
         if (name != null && index != 0)
             throw new IllegalArgumentException(name);
-        Slot slot = unwrapSlot(getSlot(name, index, SLOT_QUERY));
+        Slot slot = unwrapSlot(querySlot(name, index));
         if (slot == null)
             return null;
         if (slot instanceof GetterSlot) {
@@ -809,7 +851,7 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      * @return whether the property is a getter or a setter
      */
     protected boolean isGetterOrSetter(String name, int index, boolean setter) {
-        Slot slot = unwrapSlot(getSlot(name, index, SLOT_QUERY));
+        Slot slot = unwrapSlot(querySlot(name, index));
         if (slot instanceof GetterSlot) {
             if (setter && ((GetterSlot)slot).setter != null) return true;
             if (!setter && ((GetterSlot)slot).getter != null) return true;
@@ -1543,6 +1585,11 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
                                int attributes)
     {
         checkNotSealed(propertyName, 0);
+        if (shape != null && (attributes & ~Shape.ATTRIBUTE_MASK) == 0
+            && defineShapedProperty(propertyName, value, attributes))
+        {
+            return;
+        }
         put(propertyName, this, value);
         setAttributes(propertyName, attributes);
     }
@@ -2144,6 +2191,7 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      */
     public synchronized void sealObject() {
         if (count >= 0) {
+            dropShape();
             // Make sure all LazilyLoadedCtors are initialized before sealing.
             Slot slot = firstAdded;
             while (slot != null) {
@@ -2642,6 +2690,18 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     {
         // This method is very hot (basically called on each assignment)
         // so we inline the extensible/sealed checks below.
+        Shape shapeLocalRef = shape;
+        if (name != null && shapeLocalRef != null) {
+            if (this != start) {
+                int i = shapeLocalRef.indexOf(name);
+                return i >= 0
+                       && (shapeLocalRef.getAttributes(i) & READONLY) != 0;
+            }
+            if (putShapedProperty(name, value)) {
+                return true;
+            }
+            // the object no longer has a shape, use the slots
+        }
         Slot slot;
         if (this != start) {
             slot = getSlot(name, index, SLOT_QUERY);
@@ -2734,10 +2794,49 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
         return slot;
     }
 
+    /**
+     * Returns the slot holding the named own property of this object, or
+     * null if there is none or the object keeps its properties in a shape.
+     * The slot stays valid until it is marked as deleted, which happens
+     * when the property is removed or redefined.
+     */
+    final Slot getNamedSlot(String name)
+    {
+        if (shape != null) {
+            return null;
+        }
+        return unwrapSlot(getSlot(name, 0, SLOT_QUERY));
+    }
+
     private static Slot unwrapSlot(Slot slot) {
         return (slot instanceof RelinkedSlot) ? ((RelinkedSlot)slot).slot : slot;
     }
 
+    /**
+     * Locates the slot of a property only to read it. A property kept in
+     * the shape of this object is copied into a slot that does not belong
+     * to the object, so that reading it leaves the shape in place.
+     */
+    private Slot querySlot(String name, int index)
+    {
+        Shape shapeLocalRef = shape;
+        if (name != null && shapeLocalRef != null) {
+            int i = shapeLocalRef.indexOf(name);
+            if (i < 0) {
+                return null;
+            }
+            Object value = getShapedValue(i);
+            if (value != NOT_FOUND) {
+                Slot slot = new Slot(name, name.hashCode(),
+                                     shapeLocalRef.getAttributes(i));
+                slot.value = value;
+                return slot;
+            }
+            // the object is being converted to slots, use them
+        }
+        return getSlot(name, index, SLOT_QUERY);
+    }
+
     /**
      * Locate the slot with given name or index. Depending on the accessType
      * parameter and the current slot status, a new slot may be allocated.
@@ -2747,6 +2846,16 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
      */
     private Slot getSlot(String name, int index, int accessType)
     {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef != null) {
+            if (accessType == SLOT_QUERY
+                && (name == null || shapeLocalRef.indexOf(name) < 0))
+            {
+                // shapes only hold named properties
+                return null;
+            }
+            dropShape();
+        }
         // Check the hashtable without using synchronization
         Slot[] slotsLocalRef = slots; // Get stable local reference
         if (slotsLocalRef == null && accessType == SLOT_QUERY) {
@@ -2887,7 +2996,208 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
         return newSlot;
     }
 
+    /**
+     * Makes this object keep its named properties in a compact array laid
+     * out by a {@link Shape} shared with other objects built the same way,
+     * until something that needs slots, such as an accessor, an attribute
+     * change, an index property or a deletion, converts it to the slot
+     * table. Must only be called from a constructor, before any property is
+     * added.
+     */
+    final void useSharedShape()
+    {
+        shapeValues = EMPTY_SHAPE_VALUES;
+        shape = Shape.EMPTY;
+    }
+
+    /**
+     * Returns the shape of this object or {@code null} if its properties
+     * are kept in slots.
+     */
+    final Shape getShape()
+    {
+        return shape;
+    }
+
+    /**
+     * Returns the value of the property at the given position of this
+     * object's shape, or {@link Scriptable#NOT_FOUND} if the object is being
+     * converted to slots concurrently. The caller must have checked
+     * {@link #getShape()}.
+     */
+    final Object getShapedValue(int index)
+    {
+        AtomicReferenceArray<Object> values = shapeValues;
+        if (values == null) {
+            return NOT_FOUND;
+        }
+        return values.get(index);
+    }
+
+    /**
+     * Assigns the property at the given position of this object's shape.
+     * The caller must have checked {@link #getShape()}. Returns false if
+     * the property is read-only or the value may not have been stored
+     * because the object's layout changed concurrently, in which case the
+     * caller has to use the full put logic.
+     */
+    final boolean putShapedValue(int index, Object value)
+    {
+        Shape shapeLocalRef = shape;
+        AtomicReferenceArray<Object> values = shapeValues;
+        if (shapeLocalRef == null || values == null
+            || (shapeLocalRef.getAttributes(index) & READONLY) != 0)
+        {
+            return false;
+        }
+        values.set(index, value);
+        return shapeValues == values;
+    }
+
+    /**
+     * Shaped version of {@link #putImpl} for this == start. Returns false
+     * if the object no longer has a shape and the slots must be used.
+     */
+    private boolean putShapedProperty(String name, Object value)
+    {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef != null) {
+            int index = shapeLocalRef.indexOf(name);
+            if (index >= 0) {
+                if ((shapeLocalRef.getAttributes(index) & READONLY) != 0) {
+                    return true;
+                }
+                AtomicReferenceArray<Object> values = shapeValues;
+                if (values != null) {
+                    values.set(index, value);
+                    if (shapeValues == values) {
+                        return true;
+                    }
+                }
+            } else if (!isExtensible) {
+                return true;
+            }
+        }
+        return putShapedPropertySynchronized(name, value);
+    }
+
+    private synchronized boolean putShapedPropertySynchronized(String name,
+                                                             Object value)
+    {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef == null) {
+            return false;
+        }
+        int index = shapeLocalRef.indexOf(name);
+        if (index >= 0) {
+            if ((shapeLocalRef.getAttributes(index) & READONLY) == 0) {
+                shapeValues.set(index, value);
+            }
+            return true;
+        }
+        if (!isExtensible) {
+            return true;
+        }
+        return addShapedProperty(shapeLocalRef, name, value, 0);
+    }
+
+    /**
+     * Shaped version of {@link #defineProperty(String, Object, int)} for a
+     * property this object does not have yet. Returns false if that is not
+     * the case or the object no longer has a shape.
+     */
+    private synchronized boolean defineShapedProperty(String name,
+                                                      Object value,
+                                                      int attributes)
+    {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef == null || !isExtensible
+            || shapeLocalRef.indexOf(name) >= 0)
+        {
+            return false;
+        }
+        return addShapedProperty(shapeLocalRef, name, value, attributes);
+    }
+
+    // Must be inside synchronized (this)
+    private boolean addShapedProperty(Shape shapeLocalRef, String name,
+                                      Object value, int attributes)
+    {
+        Shape newShape = shapeLocalRef.addProperty(name, attributes);
+        if (newShape == null) {
+            dropShape();
+            return false;
+        }
+        AtomicReferenceArray<Object> values = shapeValues;
+        int index = shapeLocalRef.size();
+        if (index == values.length()) {
+            // Make writers that still see the old array retry under the
+            // lock before copying it
+            shapeValues = null;
+            AtomicReferenceArray<Object> grown = new AtomicReferenceArray<Object>(
+                index == 0 ? INITIAL_SLOT_SIZE : index * 2);
+            for (int i = 0; i != index; ++i) {
+                grown.lazySet(i, values.get(i));
+            }
+            values = grown;
+        }
+        values.set(index, value);
+        ++count;
+        // publish the values before the shape that refers to them
+        shapeValues = values;
+        shape = newShape;
+        return true;
+    }
+
+    /**
+     * Moves the properties of this object from its shape into slots. Once
+     * converted an object never gets a shape again.
+     */
+    final synchronized void dropShape()
+    {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef == null) {
+            return;
+        }
+        AtomicReferenceArray<Object> values = shapeValues;
+        shapeValues = null;
+        int N = shapeLocalRef.size();
+        if (N != 0) {
+            int tableSize = INITIAL_SLOT_SIZE;
+            while (4 * N > 3 * tableSize) {
+                tableSize *= 2;
+            }
+            Slot[] slotsLocalRef = new Slot[tableSize];
+            Slot prev = null;
+            for (int i = 0; i != N; ++i) {
+                String name = shapeLocalRef.getName(i);
+                int indexOrHash = name.hashCode();
+                Slot slot = new Slot(name, indexOrHash,
+                                     shapeLocalRef.getAttributes(i));
+                slot.value = values.get(i);
+                if (prev == null) {
+                    firstAdded = slot;
+                } else {
+                    prev.orderedNext = slot;
+                }
+                prev = slot;
+                addKnownAbsentSlot(slotsLocalRef, slot,
+                                   getSlotIndex(tableSize, indexOrHash));
+            }
+            lastAdded = prev;
+            slots = slotsLocalRef;
+        }
+        // publish the slots before readers stop using the shape
+        shape = null;
+    }
+
     private synchronized void removeSlot(String name, int index) {
+        if (shape != null) {
+            if (name == null || shape.indexOf(name) < 0) {
+                return;
+            }
+            dropShape();
+        }
         int indexOrHash = (name != null ? name.hashCode() : index);
 
         Slot[] slotsLocalRef = slots;
@@ -2992,6 +3302,30 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     }
 
     Object[] getIds(boolean getAll) {
+        Shape shapeLocalRef = shape;
+        if (shapeLocalRef != null) {
+            int N = shapeLocalRef.size();
+            int c = (externalArray == null ? 0 : externalArray.getLength());
+            if (N + c == 0) {
+                return ScriptRuntime.emptyArgs;
+            }
+            Object[] a = new Object[N + c];
+            if (c != 0) {
+                c = externalArray.copyIds(a);
+            }
+            for (int i = 0; i != N; ++i) {
+                if (getAll
+                    || (shapeLocalRef.getAttributes(i) & DONTENUM) == 0)
+                {
+                    a[c++] = shapeLocalRef.getName(i);
+                }
+            }
+            if (c == a.length)
+                return a;
+            Object[] result = new Object[c];
+            System.arraycopy(a, 0, result, 0, c);
+            return result;
+        }
         Slot[] s = slots;
         Object[] a;
 
@@ -3033,6 +3367,8 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     private synchronized void writeObject(ObjectOutputStream out)
         throws IOException
     {
+        // the serialized form always uses slots
+        dropShape();
         out.defaultWriteObject();
         int objectsCount = count;
         if (objectsCount < 0) {
@@ -3102,7 +3438,10 @@ public abstract class ScriptableObject implements Scriptable, Serializable,
     }
 
     protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
-        Slot slot = getSlot(cx, id, SLOT_QUERY);
+        String name = ScriptRuntime.toStringIdOrIndex(cx, id);
+        Slot slot = name == null
+            ? getSlot(null, ScriptRuntime.lastIndexResult(cx), SLOT_QUERY)
+            : querySlot(name, 0);
         if (slot == null) return null;
         Scriptable scope = getParentScope();
         return slot.getPropertyDescriptor(cx, (scope == null ? this : scope));
@@ -0,0 +1,187 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+/**
+ * Describes the layout of the named properties of a plain object: the
+ * property names, their attributes and the order in which they were added.
+ * Only data properties take part in shapes. Objects built by
+ * adding the same names in the same order share one Shape instance, so a
+ * shape comparison is a cheap way to tell that two objects keep a property
+ * at the same position.
+ * <p>
+ * Shapes are immutable and form a transition tree rooted at {@link #EMPTY}.
+ * A parent only keeps weak references to its transitions, so layouts that
+ * are no longer used by any object or {@link PropertyCache} can be
+ * collected.
+ */
+final class Shape
+{
+    /**
+     * Objects with more named properties than this stop using shapes and
+     * fall back to the plain hash table.
+     */
+    static final int MAX_PROPERTIES = 64;
+
+    // Shapes with more properties than this build a hash index for lookups
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    /**
+     * Attributes a property in a shape may have.
+     */
+    static final int ATTRIBUTE_MASK = ScriptableObject.READONLY
+                                      | ScriptableObject.DONTENUM
+                                      | ScriptableObject.PERMANENT;
+
+    static final Shape EMPTY = new Shape(null, new String[0], new int[0]);
+
+    private final Shape parent;
+    private final String[] names;
+    private final int[] attributes;
+
+    // Keyed by the name for properties without attributes and by a
+    // TransitionKey otherwise; guarded by this
+    private HashMap<Object,WeakReference<Shape>> transitions;
+
+    private volatile ObjToIntMap nameIndex;
+
+    private static final class TransitionKey
+    {
+        final String name;
+        final int attributes;
+
+        TransitionKey(String name, int attributes)
+        {
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof TransitionKey)) {
+                return false;
+            }
+            TransitionKey other = (TransitionKey)obj;
+            return attributes == other.attributes && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return name.hashCode() ^ attributes;
+        }
+    }
+
+    private Shape(Shape parent, String[] names, int[] attributes)
+    {
+        this.parent = parent;
+        this.names = names;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Returns the shape this one was derived from, or {@code null} for
+     * {@link #EMPTY}.
+     */
+    Shape getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * Returns the number of properties described by this shape.
+     */
+    int size()
+    {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of the property at the given position.
+     */
+    String getName(int index)
+    {
+        return names[index];
+    }
+
+    /**
+     * Returns the attributes of the property at the given position.
+     */
+    int getAttributes(int index)
+    {
+        return attributes[index];
+    }
+
+    /**
+     * Returns the position of the named property or -1 if this shape has
+     * no property with that name.
+     */
+    int indexOf(String name)
+    {
+        String[] names = this.names;
+        int N = names.length;
+        if (N <= LINEAR_SEARCH_LIMIT) {
+            for (int i = 0; i != N; ++i) {
+                String s = names[i];
+                if (s == name || s.equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        ObjToIntMap map = nameIndex;
+        if (map == null) {
+            map = new ObjToIntMap(N);
+            for (int i = 0; i != N; ++i) {
+                map.put(names[i], i);
+            }
+            nameIndex = map;
+        }
+        return map.get(name, -1);
+    }
+
+    /**
+     * Returns the shape that results from adding a property with the given
+     * name and attributes, which must be within {@link #ATTRIBUTE_MASK}, or
+     * {@code null} if the resulting object would have more than
+     * {@link #MAX_PROPERTIES} properties.
+     */
+    Shape addProperty(String name, int attributes)
+    {
+        int N = names.length;
+        if (N >= MAX_PROPERTIES) {
+            return null;
+        }
+        Object key = (attributes == 0)
+                     ? name
+                     : new TransitionKey(name, attributes);
+        synchronized (this) {
+            if (transitions == null) {
+                transitions = new HashMap<Object,WeakReference<Shape>>();
+            } else {
+                WeakReference<Shape> ref = transitions.get(key);
+                Shape next = (ref != null) ? ref.get() : null;
+                if (next != null) {
+                    return next;
+                }
+            }
+            String[] newNames = new String[N + 1];
+            System.arraycopy(names, 0, newNames, 0, N);
+            newNames[N] = name;
+            int[] newAttributes = new int[N + 1];
+            System.arraycopy(this.attributes, 0, newAttributes, 0, N);
+            newAttributes[N] = attributes;
+            Shape next = new Shape(this, newNames, newAttributes);
+            transitions.put(key, new WeakReference<Shape>(next));
+            return next;
+        }
+    }
+}
@@ -8,6 +8,10 @@
 
 package org.mozilla.javascript;
 
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Embeddings that wish to provide their own custom wrappings for Java
  * objects may extend this class and call
@@ -69,7 +73,7 @@ public class WrapFactory
         if (cls.isArray()) {
             return NativeJavaArray.wrap(scope, obj);
         }
-        return wrapAsJavaObject(cx, scope, obj, staticType);
+        return wrapCached(cx, scope, obj, staticType);
     }
 
     /**
@@ -88,7 +92,27 @@ public class WrapFactory
         if (cls.isArray()) {
             return NativeJavaArray.wrap(scope, obj);
         }
-        return wrapAsJavaObject(cx, scope, obj, null);
+        return wrapCached(cx, scope, obj, null);
+    }
+
+    /**
+     * Return the wrapper of the object from the wrapper cache, or else
+     * the one {@link #wrapAsJavaObject} makes.
+     */
+    private Scriptable wrapCached(Context cx, Scriptable scope,
+                                  Object javaObject, Class<?> staticType)
+    {
+        WrapperCache cache = wrapperCache;
+        if (cache == null) {
+            return wrapAsJavaObject(cx, scope, javaObject, staticType);
+        }
+        Scriptable topScope = ScriptableObject.getTopLevelScope(scope);
+        Scriptable wrapper = cache.get(topScope, javaObject);
+        if (wrapper == null) {
+            wrapper = wrapAsJavaObject(cx, scope, javaObject, staticType);
+            cache.put(javaObject, wrapper);
+        }
+        return wrapper;
     }
 
     /**
@@ -100,6 +124,10 @@ public class WrapFactory
      * when they can not convert <tt>javaObject</tt> to JavaScript primitive
      * value or JavaScript array.
      * <p>
+     * Lists and maps are wrapped as {@link NativeJavaList} and
+     * {@link NativeJavaMap} when the Context has
+     * {@link Context#FEATURE_JAVA_COLLECTION_ACCESS}.
+     * <p>
      * Subclasses can override the method to provide custom wrappers
      * for Java objects.
      * @param cx the current Context for this thread
@@ -112,6 +140,16 @@ public class WrapFactory
     public Scriptable wrapAsJavaObject(Context cx, Scriptable scope,
                                        Object javaObject, Class<?> staticType)
     {
+        if (cx != null
+            && cx.hasFeature(Context.FEATURE_JAVA_COLLECTION_ACCESS))
+        {
+            if (javaObject instanceof List) {
+                return new NativeJavaList(scope, javaObject, staticType);
+            }
+            if (javaObject instanceof Map) {
+                return new NativeJavaMap(scope, javaObject, staticType);
+            }
+        }
         return new NativeJavaObject(scope, javaObject, staticType);
     }
 
@@ -162,6 +200,107 @@ public class WrapFactory
         javaPrimitiveWrap = value;
     }
 
+    /**
+     * Return the number of Java object wrappers the factory keeps for
+     * reuse, or 0 if it makes a new wrapper every time.
+     * @see #setWrapperCacheSize(int)
+     */
+    public final int getWrapperCacheSize()
+    {
+        WrapperCache cache = wrapperCache;
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * Set the number of Java object wrappers the factory keeps for reuse.
+     * <p>
+     * With a cache, wrapping a Java object again in the same top-level
+     * scope returns the wrapper made the previous time, as long as that
+     * wrapper is still in use, even if the static type differs. Scripts
+     * then see the same object for every read of one Java object, and
+     * loops over Java values create fewer wrappers.
+     * The cache holds its wrappers through weak references and replaces
+     * an older one when two objects need the same of its slots, so it
+     * never keeps a Java object alive.
+     * <p>
+     * The size is rounded up to a power of two, so it can be at most
+     * 2<sup>30</sup>. By default, and with a size of 0, there is no cache.
+     * Setting the size empties the cache.
+     * @param size the number of wrappers to keep
+     * @throws IllegalArgumentException if the size is negative or greater
+     *         than 2<sup>30</sup>
+     */
+    public final void setWrapperCacheSize(int size)
+    {
+        Context cx = Context.getCurrentContext();
+        if (cx != null && cx.isSealed()) {
+            Context.onSealedMutation();
+        }
+        if (size < 0 || size > MAX_WRAPPER_CACHE_SIZE) {
+            throw new IllegalArgumentException(String.valueOf(size));
+        }
+        wrapperCache = size == 0 ? null : new WrapperCache(size);
+    }
+
+    /**
+     * Direct mapped cache from Java objects to their wrappers: the identity
+     * hash code of an object selects the one slot that may hold its
+     * wrapper. Entries are immutable, so threads can share the cache.
+     */
+    private static final class WrapperCache
+    {
+        private final WeakReference<?>[] entries;
+
+        WrapperCache(int size)
+        {
+            int capacity = 1;
+            while (capacity < size) {
+                capacity <<= 1;
+            }
+            entries = new WeakReference<?>[capacity];
+        }
+
+        int size()
+        {
+            return entries.length;
+        }
+
+        private int slot(Object javaObject)
+        {
+            int h = System.identityHashCode(javaObject);
+            return (h ^ (h >>> 16)) & (entries.length - 1);
+        }
+
+        Scriptable get(Scriptable topScope, Object javaObject)
+        {
+            WeakReference<?> entry = entries[slot(javaObject)];
+            if (entry == null) {
+                return null;
+            }
+            Scriptable wrapper = (Scriptable)entry.get();
+            if (wrapper == null
+                || ((Wrapper)wrapper).unwrap() != javaObject
+                || ScriptableObject.getTopLevelScope(wrapper) != topScope)
+            {
+                return null;
+            }
+            return wrapper;
+        }
+
+        void put(Object javaObject, Scriptable wrapper)
+        {
+            // Wrappers have to give the object back to be checked
+            if (wrapper instanceof Wrapper) {
+                entries[slot(javaObject)] =
+                    new WeakReference<Scriptable>(wrapper);
+            }
+        }
+    }
+
+    // Largest power of two that is an int
+    private static final int MAX_WRAPPER_CACHE_SIZE = 1 << 30;
+
     private boolean javaPrimitiveWrap = true;
+    private WrapperCache wrapperCache;
 
 }
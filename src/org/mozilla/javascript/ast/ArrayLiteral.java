@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -13,8 +14,7 @@ import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for an Array literal. The elements list will always be
@@ -64,23 +64,19 @@ public class ArrayLiteral extends AstNode implements DestructuringForm {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
-
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ArrayExpression");
+	out.name("elements").beginArray();
 	for (AstNode element : this.getElements())
-	    array.add(element.getJsonObject());
-	object.addProperty("type", "ArrayExpression");
-	object.add("elements", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    element.writeJson(out);
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -99,7 +95,7 @@ public class ArrayLiteral extends AstNode implements DestructuringForm {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	List<AstNode> elements = new LinkedList<AstNode>();
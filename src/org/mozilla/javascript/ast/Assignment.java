@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node representing the set of assignment operators such as {@code =},
@@ -39,19 +41,19 @@ public class Assignment extends InfixExpression {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "AssignmentExpression");
-		object.addProperty("operator", "=");
-		object.add("left", this.getLeft().getJsonObject());
-		object.add("right", this.getRight().getJsonObject());
-    		object.addProperty("change", changeType.toString());
-    		object.addProperty("change-noprop", changeTypeNoProp.toString());
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("AssignmentExpression");
+		out.name("operator").value("=");
+		this.getLeft().writeJson(out.name("left"));
+		this.getRight().writeJson(out.name("right"));
+    		out.name("change").value(changeType.toString());
+    		out.name("change-noprop").value(changeTypeNoProp.toString());
+		out.endObject();
     }
 
 }
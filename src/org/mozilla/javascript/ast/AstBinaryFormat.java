@@ -0,0 +1,1260 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.ast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.mozilla.javascript.Node;
+
+import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode.ChangeType;
+import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode.Version;
+
+/**
+ * A compact binary encoding of {@link AstNode} trees, meant for caching
+ * parsed trees. Reading a tree back is faster than parsing its source
+ * again, and the encoding is much smaller than the Esprima JSON of the tree.
+ * <p>
+ * An encoded tree starts with a checksum of the rest of the data, a table
+ * of the node classes it uses and a table of all its strings, such as names, literals and comments. Then
+ * come the class of every node, so that all nodes can be created before
+ * any references between them are read, the symbols of its scopes, and
+ * the fields of every node, in the order the nodes are visited. Integers
+ * are written as variable length numbers, references to strings and
+ * symbols as indexes into their tables, and references to nodes relative
+ * to the node being written. Every node starts with a mask of its flags
+ * and of which of its other fields are set, so nothing more is written for
+ * fields that are {@code null} or empty.
+ * <p>
+ * The fields declared by {@link Node} and {@link AstNode}, which every
+ * node has, are written directly. The fields of the node classes are found
+ * by reflection, and a hash of the names and types of all fields is
+ * written with the class name, so trees written by a different version of
+ * the classes are rejected rather than misread. The ids, the change
+ * information and the criteria and dependencies of nodes are only written
+ * if requested with {@link #IDS}, {@link #CHANGES} and {@link #ANALYSIS}.
+ * Nodes read without their ids are given new ones, in the order they are
+ * visited. References to nodes outside the tree, such as the mapped node
+ * or the scopes the parser replaced, are not written, and the cached
+ * structural hashes are computed again when needed.
+ * <p>
+ * The properties set with {@link Node#putProp} are written if their values
+ * are numbers, strings, booleans or nodes of the tree. Properties that
+ * refer to nodes outside the tree, such as the JsDoc comment of a node
+ * when only a subtree is written, are left out. A tree with other
+ * property values, such as the destructuring parameters of a function in
+ * the intermediate representation, cannot be written.
+ * <p>
+ * Data that is truncated, corrupt or crafted is rejected with an
+ * {@link IOException}. Only subclasses of {@link AstNode} are created, and
+ * the links between the nodes must form the tree they were written from,
+ * so a tree that is read can always be visited and printed.
+ */
+public final class AstBinaryFormat {
+
+    /** Write the ids of the nodes. */
+    public static final int IDS = 1;
+
+    /**
+     * Write the change types, the moved flags, the fixed positions and the
+     * versions of the nodes.
+     */
+    public static final int CHANGES = 2;
+
+    /** Write the criteria and dependencies of the nodes, and the dummy flags. */
+    public static final int ANALYSIS = 4;
+
+    private static final int MAGIC = 0x52415354; // "RAST"
+    private static final int FORMAT_VERSION = 2;
+
+    // Bits of the mask of a node for the fields of Node and AstNode
+    private static final int HAS_FIRST = 1 << 0;
+    private static final int HAS_LAST = 1 << 1;
+    private static final int HAS_NEXT = 1 << 2;
+    private static final int HAS_PARENT = 1 << 3;
+    private static final int HAS_ID = 1 << 4;
+    private static final int HAS_CHANGE_TYPE = 1 << 5;
+    private static final int HAS_CHANGE_TYPE_NO_PROP = 1 << 6;
+    private static final int HAS_VERSION = 1 << 7;
+    private static final int IS_MOVED = 1 << 8;
+    private static final int HAS_CRITERIA = 1 << 9;
+    private static final int HAS_DEPENDENCIES = 1 << 10;
+    private static final int IS_DUMMY = 1 << 11;
+    private static final int HAS_PROPS = 1 << 12;
+    private static final int BASE_BITS = 13;
+
+    // Kinds of the fields of node classes
+    private static final int INT = 0;
+    private static final int BOOLEAN = 1;
+    private static final int CHAR = 2;
+    private static final int DOUBLE = 3;
+    private static final int STRING = 4;
+    private static final int ENUM = 5;
+    private static final int INTEGER = 6;
+    private static final int NODE = 7;
+    private static final int NODE_LIST = 8;
+    private static final int SYMBOL_LIST = 9;
+    private static final int NODE_SET = 10;
+    private static final int SYMBOL_TABLE = 11;
+    private static final int STRING_ARRAY = 12;
+    private static final int BOOLEAN_ARRAY = 13;
+
+    // Kinds of property values
+    private static final int PROP_INT = 0;
+    private static final int PROP_TRUE = 1;
+    private static final int PROP_FALSE = 2;
+    private static final int PROP_STRING = 3;
+    private static final int PROP_NODE = 4;
+    private static final int PROP_INTEGER = 5;
+
+    /** Fields of node classes that only cache or link to compiler state. */
+    private static final List<String> SKIPPED = Arrays.asList(
+	    "AstRoot.structuralIndex", "ScriptNode.compilerData",
+	    "FunctionNode.liveLocals");
+
+    private static final ChangeType[] CHANGE_TYPES = ChangeType.values();
+    private static final Version[] VERSIONS = Version.values();
+
+    private static final Map<Class<?>, Layout> layouts =
+	new ConcurrentHashMap<Class<?>, Layout>();
+
+    private AstBinaryFormat() {
+    }
+
+    /**
+     * Encodes the tree rooted at {@code root}.
+     *
+     * @param root
+     *            the root of the tree, usually an {@link AstRoot}
+     * @param flags
+     *            any of {@link #IDS}, {@link #CHANGES} and {@link #ANALYSIS}
+     * @return the encoded tree
+     * @throws IllegalArgumentException
+     *             if a node has a property whose value cannot be written
+     */
+    public static byte[] write(AstNode root, int flags) {
+	try {
+	    return new Writer(root, flags).write();
+	} catch (IllegalAccessException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    /**
+     * Encodes the tree rooted at {@code root} to a stream.
+     *
+     * @see #write(AstNode, int)
+     */
+    public static void write(AstNode root, int flags, OutputStream out)
+	    throws IOException {
+	out.write(write(root, flags));
+    }
+
+    /**
+     * Decodes a tree written by {@link #write(AstNode, int)}.
+     *
+     * @return the root of the tree, which has no parent
+     * @throws IOException
+     *             if the data is not a tree in this format, is corrupt, or
+     *             was written with different node classes
+     */
+    public static AstNode read(byte[] data) throws IOException {
+	try {
+	    return new Reader(data).read();
+	} catch (RuntimeException e) {
+	    // Values of the wrong type for a field, and the like
+	    throw corrupt(e);
+	} catch (IllegalAccessException e) {
+	    throw new IllegalStateException(e);
+	} catch (InstantiationException e) {
+	    throw corrupt(e);
+	} catch (InvocationTargetException e) {
+	    throw corrupt(e);
+	}
+    }
+
+    private static IOException corrupt(Exception cause) {
+	IOException e = new IOException("Corrupt AST data");
+	e.initCause(cause);
+	return e;
+    }
+
+    /**
+     * Decodes a tree written by {@link #write(AstNode, int, OutputStream)},
+     * reading the stream to its end.
+     *
+     * @see #read(byte[])
+     */
+    public static AstNode read(InputStream in) throws IOException {
+	byte[] data = new byte[4096];
+	int size = 0;
+	for (;;) {
+	    if (size == data.length) {
+		data = Arrays.copyOf(data, size * 2);
+	    }
+	    int n = in.read(data, size, data.length - size);
+	    if (n < 0) {
+		break;
+	    }
+	    size += n;
+	}
+	return read(Arrays.copyOf(data, size));
+    }
+
+    /**
+     * The constructor of a node class, and the fields it declares below
+     * {@link AstNode}, with their kinds.
+     */
+    private static final class Layout {
+	final Constructor<?> constructor;
+	final Field[] fields;
+	final int[] kinds;
+	final Object[][] constants;
+	final int hash;
+
+	Layout(Class<?> type) {
+	    try {
+		constructor = type.getDeclaredConstructor();
+		constructor.setAccessible(true);
+	    } catch (NoSuchMethodException e) {
+		throw new IllegalStateException(e);
+	    }
+	    List<Class<?>> classes = new ArrayList<Class<?>>();
+	    for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+		classes.add(0, c);
+	    }
+	    StringBuilder signature = new StringBuilder(type.getName());
+	    List<Field> list = new ArrayList<Field>();
+	    for (Class<?> c : classes) {
+		Field[] declared = c.getDeclaredFields();
+		Arrays.sort(declared, new Comparator<Field>() {
+		    public int compare(Field a, Field b) {
+			return a.getName().compareTo(b.getName());
+		    }
+		});
+		for (Field field : declared) {
+		    if (Modifier.isStatic(field.getModifiers())) {
+			continue;
+		    }
+		    signature.append(';').append(key(field)).append(':')
+			.append(field.getGenericType());
+		    if (AstNode.class.isAssignableFrom(c)
+			    && c != AstNode.class
+			    && !SKIPPED.contains(key(field))) {
+			list.add(field);
+		    }
+		}
+	    }
+	    fields = list.toArray(new Field[list.size()]);
+	    kinds = new int[fields.length];
+	    constants = new Object[fields.length][];
+	    for (int i = 0; i < fields.length; i++) {
+		Field field = fields[i];
+		field.setAccessible(true);
+		kinds[i] = kindOf(field);
+		if (kinds[i] == ENUM) {
+		    constants[i] = field.getType().getEnumConstants();
+		    signature.append(Arrays.toString(constants[i]));
+		}
+	    }
+	    if (BASE_BITS + fields.length > 64) {
+		throw new IllegalStateException("Too many fields in " + type);
+	    }
+	    hash = signature.toString().hashCode();
+	}
+
+	private static String key(Field field) {
+	    return field.getDeclaringClass().getSimpleName() + "."
+		+ field.getName();
+	}
+
+	private static int kindOf(Field field) {
+	    Class<?> type = field.getType();
+	    if (type == int.class) {
+		return INT;
+	    } else if (type == boolean.class) {
+		return BOOLEAN;
+	    } else if (type == char.class) {
+		return CHAR;
+	    } else if (type == double.class) {
+		return DOUBLE;
+	    } else if (type == String.class) {
+		return STRING;
+	    } else if (type.isEnum()) {
+		return ENUM;
+	    } else if (type == Integer.class) {
+		return INTEGER;
+	    } else if (Node.class.isAssignableFrom(type)) {
+		return NODE;
+	    } else if (type == List.class) {
+		Type element = ((ParameterizedType) field.getGenericType())
+		    .getActualTypeArguments()[0];
+		return element == Symbol.class ? SYMBOL_LIST : NODE_LIST;
+	    } else if (type == SortedSet.class) {
+		return NODE_SET;
+	    } else if (type == Map.class
+		    && key(field).equals("Scope.symbolTable")) {
+		return SYMBOL_TABLE;
+	    } else if (type == String[].class) {
+		return STRING_ARRAY;
+	    } else if (type == boolean[].class) {
+		return BOOLEAN_ARRAY;
+	    }
+	    throw new IllegalStateException("Cannot encode field " + key(field));
+	}
+    }
+
+    private static Layout layout(Class<?> type) {
+	Layout layout = layouts.get(type);
+	if (layout == null) {
+	    layout = new Layout(type);
+	    layouts.put(type, layout);
+	}
+	return layout;
+    }
+
+    /**
+     * Returns whether a field of a kind is only written if it is set, as
+     * told by a bit of the mask of the node. The bit is the value of boolean
+     * fields.
+     */
+    private static boolean hasValue(int kind) {
+	return kind > DOUBLE;
+    }
+
+    private static final class Writer {
+	private final int flags;
+	private final List<AstNode> nodes = new ArrayList<AstNode>();
+	private final Map<Object, Integer> nodeIndex;
+	private final List<Symbol> symbols = new ArrayList<Symbol>();
+	private final Map<Symbol, Integer> symbolIndex =
+	    new IdentityHashMap<Symbol, Integer>();
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringIndex =
+	    new HashMap<String, Integer>();
+	private final List<Class<?>> classes = new ArrayList<Class<?>>();
+	private final Map<Class<?>, Integer> classIndex =
+	    new HashMap<Class<?>, Integer>();
+	private final Output out = new Output();
+	private Object[] values = new Object[8];
+
+	// The node being written, and the last line number and id written
+	private int current;
+	private int lineno;
+	private int id;
+
+	Writer(AstNode root, int flags) {
+	    this.flags = flags;
+	    List<AstNode> visited = AstNode.subtreeNodes(root);
+	    nodeIndex = new IdentityHashMap<Object, Integer>(visited.size());
+	    for (AstNode node : visited) {
+		if (!nodeIndex.containsKey(node)) {
+		    nodeIndex.put(node, Integer.valueOf(nodes.size()));
+		    nodes.add(node);
+		}
+	    }
+	}
+
+	byte[] write() throws IllegalAccessException {
+	    // The body first, which fills the class and string tables
+	    out.varint(nodes.size());
+	    for (AstNode node : nodes) {
+		Integer index = classIndex.get(node.getClass());
+		if (index == null) {
+		    index = Integer.valueOf(classes.size());
+		    classes.add(node.getClass());
+		    classIndex.put(node.getClass(), index);
+		}
+		out.varint(index.intValue());
+		collectSymbols(node);
+	    }
+	    out.varint(symbols.size());
+	    for (Symbol symbol : symbols) {
+		out.signed(symbol.getDeclType());
+		string(symbol.getName());
+		out.signed(symbol.getIndex());
+		nodeRef(symbol.getNode());
+		nodeRef(symbol.getContainingTable());
+	    }
+	    for (current = 0; current < nodes.size(); current++) {
+		writeNode(nodes.get(current));
+	    }
+
+	    Output tables = new Output();
+	    tables.varint(flags);
+	    tables.varint(classes.size());
+	    for (Class<?> type : classes) {
+		tables.chars(type.getName());
+		tables.fixed(layout(type).hash);
+	    }
+	    tables.varint(strings.size());
+	    for (String s : strings) {
+		tables.chars(s);
+	    }
+	    CRC32 checksum = new CRC32();
+	    checksum.update(tables.buf, 0, tables.size);
+	    checksum.update(out.buf, 0, out.size);
+
+	    Output header = new Output();
+	    header.fixed(MAGIC);
+	    header.varint(FORMAT_VERSION);
+	    header.fixed((int) checksum.getValue());
+	    byte[] data = Arrays.copyOf(header.buf,
+		    header.size + tables.size + out.size);
+	    System.arraycopy(tables.buf, 0, data, header.size, tables.size);
+	    System.arraycopy(out.buf, 0, data, header.size + tables.size,
+		    out.size);
+	    return data;
+	}
+
+	private void collectSymbols(AstNode node) {
+	    if (node instanceof Scope) {
+		Map<String, Symbol> table = ((Scope) node).getSymbolTable();
+		if (table != null) {
+		    for (Symbol symbol : table.values()) {
+			addSymbol(symbol);
+		    }
+		}
+	    }
+	    if (node instanceof ScriptNode) {
+		for (Symbol symbol : ((ScriptNode) node).getSymbols()) {
+		    addSymbol(symbol);
+		}
+	    }
+	}
+
+	private void addSymbol(Symbol symbol) {
+	    if (!symbolIndex.containsKey(symbol)) {
+		symbolIndex.put(symbol, Integer.valueOf(symbols.size()));
+		symbols.add(symbol);
+	    }
+	}
+
+	private void writeNode(AstNode node) throws IllegalAccessException {
+	    Layout layout = layout(node.getClass());
+	    Field[] fields = layout.fields;
+	    int[] kinds = layout.kinds;
+	    if (values.length < fields.length) {
+		values = new Object[fields.length];
+	    }
+
+	    long mask = 0;
+	    if (inTree(node.getFirstChild())) mask |= HAS_FIRST;
+	    if (inTree(node.getLastChild())) mask |= HAS_LAST;
+	    if (inTree(node.getNext())) mask |= HAS_NEXT;
+	    if (inTree(node.parent)) mask |= HAS_PARENT;
+	    if ((flags & IDS) != 0 && node.getID() != null) mask |= HAS_ID;
+	    if ((flags & CHANGES) != 0) {
+		if (node.changeType != null) mask |= HAS_CHANGE_TYPE;
+		if (node.changeTypeNoProp != null) mask |= HAS_CHANGE_TYPE_NO_PROP;
+		if (node.version != null) mask |= HAS_VERSION;
+		if (node.moved) mask |= IS_MOVED;
+	    }
+	    if ((flags & ANALYSIS) != 0) {
+		if (!node.criteria.isEmpty()) mask |= HAS_CRITERIA;
+		if (!node.dependencies.isEmpty()) mask |= HAS_DEPENDENCIES;
+		if (node.dummy) mask |= IS_DUMMY;
+	    }
+	    int[] props = propTypes(node);
+	    if (props != null) mask |= HAS_PROPS;
+	    for (int i = 0; i < fields.length; i++) {
+		boolean set;
+		if (kinds[i] == BOOLEAN) {
+		    set = fields[i].getBoolean(node);
+		} else if (hasValue(kinds[i])) {
+		    Object value = fields[i].get(node);
+		    values[i] = value;
+		    set = kinds[i] == NODE ? inTree(value) : value != null;
+		} else {
+		    continue;
+		}
+		if (set) {
+		    mask |= 1L << (BASE_BITS + i);
+		}
+	    }
+	    out.varlong(mask);
+
+	    // Line numbers and ids mostly grow in visiting order, so they are
+	    // written as the difference to the last one
+	    out.signed(node.getType());
+	    out.signed(node.getRecordedLineno() - lineno);
+	    lineno = node.getRecordedLineno();
+	    out.signed(node.position);
+	    out.signed(node.length);
+	    if ((mask & HAS_FIRST) != 0) nodeRef(node.getFirstChild());
+	    if ((mask & HAS_LAST) != 0) nodeRef(node.getLastChild());
+	    if ((mask & HAS_NEXT) != 0) nodeRef(node.getNext());
+	    if ((mask & HAS_PARENT) != 0) nodeRef(node.parent);
+	    if ((mask & HAS_ID) != 0) {
+		out.signed(node.ID.intValue() - id);
+		id = node.ID.intValue();
+	    }
+	    if ((flags & CHANGES) != 0) {
+		out.signed(node.fixedPosition);
+	    }
+	    if ((mask & HAS_CHANGE_TYPE) != 0) {
+		out.varint(node.changeType.ordinal());
+	    }
+	    if ((mask & HAS_CHANGE_TYPE_NO_PROP) != 0) {
+		out.varint(node.changeTypeNoProp.ordinal());
+	    }
+	    if ((mask & HAS_VERSION) != 0) {
+		out.varint(node.version.ordinal());
+	    }
+	    if ((mask & HAS_CRITERIA) != 0) {
+		writeCriteria(node.criteria);
+	    }
+	    if ((mask & HAS_DEPENDENCIES) != 0) {
+		writeDependencies(node.dependencies);
+	    }
+	    if (props != null) {
+		writeProps(node, props);
+	    }
+
+	    for (int i = 0; i < fields.length; i++) {
+		int kind = kinds[i];
+		if (kind == BOOLEAN || hasValue(kind)
+			&& (mask & (1L << (BASE_BITS + i))) == 0) {
+		    continue;
+		}
+		Field field = fields[i];
+		Object value = values[i];
+		values[i] = null;
+		switch (kind) {
+		case INT:
+		    out.signed(field.getInt(node));
+		    break;
+		case CHAR:
+		    out.varint(field.getChar(node));
+		    break;
+		case DOUBLE:
+		    out.fixed64(Double.doubleToRawLongBits(field.getDouble(node)));
+		    break;
+		case STRING:
+		    string((String) value);
+		    break;
+		case ENUM:
+		    out.varint(((Enum<?>) value).ordinal());
+		    break;
+		case INTEGER:
+		    out.signed(((Integer) value).intValue());
+		    break;
+		case NODE:
+		    nodeRef((Node) value);
+		    break;
+		case SYMBOL_LIST: {
+		    Collection<?> list = (Collection<?>) value;
+		    out.varint(list.size());
+		    for (Object symbol : list) {
+			out.varint(symbolIndex.get(symbol).intValue());
+		    }
+		    break;
+		}
+		case NODE_LIST:
+		case NODE_SET: {
+		    // Nodes outside the tree, such as scopes the parser
+		    // replaced, are left out
+		    Collection<?> items = (Collection<?>) value;
+		    int size = 0;
+		    for (Object item : items) {
+			if (inTree(item)) {
+			    size++;
+			}
+		    }
+		    out.varint(size);
+		    for (Object item : items) {
+			if (inTree(item)) {
+			    nodeRef((Node) item);
+			}
+		    }
+		    break;
+		}
+		case SYMBOL_TABLE: {
+		    @SuppressWarnings("unchecked")
+		    Map<String, Symbol> table = (Map<String, Symbol>) value;
+		    out.varint(table.size());
+		    for (Map.Entry<String, Symbol> entry : table.entrySet()) {
+			string(entry.getKey());
+			out.varint(symbolIndex.get(entry.getValue()).intValue());
+		    }
+		    break;
+		}
+		case STRING_ARRAY: {
+		    String[] array = (String[]) value;
+		    out.varint(array.length);
+		    for (String s : array) {
+			string(s);
+		    }
+		    break;
+		}
+		case BOOLEAN_ARRAY: {
+		    boolean[] array = (boolean[]) value;
+		    out.varint(array.length);
+		    for (boolean b : array) {
+			out.write(b ? 1 : 0);
+		    }
+		    break;
+		}
+		default:
+		    throw new IllegalStateException();
+		}
+	    }
+	}
+
+	private void writeCriteria(Map<String, Integer> criteria) {
+	    out.varint(criteria.size());
+	    for (Map.Entry<String, Integer> entry : criteria.entrySet()) {
+		string(entry.getKey());
+		out.signed(entry.getValue().intValue());
+	    }
+	}
+
+	private void writeDependencies(Map<String, Set<Integer>> dependencies) {
+	    out.varint(dependencies.size());
+	    for (Map.Entry<String, Set<Integer>> entry : dependencies
+		    .entrySet()) {
+		string(entry.getKey());
+		out.varint(entry.getValue().size());
+		for (Integer dependency : entry.getValue()) {
+		    out.signed(dependency.intValue());
+		}
+	    }
+	}
+
+	/**
+	 * Returns the types of the properties of a node that are written, or
+	 * null if there are none. Properties whose values are nodes outside
+	 * the tree, such as the JsDoc comment of a node of a subtree, are left
+	 * out.
+	 */
+	private int[] propTypes(AstNode node) {
+	    int[] types = node.getPropTypes();
+	    if (types == null) {
+		return null;
+	    }
+	    int count = 0;
+	    for (int type : types) {
+		Object value = node.getProp(type);
+		if (!(value instanceof Node) || inTree(value)) {
+		    types[count++] = type;
+		}
+	    }
+	    return count == 0 ? null : Arrays.copyOf(types, count);
+	}
+
+	private void writeProps(AstNode node, int[] types) {
+	    out.varint(types.length);
+	    // Written in reverse so that the list is rebuilt in the same order
+	    for (int i = types.length - 1; i >= 0; i--) {
+		int type = types[i];
+		out.varint(type);
+		Object value = node.getProp(type);
+		if (value == null) {
+		    out.write(PROP_INT);
+		    out.signed(node.getIntProp(type, 0));
+		} else if (value instanceof Boolean) {
+		    out.write(((Boolean) value).booleanValue() ? PROP_TRUE
+			      : PROP_FALSE);
+		} else if (value instanceof String) {
+		    out.write(PROP_STRING);
+		    string((String) value);
+		} else if (value instanceof Integer) {
+		    out.write(PROP_INTEGER);
+		    out.signed(((Integer) value).intValue());
+		} else if (inTree(value)) {
+		    out.write(PROP_NODE);
+		    nodeRef((Node) value);
+		} else {
+		    throw new IllegalArgumentException("Cannot encode property "
+			    + type + " of " + node.shortName());
+		}
+	    }
+	}
+
+	private boolean inTree(Object node) {
+	    return node != null && nodeIndex.containsKey(node);
+	}
+
+	/**
+	 * Writes a reference to a node relative to the node being written, as
+	 * most references are to nearby nodes. Links out of the tree, such as
+	 * the next sibling of the root, are written as {@code null}.
+	 */
+	private void nodeRef(Node node) {
+	    Integer index = node == null ? null : nodeIndex.get(node);
+	    if (index == null) {
+		out.varint(0);
+	    } else {
+		int delta = index.intValue() - current;
+		out.varint(((delta << 1) ^ (delta >> 31)) + 1);
+	    }
+	}
+
+	private void string(String s) {
+	    if (s == null) {
+		out.varint(0);
+		return;
+	    }
+	    Integer index = stringIndex.get(s);
+	    if (index == null) {
+		index = Integer.valueOf(strings.size());
+		strings.add(s);
+		stringIndex.put(s, index);
+	    }
+	    out.varint(index.intValue() + 1);
+	}
+    }
+
+    private static final class Reader {
+	private final byte[] data;
+	private int pos;
+	private int flags;
+	private String[] strings;
+	private AstNode[] nodes;
+	private Symbol[] symbols;
+	private final List<AstNode> setOwners = new ArrayList<AstNode>();
+	private final List<Field> setFields = new ArrayList<Field>();
+	private final List<AstNode[]> setItems = new ArrayList<AstNode[]>();
+
+	// The node being read, and the last line number and id read
+	private int current;
+	private int lineno;
+	private int id;
+
+	Reader(byte[] data) {
+	    this.data = data;
+	}
+
+	AstNode read() throws IOException, IllegalAccessException,
+		InstantiationException, InvocationTargetException {
+	    if (data.length < 4 || fixed() != MAGIC) {
+		throw new IOException("Not AST data");
+	    }
+	    if (varint() != FORMAT_VERSION) {
+		throw new IOException("Unsupported AST data version");
+	    }
+	    int expected = fixed();
+	    CRC32 checksum = new CRC32();
+	    checksum.update(data, pos, data.length - pos);
+	    if ((int) checksum.getValue() != expected) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    flags = varint();
+	    Layout[] classes = new Layout[count()];
+	    for (int i = 0; i < classes.length; i++) {
+		String name = chars();
+		int hash = fixed();
+		classes[i] = layout(nodeClass(name));
+		if (classes[i].hash != hash) {
+		    throw new IOException("Incompatible node class " + name);
+		}
+	    }
+	    strings = new String[count()];
+	    for (int i = 0; i < strings.length; i++) {
+		strings[i] = chars();
+	    }
+
+	    nodes = new AstNode[count()];
+	    if (nodes.length == 0) {
+		throw new IOException("Empty AST data");
+	    }
+	    Layout[] layouts = new Layout[nodes.length];
+	    for (int i = 0; i < nodes.length; i++) {
+		layouts[i] = classes[index(classes.length)];
+		nodes[i] = (AstNode) layouts[i].constructor.newInstance();
+	    }
+	    symbols = new Symbol[count()];
+	    for (int i = 0; i < symbols.length; i++) {
+		Symbol symbol = new Symbol(signed(), string());
+		symbol.setIndex(signed());
+		symbol.setNode(node());
+		symbol.setContainingTable((Scope) node());
+		symbols[i] = symbol;
+	    }
+	    for (current = 0; current < nodes.length; current++) {
+		readNode(nodes[current], layouts[current]);
+	    }
+	    if (pos != data.length) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    // Sorted sets compare by position, which needs the parents
+	    for (int i = 0; i < setOwners.size(); i++) {
+		SortedSet<Comment> set = new TreeSet<Comment>(
+			new AstNode.PositionComparator());
+		for (AstNode item : setItems.get(i)) {
+		    set.add((Comment) item);
+		}
+		setFields.get(i).set(setOwners.get(i), set);
+	    }
+	    checkTree();
+	    return nodes[0];
+	}
+
+	/**
+	 * Finds a node class without initializing it, so that names in the
+	 * data cannot run the static initializers of other classes.
+	 */
+	private Class<?> nodeClass(String name) throws IOException {
+	    Class<?> type;
+	    try {
+		type = Class.forName(name, false, AstNode.class.getClassLoader());
+	    } catch (ClassNotFoundException e) {
+		throw new IOException("Unknown node class " + name);
+	    }
+	    if (!AstNode.class.isAssignableFrom(type)
+		    || Modifier.isAbstract(type.getModifiers())) {
+		throw new IOException("Not a node class " + name);
+	    }
+	    return type;
+	}
+
+	/**
+	 * Checks that visiting the tree finds every node once, in the order
+	 * they were written, so that the links between the nodes cannot make
+	 * visiting or printing the tree loop or blow up. The nodes are visited
+	 * here one level at a time, so that even a node that is its own child
+	 * is found rather than visited without end.
+	 */
+	private void checkTree() throws IOException {
+	    int visited = 0;
+	    Children children = new Children();
+	    List<AstNode> stack = new ArrayList<AstNode>();
+	    stack.add(nodes[0]);
+	    while (!stack.isEmpty()) {
+		AstNode node = stack.remove(stack.size() - 1);
+		checkVisit(node, visited++);
+		children.parent = node;
+		node.visit(children);
+		List<AstNode> kids = children.kids;
+		for (int i = kids.size() - 1; i >= 0; i--) {
+		    stack.add(kids.get(i));
+		}
+		kids.clear();
+	    }
+	    if (nodes[0] instanceof AstRoot) {
+		SortedSet<Comment> comments = ((AstRoot) nodes[0]).getComments();
+		if (comments != null) {
+		    for (Comment comment : comments) {
+			checkVisit(comment, visited++);
+		    }
+		}
+	    }
+	    if (visited != nodes.length) {
+		throw new IOException("Corrupt AST data");
+	    }
+	}
+
+	private void checkVisit(AstNode node, int visited) throws IOException {
+	    if (visited >= nodes.length || nodes[visited] != node) {
+		throw new IOException("Corrupt AST data");
+	    }
+	}
+
+	private void readNode(AstNode node, Layout layout) throws IOException,
+		IllegalAccessException {
+	    long mask = varlong();
+	    node.setType(signed());
+	    lineno += signed();
+	    node.setLineno(lineno);
+	    node.position = signed();
+	    node.length = signed();
+	    // Children and siblings come after a node, and parents before it,
+	    // so these links cannot form cycles
+	    Node first = (mask & HAS_FIRST) != 0 ? later() : null;
+	    Node last = (mask & HAS_LAST) != 0 ? later() : null;
+	    Node next = (mask & HAS_NEXT) != 0 ? later() : null;
+	    node.setLinks(first, last, next);
+	    node.parent = (mask & HAS_PARENT) != 0 ? earlier() : null;
+	    if ((mask & HAS_ID) != 0) {
+		id += signed();
+		node.ID = Integer.valueOf(id);
+	    } else if ((flags & IDS) != 0) {
+		node.ID = null;
+	    }
+	    if ((flags & CHANGES) != 0) {
+		node.fixedPosition = signed();
+		node.changeType = (mask & HAS_CHANGE_TYPE) != 0
+		    ? CHANGE_TYPES[index(CHANGE_TYPES.length)] : null;
+		node.changeTypeNoProp = (mask & HAS_CHANGE_TYPE_NO_PROP) != 0
+		    ? CHANGE_TYPES[index(CHANGE_TYPES.length)] : null;
+		node.version = (mask & HAS_VERSION) != 0
+		    ? VERSIONS[index(VERSIONS.length)] : null;
+		node.moved = (mask & IS_MOVED) != 0;
+	    }
+	    if ((mask & HAS_CRITERIA) != 0) {
+		for (int j = count(); j > 0; j--) {
+		    String relation = string();
+		    node.addCriterion(relation, Integer.valueOf(signed()));
+		}
+	    }
+	    if ((mask & HAS_DEPENDENCIES) != 0) {
+		for (int j = count(); j > 0; j--) {
+		    String relation = string();
+		    for (int k = count(); k > 0; k--) {
+			node.addDependency(relation, Integer.valueOf(signed()));
+		    }
+		}
+	    }
+	    if ((flags & ANALYSIS) != 0) {
+		node.dummy = (mask & IS_DUMMY) != 0;
+	    }
+	    if ((mask & HAS_PROPS) != 0) {
+		readProps(node);
+	    }
+
+	    Field[] fields = layout.fields;
+	    int[] kinds = layout.kinds;
+	    for (int i = 0; i < fields.length; i++) {
+		Field field = fields[i];
+		int kind = kinds[i];
+		boolean set = (mask & (1L << (BASE_BITS + i))) != 0;
+		if (kind == BOOLEAN) {
+		    field.setBoolean(node, set);
+		    continue;
+		}
+		if (hasValue(kind) && !set) {
+		    field.set(node, null);
+		    continue;
+		}
+		switch (kind) {
+		case INT:
+		    field.setInt(node, signed());
+		    break;
+		case CHAR:
+		    field.setChar(node, (char) index(Character.MAX_VALUE + 1));
+		    break;
+		case DOUBLE:
+		    field.setDouble(node, Double.longBitsToDouble(fixed64()));
+		    break;
+		case STRING:
+		    field.set(node, string());
+		    break;
+		case ENUM:
+		    Object[] constants = layout.constants[i];
+		    field.set(node, constants[index(constants.length)]);
+		    break;
+		case INTEGER:
+		    field.set(node, Integer.valueOf(signed()));
+		    break;
+		case NODE:
+		    field.set(node, node());
+		    break;
+		case NODE_LIST:
+		case SYMBOL_LIST: {
+		    int size = count();
+		    if (size == 0) {
+			Collection<?> constructed = (Collection<?>) field
+			    .get(node);
+			if (constructed != null && constructed.isEmpty()) {
+			    // Keep the list the node was constructed with
+			    break;
+			}
+		    }
+		    List<Object> list = new ArrayList<Object>(size);
+		    for (int j = 0; j < size; j++) {
+			list.add(kind == SYMBOL_LIST ? symbol() : node());
+		    }
+		    field.set(node, list);
+		    break;
+		}
+		case NODE_SET: {
+		    AstNode[] items = new AstNode[count()];
+		    for (int j = 0; j < items.length; j++) {
+			items[j] = node();
+		    }
+		    setOwners.add(node);
+		    setFields.add(field);
+		    setItems.add(items);
+		    break;
+		}
+		case SYMBOL_TABLE: {
+		    int size = count();
+		    Map<String, Symbol> table = new LinkedHashMap<String, Symbol>(
+			    Math.max(5, size * 2));
+		    for (int j = 0; j < size; j++) {
+			String name = string();
+			table.put(name, symbol());
+		    }
+		    field.set(node, table);
+		    break;
+		}
+		case STRING_ARRAY: {
+		    String[] array = new String[count()];
+		    for (int j = 0; j < array.length; j++) {
+			array[j] = string();
+		    }
+		    field.set(node, array);
+		    break;
+		}
+		case BOOLEAN_ARRAY: {
+		    boolean[] array = new boolean[count()];
+		    for (int j = 0; j < array.length; j++) {
+			array[j] = next() != 0;
+		    }
+		    field.set(node, array);
+		    break;
+		}
+		default:
+		    throw new IllegalStateException();
+		}
+	    }
+	}
+
+	private void readProps(AstNode node) throws IOException {
+	    for (int j = count(); j > 0; j--) {
+		int type = varint();
+		switch (next()) {
+		case PROP_INT:
+		    node.putIntProp(type, signed());
+		    break;
+		case PROP_TRUE:
+		    node.putProp(type, Boolean.TRUE);
+		    break;
+		case PROP_FALSE:
+		    node.putProp(type, Boolean.FALSE);
+		    break;
+		case PROP_STRING:
+		    node.putProp(type, string());
+		    break;
+		case PROP_INTEGER:
+		    node.putProp(type, Integer.valueOf(signed()));
+		    break;
+		case PROP_NODE:
+		    node.putProp(type, node());
+		    break;
+		default:
+		    throw new IOException("Corrupt AST data");
+		}
+	    }
+	}
+
+	private AstNode node() throws IOException {
+	    int index = nodeIndex();
+	    return index < 0 ? null : nodes[index];
+	}
+
+	private AstNode later() throws IOException {
+	    int index = nodeIndex();
+	    if (index < 0) {
+		return null;
+	    } else if (index <= current) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    return nodes[index];
+	}
+
+	private AstNode earlier() throws IOException {
+	    int index = nodeIndex();
+	    if (index >= current) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    return index < 0 ? null : nodes[index];
+	}
+
+	/**
+	 * Reads a reference to a node, relative to the node being read, and
+	 * returns the index of the node, or -1 for {@code null}.
+	 */
+	private int nodeIndex() throws IOException {
+	    int n = varint() - 1;
+	    if (n < 0) {
+		return -1;
+	    }
+	    long index = (long) current + ((n >>> 1) ^ -(n & 1));
+	    if (index < 0 || index >= nodes.length) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    return (int) index;
+	}
+
+	private Symbol symbol() throws IOException {
+	    return symbols[index(symbols.length)];
+	}
+
+	private String string() throws IOException {
+	    int index = index(strings.length + 1);
+	    return index == 0 ? null : strings[index - 1];
+	}
+
+	/** Reads an index into a table of the given size. */
+	private int index(int size) throws IOException {
+	    int index = varint();
+	    if (index < 0 || index >= size) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    return index;
+	}
+
+	/**
+	 * Reads the size of a table or list. Every item takes at least a
+	 * byte, so sizes beyond the rest of the data are corrupt.
+	 */
+	private int count() throws IOException {
+	    int count = varint();
+	    if (count < 0 || count > data.length - pos) {
+		throw new IOException("Corrupt AST data");
+	    }
+	    return count;
+	}
+
+	private int next() throws IOException {
+	    if (pos >= data.length) {
+		throw new IOException("Truncated AST data");
+	    }
+	    return data[pos++];
+	}
+
+	private int varint() throws IOException {
+	    int b = next();
+	    if (b >= 0) {
+		return b;
+	    }
+	    int value = b & 0x7f;
+	    for (int shift = 7;; shift += 7) {
+		if (shift > 28) {
+		    throw new IOException("Corrupt AST data");
+		}
+		b = next();
+		value |= (b & 0x7f) << shift;
+		if (b >= 0) {
+		    return value;
+		}
+	    }
+	}
+
+	private long varlong() throws IOException {
+	    long value = 0;
+	    for (int shift = 0;; shift += 7) {
+		if (shift > 63) {
+		    throw new IOException("Corrupt AST data");
+		}
+		int b = next();
+		value |= (long) (b & 0x7f) << shift;
+		if (b >= 0) {
+		    return value;
+		}
+	    }
+	}
+
+	private int signed() throws IOException {
+	    int n = varint();
+	    return (n >>> 1) ^ -(n & 1);
+	}
+
+	private int fixed() throws IOException {
+	    int value = 0;
+	    for (int i = 0; i < 4; i++) {
+		value = (value << 8) | (next() & 0xff);
+	    }
+	    return value;
+	}
+
+	private long fixed64() throws IOException {
+	    long high = fixed() & 0xffffffffL;
+	    return (high << 32) | (fixed() & 0xffffffffL);
+	}
+
+	private String chars() throws IOException {
+	    char[] chars = new char[count()];
+	    for (int i = 0; i < chars.length; i++) {
+		chars[i] = (char) index(Character.MAX_VALUE + 1);
+	    }
+	    return new String(chars);
+	}
+    }
+
+    /**
+     * Collects the children a node passes to its visitor, without visiting
+     * them in turn. The node itself is only taken as the parent once.
+     */
+    private static final class Children implements NodeVisitor {
+	final List<AstNode> kids = new ArrayList<AstNode>();
+	AstNode parent;
+
+	public boolean visit(AstNode node) {
+	    if (node == parent) {
+		parent = null;
+		return true;
+	    }
+	    kids.add(node);
+	    return false;
+	}
+    }
+
+    /**
+     * A growable byte buffer.
+     */
+    private static final class Output {
+	byte[] buf = new byte[256];
+	int size;
+
+	void write(int b) {
+	    if (size == buf.length) {
+		buf = Arrays.copyOf(buf, size * 2);
+	    }
+	    buf[size++] = (byte) b;
+	}
+
+	void varint(int value) {
+	    while ((value & ~0x7f) != 0) {
+		write((value & 0x7f) | 0x80);
+		value >>>= 7;
+	    }
+	    write(value);
+	}
+
+	void varlong(long value) {
+	    while ((value & ~0x7fL) != 0) {
+		write((int) (value & 0x7f) | 0x80);
+		value >>>= 7;
+	    }
+	    write((int) value);
+	}
+
+	void signed(int value) {
+	    varint((value << 1) ^ (value >> 31));
+	}
+
+	void fixed(int value) {
+	    write(value >>> 24);
+	    write(value >>> 16);
+	    write(value >>> 8);
+	    write(value);
+	}
+
+	void fixed64(long value) {
+	    fixed((int) (value >>> 32));
+	    fixed((int) value);
+	}
+
+	void chars(String s) {
+	    varint(s.length());
+	    for (int i = 0; i < s.length(); i++) {
+		varint(s.charAt(i));
+	    }
+	}
+    }
+}
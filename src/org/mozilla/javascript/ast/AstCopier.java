@@ -0,0 +1,229 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.ast;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mozilla.javascript.Node;
+
+/**
+ * Copies whole subtrees of {@link AstNode}s.
+ * <p>
+ * Every node is first copied field by field with {@link AstNode#clone()},
+ * and then the references of the copies to nodes in the subtree are
+ * pointed at the copies of those nodes. The fields holding nodes and lists
+ * of nodes are found once per node class by reflection, so the copy works
+ * the same way for every kind of node, and the tree is walked with a work
+ * list, so deeply nested expressions do not overflow the stack. Unlike
+ * {@link AstNode#clone(AstNode)}, no constructors are run, and the lists of
+ * the copies are allocated at their final size.
+ * <p>
+ * The copies keep the positions, line numbers, change information and
+ * structural hashes of the originals, and get copies of their properties,
+ * criteria, dependencies and symbol tables. References to nodes outside
+ * the subtree, such as the mapped node or the enclosing scope, are kept as
+ * they are.
+ */
+public final class AstCopier {
+
+    private static final Map<Class<?>, Field[]> nodeFields =
+	    new ConcurrentHashMap<Class<?>, Field[]>();
+    private static final Map<Class<?>, Field[]> collectionFields =
+	    new ConcurrentHashMap<Class<?>, Field[]>();
+
+    private final boolean preserveIds;
+    private final Map<Object, Object> copies;
+    private final List<AstNode> originals = new ArrayList<AstNode>();
+
+    private AstCopier(boolean preserveIds) {
+	this.preserveIds = preserveIds;
+	this.copies = new IdentityHashMap<Object, Object>();
+    }
+
+    /**
+     * Returns a deep copy of the subtree rooted at {@code node}.
+     *
+     * @param node
+     *            the root of the subtree to copy
+     * @param parent
+     *            the parent of the copy, which may be {@code null}. The
+     *            position of the copy is adjusted as with
+     *            {@link AstNode#setParent(AstNode)}, but the copy is not added
+     *            to the parent.
+     * @param preserveIds
+     *            if {@code true}, the copies have the ids of the nodes they
+     *            were copied from. Otherwise they are given new ids, in the
+     *            order the nodes are visited.
+     * @return the copy of {@code node}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends AstNode> T copy(T node, AstNode parent,
+	    boolean preserveIds) {
+	AstCopier copier = new AstCopier(preserveIds);
+	copier.copyNodes(node);
+	copier.relink();
+	AstNode copy = (AstNode) copier.copies.get(node);
+
+	// Detach the copy of the root and move it to the new parent
+	copy.detachCopiedSiblings();
+	if (parent != node.parent) {
+	    if (node.parent != null) {
+		copy.position += node.parent.getPosition();
+	    }
+	    if (parent != null) {
+		copy.position -= parent.getPosition();
+		parent.invalidateStructuralHash();
+	    }
+	}
+	copy.parent = parent;
+	return (T) copy;
+    }
+
+    /**
+     * Makes the shallow copies of the nodes of the subtree, in the order
+     * they are visited.
+     */
+    private void copyNodes(AstNode root) {
+	for (AstNode node : AstNode.subtreeNodes(root)) {
+	    if (copies.containsKey(node)) {
+		continue;
+	    }
+	    AstNode copy = node.clone();
+	    copy.ID = preserveIds ? node.getID() : UniqueIDs.assignId(copy);
+	    copies.put(node, copy);
+	    originals.add(node);
+	}
+    }
+
+    /**
+     * Points the references of the copies at the other copies, and gives
+     * them their own copies of mutable state.
+     */
+    private void relink() {
+	try {
+	    for (int i = 0, n = originals.size(); i < n; i++) {
+		AstNode node = originals.get(i);
+		AstNode copy = (AstNode) copies.get(node);
+		Class<?> type = node.getClass();
+		for (Field field : fields(type, nodeFields)) {
+		    Object value = field.get(node);
+		    if (value != null) {
+			Object mapped = copies.get(value);
+			if (mapped != null) {
+			    field.set(copy, mapped);
+			}
+		    }
+		}
+		for (Field field : fields(type, collectionFields)) {
+		    Collection<?> value = (Collection<?>) field.get(node);
+		    if (value != null && (!value.isEmpty()
+			    || value instanceof ArrayList
+			    || value instanceof LinkedList)) {
+			field.set(copy, copyCollection(value));
+		    }
+		}
+		copy.unshareCopiedState();
+		if (node instanceof Scope) {
+		    copySymbolTable((Scope) node, (Scope) copy);
+		}
+		if (copy instanceof AstRoot) {
+		    ((AstRoot) copy).clearStructuralIndex();
+		}
+	    }
+	} catch (IllegalAccessException e) {
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<?> copyCollection(Collection<?> value) {
+	Collection<Object> copy;
+	if (value instanceof SortedSet<?>) {
+	    copy = new TreeSet<Object>(((SortedSet<Object>) value).comparator());
+	} else {
+	    copy = new ArrayList<Object>(value.size());
+	}
+	for (Object item : value) {
+	    copy.add(item instanceof Symbol ? copySymbol((Symbol) item)
+		    : mapped(item));
+	}
+	return copy;
+    }
+
+    private void copySymbolTable(Scope node, Scope copy) {
+	Map<String, Symbol> table = node.getSymbolTable();
+	if (table == null) {
+	    return;
+	}
+	Map<String, Symbol> tableCopy =
+	    new LinkedHashMap<String, Symbol>(Math.max(5, table.size() * 2));
+	for (Map.Entry<String, Symbol> entry : table.entrySet()) {
+	    tableCopy.put(entry.getKey(), copySymbol(entry.getValue()));
+	}
+	copy.setSymbolTable(tableCopy);
+    }
+
+    private Symbol copySymbol(Symbol symbol) {
+	Symbol copy = (Symbol) copies.get(symbol);
+	if (copy == null) {
+	    copy = new Symbol(symbol.getDeclType(), symbol.getName());
+	    copy.setIndex(symbol.getIndex());
+	    copy.setNode((Node) mapped(symbol.getNode()));
+	    copy.setContainingTable((Scope) mapped(symbol.getContainingTable()));
+	    copies.put(symbol, copy);
+	}
+	return copy;
+    }
+
+    private Object mapped(Object value) {
+	Object copy = value == null ? null : copies.get(value);
+	return copy == null ? value : copy;
+    }
+
+    /**
+     * Returns the instance fields of {@code type} and its superclasses that
+     * hold nodes, or collections, as selected by {@code cache}.
+     */
+    private static Field[] fields(Class<?> type, Map<Class<?>, Field[]> cache) {
+	Field[] fields = cache.get(type);
+	if (fields == null) {
+	    List<Field> nodes = new ArrayList<Field>();
+	    List<Field> collections = new ArrayList<Field>();
+	    for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+		for (Field field : c.getDeclaredFields()) {
+		    if (Modifier.isStatic(field.getModifiers())) {
+			continue;
+		    }
+		    Class<?> fieldType = field.getType();
+		    if (Node.class.isAssignableFrom(fieldType)) {
+			nodes.add(field);
+		    } else if (fieldType == List.class
+			    || fieldType == SortedSet.class) {
+			collections.add(field);
+		    } else {
+			continue;
+		    }
+		    field.setAccessible(true);
+		}
+	    }
+	    nodeFields.put(type, nodes.toArray(new Field[nodes.size()]));
+	    collectionFields.put(type,
+		    collections.toArray(new Field[collections.size()]));
+	    fields = cache.get(type);
+	}
+	return fields;
+    }
+}
@@ -6,11 +6,13 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.io.InvalidClassException;
 import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -22,6 +24,7 @@ import org.mozilla.javascript.Token;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 import ca.ubc.ece.salt.gumtree.ast.ClassifiedASTNode;
 
@@ -136,14 +139,19 @@ public abstract class AstNode extends Node
     protected Version version;
 
     /**
-     * The relations for which this AST node is a criterion.
+     * The relations for which this AST node is a criterion. Shared, empty
+     * and read-only until the first criterion is added, so it is changed
+     * through {@link #getCriteria()}, which makes it writable.
      */
-    protected Map<String, Integer> criteria;
+    protected Map<String, Integer> criteria = Relations.NO_CRITERIA;
 
     /**
-     * The list of relations and criteria for which this AST node has a dependency.
+     * The list of relations and criteria for which this AST node has a
+     * dependency. Shared, empty and read-only until the first dependency is
+     * added, so it is changed through {@link #getDependencies()}, which
+     * makes it writable.
      */
-    protected Map<String, Set<Integer>> dependencies;
+    protected Map<String, Set<Integer>> dependencies = Relations.NO_DEPENDENCIES;
 
     /**
      * Because the analysis is partial, the origin of some values cannot be tracked.
@@ -156,18 +164,39 @@ public abstract class AstNode extends Node
      */
     protected boolean dummy;
 
+    /**
+     * The structural hash of the subtree rooted at this node, or 0 if it has
+     * not been computed since the subtree last changed.
+     */
+    private int structuralHash;
+
     /**
      * @author qhanam
      */
     public void addCriterion(String relation, Integer id) {
-	this.criteria.put(relation, id);
+	getCriteria().put(relation, id);
     }
 
+    /**
+     * Returns the relations for which this node is a criterion. The map can
+     * be changed; for a node without criteria, this allocates its storage.
+     */
     public Map<String, Integer> getCriteria() {
+	if (this.criteria == Relations.NO_CRITERIA) {
+	    this.criteria = new Relations.CriteriaMap();
+	}
 	return this.criteria;
     }
 
+    /**
+     * Returns the ids of the criteria this node depends on, by relation.
+     * The map and its sets can be changed; for a node without dependencies,
+     * this allocates their storage.
+     */
     public Map<String, Set<Integer>> getDependencies() {
+	if (this.dependencies == Relations.NO_DEPENDENCIES) {
+	    this.dependencies = new Relations.DependencyMap();
+	}
 	return this.dependencies;
     }
 
@@ -181,18 +210,27 @@ public abstract class AstNode extends Node
 	return criteriaJson;
     }
 
+    protected void writeCriteriaJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	for (Entry<String, Integer> entry : this.criteria.entrySet()) {
+	    out.name(entry.getKey()).value(entry.getValue());
+	}
+	out.endObject();
+    }
+
     public void addDependency(String relation, Integer id) {
-	if (this.criteria.containsKey(relation) && this.criteria.get(relation) == id) {
+	if (id.equals(this.criteria.get(relation))) {
 	    // This node is the criterion and cannot depend on itself.
 	    return;
 	}
 
-	if (!this.dependencies.containsKey(relation)) {
-	    // Initialize a new dependency set for the relation.
-	    this.dependencies.put(relation, new HashSet<Integer>());
+	Map<String, Set<Integer>> dependencies = getDependencies();
+	Set<Integer> ids = dependencies.get(relation);
+	if (ids == null) {
+	    ids = new Relations.IdSet();
+	    dependencies.put(relation, ids);
 	}
-
-	this.dependencies.get(relation).add(id);
+	ids.add(id);
     }
 
     public JsonObject getDependenciesAsJson() {
@@ -209,8 +247,24 @@ public abstract class AstNode extends Node
 	return dependencyJson;
     }
 
+    protected void writeDependenciesJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	for (Entry<String, Set<Integer>> entry : this.dependencies.entrySet()) {
+	    out.name(entry.getKey()).beginArray();
+	    for (Integer address : entry.getValue()) {
+		out.value(address);
+	    }
+	    out.endArray();
+	}
+	out.endObject();
+    }
+
     @Override
     public Integer getID() {
+	if (this.ID == null) {
+	    // Nodes of a lean parse are numbered when first asked for
+	    this.ID = UniqueIDs.assignDeferredId();
+	}
 	return this.ID;
     }
 
@@ -228,7 +282,46 @@ public abstract class AstNode extends Node
      * @return This node as a JSON object in Esprima format.
      * @author qhanam
      */
-    public abstract JsonObject getJsonObject();
+    public JsonObject getJsonObject() {
+	JsonTreeBuilder tree = new JsonTreeBuilder();
+	try {
+	    writeJson(tree);
+	} catch (IOException e) {
+	    // The tree builder does no I/O
+	    throw new IllegalStateException(e);
+	}
+	return tree.get().getAsJsonObject();
+    }
+
+    /**
+     * Writes this node to {@code writer} as a JSON object in Esprima format.
+     * The text is the same as {@code getJsonObject().toString()}, but no JSON
+     * tree is built in memory.
+     */
+    public void writeJson(Writer writer) throws IOException {
+	JsonWriter out = new JsonWriter(writer);
+	// Same settings as JsonElement.toString()
+	out.setLenient(true);
+	writeJson(out);
+	out.flush();
+    }
+
+    /**
+     * Writes this node to {@code out} as a JSON object in Esprima format.
+     * Nodes write their children by calling this method on them.
+     */
+    public abstract void writeJson(JsonWriter out) throws IOException;
+
+    /**
+     * Writes the criteria, dependencies and change fields that end the JSON
+     * object of most nodes.
+     */
+    protected void writeJsonAnalysis(JsonWriter out) throws IOException {
+	writeCriteriaJson(out.name("criteria"));
+	writeDependenciesJson(out.name("dependencies"));
+	out.name("change").value(changeType.toString());
+	out.name("change-noprop").value(changeTypeNoProp.toString());
+    }
 
     /**
      * @param moved
@@ -325,6 +418,8 @@ public abstract class AstNode extends Node
     public AstNode clone() {
 	try {
 	    AstNode clone = (AstNode) super.clone();
+	    // Numbers a node of a lean parse first, so both share the ID
+	    clone.ID = this.getID();
 	    clone.changeType = this.changeType;
 	    clone.changeTypeNoProp = this.changeTypeNoProp;
 	    clone.moved = this.moved;
@@ -348,6 +443,7 @@ public abstract class AstNode extends Node
 	}
 
 	clone.setParent(parent);
+	clone.ID = this.getID();
 	clone.fixedPosition = fixedPosition;
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
@@ -410,7 +506,307 @@ public abstract class AstNode extends Node
      */
     @Override
     public String getCFGLabel() {
-	return this.toSource().replace("\n", "").replace("\"", "\\\"");
+	String source = getLabelSource();
+	StringBuilder label = new StringBuilder(source.length());
+	for (int i = 0; i < source.length(); i++) {
+	    char c = source.charAt(i);
+	    if (c == '\n')
+		continue;
+	    if (c == '"')
+		label.append('\\');
+	    label.append(c);
+	}
+	return label.toString();
+    }
+
+    /**
+     * Returns the source code of this node for CFG labels: its text in the
+     * source recorded by the {@link AstRoot} (see
+     * {@link AstRoot#setSourceText(String)}), or {@link #toSource()} if there
+     * is none.
+     */
+    protected String getLabelSource() {
+	AstRoot root = getAstRoot();
+	String source = root == null ? null : root.getSourceText();
+	if (source != null) {
+	    int start = getAbsolutePosition();
+	    int end = start + length;
+	    if (0 <= start && start <= end && end <= source.length())
+		return source.substring(start, end);
+	}
+	return this.toSource();
+    }
+
+    /**
+     * Returns what tells this node apart from other nodes of the same type
+     * with the same children when comparing structures, such as the
+     * identifier of a name or the value of a literal. Subclasses with such a
+     * value override this, and call {@link #invalidateStructuralHash()} when
+     * it changes.
+     *
+     * @return the label, or {@code null} if the type and children of the node
+     *         are all there is to its structure
+     */
+    protected Object getStructuralLabel() {
+	return null;
+    }
+
+    /**
+     * Returns a hash of the structure of the subtree rooted at this node: the
+     * types and structural labels of its nodes and the order of their
+     * children. Positions, ids and analysis data are left out, so the same
+     * code has the same hash in any version of a script.
+     * <p>
+     * The hashes of a subtree are computed together, bottom up, and cached
+     * in its nodes. Changing a node through {@link #setParent},
+     * {@link #addChild}, {@link #setType} or a setter of its label drops the
+     * cached hashes of the node and its ancestors; after changing a tree by
+     * other means, call {@link #invalidateStructuralHash()}.
+     */
+    public int getStructuralHash() {
+	if (structuralHash != 0) {
+	    return structuralHash;
+	}
+	// Iterative post-order walk of the nodes without a hash, as long
+	// operator chains make deep trees
+	List<HashFrame> stack = new ArrayList<HashFrame>();
+	stack.add(new HashFrame(this));
+	while (!stack.isEmpty()) {
+	    HashFrame frame = stack.get(stack.size() - 1);
+	    if (frame.next < frame.kids.size()) {
+		AstNode kid = frame.kids.get(frame.next++);
+		if (kid.structuralHash == 0) {
+		    stack.add(new HashFrame(kid));
+		}
+		continue;
+	    }
+	    AstNode node = frame.node;
+	    Object label = node.getStructuralLabel();
+	    int hash = 31 * node.getType() + (label == null ? 0 : label.hashCode());
+	    for (AstNode kid : frame.kids) {
+		hash = 31 * hash + kid.structuralHash;
+	    }
+	    node.structuralHash = hash == 0 ? 1 : hash;
+	    stack.remove(stack.size() - 1);
+	}
+	return structuralHash;
+    }
+
+    /**
+     * Returns whether the subtree rooted at this node has the same structure
+     * as the one rooted at {@code other}, in the sense of
+     * {@link #getStructuralHash()}. Subtrees with different hashes are told
+     * apart without walking them.
+     */
+    public boolean isStructurallyEqual(AstNode other) {
+	if (getStructuralHash() != other.getStructuralHash()) {
+	    return false;
+	}
+	List<AstNode> stack = new ArrayList<AstNode>();
+	stack.add(this);
+	stack.add(other);
+	while (!stack.isEmpty()) {
+	    AstNode b = stack.remove(stack.size() - 1);
+	    AstNode a = stack.remove(stack.size() - 1);
+	    if (a == b) {
+		continue;
+	    }
+	    if (a.getClass() != b.getClass() || a.getType() != b.getType()
+		    || a.getStructuralHash() != b.getStructuralHash()) {
+		return false;
+	    }
+	    Object label = a.getStructuralLabel();
+	    if (label == null ? b.getStructuralLabel() != null : !label
+		    .equals(b.getStructuralLabel())) {
+		return false;
+	    }
+	    List<AstNode> aKids = childNodes(a);
+	    List<AstNode> bKids = childNodes(b);
+	    if (aKids.size() != bKids.size()) {
+		return false;
+	    }
+	    for (int i = aKids.size() - 1; i >= 0; i--) {
+		stack.add(aKids.get(i));
+		stack.add(bKids.get(i));
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Drops the cached structural hashes of this node and its ancestors, and
+     * the structural index of their {@link AstRoot}.
+     */
+    public void invalidateStructuralHash() {
+	// A node only has a hash if all its descendants have one, so the
+	// ancestors of a node without a hash have none either
+	for (AstNode node = this; node != null && node.structuralHash != 0; node = node.parent) {
+	    node.structuralHash = 0;
+	    if (node instanceof AstRoot) {
+		((AstRoot) node).clearStructuralIndex();
+	    }
+	}
+    }
+
+    @Override
+    public Node setType(int type) {
+	invalidateStructuralHash();
+	return super.setType(type);
+    }
+
+    /**
+     * Gives a node copied by {@link AstCopier} its own properties, criteria
+     * and dependencies, instead of sharing those of the original.
+     */
+    void unshareCopiedState() {
+	copyPropertyList();
+	criteria = Relations.copyCriteria(criteria);
+	dependencies = Relations.copyDependencies(dependencies);
+    }
+
+    /**
+     * Returns the line number recorded for this node, without searching the
+     * parent chain as {@link #getLineno()} does.
+     */
+    int getRecordedLineno() {
+	return lineno;
+    }
+
+    /**
+     * Sets the child and sibling links inherited from {@link Node}, for
+     * {@link AstBinaryFormat}.
+     */
+    void setLinks(Node first, Node last, Node next) {
+	this.first = first;
+	this.last = last;
+	this.next = next;
+    }
+
+    /**
+     * Unlinks the copy of the root of a subtree copied by {@link AstCopier}
+     * from the siblings of the original.
+     */
+    void detachCopiedSiblings() {
+	next = null;
+    }
+
+    /**
+     * Returns the nodes of the subtree rooted at {@code root}, in the order
+     * they are visited, followed by the comments of an {@link AstRoot}.
+     * Unlike {@link #visit}, this does not recurse.
+     */
+    static List<AstNode> subtreeNodes(AstNode root) {
+	final List<AstNode> nodes = new ArrayList<AstNode>();
+	NodeVisitor collector = new NodeVisitor() {
+	    @Override
+	    public boolean visit(AstNode node) {
+		nodes.add(node);
+		return true;
+	    }
+	};
+	if (root instanceof AstRoot) {
+	    ((AstRoot) root).visitAll(collector);
+	} else {
+	    root.visitIteratively(collector);
+	}
+	return nodes;
+    }
+
+    /**
+     * Visits this node and its descendants in the same order as
+     * {@link #visit}, but with a stack of pending nodes instead of
+     * recursion, so that arbitrarily deep trees, such as long chains of
+     * binary expressions, can be visited. As with {@link #visit}, the
+     * children of a node are skipped if the visitor returns {@code false}
+     * for it. The children of a node are collected when the visitor returns,
+     * so changes the visitor makes to the children of the node it is given
+     * are seen, but changes to other parts of the tree may not be.
+     * <p>
+     * If the visitor is a {@link PostOrderVisitor}, its
+     * {@link PostOrderVisitor#postVisit} method is called for every visited
+     * node once its subtree is done.
+     *
+     * @param visitor
+     *            the object to call with this node and its descendants
+     */
+    public void visitIteratively(NodeVisitor visitor) {
+	PostOrderVisitor post = visitor instanceof PostOrderVisitor
+	    ? (PostOrderVisitor) visitor : null;
+	ChildCollector kids = new ChildCollector();
+	List<AstNode> stack = new ArrayList<AstNode>();
+	// Nodes whose visit is done, and only wait for postVisit, are pushed
+	// once more and marked in this parallel stack
+	List<Boolean> done = post == null ? null : new ArrayList<Boolean>();
+	stack.add(this);
+	if (done != null) {
+	    done.add(Boolean.FALSE);
+	}
+	while (!stack.isEmpty()) {
+	    int top = stack.size() - 1;
+	    AstNode node = stack.remove(top);
+	    if (done != null && done.remove(top).booleanValue()) {
+		post.postVisit(node);
+		continue;
+	    }
+	    boolean visitKids = visitor.visit(node);
+	    if (done != null) {
+		stack.add(node);
+		done.add(Boolean.TRUE);
+	    }
+	    if (!visitKids) {
+		continue;
+	    }
+	    kids.parent = node;
+	    node.visit(kids);
+	    // Push the children so that the first one is taken next
+	    List<AstNode> found = kids.kids;
+	    for (int i = found.size() - 1; i >= 0; i--) {
+		stack.add(found.get(i));
+		if (done != null) {
+		    done.add(Boolean.FALSE);
+		}
+	    }
+	    found.clear();
+	}
+    }
+
+    /**
+     * Collects the children a node passes to its visitor, without visiting
+     * them in turn.
+     */
+    private static final class ChildCollector implements NodeVisitor {
+	final List<AstNode> kids = new ArrayList<AstNode>();
+	AstNode parent;
+
+	@Override
+	public boolean visit(AstNode node) {
+	    if (node == parent) {
+		return true;
+	    }
+	    kids.add(node);
+	    return false;
+	}
+    }
+
+    /**
+     * Returns the children of a node, in the order it visits them.
+     */
+    static List<AstNode> childNodes(AstNode node) {
+	ChildCollector kids = new ChildCollector();
+	kids.parent = node;
+	node.visit(kids);
+	return kids.kids;
+    }
+
+    private static final class HashFrame {
+	final AstNode node;
+	final List<AstNode> kids;
+	int next;
+
+	HashFrame(AstNode node) {
+	    this.node = node;
+	    this.kids = childNodes(node);
+	}
     }
 
     private static Map<Integer, String> operatorNames = new HashMap<Integer, String>();
@@ -482,9 +878,7 @@ public abstract class AstNode extends Node
 	this.changeType = ChangeType.UNKNOWN;
 	this.changeTypeNoProp = ChangeType.UNKNOWN;
 	this.moved = false;
-	this.criteria = new HashMap<String, Integer>();
-	this.dependencies = new HashMap<String, Set<Integer>>();
-	this.ID = UniqueIDs.getNextId();
+	this.ID = UniqueIDs.assignId(this);
     }
 
     /**
@@ -496,12 +890,6 @@ public abstract class AstNode extends Node
     public AstNode(int pos) {
 	this();
 	this.position = pos;
-	this.changeType = ChangeType.UNKNOWN;
-	this.changeTypeNoProp = ChangeType.UNKNOWN;
-	this.moved = false;
-	this.criteria = new HashMap<String, Integer>();
-	this.dependencies = new HashMap<String, Set<Integer>>();
-	this.ID = UniqueIDs.getNextId();
     }
 
     /**
@@ -516,12 +904,6 @@ public abstract class AstNode extends Node
 	this();
 	this.position = pos;
 	this.length = len;
-	this.changeType = ChangeType.UNKNOWN;
-	this.changeTypeNoProp = ChangeType.UNKNOWN;
-	this.moved = false;
-	this.criteria = new HashMap<String, Integer>();
-	this.dependencies = new HashMap<String, Set<Integer>>();
-	this.ID = UniqueIDs.getNextId();
     }
 
     /**
@@ -603,6 +985,10 @@ public abstract class AstNode extends Node
      */
     public void setParent(AstNode parent) {
 	if (parent == this.parent) {
+	    // The node may still replace another child of the parent
+	    if (parent != null) {
+		parent.invalidateStructuralHash();
+	    }
 	    return;
 	}
 
@@ -611,9 +997,13 @@ public abstract class AstNode extends Node
 	    setRelative(-this.parent.getPosition());
 	}
 
+	if (this.parent != null) {
+	    this.parent.invalidateStructuralHash();
+	}
 	this.parent = parent;
 	if (parent != null) {
 	    setRelative(parent.getPosition());
+	    parent.invalidateStructuralHash();
 	}
     }
 
@@ -633,6 +1023,7 @@ public abstract class AstNode extends Node
 	setLength(end - this.getPosition());
 	addChildToBack(kid);
 	kid.setParent(this);
+	invalidateStructuralHash();
     }
 
     /**
@@ -932,7 +1323,11 @@ public abstract class AstNode extends Node
      * @return the node depth in the tree
      */
     public int depth() {
-	return parent == null ? 0 : 1 + parent.depth();
+	int depth = 0;
+	for (AstNode node = parent; node != null; node = node.parent) {
+	    depth++;
+	}
+	return depth;
     }
 
     protected static class DebugPrintVisitor implements NodeVisitor {
@@ -996,7 +1391,7 @@ public abstract class AstNode extends Node
      */
     public String debugPrint() {
 	DebugPrintVisitor dpv = new DebugPrintVisitor(new StringBuilder(1000));
-	visit(dpv);
+	visitIteratively(dpv);
 	return dpv.toString();
     }
 
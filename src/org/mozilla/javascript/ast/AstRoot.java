@@ -6,14 +6,19 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Node for the root of a parse tree. It contains the statements and functions
@@ -30,6 +35,8 @@ public class AstRoot extends ScriptNode {
 
     private SortedSet<Comment> comments;
     private boolean inStrictMode;
+    private String sourceText;
+    private Map<Integer, List<AstNode>> structuralIndex;
 
     {
 	type = Token.SCRIPT;
@@ -43,24 +50,21 @@ public class AstRoot extends ScriptNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("Program");
+	out.name("body").beginArray();
 	for (Node element : this) {
-	    array.add(((AstNode) element).getJsonObject());
+	    ((AstNode) element).writeJson(out);
 	}
-	object.addProperty("type", "Program");
-	object.add("body", array);
-	object.addProperty("sourceType", "script");
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.endArray();
+	out.name("sourceType").value("script");
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -79,7 +83,7 @@ public class AstRoot extends ScriptNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	clone.removeChildren();
@@ -102,6 +106,33 @@ public class AstRoot extends ScriptNode {
 	return "script entry";
     }
 
+    /**
+     * Returns the source text the tree was parsed from, or {@code null} if it
+     * was not recorded.
+     */
+    public String getSourceText() {
+	return sourceText;
+    }
+
+    /**
+     * Sets the source text the tree was parsed from. While it is set, the
+     * CFG label of a node in the tree is its original text, found from its
+     * absolute position and length, rather than the output of
+     * {@link #toSource()}. This keeps the formatting of the original source
+     * in the labels, but makes labelling every node of a tree linear in the
+     * size of the labels instead of re-rendering each subtree for each of
+     * its ancestors. The text is only used while the positions of the nodes
+     * still match it, so clear it after editing the tree.
+     *
+     * @param sourceText
+     *            the source, or {@code null} to generate labels with
+     *            toSource()
+     * @see org.mozilla.javascript.CompilerEnvirons#setRecordingSourceText
+     */
+    public void setSourceText(String sourceText) {
+	this.sourceText = sourceText;
+    }
+
     /**
      * Returns comment set
      * 
@@ -146,6 +177,68 @@ public class AstRoot extends ScriptNode {
 	comment.setParent(this);
     }
 
+    /**
+     * Returns the nodes of this tree, comments aside, by
+     * {@link AstNode#getStructuralHash() structural hash}. Nodes in the same
+     * list usually have identical subtrees, which
+     * {@link AstNode#isStructurallyEqual} confirms. The index is built on the
+     * first call and dropped when a change to the tree drops the structural
+     * hash of the root.
+     * 
+     * @return the index, which must not be modified
+     */
+    public Map<Integer, List<AstNode>> getStructuralIndex() {
+	if (structuralIndex == null) {
+	    // Hash the whole tree first, so that any later change to it
+	    // reaches the root and drops the index
+	    getStructuralHash();
+	    Map<Integer, List<AstNode>> index = new HashMap<Integer, List<AstNode>>();
+	    List<AstNode> stack = new ArrayList<AstNode>();
+	    stack.add(this);
+	    while (!stack.isEmpty()) {
+		AstNode node = stack.remove(stack.size() - 1);
+		Integer hash = Integer.valueOf(node.getStructuralHash());
+		List<AstNode> nodes = index.get(hash);
+		if (nodes == null) {
+		    nodes = new ArrayList<AstNode>(1);
+		    index.put(hash, nodes);
+		}
+		nodes.add(node);
+		List<AstNode> kids = childNodes(node);
+		for (int i = kids.size() - 1; i >= 0; i--) {
+		    stack.add(kids.get(i));
+		}
+	    }
+	    structuralIndex = Collections.unmodifiableMap(index);
+	}
+	return structuralIndex;
+    }
+
+    /**
+     * Returns the nodes of this tree whose subtrees have the same structure
+     * as the subtree of {@code node}, which may be in another tree.
+     * 
+     * @return the nodes, in the order of a visit of this tree
+     */
+    public List<AstNode> findStructurallyEqual(AstNode node) {
+	List<AstNode> candidates = getStructuralIndex().get(
+		Integer.valueOf(node.getStructuralHash()));
+	if (candidates == null) {
+	    return Collections.emptyList();
+	}
+	List<AstNode> equal = new ArrayList<AstNode>(candidates.size());
+	for (AstNode candidate : candidates) {
+	    if (candidate.isStructurallyEqual(node)) {
+		equal.add(candidate);
+	    }
+	}
+	return equal;
+    }
+
+    void clearStructuralIndex() {
+	structuralIndex = null;
+    }
+
     public void setInStrictMode(boolean inStrictMode) {
 	this.inStrictMode = inStrictMode;
     }
@@ -173,14 +266,16 @@ public class AstRoot extends ScriptNode {
 
     /**
      * Visits the AST nodes, then the comment nodes. This method is equivalent to
-     * calling {@link #visit}, then {@link #visitComments}. The return value is
-     * ignored while visiting comment nodes.
+     * calling {@link #visit}, then {@link #visitComments}, but visits the AST
+     * nodes with {@link #visitIteratively}, so it works on trees of any depth.
+     * The return value is ignored while visiting comment nodes, and a
+     * {@link PostOrderVisitor} is not told when a comment is done.
      * 
      * @param visitor
      *            the callback object.
      */
     public void visitAll(NodeVisitor visitor) {
-	visit(visitor);
+	visitIteratively(visitor);
 	visitComments(visitor);
     }
 
@@ -211,7 +306,7 @@ public class AstRoot extends ScriptNode {
      *             if a parent link is missing
      */
     public void checkParentLinks() {
-	this.visit(new NodeVisitor() {
+	visitIteratively(new NodeVisitor() {
 	    @Override
 	    public boolean visit(AstNode node) {
 		int type = node.getType();
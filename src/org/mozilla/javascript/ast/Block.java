@@ -6,11 +6,12 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A block statement delimited by curly braces. The node position is the
@@ -40,22 +41,19 @@ public class Block extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("BlockStatement");
+	out.name("body").beginArray();
 	for (Node element : this)
-	    array.add(((AstNode) element).getJsonObject());
-	object.addProperty("type", "BlockStatement");
-	object.add("body", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    ((AstNode) element).writeJson(out);
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -74,7 +72,7 @@ public class Block extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	clone.removeChildren();
@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A break statement. Node type is {@link Token#BREAK}.
@@ -43,23 +44,20 @@ public class BreakStatement extends Jump {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
 	;
-	object.addProperty("type", "BreakStatement");
+	out.name("type").value("BreakStatement");
 	if (this.getBreakLabel() != null)
-	    object.add("label", this.getBreakLabel().getJsonObject());
+	    this.getBreakLabel().writeJson(out.name("label"));
 	else
-	    object.add("label", JsonNull.INSTANCE);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    out.name("label").nullValue();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
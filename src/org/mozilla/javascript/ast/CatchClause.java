@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Node representing a catch-clause of a try-statement. Node type is
@@ -44,20 +46,17 @@ public class CatchClause extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "CatchClause");
-	object.add("param", this.getVarName().getJsonObject());
-	object.add("body", this.getBody().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("CatchClause");
+	this.getVarName().writeJson(out.name("param"));
+	this.getBody().writeJson(out.name("body"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -85,7 +84,7 @@ public class CatchClause extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	Block body = null;
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Node representing comments.
@@ -49,6 +51,13 @@ public class Comment extends AstNode {
         type = Token.COMMENT;
     }
 
+    /**
+     * Constructs an empty comment, whose fields are set by
+     * {@link AstBinaryFormat} when a tree is read.
+     */
+    Comment() {
+    }
+
     /**
      * Constructs a new Comment
      * @param pos the start position
@@ -63,12 +72,12 @@ public class Comment extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
     		String type = "Block";
     		switch(this.commentType) {
     		case LINE:
@@ -80,11 +89,11 @@ public class Comment extends AstNode {
 		default:
     			type = "Block";
     		}
-		object.addProperty("type", type);
-		object.addProperty("value", this.getValue());
-    		object.addProperty("change", changeType.toString());
-    		object.addProperty("change-noprop", changeTypeNoProp.toString());
-		return object;
+		out.name("type").value(type);
+		out.name("value").value(this.getValue());
+    		out.name("change").value(changeType.toString());
+    		out.name("change-noprop").value(changeTypeNoProp.toString());
+		out.endObject();
     }
 
 
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node representing the ternary operator. Node type is {@link Token#HOOK}.
@@ -48,21 +50,18 @@ public class ConditionalExpression extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "ConditionalExpression");
-	object.add("test", this.getTestExpression().getJsonObject());
-	object.add("consequent", this.getTrueExpression().getJsonObject());
-	object.add("alternate", this.getFalseExpression().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ConditionalExpression");
+	this.getTestExpression().writeJson(out.name("test"));
+	this.getTrueExpression().writeJson(out.name("consequent"));
+	this.getFalseExpression().writeJson(out.name("alternate"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -81,7 +80,7 @@ public class ConditionalExpression extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode test = null;
@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A continue statement. Node type is {@link Token#CONTINUE}.
@@ -57,22 +58,19 @@ public class ContinueStatement extends Jump {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "ContinueStatement");
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ContinueStatement");
 	if (this.getLabel() != null)
-	    object.add("label", this.getLabel().getJsonObject());
+	    this.getLabel().writeJson(out.name("label"));
 	else
-	    object.add("label", JsonNull.INSTANCE);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    out.name("label").nullValue();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
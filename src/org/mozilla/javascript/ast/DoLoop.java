@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Do statement. Node type is {@link Token#DO}.
@@ -40,20 +42,17 @@ public class DoLoop extends Loop {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "DoWhileStatement");
-	object.add("test", this.getCondition().getJsonObject());
-	object.add("body", this.getBody().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("DoWhileStatement");
+	this.getCondition().writeJson(out.name("test"));
+	this.getBody().writeJson(out.name("body"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -72,7 +71,7 @@ public class DoLoop extends Loop {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode condition = null;
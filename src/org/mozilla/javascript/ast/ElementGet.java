@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for an indexed property reference, such as {@code foo['bar']} or
@@ -66,7 +68,7 @@ public class ElementGet extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode element = null;
@@ -92,21 +94,18 @@ public class ElementGet extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "MemberExpression");
-	object.addProperty("computed", true);
-	object.add("object", this.getTarget().getJsonObject());
-	object.add("property", this.getElement().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("MemberExpression");
+	out.name("computed").value(true);
+	this.getTarget().writeJson(out.name("object"));
+	this.getElement().writeJson(out.name("property"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
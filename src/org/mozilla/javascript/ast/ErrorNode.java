@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node representing a parse error or a warning.  Node type is
@@ -34,16 +36,16 @@ public class ErrorNode extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "ParseError");
-    		object.addProperty("change", changeType.toString());
-    		object.addProperty("change-noprop", changeTypeNoProp.toString());
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("ParseError");
+    		out.name("change").value(changeType.toString());
+    		out.name("change-noprop").value(changeTypeNoProp.toString());
+		out.endObject();
 }
 
     /**
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * For-in or for-each-in statement. Node type is {@link Token#FOR}.
@@ -46,22 +48,19 @@ public class ForInLoop extends Loop {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "ForInStatement");
-	object.add("left", this.getIterator().getJsonObject());
-	object.add("right", this.getIteratedObject().getJsonObject());
-	object.add("body", this.getBody().getJsonObject());
-	object.addProperty("each", false);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ForInStatement");
+	this.getIterator().writeJson(out.name("left"));
+	this.getIteratedObject().writeJson(out.name("right"));
+	this.getBody().writeJson(out.name("body"));
+	out.name("each").value(false);
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -80,7 +79,7 @@ public class ForInLoop extends Loop {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode iterated = null;
@@ -153,6 +152,12 @@ public class ForInLoop extends Loop {
      */
     public void setIsForEach(boolean isForEach) {
 	this.isForEach = isForEach;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return isForEach ? Boolean.TRUE : null;
     }
 
     /**
@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * C-style for-loop statement. Node type is {@link Token#FOR}.
@@ -45,31 +46,28 @@ public class ForLoop extends Loop {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "ForStatement");
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ForStatement");
 	if (this.getInitializer() instanceof EmptyExpression)
-	    object.add("init", JsonNull.INSTANCE);
+	    out.name("init").nullValue();
 	else
-	    object.add("init", this.getInitializer().getJsonObject());
+	    this.getInitializer().writeJson(out.name("init"));
 	if (this.getCondition() instanceof EmptyExpression)
-	    object.add("test", JsonNull.INSTANCE);
+	    out.name("test").nullValue();
 	else
-	    object.add("test", this.getCondition().getJsonObject());
+	    this.getCondition().writeJson(out.name("test"));
 	if (this.getIncrement() instanceof EmptyExpression)
-	    object.add("update", JsonNull.INSTANCE);
+	    out.name("update").nullValue();
 	else
-	    object.add("update", this.getIncrement().getJsonObject());
-	object.add("body", this.getBody().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    this.getIncrement().writeJson(out.name("update"));
+	this.getBody().writeJson(out.name("body"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -88,7 +86,7 @@ public class ForLoop extends Loop {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode initializer = null;
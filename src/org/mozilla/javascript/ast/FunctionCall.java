@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -13,8 +14,7 @@ import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for a function call. Node type is {@link Token#CALL}.
@@ -46,23 +46,20 @@ public class FunctionCall extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("CallExpression");
+	this.getTarget().writeJson(out.name("callee"));
+	out.name("arguments").beginArray();
 	for (AstNode argument : this.getArguments())
-	    array.add(argument.getJsonObject());
-	object.addProperty("type", "CallExpression");
-	object.add("callee", this.getTarget().getJsonObject());
-	object.add("arguments", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    argument.writeJson(out);
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -85,7 +82,7 @@ public class FunctionCall extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 	clone.mappedNode = this.mappedNode;
 
 	/* Clone the children. */
@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -16,10 +17,7 @@ import java.util.Map;
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A JavaScript function declaration or expression.
@@ -128,68 +126,51 @@ public class FunctionNode extends ScriptNode {
     /**
      * @return A unique ID for an anonymous function.
      */
-    private synchronized int getAnonymousID() {
+    private static synchronized int getAnonymousID() {
 	int id = FunctionNode.anonymousIDGen;
 	FunctionNode.anonymousIDGen++;
 	return id;
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
-
-	for (AstNode param : this.getParams())
-	    array.add(param.getJsonObject());
-
-	JsonElement name;
-	if (this.getName().isEmpty()) {
-	    name = JsonNull.INSTANCE;
+    public void writeJson(JsonWriter out) throws IOException {
+	boolean named = !this.getName().isEmpty();
+	out.beginObject();
+	if (named) {
+	    // Named functions have always listed these fields first
+	    writeCriteriaJson(out.name("criteria"));
+	    writeDependenciesJson(out.name("dependencies"));
+	}
+	out.name("type").value("FunctionDeclaration");
+	if (named) {
+	    out.name("id").beginObject();
+	    out.name("type").value("Identifier");
+	    out.name("name").value(this.getName());
+	    out.name("change").value(changeType.toString());
+	    out.name("change-noprop").value(changeTypeNoProp.toString());
+	    out.endObject();
 	} else {
-	    JsonObject tmp = new JsonObject();
-	    tmp.addProperty("type", "Identifier");
-	    tmp.addProperty("name", this.getName());
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    tmp.addProperty("change", changeType.toString());
-	    tmp.addProperty("change-noprop", changeTypeNoProp.toString());
-	    name = tmp;
+	    out.name("id").nullValue();
 	}
-
-	switch (this.getFunctionType()) {
-	case FUNCTION_STATEMENT:
-	    object.addProperty("type", "FunctionDeclaration");
-	    object.add("id", name);
-	    object.add("params", array);
-	    object.add("body", this.getBody().getJsonObject());
-	    object.addProperty("generator", this.isGenerator);
-	    object.addProperty("expression", this.isExpressionClosure);
-	    object.addProperty("async", false);
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
-	case FUNCTION_EXPRESSION:
-	case FUNCTION_EXPRESSION_STATEMENT:
-	default:
-	    object.addProperty("type", "FunctionDeclaration");
-	    object.add("id", name);
-	    object.add("params", array);
-	    object.add("body", this.getBody().getJsonObject());
-	    object.addProperty("generator", this.isGenerator);
-	    object.addProperty("expression", this.isExpressionClosure);
-	    object.addProperty("async", false);
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	out.name("params").beginArray();
+	for (AstNode param : this.getParams())
+	    param.writeJson(out);
+	out.endArray();
+	this.getBody().writeJson(out.name("body"));
+	out.name("generator").value(this.isGenerator);
+	out.name("expression").value(this.isExpressionClosure);
+	out.name("async").value(false);
+	if (named) {
+	    out.name("change").value(changeType.toString());
+	    out.name("change-noprop").value(changeTypeNoProp.toString());
+	} else {
+	    writeJsonAnalysis(out);
 	}
+	out.endObject();
     }
 
     /**
@@ -209,7 +190,7 @@ public class FunctionNode extends ScriptNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	Name name = null;
@@ -240,7 +221,7 @@ public class FunctionNode extends ScriptNode {
 	for (AstNode param : this.getParams()) {
 	    if (label.charAt(label.length() - 1) != '(')
 		label += ",";
-	    label += param.toSource();
+	    label += param.getLabelSource();
 	}
 
 	label += ")";
@@ -486,6 +467,12 @@ public class FunctionNode extends ScriptNode {
 
     public void setFunctionType(int type) {
 	functionType = type;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return Integer.valueOf(functionType);
     }
 
     public boolean isGetterOrSetter() {
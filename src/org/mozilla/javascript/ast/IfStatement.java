@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * If-else statement. Node type is {@link Token#IF}.
@@ -46,24 +47,21 @@ public class IfStatement extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "IfStatement");
-	object.add("test", this.getCondition().getJsonObject());
-	object.add("consequent", this.getThenPart().getJsonObject());
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("IfStatement");
+	this.getCondition().writeJson(out.name("test"));
+	this.getThenPart().writeJson(out.name("consequent"));
 	if (this.getElsePart() != null)
-	    object.add("alternate", this.getElsePart().getJsonObject());
+	    this.getElsePart().writeJson(out.name("alternate"));
 	else
-	    object.add("alternate", JsonNull.INSTANCE);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    out.name("alternate").nullValue();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -82,7 +80,7 @@ public class IfStatement extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode condition = null;
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node representing an infix (binary operator) expression. The operator is
@@ -58,12 +60,12 @@ public class InfixExpression extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
 	String type = null;
 	String operator = null;
 
@@ -225,15 +227,12 @@ public class InfixExpression extends AstNode {
 	    break;
 	}
 
-	object.addProperty("type", type);
-	object.addProperty("operator", operator);
-	object.add("left", this.getLeft().getJsonObject());
-	object.add("right", this.getRight().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.name("type").value(type);
+	out.name("operator").value(operator);
+	this.getLeft().writeJson(out.name("left"));
+	this.getRight().writeJson(out.name("right"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -252,7 +251,7 @@ public class InfixExpression extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode left = this.getLeft().clone(clone);
@@ -0,0 +1,176 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.ast;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A {@link JsonWriter} that builds a tree of {@link JsonElement}s from the
+ * values written to it, so that {@link AstNode#getJsonObject()} runs the same
+ * code as {@link AstNode#writeJson(Writer)}. Like the JSON text, the tree
+ * keeps null values, and NaN and infinite numbers.
+ * <p>
+ * Only the methods the nodes call are overridden; the others write to a
+ * writer that throws, so a missing override fails instead of dropping data.
+ */
+final class JsonTreeBuilder extends JsonWriter {
+
+    private static final Writer UNWRITABLE = new Writer() {
+	@Override
+	public void write(char[] buffer, int offset, int count) {
+	    throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+    };
+
+    // Open arrays and objects, innermost last
+    private final List<JsonElement> stack = new ArrayList<JsonElement>();
+    private String pendingName;
+    private JsonElement result;
+
+    JsonTreeBuilder() {
+	super(UNWRITABLE);
+    }
+
+    /**
+     * Returns the element written, once it is complete.
+     */
+    JsonElement get() {
+	if (result == null || !stack.isEmpty()) {
+	    throw new IllegalStateException("Incomplete JSON");
+	}
+	return result;
+    }
+
+    private JsonTreeBuilder put(JsonElement value) {
+	if (stack.isEmpty()) {
+	    if (result != null || pendingName != null) {
+		throw new IllegalStateException("JSON already complete");
+	    }
+	    result = value;
+	    return this;
+	}
+	JsonElement top = stack.get(stack.size() - 1);
+	if (top instanceof JsonArray) {
+	    ((JsonArray) top).add(value);
+	} else if (pendingName != null) {
+	    ((JsonObject) top).add(pendingName, value);
+	    pendingName = null;
+	} else {
+	    throw new IllegalStateException("Value without a name");
+	}
+	return this;
+    }
+
+    private JsonTreeBuilder open(JsonElement container) {
+	put(container);
+	stack.add(container);
+	return this;
+    }
+
+    private JsonTreeBuilder close(Class<? extends JsonElement> type) {
+	if (stack.isEmpty() || pendingName != null
+		|| !type.isInstance(stack.get(stack.size() - 1))) {
+	    throw new IllegalStateException("Nesting problem");
+	}
+	stack.remove(stack.size() - 1);
+	return this;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+	return open(new JsonArray());
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+	return close(JsonArray.class);
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+	return open(new JsonObject());
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+	return close(JsonObject.class);
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+	if (name == null) {
+	    throw new NullPointerException("name == null");
+	}
+	if (stack.isEmpty() || pendingName != null
+		|| !(stack.get(stack.size() - 1) instanceof JsonObject)) {
+	    throw new IllegalStateException("Name outside of an object");
+	}
+	pendingName = name;
+	return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+	return put(value == null ? JsonNull.INSTANCE : new JsonPrimitive(value));
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+	return put(JsonNull.INSTANCE);
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+	return put(new JsonPrimitive(value));
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+	return put(value == null ? JsonNull.INSTANCE : new JsonPrimitive(value));
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+	return put(new JsonPrimitive(value));
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+	return put(new JsonPrimitive(value));
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+	return put(value == null ? JsonNull.INSTANCE : new JsonPrimitive(value));
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -6,10 +6,12 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Used for code generation.  During codegen, the AST is transformed
@@ -54,14 +56,14 @@ public class Jump extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "Jump");
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("Jump");
+		out.endObject();
     }
 
     public void setJumpStatement(Jump jumpStatement)
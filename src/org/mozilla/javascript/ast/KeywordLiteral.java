@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for keyword literals: currently, {@code this}, {@code null},
@@ -41,55 +43,44 @@ public class KeywordLiteral extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
 	switch (this.getType()) {
 	case Token.THIS:
-	    object.addProperty("type", "ThisExpression");
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("ThisExpression");
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	case Token.TRUE:
-	    object.addProperty("type", "Literal");
-	    object.addProperty("value", true);
-	    object.addProperty("raw", "true");
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("Literal");
+	    out.name("value").value(true);
+	    out.name("raw").value("true");
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	case Token.FALSE:
-	    object.addProperty("type", "Literal");
-	    object.addProperty("value", false);
-	    object.addProperty("raw", "false");
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("Literal");
+	    out.name("value").value(false);
+	    out.name("raw").value("false");
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	case Token.DEBUGGER:
-	    object.addProperty("type", "DebuggerStatement");
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("DebuggerStatement");
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	case Token.NULL:
 	default:
-	    object.addProperty("type", "Literal");
-	    object.addProperty("value", (String) null);
-	    object.addProperty("raw", "null");
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("Literal");
+	    out.name("value").value((String) null);
+	    out.name("raw").value("null");
+	    writeJsonAnalysis(out);
+	    out.endObject();
 	}
 
     }
@@ -106,6 +97,7 @@ public class KeywordLiteral extends AstNode {
 		|| nodeType == Token.FALSE || nodeType == Token.DEBUGGER))
 	    throw new IllegalArgumentException("Invalid node type: " + nodeType);
 	type = nodeType;
+	invalidateStructuralHash();
 	return this;
     }
 
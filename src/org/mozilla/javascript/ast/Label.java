@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node representing a label. It is a distinct node type so it can record
@@ -43,19 +45,16 @@ public class Label extends Jump {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "Identifier");
-	object.addProperty("name", this.getName());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("Identifier");
+	out.name("name").value(this.getName());
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -76,6 +75,12 @@ public class Label extends Jump {
 	if (name == null || "".equals(name))
 	    throw new IllegalArgumentException("invalid label name");
 	this.name = name;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return name;
     }
 
     @Override
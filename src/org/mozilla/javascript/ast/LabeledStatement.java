@@ -6,12 +6,13 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A labeled statement. A statement can have more than one label. In this AST
@@ -43,20 +44,17 @@ public class LabeledStatement extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "LabeledStatement");
-	object.add("label", this.getLabels().get(0).getJsonObject());
-	object.add("body", this.getStatement().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("LabeledStatement");
+	this.getLabels().get(0).writeJson(out.name("label"));
+	this.getStatement().writeJson(out.name("body"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
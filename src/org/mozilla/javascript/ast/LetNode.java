@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for let statements and expressions. Node type is {@link Token#LET}
@@ -51,23 +52,20 @@ public class LetNode extends Scope {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("VariableDeclaration");
+	out.name("declarations").beginArray();
 	for (VariableInitializer initializer : this.getVariables().getVariables())
-	    array.add(initializer.getJsonObject());
-	object.addProperty("type", "VariableDeclaration");
-	object.add("declarations", array);
-	object.addProperty("kind", "let");
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    initializer.writeJson(out);
+	out.endArray();
+	out.name("kind").value("let");
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for a simple name. A simple name is an identifier that is not a
@@ -62,19 +64,16 @@ public class Name extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "Identifier");
-	object.addProperty("name", identifier);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("Identifier");
+	out.name("name").value(identifier);
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -94,6 +93,12 @@ public class Name extends AstNode {
 	assertNotNull(identifier);
 	this.identifier = identifier;
 	setLength(identifier.length());
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return identifier;
     }
 
     /**
@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * New expression. Node type is {@link Token#NEW}.
@@ -45,24 +46,21 @@ public class NewExpression extends FunctionCall {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("NewExpression");
+	this.getTarget().writeJson(out.name("callee"));
+	out.name("arguments").beginArray();
 	for (AstNode argument : this.getArguments()) {
-	    array.add(argument.getJsonObject());
+	    argument.writeJson(out);
 	}
-	object.addProperty("type", "NewExpression");
-	object.add("callee", this.getTarget().getJsonObject());
-	object.add("arguments", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for a Number literal. Node type is {@link Token#NUMBER}.
@@ -57,46 +59,39 @@ public class NumberLiteral extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
 	try {
 	    int value = Integer.parseInt(this.getValue());
-	    object.addProperty("type", "Literal");
-	    object.addProperty("value", value);
-	    object.addProperty("raw", this.getValue());
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("Literal");
+	    out.name("value").value(value);
+	    out.name("raw").value(this.getValue());
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	} catch (NumberFormatException e) {
 	    /* Ignore */ }
 
 	try {
 	    double value = Double.parseDouble(this.getValue());
-	    object.addProperty("type", "Literal");
-	    object.addProperty("value", value);
-	    object.addProperty("raw", this.getValue());
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("Literal");
+	    out.name("value").value(value);
+	    out.name("raw").value(this.getValue());
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	} catch (NumberFormatException e) {
 	    /* Ignore */ }
 
-	object.addProperty("type", "Literal");
-	object.addProperty("value", (String) null);
-	object.addProperty("raw", this.getValue());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.name("type").value("Literal");
+	out.name("value").value((String) null);
+	out.name("raw").value(this.getValue());
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -115,6 +110,12 @@ public class NumberLiteral extends AstNode {
     public void setValue(String value) {
 	assertNotNull(value);
 	this.value = value;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return value;
     }
 
     /**
@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -13,8 +14,7 @@ import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for an Object literal (also called an Object initialiser in
@@ -62,22 +62,19 @@ public class ObjectLiteral extends AstNode implements DestructuringForm {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ObjectExpression");
+	out.name("properties").beginArray();
 	for (AstNode property : this.getElements())
-	    array.add(property.getJsonObject());
-	object.addProperty("type", "ObjectExpression");
-	object.add("properties", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    property.writeJson(out);
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -96,7 +93,7 @@ public class ObjectLiteral extends AstNode implements DestructuringForm {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	List<ObjectProperty> elements = new LinkedList<ObjectProperty>();
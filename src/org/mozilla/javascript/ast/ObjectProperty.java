@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for a single name:value entry in an Object literal. For simple
@@ -67,31 +69,28 @@ public class ObjectProperty extends InfixExpression {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "Property");
-	object.add("key", this.getLeft().getJsonObject());
-	object.addProperty("computed", false);
-	object.add("value", this.getRight().getJsonObject());
-	object.addProperty("kind", "init");
-	object.addProperty("method", false);
-	object.addProperty("shorthand", false);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("Property");
+	this.getLeft().writeJson(out.name("key"));
+	out.name("computed").value(false);
+	this.getRight().writeJson(out.name("value"));
+	out.name("kind").value("init");
+	out.name("method").value(false);
+	out.name("shorthand").value(false);
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
      * Marks this node as a "getter" property.
      */
     public void setIsGetter() {
-	type = Token.GET;
+	setType(Token.GET);
     }
 
     /**
@@ -105,7 +104,7 @@ public class ObjectProperty extends InfixExpression {
      * Marks this node as a "setter" property.
      */
     public void setIsSetter() {
-	type = Token.SET;
+	setType(Token.SET);
     }
 
     /**
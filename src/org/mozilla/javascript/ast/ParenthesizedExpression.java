@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 import org.mozilla.javascript.Token;
 
@@ -45,12 +47,12 @@ public class ParenthesizedExpression extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		return this.getExpression().getJsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+    		this.getExpression().writeJson(out);
     }
 
     /**
@@ -68,7 +70,7 @@ public class ParenthesizedExpression extends AstNode {
     	clone.changeType = this.changeType;
     	clone.changeTypeNoProp = this.changeTypeNoProp;
     	clone.fixedPosition = this.fixedPosition;
-    	clone.ID = this.ID;
+    	clone.ID = this.getID();
 
     	/* Clone the children. */
     	AstNode expression = null;
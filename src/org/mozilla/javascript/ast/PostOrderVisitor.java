@@ -0,0 +1,22 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.ast;
+
+/**
+ * A {@link NodeVisitor} that is also told when the visit of a node is over.
+ * Only {@link AstNode#visitIteratively} calls {@link #postVisit}; the
+ * {@code visit} methods of the nodes do not.
+ */
+public interface PostOrderVisitor extends NodeVisitor {
+
+    /**
+     * Called after the children of a node were visited, or right after
+     * {@link #visit} if it returned {@code false}.
+     * @param node the AST node passed to {@link #visit} before
+     */
+    void postVisit(AstNode node);
+}
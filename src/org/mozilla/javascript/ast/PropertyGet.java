@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for the '.' operator. Node type is {@link Token#GETPROP}.
@@ -35,21 +37,18 @@ public class PropertyGet extends InfixExpression {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "MemberExpression");
-	object.addProperty("computed", false);
-	object.add("object", this.getTarget().getJsonObject());
-	object.add("property", this.getProperty().getJsonObject());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("MemberExpression");
+	out.name("computed").value(false);
+	this.getTarget().writeJson(out.name("object"));
+	this.getProperty().writeJson(out.name("property"));
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for a RegExp literal. Node type is {@link Token#REGEXP}.
@@ -35,20 +37,17 @@ public class RegExpLiteral extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "Literal");
-	object.addProperty("value", this.getValue());
-	object.addProperty("raw", this.getValue());
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("Literal");
+	out.name("value").value(this.getValue());
+	out.name("raw").value(this.getValue());
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -67,6 +66,7 @@ public class RegExpLiteral extends AstNode {
     public void setValue(String value) {
 	assertNotNull(value);
 	this.value = value;
+	invalidateStructuralHash();
     }
 
     /**
@@ -81,6 +81,12 @@ public class RegExpLiteral extends AstNode {
      */
     public void setFlags(String flags) {
 	this.flags = flags;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return flags == null ? value : value + "/" + flags;
     }
 
     @Override
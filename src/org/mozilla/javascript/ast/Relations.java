@@ -0,0 +1,423 @@
+package org.mozilla.javascript.ast;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact storage for the criteria and dependencies of an {@link AstNode}.
+ * <p>
+ * Almost no node ever has a criterion or a dependency, so nodes start out
+ * with the shared empty maps below and only allocate storage on the first
+ * change. The maps keep their relations in small arrays searched
+ * linearly, as a node rarely takes part in more than a few relations, and
+ * the ids of a dependency in a sorted int array. Relation names are
+ * interned, as the same few names are used by every node. Like the hash
+ * maps they replace, the maps and sets can be changed through all of their
+ * methods and iterators.
+ */
+final class Relations {
+
+    static final Map<String, Integer> NO_CRITERIA = Collections.emptyMap();
+
+    static final Map<String, Set<Integer>> NO_DEPENDENCIES = Collections
+	    .emptyMap();
+
+    private Relations() {
+    }
+
+    /**
+     * Returns a copy of criteria that can be changed without changing the
+     * original.
+     */
+    static Map<String, Integer> copyCriteria(Map<String, Integer> criteria) {
+	if (criteria.isEmpty()) {
+	    return NO_CRITERIA;
+	}
+	CriteriaMap copy = new CriteriaMap();
+	if (criteria instanceof CriteriaMap) {
+	    CriteriaMap map = (CriteriaMap) criteria;
+	    copy.relations = map.relations.clone();
+	    copy.ids = map.ids.clone();
+	    copy.size = map.size;
+	} else {
+	    copy.putAll(criteria);
+	}
+	return copy;
+    }
+
+    /**
+     * Returns a copy of dependencies that can be changed without changing
+     * the original.
+     */
+    static Map<String, Set<Integer>> copyDependencies(
+	    Map<String, Set<Integer>> dependencies) {
+	if (dependencies.isEmpty()) {
+	    return NO_DEPENDENCIES;
+	}
+	DependencyMap copy = new DependencyMap();
+	for (Map.Entry<String, Set<Integer>> entry : dependencies.entrySet()) {
+	    IdSet set = new IdSet();
+	    if (entry.getValue() instanceof IdSet) {
+		IdSet ids = (IdSet) entry.getValue();
+		set.ids = ids.ids.clone();
+		set.size = ids.size;
+	    } else {
+		set.addAll(entry.getValue());
+	    }
+	    copy.put(entry.getKey(), set);
+	}
+	return copy;
+    }
+
+    private static int indexOf(String[] relations, int size, String relation) {
+	for (int i = 0; i != size; ++i) {
+	    if (relations[i] == relation) {
+		return i;
+	    }
+	}
+	for (int i = 0; i != size; ++i) {
+	    if (relations[i].equals(relation)) {
+		return i;
+	    }
+	}
+	return -1;
+    }
+
+    /**
+     * Maps relation names to the id of a criterion.
+     */
+    static final class CriteriaMap extends AbstractMap<String, Integer> {
+
+	private String[] relations = new String[1];
+	private int[] ids = new int[1];
+	private int size;
+
+	@Override
+	public int size() {
+	    return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+	    return key instanceof String
+		    && indexOf(relations, size, (String) key) >= 0;
+	}
+
+	@Override
+	public Integer get(Object key) {
+	    if (!(key instanceof String)) {
+		return null;
+	    }
+	    int i = indexOf(relations, size, (String) key);
+	    return i < 0 ? null : Integer.valueOf(ids[i]);
+	}
+
+	@Override
+	public Integer put(String relation, Integer id) {
+	    int i = indexOf(relations, size, relation);
+	    if (i >= 0) {
+		Integer old = Integer.valueOf(ids[i]);
+		ids[i] = id.intValue();
+		return old;
+	    }
+	    if (size == relations.length) {
+		relations = Arrays.copyOf(relations, size * 2);
+		ids = Arrays.copyOf(ids, size * 2);
+	    }
+	    relations[size] = relation.intern();
+	    ids[size] = id.intValue();
+	    ++size;
+	    return null;
+	}
+
+	@Override
+	public Integer remove(Object key) {
+	    if (!(key instanceof String)) {
+		return null;
+	    }
+	    int i = indexOf(relations, size, (String) key);
+	    if (i < 0) {
+		return null;
+	    }
+	    Integer old = Integer.valueOf(ids[i]);
+	    removeAt(i);
+	    return old;
+	}
+
+	private void removeAt(int i) {
+	    --size;
+	    System.arraycopy(relations, i + 1, relations, i, size - i);
+	    System.arraycopy(ids, i + 1, ids, i, size - i);
+	    relations[size] = null;
+	}
+
+	@Override
+	public void clear() {
+	    Arrays.fill(relations, 0, size, null);
+	    size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Integer>> entrySet() {
+	    return new AbstractSet<Map.Entry<String, Integer>>() {
+		@Override
+		public int size() {
+		    return size;
+		}
+
+		@Override
+		public Iterator<Map.Entry<String, Integer>> iterator() {
+		    return new ArrayIterator<Map.Entry<String, Integer>>() {
+			@Override
+			int size() {
+			    return size;
+			}
+
+			@Override
+			Map.Entry<String, Integer> get(int i) {
+			    return new SimpleImmutableEntry<String, Integer>(
+				    relations[i], Integer.valueOf(ids[i]));
+			}
+
+			@Override
+			void remove(int i) {
+			    removeAt(i);
+			}
+		    };
+		}
+	    };
+	}
+    }
+
+    /**
+     * Maps relation names to the set of ids of the criteria this node
+     * depends on.
+     */
+    static final class DependencyMap extends AbstractMap<String, Set<Integer>> {
+
+	private String[] relations = new String[1];
+	@SuppressWarnings("unchecked")
+	private Set<Integer>[] sets = new Set[1];
+	private int size;
+
+	@Override
+	public int size() {
+	    return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+	    return key instanceof String
+		    && indexOf(relations, size, (String) key) >= 0;
+	}
+
+	@Override
+	public Set<Integer> get(Object key) {
+	    if (!(key instanceof String)) {
+		return null;
+	    }
+	    int i = indexOf(relations, size, (String) key);
+	    return i < 0 ? null : sets[i];
+	}
+
+	@Override
+	public Set<Integer> put(String relation, Set<Integer> ids) {
+	    int i = indexOf(relations, size, relation);
+	    if (i >= 0) {
+		Set<Integer> old = sets[i];
+		sets[i] = ids;
+		return old;
+	    }
+	    if (size == relations.length) {
+		relations = Arrays.copyOf(relations, size * 2);
+		sets = Arrays.copyOf(sets, size * 2);
+	    }
+	    relations[size] = relation.intern();
+	    sets[size] = ids;
+	    ++size;
+	    return null;
+	}
+
+	@Override
+	public Set<Integer> remove(Object key) {
+	    if (!(key instanceof String)) {
+		return null;
+	    }
+	    int i = indexOf(relations, size, (String) key);
+	    if (i < 0) {
+		return null;
+	    }
+	    Set<Integer> old = sets[i];
+	    removeAt(i);
+	    return old;
+	}
+
+	private void removeAt(int i) {
+	    --size;
+	    System.arraycopy(relations, i + 1, relations, i, size - i);
+	    System.arraycopy(sets, i + 1, sets, i, size - i);
+	    relations[size] = null;
+	    sets[size] = null;
+	}
+
+	@Override
+	public void clear() {
+	    Arrays.fill(relations, 0, size, null);
+	    Arrays.fill(sets, 0, size, null);
+	    size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Set<Integer>>> entrySet() {
+	    return new AbstractSet<Map.Entry<String, Set<Integer>>>() {
+		@Override
+		public int size() {
+		    return size;
+		}
+
+		@Override
+		public Iterator<Map.Entry<String, Set<Integer>>> iterator() {
+		    return new ArrayIterator<Map.Entry<String, Set<Integer>>>() {
+			@Override
+			int size() {
+			    return size;
+			}
+
+			@Override
+			Map.Entry<String, Set<Integer>> get(int i) {
+			    return new SimpleImmutableEntry<String, Set<Integer>>(
+				    relations[i], sets[i]);
+			}
+
+			@Override
+			void remove(int i) {
+			    removeAt(i);
+			}
+		    };
+		}
+	    };
+	}
+    }
+
+    /**
+     * A set of ids kept as a sorted int array.
+     */
+    static final class IdSet extends AbstractSet<Integer> {
+
+	private int[] ids = new int[2];
+	private int size;
+
+	@Override
+	public boolean add(Integer id) {
+	    int i = Arrays.binarySearch(ids, 0, size, id.intValue());
+	    if (i >= 0) {
+		return false;
+	    }
+	    i = -(i + 1);
+	    if (size == ids.length) {
+		ids = Arrays.copyOf(ids, size * 2);
+	    }
+	    System.arraycopy(ids, i, ids, i + 1, size - i);
+	    ids[i] = id.intValue();
+	    ++size;
+	    return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+	    return o instanceof Integer
+		    && Arrays.binarySearch(ids, 0, size, ((Integer) o).intValue()) >= 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+	    if (!(o instanceof Integer)) {
+		return false;
+	    }
+	    int i = Arrays.binarySearch(ids, 0, size, ((Integer) o).intValue());
+	    if (i < 0) {
+		return false;
+	    }
+	    removeAt(i);
+	    return true;
+	}
+
+	private void removeAt(int i) {
+	    --size;
+	    System.arraycopy(ids, i + 1, ids, i, size - i);
+	}
+
+	@Override
+	public void clear() {
+	    size = 0;
+	}
+
+	@Override
+	public int size() {
+	    return size;
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+	    return new ArrayIterator<Integer>() {
+		@Override
+		int size() {
+		    return size;
+		}
+
+		@Override
+		Integer get(int i) {
+		    return Integer.valueOf(ids[i]);
+		}
+
+		@Override
+		void remove(int i) {
+		    removeAt(i);
+		}
+	    };
+	}
+    }
+
+    /**
+     * Iterates over the first elements of arrays, which are shifted down
+     * when an element is removed.
+     */
+    private static abstract class ArrayIterator<T> implements Iterator<T> {
+
+	private int next;
+	private int last = -1;
+
+	abstract int size();
+
+	abstract T get(int i);
+
+	abstract void remove(int i);
+
+	public boolean hasNext() {
+	    return next < size();
+	}
+
+	public T next() {
+	    if (next >= size()) {
+		throw new NoSuchElementException();
+	    }
+	    last = next++;
+	    return get(last);
+	}
+
+	public void remove() {
+	    if (last < 0) {
+		throw new IllegalStateException();
+	    }
+	    remove(last);
+	    next = last;
+	    last = -1;
+	}
+    }
+}
@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Return statement. Node type is {@link Token#RETURN}.
@@ -45,22 +46,19 @@ public class ReturnStatement extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "ReturnStatement");
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("ReturnStatement");
 	if (this.getReturnValue() != null)
-	    object.add("argument", this.getReturnValue().getJsonObject());
+	    this.getReturnValue().writeJson(out.name("argument"));
 	else
-	    object.add("argument", JsonNull.INSTANCE);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    out.name("argument").nullValue();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -79,7 +77,7 @@ public class ReturnStatement extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode returnValue = null;
@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -15,8 +16,7 @@ import java.util.Map;
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Represents a scope in the lexical scope chain. Base type for all
@@ -48,23 +48,20 @@ public class Scope extends Jump {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("BlockStatement");
+	out.name("body").beginArray();
 	for (AstNode statement : this.getStatements()) {
-	    array.add(statement.getJsonObject());
+	    statement.writeJson(out);
 	}
-	object.addProperty("type", "BlockStatement");
-	object.add("body", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -83,7 +80,7 @@ public class Scope extends Jump {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	clone.removeChildren();
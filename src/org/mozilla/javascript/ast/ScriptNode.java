@@ -178,6 +178,16 @@ public class ScriptNode extends Scope {
         endLineno = lineno;
     }
 
+    /**
+     * Moves the end line number, if set, by {@code delta} lines. Used to
+     * update a tree in place after lines were added or removed in it.
+     */
+    public void shiftEndLineno(int delta) {
+        if (endLineno >= 0) {
+            endLineno += delta;
+        }
+    }
+
     public int getFunctionCount() {
         return functions == null ? 0 : functions.size();
     }
@@ -6,10 +6,12 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.ScriptRuntime;
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for a single- or double-quoted string literal. Node type is
@@ -33,20 +35,17 @@ public class StringLiteral extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "Literal");
-	object.addProperty("value", this.getValue());
-	object.addProperty("raw", "\"" + this.getValue() + "\"");
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("Literal");
+	out.name("value").value(this.getValue());
+	out.name("raw").value("\"" + this.getValue() + "\"");
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -89,6 +88,12 @@ public class StringLiteral extends AstNode {
     public void setValue(String value) {
 	assertNotNull(value);
 	this.value = value;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return value;
     }
 
     /**
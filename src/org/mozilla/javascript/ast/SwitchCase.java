@@ -6,15 +6,14 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Switch-case AST node type. The switch case is always part of a switch
@@ -55,28 +54,25 @@ public class SwitchCase extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("SwitchCase");
+	if (this.getExpression() != null)
+	    this.getExpression().writeJson(out.name("test"));
+	else
+	    out.name("test").nullValue();
+	out.name("consequent").beginArray();
 	if (this.getStatements() != null) {
 	    for (AstNode statement : this.getStatements())
-		array.add(statement.getJsonObject());
+		statement.writeJson(out);
 	}
-	object.addProperty("type", "SwitchCase");
-	if (this.getExpression() != null)
-	    object.add("test", this.getExpression().getJsonObject());
-	else
-	    object.add("test", JsonNull.INSTANCE);
-	object.add("consequent", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -95,7 +91,7 @@ public class SwitchCase extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	List<AstNode> statements = new LinkedList<AstNode>();
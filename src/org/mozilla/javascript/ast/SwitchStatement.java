@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -13,8 +14,7 @@ import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Switch statement AST node type. Node type is {@link Token#SWITCH}.
@@ -63,24 +63,21 @@ public class SwitchStatement extends Jump {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("SwitchStatement");
+	this.getExpression().writeJson(out.name("discriminant"));
+	out.name("cases").beginArray();
 	for (AstNode switchCase : this.getCases()) {
-	    array.add(switchCase.getJsonObject());
+	    switchCase.writeJson(out);
 	}
-	object.addProperty("type", "SwitchStatement");
-	object.add("discriminant", this.getExpression().getJsonObject());
-	object.add("cases", array);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.endArray();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -100,7 +97,7 @@ public class SwitchStatement extends Jump {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	List<SwitchCase> cases = new LinkedList<SwitchCase>();
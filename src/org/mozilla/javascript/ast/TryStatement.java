@@ -6,6 +6,7 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -13,8 +14,7 @@ import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * Try/catch/finally statement. Node type is {@link Token#TRY}.
@@ -57,32 +57,27 @@ public class TryStatement extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
 	if (this.getFinallyBlock() == null) {
-	    object.addProperty("type", "TryStatement");
-	    object.add("block", this.getTryBlock().getJsonObject());
-	    object.add("handler", this.getCatchClauses().get(0).getJsonObject());
-	    object.add("finalizer", JsonNull.INSTANCE);
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("TryStatement");
+	    this.getTryBlock().writeJson(out.name("block"));
+	    this.getCatchClauses().get(0).writeJson(out.name("handler"));
+	    out.name("finalizer").nullValue();
+	    writeJsonAnalysis(out);
+	    out.endObject();
+	    return;
 	} else {
-	    object.addProperty("type", "TryStatement");
-	    object.add("block", this.getTryBlock().getJsonObject());
-	    object.add("handler", this.getCatchClauses().get(0).getJsonObject());
-	    object.add("finalizer", this.getFinallyBlock().getJsonObject());
-	    object.add("criteria", getCriteriaAsJson());
-	    object.add("dependencies", getDependenciesAsJson());
-	    object.addProperty("change", changeType.toString());
-	    object.addProperty("change-noprop", changeTypeNoProp.toString());
-	    return object;
+	    out.name("type").value("TryStatement");
+	    this.getTryBlock().writeJson(out.name("block"));
+	    this.getCatchClauses().get(0).writeJson(out.name("handler"));
+	    this.getFinallyBlock().writeJson(out.name("finalizer"));
+	    writeJsonAnalysis(out);
+	    out.endObject();
 	}
     }
 
@@ -103,7 +98,7 @@ public class TryStatement extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode tryBlock = null;
@@ -6,9 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node representing unary operators such as {@code ++}, {@code ~},
@@ -49,12 +51,12 @@ public class UnaryExpression extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
 	String type = null;
 	String operator = null;
 	boolean prefix = false;
@@ -121,15 +123,12 @@ public class UnaryExpression extends AstNode {
 	    break;
 	}
 
-	object.addProperty("type", type);
-	object.addProperty("operator", operator);
-	object.add("argument", this.getOperand().getJsonObject());
-	object.addProperty("prefix", prefix);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.name("type").value(type);
+	out.name("operator").value(operator);
+	this.getOperand().writeJson(out.name("argument"));
+	out.name("prefix").value(prefix);
+	writeJsonAnalysis(out);
+	out.endObject();
 
     }
 
@@ -176,7 +175,7 @@ public class UnaryExpression extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode operand = null;
@@ -246,6 +245,12 @@ public class UnaryExpression extends AstNode {
      */
     public void setIsPostfix(boolean isPostfix) {
 	this.isPostfix = isPostfix;
+	invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+	return isPostfix ? Boolean.TRUE : null;
     }
 
     @Override
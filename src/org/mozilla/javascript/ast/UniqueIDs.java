@@ -1,19 +1,168 @@
 package org.mozilla.javascript.ast;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Generates unique identifiers for AST nodes.
+ * <p>
+ * By default every node is numbered from one counter shared by all threads.
+ * A parse can instead number its nodes from its own allocator (see
+ * {@link org.mozilla.javascript.Parser#setIdAllocator}), which is installed
+ * for the parsing thread while the parse runs. The identifiers from an
+ * allocator depend only on the order in which its nodes are created, so
+ * they are the same every time a source is parsed, and parses on different
+ * threads do not share any state.
+ * <p>
+ * Like the shared counter, an allocator starts at 1, so its identifiers are
+ * only unique among the nodes it numbers. Trees numbered by different
+ * allocators, or by an allocator and the shared counter, must not be mixed
+ * unless they have been moved into disjoint ranges with {@link #shift(int)}.
+ * <p>
+ * A lean parse (see
+ * {@link org.mozilla.javascript.CompilerEnvirons#setLeanParsing}) installs a
+ * {@link #deferred()} allocator, which numbers no nodes at all. Such nodes
+ * take the next identifier of the shared counter when their id is first
+ * asked for.
  */
 public class UniqueIDs {
 
-    private static int nextId = 0;
+    private static int nextSharedId = 0;
+
+    private static final ThreadLocal<UniqueIDs> current =
+	    new ThreadLocal<UniqueIDs>();
+
+    private int base;
+    private int count;
+    // Nodes numbered so far, only kept by tracking() allocators
+    private List<AstNode> nodes;
+    private final boolean deferred;
+
+    /**
+     * Creates an allocator whose first identifier is 1.
+     */
+    public UniqueIDs() {
+	this(false);
+    }
+
+    private UniqueIDs(boolean deferred) {
+	this.deferred = deferred;
+    }
 
+    /**
+     * Returns an allocator whose first identifier is 1, and which remembers
+     * the nodes it numbers so that {@link #shift(int)} can renumber them.
+     * It keeps those nodes alive until {@link #forgetNodes()} is called.
+     */
+    public static UniqueIDs tracking() {
+	UniqueIDs ids = new UniqueIDs(false);
+	ids.nodes = new ArrayList<AstNode>();
+	return ids;
+    }
+
+    /**
+     * Returns an allocator that leaves the nodes created while it is
+     * installed without ids, until {@link AstNode#getID()} is called.
+     */
+    public static UniqueIDs deferred() {
+	return new UniqueIDs(true);
+    }
+
+    /**
+     * Returns the next identifier from the allocator of the current thread,
+     * or from the shared counter if no allocator is installed.
+     */
     public static int getNextId() {
-	if (nextId == Integer.MAX_VALUE) {
+	UniqueIDs ids = current.get();
+	if (ids != null && !ids.deferred) {
+	    return ids.base + ++ids.count;
+	}
+	return getNextSharedId();
+    }
+
+    private static synchronized int getNextSharedId() {
+	if (nextSharedId == Integer.MAX_VALUE) {
 	    // Reset the id. No file will ever have this many AST nodes, so this is safe.
-	    nextId = 0;
+	    nextSharedId = 0;
+	}
+	nextSharedId++;
+	return nextSharedId;
+    }
+
+    /**
+     * Numbers a new node. Nodes numbered by a {@link #tracking()} allocator
+     * are remembered so that {@link #shift(int)} can renumber them.
+     */
+    static Integer assignId(AstNode node) {
+	UniqueIDs ids = current.get();
+	if (ids != null) {
+	    if (ids.deferred) {
+		return null;
+	    }
+	    if (ids.nodes != null) {
+		ids.nodes.add(node);
+	    }
+	    return Integer.valueOf(ids.base + ++ids.count);
+	}
+	return Integer.valueOf(getNextSharedId());
+    }
+
+    /**
+     * Numbers a node left without an id by a {@link #deferred()} allocator.
+     */
+    static Integer assignDeferredId() {
+	return Integer.valueOf(getNextSharedId());
+    }
+
+    /**
+     * Installs an allocator for the current thread.
+     *
+     * @param ids
+     *            the allocator, or {@code null} to use the shared counter
+     * @return the allocator that was installed before, which the caller
+     *         must restore when it is done
+     */
+    public static UniqueIDs setCurrent(UniqueIDs ids) {
+	UniqueIDs previous = current.get();
+	if (ids == null) {
+	    current.remove();
+	} else {
+	    current.set(ids);
+	}
+	return previous;
+    }
+
+    /**
+     * Returns the number of identifiers handed out by this allocator.
+     */
+    public int size() {
+	return count;
+    }
+
+    /**
+     * Adds {@code delta} to the identifiers this allocator hands out from
+     * now on, and to the identifier of every node it remembers. Used to move
+     * the nodes of independently parsed sources into disjoint ranges.
+     *
+     * @see #tracking()
+     */
+    public void shift(int delta) {
+	if (nodes != null) {
+	    for (AstNode node : nodes) {
+		node.ID = Integer.valueOf(node.ID.intValue() + delta);
+	    }
+	}
+	base += delta;
+    }
+
+    /**
+     * Stops remembering the nodes numbered so far, so that they can be
+     * garbage collected. A later {@link #shift(int)} leaves them as they are.
+     */
+    public void forgetNodes() {
+	if (nodes != null) {
+	    nodes = new ArrayList<AstNode>();
 	}
-	nextId++;
-	return nextId;
     }
 
-}
\ No newline at end of file
+}
@@ -6,14 +6,14 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A list of one or more var, const or let declarations. Node type is
@@ -50,24 +50,21 @@ public class VariableDeclaration extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	JsonArray array = new JsonArray();
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("VariableDeclaration");
+	out.name("declarations").beginArray();
 	for (VariableInitializer initializer : this.getVariables()) {
-	    array.add(initializer.getJsonObject());
+	    initializer.writeJson(out);
 	}
-	object.addProperty("type", "VariableDeclaration");
-	object.add("declarations", array);
-	object.addProperty("kind", "var");
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	out.endArray();
+	out.name("kind").value("var");
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -86,7 +83,7 @@ public class VariableDeclaration extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	List<VariableInitializer> variables = new LinkedList<VariableInitializer>();
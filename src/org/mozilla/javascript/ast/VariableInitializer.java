@@ -6,10 +6,11 @@
 
 package org.mozilla.javascript.ast;
 
+import java.io.IOException;
+
 import org.mozilla.javascript.Token;
 
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * A variable declaration or initializer, part of a {@link VariableDeclaration}
@@ -31,23 +32,20 @@ public class VariableInitializer extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-	JsonObject object = new JsonObject();
-	object.addProperty("type", "VariableDeclarator");
-	object.add("id", this.getTarget().getJsonObject());
+    public void writeJson(JsonWriter out) throws IOException {
+	out.beginObject();
+	out.name("type").value("VariableDeclarator");
+	this.getTarget().writeJson(out.name("id"));
 	if (this.getInitializer() != null)
-	    object.add("init", this.getInitializer().getJsonObject());
+	    this.getInitializer().writeJson(out.name("init"));
 	else
-	    object.add("init", JsonNull.INSTANCE);
-	object.add("criteria", getCriteriaAsJson());
-	object.add("dependencies", getDependenciesAsJson());
-	object.addProperty("change", changeType.toString());
-	object.addProperty("change-noprop", changeTypeNoProp.toString());
-	return object;
+	    out.name("init").nullValue();
+	writeJsonAnalysis(out);
+	out.endObject();
     }
 
     /**
@@ -66,7 +64,7 @@ public class VariableInitializer extends AstNode {
 	clone.changeType = this.changeType;
 	clone.changeTypeNoProp = this.changeTypeNoProp;
 	clone.fixedPosition = this.fixedPosition;
-	clone.ID = this.ID;
+	clone.ID = this.getID();
 
 	/* Clone the children. */
 	AstNode initializer = null;
@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 import org.mozilla.javascript.Token;
 
@@ -63,14 +65,14 @@ public class XmlElemRef extends XmlRef {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "XmlElemRef");
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("XmlElemRef");
+		out.endObject();
     }
 
     /**
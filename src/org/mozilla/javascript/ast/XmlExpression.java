@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 import org.mozilla.javascript.Token;
 
@@ -37,14 +39,14 @@ public class XmlExpression extends XmlFragment {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "XmlExpression");
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("XmlExpression");
+		out.endObject();
 	}
 
     /**
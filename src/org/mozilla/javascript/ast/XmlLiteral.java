@@ -8,10 +8,11 @@ package org.mozilla.javascript.ast;
 
 import org.mozilla.javascript.Token;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for an E4X (Ecma-357) embedded XML literal.  Node type is
@@ -40,14 +41,14 @@ public class XmlLiteral extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "XmlLiteral");
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("XmlLiteral");
+		out.endObject();
     }
 
     /**
@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 import org.mozilla.javascript.Token;
 
@@ -47,14 +49,14 @@ public class XmlPropRef extends XmlRef {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "XmlPropRef");
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("XmlPropRef");
+		out.endObject();
     }
 
     /**
@@ -85,6 +85,12 @@ public abstract class XmlRef extends AstNode {
      */
     public void setAtPos(int atPos) {
         this.atPos = atPos;
+        invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+        return isAttributeAccess() ? Boolean.TRUE : null;
     }
 
     /**
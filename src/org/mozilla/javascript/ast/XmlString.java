@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 /**
  * AST node for an XML-text-only component of an XML literal expression.  This
@@ -30,14 +32,14 @@ public class XmlString extends XmlFragment {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-		object.addProperty("type", "XmlElemRef");
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("XmlElemRef");
+		out.endObject();
     }
 
     /**
@@ -50,6 +52,12 @@ public class XmlString extends XmlFragment {
         assertNotNull(s);
         xml = s;
         setLength(s.length());
+        invalidateStructuralHash();
+    }
+
+    @Override
+    protected Object getStructuralLabel() {
+        return xml;
     }
 
     /**
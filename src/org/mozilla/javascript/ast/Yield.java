@@ -6,7 +6,9 @@
 
 package org.mozilla.javascript.ast;
 
-import com.google.gson.JsonObject;
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
 
 import org.mozilla.javascript.Token;
 
@@ -42,19 +44,21 @@ public class Yield extends AstNode {
     }
 
     /**
-     * @return This node as a JSON object in Esprima format.
+     * Writes this node as a JSON object in Esprima format.
      * @author qhanam
      */
     @Override
-    public JsonObject getJsonObject() {
-    		JsonObject object = new JsonObject();
-    		JsonObject value = this.getValue() == null ? null : this.getValue().getJsonObject();
-		object.addProperty("type", "YieldExpression");
-		object.add("expression", value);
-		object.addProperty("delegate", false);
-    		object.addProperty("change", changeType.toString());
-    		object.addProperty("change-noprop", changeTypeNoProp.toString());
-		return object;
+    public void writeJson(JsonWriter out) throws IOException {
+    		out.beginObject();
+		out.name("type").value("YieldExpression");
+		if (this.getValue() == null)
+		    out.name("expression").nullValue();
+		else
+		    this.getValue().writeJson(out.name("expression"));
+		out.name("delegate").value(false);
+    		out.name("change").value(changeType.toString());
+    		out.name("change-noprop").value(changeTypeNoProp.toString());
+		out.endObject();
     }
 
     /**
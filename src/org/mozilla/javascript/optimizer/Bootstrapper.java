@@ -0,0 +1,182 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.optimizer;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+import org.mozilla.javascript.ConsString;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NameCache;
+import org.mozilla.javascript.PropertyCache;
+import org.mozilla.javascript.ScriptRuntime;
+
+/**
+ * Bootstrap methods for the invokedynamic call sites of compiled scripts.
+ * <p>
+ * Property and name sites are linked once to a method of a
+ * {@link PropertyCache} or {@link NameCache} bound to a cache owned by the
+ * site, so the JIT sees the cache as a constant. Addition sites link to a
+ * fast path for the operand types seen on the first execution, guarded by
+ * a type test that falls back to the generic
+ * {@link ScriptRuntime#add(Object, Object, Context)}.
+ * <p>
+ * This class is used by generated code and is not part of the public API.
+ * It needs Java 7 or later and is only loaded when
+ * {@link org.mozilla.javascript.CompilerEnvirons#isGenerateInvokeDynamic()}
+ * is set.
+ */
+public final class Bootstrapper
+{
+    static final String CLASS_NAME
+        = "org.mozilla.javascript.optimizer.Bootstrapper";
+
+    static final String PROPERTY_SIGNATURE
+        = "(Ljava/lang/invoke/MethodHandles$Lookup;"
+          +"Ljava/lang/String;"
+          +"Ljava/lang/invoke/MethodType;"
+          +"Ljava/lang/String;"
+          +")Ljava/lang/invoke/CallSite;";
+
+    static final String NAME_SIGNATURE = PROPERTY_SIGNATURE;
+
+    static final String ADD_SIGNATURE
+        = "(Ljava/lang/invoke/MethodHandles$Lookup;"
+          +"Ljava/lang/String;"
+          +"Ljava/lang/invoke/MethodType;"
+          +")Ljava/lang/invoke/CallSite;";
+
+    private static final MethodHandle ADD_FALLBACK;
+    private static final MethodHandle ADD_GENERIC;
+    private static final MethodHandle ADD_NUMBERS;
+    private static final MethodHandle ADD_STRINGS;
+    private static final MethodHandle IS_NUMBERS;
+    private static final MethodHandle IS_STRINGS;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType binary = MethodType.methodType(
+            Object.class, Object.class, Object.class, Context.class);
+        MethodType test = MethodType.methodType(
+            boolean.class, Object.class, Object.class);
+        try {
+            ADD_FALLBACK = lookup.findStatic(Bootstrapper.class, "addFallback",
+                binary.insertParameterTypes(0, AddCallSite.class));
+            ADD_GENERIC = lookup.findStatic(ScriptRuntime.class, "add",
+                                            binary);
+            ADD_NUMBERS = lookup.findStatic(Bootstrapper.class, "addNumbers",
+                                            binary);
+            ADD_STRINGS = lookup.findStatic(Bootstrapper.class, "addStrings",
+                                            binary);
+            IS_NUMBERS = lookup.findStatic(Bootstrapper.class, "isNumbers",
+                                           test);
+            IS_STRINGS = lookup.findStatic(Bootstrapper.class, "isStrings",
+                                           test);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private Bootstrapper() { }
+
+    /**
+     * Links a site calling the {@link PropertyCache} method named by the
+     * call site for the given property.
+     */
+    public static CallSite bootstrapProperty(MethodHandles.Lookup lookup,
+                                             String operation,
+                                             MethodType type,
+                                             String propertyName)
+        throws ReflectiveOperationException
+    {
+        MethodHandle mh = MethodHandles.publicLookup().findVirtual(
+            PropertyCache.class, operation, type);
+        return new ConstantCallSite(
+            mh.bindTo(new PropertyCache(propertyName)));
+    }
+
+    /**
+     * Links a site calling the {@link NameCache} method named by the call
+     * site for the given name.
+     */
+    public static CallSite bootstrapName(MethodHandles.Lookup lookup,
+                                         String operation,
+                                         MethodType type,
+                                         String name)
+        throws ReflectiveOperationException
+    {
+        MethodHandle mh = MethodHandles.publicLookup().findVirtual(
+            NameCache.class, operation, type);
+        return new ConstantCallSite(mh.bindTo(new NameCache(name)));
+    }
+
+    /**
+     * Links a site with the signature of
+     * {@link ScriptRuntime#add(Object, Object, Context)}.
+     */
+    public static CallSite bootstrapAdd(MethodHandles.Lookup lookup,
+                                        String operation,
+                                        MethodType type)
+    {
+        return new AddCallSite(type);
+    }
+
+    private static final class AddCallSite extends MutableCallSite
+    {
+        AddCallSite(MethodType type)
+        {
+            super(type);
+            setTarget(ADD_FALLBACK.bindTo(this));
+        }
+    }
+
+    // Called on the first execution of an addition site: relinks the site
+    // to the fast path for the operand types and does the addition.
+    // A site is relinked only once, later type changes take the generic
+    // path of the guard.
+    private static Object addFallback(AddCallSite site, Object val1,
+                                      Object val2, Context cx)
+    {
+        MethodHandle target;
+        if (isNumbers(val1, val2)) {
+            target = MethodHandles.guardWithTest(IS_NUMBERS, ADD_NUMBERS,
+                                                 ADD_GENERIC);
+        } else if (isStrings(val1, val2)) {
+            target = MethodHandles.guardWithTest(IS_STRINGS, ADD_STRINGS,
+                                                 ADD_GENERIC);
+        } else {
+            target = ADD_GENERIC;
+        }
+        site.setTarget(target);
+        return ScriptRuntime.add(val1, val2, cx);
+    }
+
+    private static boolean isNumbers(Object val1, Object val2)
+    {
+        return val1 instanceof Double && val2 instanceof Double;
+    }
+
+    private static boolean isStrings(Object val1, Object val2)
+    {
+        return val1 instanceof CharSequence && val2 instanceof CharSequence;
+    }
+
+    private static Object addNumbers(Object val1, Object val2, Context cx)
+    {
+        return ScriptRuntime.wrapNumber(((Double)val1).doubleValue()
+                                        + ((Double)val2).doubleValue());
+    }
+
+    private static Object addStrings(Object val1, Object val2, Context cx)
+    {
+        return new ConsString((CharSequence)val1, (CharSequence)val2);
+    }
+}
@@ -99,6 +99,27 @@ public class ClassCompiler
         targetImplements = implementsClasses == null ? null : (Class[])implementsClasses.clone();
     }
 
+    /**
+     * Get the cache for generated classes, or null if none is set.
+     */
+    public CompiledScriptCache getCompiledScriptCache()
+    {
+        return compiledScriptCache;
+    }
+
+    /**
+     * Set the cache for generated classes. With a cache,
+     * {@link #compileToClassFiles} returns the classes stored for the same
+     * source and settings by an earlier call instead of compiling again.
+     *
+     * @param cache the cache, or null to compile every source
+     * @see CompiledScriptCache
+     */
+    public void setCompiledScriptCache(CompiledScriptCache cache)
+    {
+        compiledScriptCache = cache;
+    }
+
     /**
      * Build class name for a auxiliary class generated by compiler.
      * If the compiler needs to generate extra classes beyond the main class,
@@ -129,6 +150,36 @@ public class ClassCompiler
                                         String sourceLocation,
                                         int lineno,
                                         String mainClassName)
+    {
+        if (compiledScriptCache == null) {
+            return compile(source, sourceLocation, lineno, mainClassName);
+        }
+        Class<?> superClass = getTargetExtends();
+        Class<?>[] interfaces = getTargetImplements();
+        StringBuilder target = new StringBuilder();
+        if (superClass != null) {
+            target.append(superClass.getName());
+        }
+        if (interfaces != null) {
+            for (Class<?> iface : interfaces) {
+                target.append(' ').append(iface.getName());
+            }
+        }
+        String key = CompiledScriptCache.makeKey(
+            compilerEnv, source, sourceLocation, lineno,
+            mainClassName, makeAuxiliaryClassName(mainClassName, "1"),
+            mainMethodClassName, target.toString());
+        Object[] classFiles = compiledScriptCache.get(key);
+        if (classFiles == null) {
+            classFiles = compile(source, sourceLocation, lineno,
+                                 mainClassName);
+            compiledScriptCache.put(key, classFiles);
+        }
+        return classFiles;
+    }
+
+    private Object[] compile(String source, String sourceLocation,
+                             int lineno, String mainClassName)
     {
         Parser p = new Parser(compilerEnv);
         AstRoot ast = p.parse(source, sourceLocation, lineno);
@@ -183,6 +234,7 @@ public class ClassCompiler
 
     private String mainMethodClassName;
     private CompilerEnvirons compilerEnv;
+    private CompiledScriptCache compiledScriptCache;
     private Class<?> targetExtends;
     private Class<?>[] targetImplements;
 
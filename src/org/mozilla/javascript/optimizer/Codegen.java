@@ -145,6 +145,8 @@ public class Codegen implements Evaluator
                                      boolean returnFunction)
     {
         this.compilerEnv = compilerEnv;
+        useInvokeDynamic = compilerEnv.isGenerateInvokeDynamic()
+                           && ClassFileWriter.isInvokeDynamicSupported();
 
         transform(scriptOrFn);
 
@@ -1021,7 +1023,7 @@ public class Codegen implements Evaluator
     private void emitConstantDudeInitializers(ClassFileWriter cfw)
     {
         int N = itsConstantListSize;
-        if (N == 0)
+        if (N == 0 && propertyCacheCount == 0 && nameCacheCount == 0)
             return;
 
         cfw.startMethod("<clinit>", "()V", (short)(ACC_STATIC | ACC_FINAL));
@@ -1046,10 +1048,105 @@ public class Codegen implements Evaluator
                     constantName, constantType);
         }
 
+        for (int i = 0; i != propertyCacheCount; ++i) {
+            String cacheName = "_pc" + i;
+            cfw.addField(cacheName, PROPERTY_CACHE_SIGNATURE,
+                         (short)(ACC_STATIC | ACC_PRIVATE));
+            cfw.add(ByteCode.NEW, PROPERTY_CACHE_CLASS);
+            cfw.add(ByteCode.DUP);
+            cfw.addPush(propertyCacheNames[i]);
+            cfw.addInvoke(ByteCode.INVOKESPECIAL, PROPERTY_CACHE_CLASS,
+                          "<init>", "(Ljava/lang/String;)V");
+            cfw.add(ByteCode.PUTSTATIC, mainClassName,
+                    cacheName, PROPERTY_CACHE_SIGNATURE);
+        }
+
+        for (int i = 0; i != nameCacheCount; ++i) {
+            String cacheName = "_nc" + i;
+            cfw.addField(cacheName, NAME_CACHE_SIGNATURE,
+                         (short)(ACC_STATIC | ACC_PRIVATE));
+            cfw.add(ByteCode.NEW, NAME_CACHE_CLASS);
+            cfw.add(ByteCode.DUP);
+            cfw.addPush(nameCacheNames[i]);
+            cfw.addInvoke(ByteCode.INVOKESPECIAL, NAME_CACHE_CLASS,
+                          "<init>", "(Ljava/lang/String;)V");
+            cfw.add(ByteCode.PUTSTATIC, mainClassName,
+                    cacheName, NAME_CACHE_SIGNATURE);
+        }
+
         cfw.add(ByteCode.RETURN);
         cfw.stopMethod((short)0);
     }
 
+    /**
+     * Allocates a {@link PropertyCache} for a property access site.
+     *
+     * @return the name of the static field holding the cache, or null if
+     *         the class already holds the maximum number of caches and the
+     *         site must use the uncached runtime call. With invokedynamic
+     *         the site owns its cache and the property name is returned.
+     */
+    String addPropertyCache(String name)
+    {
+        if (useInvokeDynamic) {
+            return name;
+        }
+        int N = propertyCacheCount;
+        if (N + nameCacheCount >= MAX_CACHES) {
+            return null;
+        }
+        if (N == 0) {
+            propertyCacheNames = new String[64];
+        } else if (N == propertyCacheNames.length) {
+            String[] array = new String[N * 2];
+            System.arraycopy(propertyCacheNames, 0, array, 0, N);
+            propertyCacheNames = array;
+        }
+        propertyCacheNames[N] = name;
+        propertyCacheCount = N + 1;
+        return "_pc" + N;
+    }
+
+    /**
+     * Returns the {@link NameCache} for free variable lookups of the given
+     * name, allocating it on first use. All sites in the class that look up
+     * the same name share one cache.
+     *
+     * @return the name of the static field holding the cache, or null if
+     *         the class already holds the maximum number of caches and the
+     *         site must use the uncached runtime call. With invokedynamic
+     *         the site owns its cache and the name is returned.
+     */
+    String addNameCache(String name)
+    {
+        if (useInvokeDynamic) {
+            return name;
+        }
+        if (nameCacheIndexes == null) {
+            nameCacheIndexes = new ObjToIntMap();
+        } else {
+            int index = nameCacheIndexes.get(name, -1);
+            if (index >= 0) {
+                return "_nc" + index;
+            }
+        }
+        int N = nameCacheCount;
+        if (N + propertyCacheCount >= MAX_CACHES) {
+            return null;
+        }
+        if (N == 0) {
+            nameCacheNames = new String[64];
+        } else if (N == nameCacheNames.length) {
+            String[] array = new String[N * 2];
+            System.arraycopy(nameCacheNames, 0, array, 0, N);
+            nameCacheNames = array;
+        }
+        nameCacheNames[N] = name;
+        nameCacheIndexes.put(name, N);
+        nameCacheCount = N + 1;
+        return "_nc" + N;
+    }
+
     void pushNumberAsObject(ClassFileWriter cfw, double num)
     {
         if (num == 0.0) {
@@ -1219,6 +1316,20 @@ public class Codegen implements Evaluator
 
     static final String ID_FIELD_NAME = "_id";
 
+    static final String PROPERTY_CACHE_CLASS
+        = "org/mozilla/javascript/PropertyCache";
+    static final String PROPERTY_CACHE_SIGNATURE
+        = "L" + PROPERTY_CACHE_CLASS + ";";
+
+    static final String NAME_CACHE_CLASS
+        = "org/mozilla/javascript/NameCache";
+    static final String NAME_CACHE_SIGNATURE
+        = "L" + NAME_CACHE_CLASS + ";";
+
+    // Like number constants, caches are initialized in <clinit>, which has
+    // to stay within the JVM method size limit.
+    private static final int MAX_CACHES = 2000;
+
     static final String REGEXP_INIT_METHOD_NAME = "_reInit";
     static final String REGEXP_INIT_METHOD_SIGNATURE
         =  "(Lorg/mozilla/javascript/Context;)V";
@@ -1236,6 +1347,8 @@ public class Codegen implements Evaluator
     private static int globalSerialClassCounter;
 
     private CompilerEnvirons compilerEnv;
+    // Link property, name and addition sites with invokedynamic
+    boolean useInvokeDynamic;
 
     private ObjArray directCallTargets;
     ScriptNode[] scriptOrFnNodes;
@@ -1248,6 +1361,13 @@ public class Codegen implements Evaluator
 
     private double[] itsConstantList;
     private int itsConstantListSize;
+
+    private String[] propertyCacheNames;
+    private int propertyCacheCount;
+
+    private String[] nameCacheNames;
+    private ObjToIntMap nameCacheIndexes;
+    private int nameCacheCount;
 }
 
 
@@ -2179,6 +2299,18 @@ class BodyCodegen
 
               case Token.NAME:
                 {
+                    String cacheField = codegen.addNameCache(node.getString());
+                    if (cacheField != null) {
+                        addNameCacheLoad(cacheField);
+                        cfw.addALoad(contextLocal);
+                        cfw.addALoad(variableObjectLocal);
+                        addNameCacheInvoke(cacheField,
+                            "name",
+                            "(Lorg/mozilla/javascript/Context;"
+                            +"Lorg/mozilla/javascript/Scriptable;"
+                            +")Ljava/lang/Object;");
+                        break;
+                    }
                     cfw.addALoad(contextLocal);
                     cfw.addALoad(variableObjectLocal);
                     cfw.addPush(node.getString());
@@ -2432,6 +2564,14 @@ class BodyCodegen
                                 "(Ljava/lang/Object;"
                                 +"Ljava/lang/CharSequence;"
                                 +")Ljava/lang/CharSequence;");
+                        } else if (codegen.useInvokeDynamic) {
+                            cfw.addALoad(contextLocal);
+                            cfw.addInvokeDynamic("add",
+                                "(Ljava/lang/Object;"
+                                +"Ljava/lang/Object;"
+                                +"Lorg/mozilla/javascript/Context;"
+                                +")Ljava/lang/Object;",
+                                ADD_BOOTSTRAP);
                         } else {
                             cfw.addALoad(contextLocal);
                             addScriptRuntimeInvoke("add",
@@ -3627,8 +3767,25 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
           case Token.GETPROP:
           case Token.GETELEM: {
             Node target = node.getFirstChild();
-            generateExpression(target, node);
             Node id = target.getNext();
+            String cacheField = null;
+            if (type == Token.GETPROP) {
+                cacheField = codegen.addPropertyCache(id.getString());
+            }
+            if (cacheField != null) {
+                generateExpression(target, node);
+                addPropertyCacheLoad(cacheField, 1);
+                cfw.addALoad(contextLocal);
+                cfw.addALoad(variableObjectLocal);
+                addPropertyCacheInvoke(cacheField,
+                    "getPropFunctionAndThis",
+                    "(Ljava/lang/Object;"
+                    +"Lorg/mozilla/javascript/Context;"
+                    +"Lorg/mozilla/javascript/Scriptable;"
+                    +")Lorg/mozilla/javascript/Callable;");
+                break;
+            }
+            generateExpression(target, node);
             if (type == Token.GETPROP) {
                 String property = id.getString();
                 cfw.addPush(property);
@@ -3658,6 +3815,18 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
 
           case Token.NAME: {
             String name = node.getString();
+            String cacheField = codegen.addNameCache(name);
+            if (cacheField != null) {
+                addNameCacheLoad(cacheField);
+                cfw.addALoad(contextLocal);
+                cfw.addALoad(variableObjectLocal);
+                addNameCacheInvoke(cacheField,
+                    "getNameFunctionAndThis",
+                    "(Lorg/mozilla/javascript/Context;"
+                    +"Lorg/mozilla/javascript/Scriptable;"
+                    +")Lorg/mozilla/javascript/Callable;");
+                break;
+            }
             cfw.addPush(name);
             cfw.addALoad(contextLocal);
             cfw.addALoad(variableObjectLocal);
@@ -3860,6 +4029,22 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
         }
     }
 
+    private static final ClassFileWriter.MHandle PROPERTY_BOOTSTRAP
+        = new ClassFileWriter.MHandle(ByteCode.MH_INVOKESTATIC,
+                                      Bootstrapper.CLASS_NAME,
+                                      "bootstrapProperty",
+                                      Bootstrapper.PROPERTY_SIGNATURE);
+    private static final ClassFileWriter.MHandle NAME_BOOTSTRAP
+        = new ClassFileWriter.MHandle(ByteCode.MH_INVOKESTATIC,
+                                      Bootstrapper.CLASS_NAME,
+                                      "bootstrapName",
+                                      Bootstrapper.NAME_SIGNATURE);
+    private static final ClassFileWriter.MHandle ADD_BOOTSTRAP
+        = new ClassFileWriter.MHandle(ByteCode.MH_INVOKESTATIC,
+                                      Bootstrapper.CLASS_NAME,
+                                      "bootstrapAdd",
+                                      Bootstrapper.ADD_SIGNATURE);
+
     private static final int JAVASCRIPT_EXCEPTION  = 0;
     private static final int EVALUATOR_EXCEPTION   = 1;
     private static final int ECMAERROR_EXCEPTION   = 2;
@@ -5038,8 +5223,38 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
 
     private void visitGetProp(Node node, Node child)
     {
-        generateExpression(child, node); // object
         Node nameChild = child.getNext();
+        String cacheField = null;
+        if (node.getType() == Token.GETPROP
+            && nameChild.getType() == Token.STRING)
+        {
+            cacheField = codegen.addPropertyCache(nameChild.getString());
+        }
+        if (cacheField != null) {
+            generateExpression(child, node); // object
+            // The cache is loaded only after the object expression, which
+            // may contain a yield: generator stack slots are restored as
+            // plain Objects.
+            addPropertyCacheLoad(cacheField, 1);
+            cfw.addALoad(contextLocal);
+            if (child.getType() == Token.THIS) {
+                addPropertyCacheInvoke(cacheField,
+                    "getObjectProp",
+                    "(Lorg/mozilla/javascript/Scriptable;"
+                    +"Lorg/mozilla/javascript/Context;"
+                    +")Ljava/lang/Object;");
+            } else {
+                cfw.addALoad(variableObjectLocal);
+                addPropertyCacheInvoke(cacheField,
+                    "getObjectProp",
+                    "(Ljava/lang/Object;"
+                    +"Lorg/mozilla/javascript/Context;"
+                    +"Lorg/mozilla/javascript/Scriptable;"
+                    +")Ljava/lang/Object;");
+            }
+            return;
+        }
+        generateExpression(child, node); // object
         generateExpression(nameChild, node);  // the name
         if (node.getType() == Token.GETPROPNOWARN) {
             cfw.addALoad(contextLocal);
@@ -5079,6 +5294,14 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
 
     private void visitSetProp(int type, Node node, Node child)
     {
+        Node nameNode = child.getNext();
+        if (nameNode.getType() == Token.STRING) {
+            String cacheField = codegen.addPropertyCache(nameNode.getString());
+            if (cacheField != null) {
+                visitCachedSetProp(type, node, child, cacheField);
+                return;
+            }
+        }
         Node objectChild = child;
         generateExpression(child, node);
         child = child.getNext();
@@ -5124,6 +5347,44 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
             +")Ljava/lang/Object;");
     }
 
+    // Same as visitSetProp, going through the site's PropertyCache
+    private void visitCachedSetProp(int type, Node node, Node child,
+                                    String cacheField)
+    {
+        Node objectChild = child;
+        generateExpression(child, node);
+        child = child.getNext().getNext();
+        if (type == Token.SETPROP_OP) {
+            // stack: ... object -> ... object cache object
+            cfw.add(ByteCode.DUP);
+            addPropertyCacheLoad(cacheField, 1);
+            cfw.addALoad(contextLocal);
+            if (objectChild.getType() == Token.THIS) {
+                addPropertyCacheInvoke(cacheField,
+                    "getObjectProp",
+                    "(Lorg/mozilla/javascript/Scriptable;"
+                    +"Lorg/mozilla/javascript/Context;"
+                    +")Ljava/lang/Object;");
+            } else {
+                addPropertyCacheInvoke(cacheField,
+                    "getObjectProp",
+                    "(Ljava/lang/Object;"
+                    +"Lorg/mozilla/javascript/Context;"
+                    +")Ljava/lang/Object;");
+            }
+        }
+        generateExpression(child, node);
+        // stack: ... object value -> ... cache object value
+        addPropertyCacheLoad(cacheField, 2);
+        cfw.addALoad(contextLocal);
+        addPropertyCacheInvoke(cacheField,
+            "setObjectProp",
+            "(Ljava/lang/Object;"
+            +"Ljava/lang/Object;"
+            +"Lorg/mozilla/javascript/Context;"
+            +")Ljava/lang/Object;");
+    }
+
     private void visitSetElem(int type, Node node, Node child)
     {
         generateExpression(child, node);
@@ -5296,6 +5557,62 @@ Else pass the JS object in the aReg and 0.0 in the dReg.
                       methodSignature);
     }
 
+    // Puts the cache of the site below the given number of operands on
+    // the stack. Invokedynamic sites carry their cache themselves.
+    private void addPropertyCacheLoad(String cacheField, int operands)
+    {
+        if (codegen.useInvokeDynamic) {
+            return;
+        }
+        cfw.add(ByteCode.GETSTATIC, codegen.mainClassName, cacheField,
+                Codegen.PROPERTY_CACHE_SIGNATURE);
+        if (operands == 1) {
+            cfw.add(ByteCode.SWAP);
+        } else {
+            cfw.add(ByteCode.DUP_X2);
+            cfw.add(ByteCode.POP);
+        }
+    }
+
+    private void addPropertyCacheInvoke(String cacheField,
+                                        String methodName,
+                                        String methodSignature)
+    {
+        if (codegen.useInvokeDynamic) {
+            cfw.addInvokeDynamic(methodName, methodSignature,
+                                 PROPERTY_BOOTSTRAP, cacheField);
+            return;
+        }
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL,
+                      Codegen.PROPERTY_CACHE_CLASS,
+                      methodName,
+                      methodSignature);
+    }
+
+    private void addNameCacheLoad(String cacheField)
+    {
+        if (codegen.useInvokeDynamic) {
+            return;
+        }
+        cfw.add(ByteCode.GETSTATIC, codegen.mainClassName, cacheField,
+                Codegen.NAME_CACHE_SIGNATURE);
+    }
+
+    private void addNameCacheInvoke(String cacheField,
+                                    String methodName,
+                                    String methodSignature)
+    {
+        if (codegen.useInvokeDynamic) {
+            cfw.addInvokeDynamic(methodName, methodSignature,
+                                 NAME_BOOTSTRAP, cacheField);
+            return;
+        }
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL,
+                      Codegen.NAME_CACHE_CLASS,
+                      methodName,
+                      methodSignature);
+    }
+
     private void addOptRuntimeInvoke(String methodName,
                                      String methodSignature)
     {
@@ -7,6 +7,8 @@
 package org.mozilla.javascript.regexp;
 
 import java.io.Serializable;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
@@ -52,6 +54,19 @@ public class NativeRegExp extends IdScriptableObject implements Function
 
     private static final boolean debug = false;
 
+    /**
+     * Maximum number of compiled programs kept in {@link #compiledCache}.
+     */
+    static final int MAX_CACHED_PROGRAMS = 512;
+
+    // Compiled programs shared by all contexts and threads, keyed by flags
+    // and source, see compileRE. RECompiled is not changed after it is
+    // compiled, except for the synchronized lazy conversion of its
+    // character classes and the synchronized lazy creation of its
+    // automaton, see getNfa.
+    private static final ConcurrentHashMap<String,RECompiled> compiledCache
+        = new ConcurrentHashMap<String,RECompiled>();
+
     private static final byte REOP_SIMPLE_START  = 1;  /* start of 'simple opcodes' */
     private static final byte REOP_EMPTY         = 1;  /* match rest of input against rest of r.e. */
     private static final byte REOP_BOL           = 2;  /* beginning of input (or line if multiline) */
@@ -109,6 +124,35 @@ public class NativeRegExp extends IdScriptableObject implements Function
 
     private static final int ANCHOR_BOL = -2;
 
+    /*
+     * The backtracking matcher takes exponential time on patterns like
+     * (a+)+b. After this many backtracks, plus BACKTRACK_LIMIT_PER_CHAR for
+     * each character of the input, patterns without backreferences and
+     * lookaheads are matched again by an automaton that simulates all
+     * alternatives in parallel, in time linear in the input length.
+     */
+    private static final int BACKTRACK_LIMIT = 10000;
+    private static final int BACKTRACK_LIMIT_PER_CHAR = 16;
+
+    // Patterns whose automaton would have more instructions, or more states
+    // counting the empty iteration depth, see addNfaThread, are always
+    // backtracked
+    private static final int MAX_NFA_LENGTH = 10000;
+    private static final int MAX_NFA_STATES = 100000;
+
+    private static final byte NFA_CHAR       = 1;  /* match a single char */
+    private static final byte NFA_CHARi      = 2;  /* case-independent NFA_CHAR */
+    private static final byte NFA_SIMPLE     = 3;  /* one char matched by simple opcode */
+    private static final byte NFA_ASSERT     = 4;  /* zero width simple opcode */
+    private static final byte NFA_SPLIT      = 5;  /* try first target, then second */
+    private static final byte NFA_JUMP       = 6;
+    private static final byte NFA_LPAREN     = 7;  /* record start of paren */
+    private static final byte NFA_RPAREN     = 8;  /* record end of paren */
+    private static final byte NFA_CLEAR      = 9;  /* clear parens of quantifier child */
+    private static final byte NFA_ENTER      = 10; /* start of loop body or optional copy */
+    private static final byte NFA_CHECK      = 11; /* end of loop body or optional copy */
+    private static final byte NFA_MATCH      = 12;
+
 
     public static void init(Context cx, Scriptable scope, boolean sealed)
     {
@@ -282,7 +326,6 @@ public class NativeRegExp extends IdScriptableObject implements Function
 
     static RECompiled compileRE(Context cx, String str, String global, boolean flat)
     {
-        RECompiled regexp = new RECompiled(str);
         int length = str.length();
         int flags = 0;
         if (global != null) {
@@ -304,6 +347,13 @@ public class NativeRegExp extends IdScriptableObject implements Function
                 flags |= f;
             }
         }
+
+        String cacheKey = (char)(flat ? flags | 0x10 : flags) + str;
+        RECompiled regexp = compiledCache.get(cacheKey);
+        if (regexp != null) {
+            return regexp;
+        }
+        regexp = new RECompiled(str);
         regexp.flags = flags;
 
         CompilerState state = new CompilerState(cx, regexp.source, length, flags);
@@ -379,9 +429,28 @@ public class NativeRegExp extends IdScriptableObject implements Function
                 System.out.println("Anchor ch = '" + (char)regexp.anchorCh + "'");
             }
         }
+        // Patterns with warnings are compiled every time, so that every
+        // context in strict mode gets to report them.
+        if (!state.hasWarnings) {
+            cacheCompiled(cacheKey, regexp);
+        }
         return regexp;
     }
 
+    private static void cacheCompiled(String key, RECompiled regexp)
+    {
+        if (compiledCache.size() >= MAX_CACHED_PROGRAMS) {
+            // Make room by dropping arbitrary entries; patterns that are
+            // used all the time are quickly compiled and cached again.
+            Iterator<String> iter = compiledCache.keySet().iterator();
+            for (int i = 0; i < MAX_CACHED_PROGRAMS / 8 && iter.hasNext(); i++) {
+                iter.next();
+                iter.remove();
+            }
+        }
+        compiledCache.put(key, regexp);
+    }
+
     static boolean isDigit(char c)
     {
         return '0' <= c && c <= '9';
@@ -847,6 +916,7 @@ public class NativeRegExp extends IdScriptableObject implements Function
  * http://wiki.ecmascript.org/doku.php?id=harmony:regexp_match_web_reality
  * http://wiki.ecmascript.org/doku.php?id=strawman:match_web_reality_spec
  */
+                    state.hasWarnings = true;
                     reportWarning(state.cx, "msg.bad.backref", "");
                     /* octal escape */
                     num = 0;
@@ -876,8 +946,10 @@ public class NativeRegExp extends IdScriptableObject implements Function
                     termStart = state.cp - 1;
                     num = getDecimalValue(c, state, 0xFFFF,
                                           "msg.overlarge.backref");
-                    if (num > state.backReferenceLimit)
+                    if (num > state.backReferenceLimit) {
+                        state.hasWarnings = true;
                         reportWarning(state.cx, "msg.bad.backref", "");
+                    }
                     /*
                      * n > count of parentheses, then treat as octal instead.
                      * Also see note above concerning 'web reality'
@@ -1362,6 +1434,284 @@ public class NativeRegExp extends IdScriptableObject implements Function
         return pc;
     }
 
+    /*
+     * Return the automaton for the pattern, or null if it contains
+     * backreferences or lookaheads, which need backtracking, or if the
+     * automaton would be too large.
+     */
+    private static RENfa getNfa(RECompiled re)
+    {
+        synchronized (re) {
+            if (!re.nfaCompiled) {
+                RENfa nfa = new RENfa();
+                int pc = emitNfa(nfa, re, 0);
+                if (pc >= 0) {
+                    if (re.program[pc] != REOP_END) throw Kit.codeBug();
+                    nfa.emit(NFA_MATCH, 0, 0);
+                    re.nfa = nfa;
+                }
+                re.nfaCompiled = true;
+            }
+            return re.nfa;
+        }
+    }
+
+    /*
+     * Translate the bytecode starting at pc into automaton instructions up to
+     * the REOP_JUMP, REOP_ENDCHILD or REOP_END that ends the sequence, and
+     * return the pc of that opcode or -1 if the sequence can not be
+     * translated.
+     */
+    private static int emitNfa(RENfa nfa, RECompiled re, int pc)
+    {
+        byte[] program = re.program;
+        for (;;) {
+            byte op = program[pc];
+            switch (op) {
+            case REOP_JUMP:
+            case REOP_ENDCHILD:
+            case REOP_END:
+                return pc;
+            case REOP_EMPTY:
+                pc++;
+                break;
+            case REOP_BOL:
+            case REOP_EOL:
+            case REOP_WBDRY:
+            case REOP_WNONBDRY:
+                nfa.emit(NFA_ASSERT, op, 0);
+                pc++;
+                break;
+            case REOP_DOT:
+            case REOP_DIGIT:
+            case REOP_NONDIGIT:
+            case REOP_ALNUM:
+            case REOP_NONALNUM:
+            case REOP_SPACE:
+            case REOP_NONSPACE:
+                nfa.emit(NFA_SIMPLE, op, pc + 1);
+                pc++;
+                break;
+            case REOP_FLAT1:
+            case REOP_FLAT1i:
+                nfa.emit(NFA_SIMPLE, op, pc + 1);
+                pc += 2;
+                break;
+            case REOP_UCFLAT1:
+            case REOP_UCFLAT1i:
+            case REOP_CLASS:
+            case REOP_NCLASS:
+                nfa.emit(NFA_SIMPLE, op, pc + 1);
+                pc += 1 + INDEX_LEN;
+                break;
+            case REOP_FLAT:
+            case REOP_FLATi:
+            {
+                int offset = getIndex(program, pc + 1);
+                int length = getIndex(program, pc + 1 + INDEX_LEN);
+                if (length > MAX_NFA_LENGTH) {
+                    return -1;
+                }
+                byte nfaOp = (op == REOP_FLAT) ? NFA_CHAR : NFA_CHARi;
+                for (int i = 0; i < length; i++) {
+                    nfa.emit(nfaOp, re.source[offset + i], 0);
+                }
+                pc += 1 + 2 * INDEX_LEN;
+            }
+            break;
+            case REOP_LPAREN:
+            case REOP_RPAREN:
+                nfa.emit(op == REOP_LPAREN ? NFA_LPAREN : NFA_RPAREN,
+                         getIndex(program, pc + 1), 0);
+                pc += 1 + INDEX_LEN;
+                break;
+            case REOP_ALTPREREQ:
+            case REOP_ALTPREREQi:
+            case REOP_ALTPREREQ2:
+                // The prerequisite only saves trying both alternatives
+                pc += 2 * INDEX_LEN;
+                // fall through to REOP_ALT
+            case REOP_ALT:
+            {
+                pc++;
+                int nextAltPc = pc + getOffset(program, pc);
+                int split = nfa.emit(NFA_SPLIT, nfa.length + 1, 0);
+                int endPc = emitNfa(nfa, re, pc + INDEX_LEN);
+                if (endPc < 0) {
+                    return -1;
+                }
+                if (program[endPc] != REOP_JUMP) throw Kit.codeBug();
+                int jump = nfa.emit(NFA_JUMP, 0, 0);
+                nfa.arg2[split] = nfa.length;
+                endPc = emitNfa(nfa, re, nextAltPc);
+                if (endPc < 0) {
+                    return -1;
+                }
+                if (program[endPc] != REOP_JUMP) throw Kit.codeBug();
+                nfa.arg1[jump] = nfa.length;
+                pc = endPc + 1 + getOffset(program, endPc + 1);
+            }
+            break;
+            case REOP_STAR:
+            case REOP_PLUS:
+            case REOP_OPT:
+            case REOP_QUANT:
+            case REOP_MINIMALSTAR:
+            case REOP_MINIMALPLUS:
+            case REOP_MINIMALOPT:
+            case REOP_MINIMALQUANT:
+            {
+                int min, max;
+                pc++;
+                switch (op) {
+                    case REOP_STAR:
+                    case REOP_MINIMALSTAR:
+                        min = 0;
+                        max = -1;
+                        break;
+                    case REOP_PLUS:
+                    case REOP_MINIMALPLUS:
+                        min = 1;
+                        max = -1;
+                        break;
+                    case REOP_OPT:
+                    case REOP_MINIMALOPT:
+                        min = 0;
+                        max = 1;
+                        break;
+                    default:
+                        min = getOffset(program, pc);
+                        // See comments in emitREBytecode for " - 1" reason
+                        max = getOffset(program, pc + INDEX_LEN) - 1;
+                        pc += 2 * INDEX_LEN;
+                        break;
+                }
+                boolean greedy = op == REOP_STAR || op == REOP_PLUS
+                                 || op == REOP_OPT || op == REOP_QUANT;
+                int parenCount = getIndex(program, pc);
+                int parenIndex = getIndex(program, pc + INDEX_LEN);
+                int nextPc = pc + 2 * INDEX_LEN;
+                int kidPc = nextPc + INDEX_LEN;
+                nextPc += getOffset(program, nextPc);
+                if (!emitNfaQuantifier(nfa, re, kidPc, min, max, greedy,
+                                       parenCount, parenIndex)) {
+                    return -1;
+                }
+                pc = nextPc;
+            }
+            break;
+            default:
+                // Backreferences and lookaheads
+                return -1;
+            }
+            if (nfa.length > MAX_NFA_LENGTH) {
+                return -1;
+            }
+        }
+    }
+
+    /*
+     * Emit min copies of the quantifier child followed by a loop or by
+     * max - min optional copies. Parens inside the child are cleared before
+     * the iterations where the backtracking matcher clears them: for greedy
+     * quantifiers from the first iteration after min and the second one,
+     * for non-greedy ones from the second iteration or from the first one if
+     * min is 0. A loop clears them on every iteration, which only differs on
+     * the first one if the parens were set by an earlier iteration of an
+     * enclosing quantifier that did not clear them, so such patterns are not
+     * translated.
+     *
+     * Like the backtracking matcher, the automaton fails iterations after
+     * min that match the empty string: NFA_ENTER and NFA_CHECK surround each
+     * loop body and optional copy, see addNfaThread.
+     */
+    private static boolean
+    emitNfaQuantifier(RENfa nfa, RECompiled re, int kidPc, int min, int max,
+                      boolean greedy, int parenCount, int parenIndex)
+    {
+        if (max == 0) {
+            return false;
+        }
+        if (parenCount != 0) {
+            nfa.parenQuantifierCount++;
+        }
+        int parenQuantifierCount = nfa.parenQuantifierCount;
+        for (int k = 1; k <= min; k++) {
+            if (parenCount != 0 && !greedy && k > 1) {
+                nfa.emit(NFA_CLEAR, parenIndex, parenCount);
+            }
+            if (!emitNfaChild(nfa, re, kidPc)) {
+                return false;
+            }
+            if (greedy && min > 1
+                && nfa.parenQuantifierCount != parenQuantifierCount)
+            {
+                return false;
+            }
+        }
+        if (max == -1) {
+            int split = nfa.emit(NFA_SPLIT, 0, 0);
+            int body = enterNfaIteration(nfa);
+            if (parenCount != 0) {
+                nfa.emit(NFA_CLEAR, parenIndex, parenCount);
+            }
+            if (!emitNfaChild(nfa, re, kidPc)) {
+                return false;
+            }
+            exitNfaIteration(nfa);
+            nfa.emit(NFA_JUMP, split, 0);
+            nfa.setSplit(split, body, nfa.length, greedy);
+        } else {
+            // Chain the splits through arg1 until the end is known
+            int lastSplit = -1;
+            for (int k = min + 1; k <= max; k++) {
+                lastSplit = nfa.emit(NFA_SPLIT, lastSplit, 0);
+                enterNfaIteration(nfa);
+                if (parenCount != 0
+                    && (greedy ? k > Math.max(min, 1) : k > 1 || min == 0))
+                {
+                    nfa.emit(NFA_CLEAR, parenIndex, parenCount);
+                }
+                if (!emitNfaChild(nfa, re, kidPc)) {
+                    return false;
+                }
+                exitNfaIteration(nfa);
+            }
+            int end = nfa.length;
+            while (lastSplit >= 0) {
+                int previous = nfa.arg1[lastSplit];
+                nfa.setSplit(lastSplit, lastSplit + 1, end, greedy);
+                lastSplit = previous;
+            }
+        }
+        return nfa.length <= MAX_NFA_LENGTH
+               && nfa.length * (nfa.maxDepth + 1) <= MAX_NFA_STATES;
+    }
+
+    private static int enterNfaIteration(RENfa nfa)
+    {
+        if (++nfa.depth > nfa.maxDepth) {
+            nfa.maxDepth = nfa.depth;
+        }
+        return nfa.emit(NFA_ENTER, nfa.depth, 0);
+    }
+
+    private static void exitNfaIteration(RENfa nfa)
+    {
+        nfa.emit(NFA_CHECK, nfa.depth, 0);
+        --nfa.depth;
+    }
+
+    private static boolean emitNfaChild(RENfa nfa, RECompiled re, int kidPc)
+    {
+        int endPc = emitNfa(nfa, re, kidPc);
+        if (endPc < 0) {
+            return false;
+        }
+        if (re.program[endPc] != REOP_ENDCHILD) throw Kit.codeBug();
+        return nfa.length <= MAX_NFA_LENGTH;
+    }
+
     private static void
     pushProgState(REGlobalData gData, int min, int max, int cp,
                   REBackTrackData backTrackLastToSave,
@@ -2339,6 +2689,13 @@ public class NativeRegExp extends IdScriptableObject implements Function
             if (!result) {
                 REBackTrackData backTrackData = gData.backTrackStackTop;
                 if (backTrackData != null) {
+                    if (gData.backTrackLimit != 0
+                        && --gData.backTrackLimit == 0
+                        && getNfa(gData.regexp) != null)
+                    {
+                        gData.backTrackLimitHit = true;
+                        return false;
+                    }
                     gData.backTrackStackTop = backTrackData.previous;
                     gData.parens = backTrackData.parens;
                     gData.cp = backTrackData.cp;
@@ -2358,6 +2715,241 @@ public class NativeRegExp extends IdScriptableObject implements Function
 
     }
 
+    /*
+     * Match the automaton against the input starting at positions from
+     * "from" on, keeping for each state only the thread that the backtracking
+     * matcher would try first, so that the match and the parens are the same
+     * as the ones it finds. The backtracking matcher already failed at
+     * positions from start to from - 1.
+     */
+    private static boolean
+    matchNfa(REGlobalData gData, RENfa nfa, String input, int start,
+             int from, int end)
+    {
+        RECompiled re = gData.regexp;
+        int length = nfa.length;
+        int stateCount = length * (nfa.maxDepth + 1);
+        // Element 0 of the captures is the start of the match, followed by
+        // start and end of each paren
+        int capCount = 1 + 2 * re.parenCount;
+        int[] threadPcs = new int[length];
+        int[][] threadCaps = new int[length][];
+        int[] nextPcs = new int[length];
+        int[][] nextCaps = new int[length][];
+        int[] marks = new int[stateCount];
+        int[] stack = new int[2 * (2 * stateCount + 1)];
+        int[][] stackCaps = new int[2 * stateCount + 1][];
+        int mark = 1;
+        int threadCount = 0;
+        int[] matchCaps = null;
+        int matchEnd = -1;
+        boolean anchorBol = re.anchorCh == ANCHOR_BOL && !gData.multiline;
+
+        for (int cp = from; ; cp++) {
+            if (matchCaps == null && (cp == from || !anchorBol)) {
+                if (threadCount == 0 && re.anchorCh >= 0) {
+                    ++mark;
+                    while (cp != end) {
+                        char c = input.charAt(cp);
+                        if (c == re.anchorCh ||
+                                ((re.flags & JSREG_FOLD) != 0
+                                 && upcase(c) == upcase((char)re.anchorCh)))
+                        {
+                            break;
+                        }
+                        ++cp;
+                    }
+                    if (cp == end) {
+                        return false;
+                    }
+                }
+                int[] caps = new int[capCount];
+                for (int i = 1; i < capCount; i++) {
+                    caps[i] = -1;
+                }
+                caps[0] = cp;
+                threadCount = addNfaThread(gData, nfa, input, end, cp, 0, caps,
+                                           mark, marks, threadPcs, threadCaps,
+                                           threadCount, stack, stackCaps);
+            }
+            if (threadCount == 0) {
+                if (matchCaps != null || anchorBol || cp == end) {
+                    break;
+                }
+                ++mark;
+                continue;
+            }
+            int nextCount = 0;
+            ++mark;
+            for (int i = 0; i < threadCount; i++) {
+                int pc = threadPcs[i];
+                int[] caps = threadCaps[i];
+                threadCaps[i] = null;
+                byte op = nfa.ops[pc];
+                if (op == NFA_MATCH) {
+                    // Drop the threads the backtracking matcher would try
+                    // after this one
+                    matchCaps = caps;
+                    matchEnd = cp;
+                    for (int j = i + 1; j < threadCount; j++) {
+                        threadCaps[j] = null;
+                    }
+                    break;
+                }
+                if (cp == end) {
+                    continue;
+                }
+                boolean matched;
+                if (op == NFA_CHAR) {
+                    matched = input.charAt(cp) == nfa.arg1[pc];
+                } else if (op == NFA_CHARi) {
+                    char c1 = (char)nfa.arg1[pc];
+                    char c2 = input.charAt(cp);
+                    matched = c1 == c2 || upcase(c1) == upcase(c2);
+                } else {
+                    gData.cp = cp;
+                    matched = simpleMatch(gData, input, nfa.arg1[pc],
+                                          re.program, nfa.arg2[pc], end,
+                                          false) >= 0;
+                }
+                if (matched) {
+                    nextCount = addNfaThread(gData, nfa, input, end, cp + 1,
+                                             pc + 1, caps, mark, marks,
+                                             nextPcs, nextCaps, nextCount,
+                                             stack, stackCaps);
+                }
+            }
+            int[] tmpPcs = threadPcs;
+            threadPcs = nextPcs;
+            nextPcs = tmpPcs;
+            int[][] tmpCaps = threadCaps;
+            threadCaps = nextCaps;
+            nextCaps = tmpCaps;
+            threadCount = nextCount;
+            if (cp == end) {
+                break;
+            }
+        }
+        if (matchCaps == null) {
+            return false;
+        }
+        gData.cp = matchEnd;
+        gData.skipped = matchCaps[0] - start;
+        for (int i = 0; i < re.parenCount; i++) {
+            int index = matchCaps[1 + 2 * i];
+            if (index < 0) {
+                gData.parens[i] = -1l;
+            } else {
+                gData.setParens(i, index, matchCaps[2 + 2 * i] - index);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Follow the instructions that do not consume input from pc, depth first
+     * with the first target of splits first, and append the ones that do to
+     * the thread list.
+     *
+     * Besides the instruction, the state of a thread includes the depth of
+     * the outermost loop body or optional copy that it entered at this
+     * position, 0 if none: NFA_CHECK fails such empty iterations, as the
+     * backtracking matcher does. A state that was already reached at this
+     * position belongs to a thread that the backtracking matcher tries first
+     * and that has the same continuations, so it is not followed again.
+     */
+    private static int
+    addNfaThread(REGlobalData gData, RENfa nfa, String input, int end,
+                 int cp, int pc, int[] caps, int mark, int[] marks,
+                 int[] threadPcs, int[][] threadCaps, int threadCount,
+                 int[] stack, int[][] stackCaps)
+    {
+        int stride = nfa.maxDepth + 1;
+        int top = 0;
+        stack[0] = pc;
+        stack[1] = 0;
+        stackCaps[top++] = caps;
+        while (top != 0) {
+            --top;
+            pc = stack[2 * top];
+            int emptyDepth = stack[2 * top + 1];
+            caps = stackCaps[top];
+            stackCaps[top] = null;
+            byte op = nfa.ops[pc];
+            if (emptyDepth > nfa.depths[pc]) {
+                // Outside of the iteration that has not consumed input
+                emptyDepth = 0;
+            }
+            int state = pc * stride + emptyDepth;
+            if (marks[state] == mark) {
+                continue;
+            }
+            marks[state] = mark;
+            int next = pc + 1;
+            switch (op) {
+            case NFA_JUMP:
+                next = nfa.arg1[pc];
+                break;
+            case NFA_SPLIT:
+                stack[2 * top] = nfa.arg2[pc];
+                stack[2 * top + 1] = emptyDepth;
+                stackCaps[top++] = caps;
+                next = nfa.arg1[pc];
+                break;
+            case NFA_ASSERT:
+                gData.cp = cp;
+                if (simpleMatch(gData, input, nfa.arg1[pc], null, 0, end,
+                                false) < 0)
+                {
+                    continue;
+                }
+                break;
+            case NFA_LPAREN:
+                caps = caps.clone();
+                caps[1 + 2 * nfa.arg1[pc]] = cp;
+                break;
+            case NFA_RPAREN:
+                caps = caps.clone();
+                caps[2 + 2 * nfa.arg1[pc]] = cp;
+                break;
+            case NFA_CLEAR:
+                caps = caps.clone();
+                for (int i = 0; i < nfa.arg2[pc]; i++) {
+                    caps[1 + 2 * (nfa.arg1[pc] + i)] = -1;
+                    caps[2 + 2 * (nfa.arg1[pc] + i)] = -1;
+                }
+                break;
+            case NFA_ENTER:
+                if (emptyDepth == 0) {
+                    emptyDepth = nfa.arg1[pc];
+                }
+                break;
+            case NFA_CHECK:
+                if (emptyDepth != 0) {
+                    continue;
+                }
+                break;
+            default:
+                // Instructions that consume input have no empty iteration
+                // state, see the marks of the next position
+                if (emptyDepth != 0) {
+                    state = pc * stride;
+                    if (marks[state] == mark) {
+                        continue;
+                    }
+                    marks[state] = mark;
+                }
+                threadPcs[threadCount] = pc;
+                threadCaps[threadCount++] = caps;
+                continue;
+            }
+            stack[2 * top] = next;
+            stack[2 * top + 1] = emptyDepth;
+            stackCaps[top++] = caps;
+        }
+        return threadCount;
+    }
+
     private static boolean
     matchRegExp(REGlobalData gData, RECompiled re,
                 String input, int start, int end, boolean multiline)
@@ -2373,6 +2965,8 @@ public class NativeRegExp extends IdScriptableObject implements Function
 
         gData.multiline = multiline || (re.flags & JSREG_MULTILINE) != 0;
         gData.regexp = re;
+        gData.backTrackLimit = (int)Math.min(Integer.MAX_VALUE,
+            BACKTRACK_LIMIT + (long)BACKTRACK_LIMIT_PER_CHAR * (end - start));
 
         int anchorCh = gData.regexp.anchorCh;
         //
@@ -2412,6 +3006,9 @@ public class NativeRegExp extends IdScriptableObject implements Function
             if (result) {
                 return true;
             }
+            if (gData.backTrackLimitHit) {
+                return matchNfa(gData, re.nfa, input, start, i, end);
+            }
             if (anchorCh == ANCHOR_BOL && !gData.multiline) {
                 gData.skipped = end;
                 return false;
@@ -2793,12 +3390,63 @@ class RECompiled implements Serializable
     int classCount;         /* count [...] bitmaps */
     RECharSet[] classList;  /* list of [...] bitmaps */
     int anchorCh = -1;      /* if >= 0, then re starts with this literal char */
+    transient RENfa nfa;    /* automaton, see NativeRegExp.getNfa */
+    transient boolean nfaCompiled;
 
     RECompiled(String str) {
         this.source = str.toCharArray();
     }
 }
 
+/*
+ * Program of the automaton that matches patterns without backreferences and
+ * lookaheads in linear time, translated from the bytecode by
+ * NativeRegExp.emitNfa. Instruction opcodes are stored in ops, with their
+ * operands in arg1 and arg2.
+ */
+class RENfa {
+
+    byte[] ops = new byte[16];
+    int[] arg1 = new int[16];
+    int[] arg2 = new int[16];
+    int[] depths = new int[16]; /* enclosing loop bodies and optional copies */
+    int length;
+    int maxDepth;
+
+    int depth;                  /* current depth, while compiling */
+    int parenQuantifierCount;   /* quantifiers with parens, while compiling */
+
+    int emit(byte op, int a1, int a2)
+    {
+        if (length == ops.length) {
+            byte[] newOps = new byte[length * 2];
+            System.arraycopy(ops, 0, newOps, 0, length);
+            ops = newOps;
+            arg1 = grow(arg1);
+            arg2 = grow(arg2);
+            depths = grow(depths);
+        }
+        ops[length] = op;
+        arg1[length] = a1;
+        arg2[length] = a2;
+        depths[length] = depth;
+        return length++;
+    }
+
+    private int[] grow(int[] array)
+    {
+        int[] newArray = new int[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, length);
+        return newArray;
+    }
+
+    void setSplit(int pc, int body, int next, boolean greedy)
+    {
+        arg1[pc] = greedy ? body : next;
+        arg2[pc] = greedy ? next : body;
+    }
+}
+
 class RENode {
 
     RENode(byte op)
@@ -2860,6 +3508,7 @@ class CompilerState {
     int         parenNesting;
     int         classCount;   /* number of [] encountered */
     int         progLength;   /* estimated bytecode length */
+    boolean     hasWarnings;  /* a warning was reported for the source */
     RENode      result;
 }
 
@@ -2926,6 +3575,10 @@ class REGlobalData {
 
     REBackTrackData backTrackStackTop;  /* last matched-so-far position */
 
+    int backTrackLimit;             /* backtracks left before matching with
+                                       the automaton, 0 for no limit */
+    boolean backTrackLimitHit;
+
 
     /**
      * Get start of parenthesis capture contents, -1 for empty.
@@ -0,0 +1,84 @@
+package org.mozilla.javascript.benchmarks;
+
+import org.junit.Test;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.NodeVisitor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the heap retained by the parse trees of all the scripts under
+ * the benchmarks directory, which must be the working directory.
+ */
+public class AstMemoryBenchmark
+{
+    private static void findScripts(File dir, List<File> scripts)
+    {
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File f : files) {
+            if (f.isDirectory()) {
+                findScripts(f, scripts);
+            } else if (f.getName().endsWith(".js")) {
+                scripts.add(f);
+            }
+        }
+    }
+
+    private static long usedMemory()
+    {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    @Test
+    public void testRetainedHeap()
+        throws IOException
+    {
+        List<File> scripts = new ArrayList<File>();
+        findScripts(new File("."), scripts);
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(true);
+        env.setRecordingLocalJsDocComments(true);
+
+        List<AstRoot> roots = new ArrayList<AstRoot>();
+        long before = usedMemory();
+        for (File script : scripts) {
+            Reader rdr = new InputStreamReader(new FileInputStream(script),
+                                               "utf8");
+            try {
+                roots.add(new Parser(env).parse(rdr, script.getPath(), 1));
+            } finally {
+                rdr.close();
+            }
+        }
+        long bytes = usedMemory() - before;
+
+        final long[] nodes = new long[1];
+        for (AstRoot root : roots) {
+            root.visitAll(new NodeVisitor() {
+                public boolean visit(AstNode node) {
+                    nodes[0]++;
+                    return true;
+                }
+            });
+        }
+        System.out.println("Parse trees of " + roots.size() + " scripts: "
+                           + nodes[0] + " nodes, " + (bytes >> 10)
+                           + " KB retained, " + (bytes / nodes[0])
+                           + " bytes per node");
+    }
+}
@@ -0,0 +1,119 @@
+package org.mozilla.javascript.benchmarks;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Measures the time and the heap allocation per loop iteration of numeric
+ * loops over arrays, object properties and strings. The allocation is only
+ * reported on VMs that can count the bytes allocated by a thread.
+ */
+public class InterpreterNumericBenchmark
+{
+    private static final int SIZE = 10000;
+    private static final int ROUNDS = 200;
+
+    private static final String SCRIPT =
+        "function dot(a, b) {\n" +
+        "  var s = 0;\n" +
+        "  for (var i = 0; i < a.length; i++) {\n" +
+        "    s += a[i] * b[i];\n" +
+        "  }\n" +
+        "  return s;\n" +
+        "}\n" +
+        "function scale(a, f) {\n" +
+        "  for (var i = 0; i < a.length; i++) {\n" +
+        "    a[i] = a[i] * f + 0.5;\n" +
+        "    a[i]--;\n" +
+        "  }\n" +
+        "}\n" +
+        "function count(a, s) {\n" +
+        "  var hist = [0, 0, 0, 0];\n" +
+        "  for (var i = 0; i < a.length; i++) {\n" +
+        "    if (a[i] > 0.5 && i < s.length) {\n" +
+        "      hist[i & 3]++;\n" +
+        "    }\n" +
+        "  }\n" +
+        "  return hist[0] + hist[1] + hist[2] + hist[3];\n" +
+        "}\n" +
+        "function makeArray(n, seed) {\n" +
+        "  var a = [];\n" +
+        "  for (var i = 0; i < n; i++) {\n" +
+        "    a.push(((i * seed) % 101) / 101);\n" +
+        "  }\n" +
+        "  return a;\n" +
+        "}\n" +
+        "var a = makeArray(" + SIZE + ", 7), b = makeArray(" + SIZE + ", 13);\n" +
+        "var s = new Array(" + SIZE + " + 1).join('x');\n" +
+        "function run() {\n" +
+        "  scale(a, 1);\n" +
+        "  return dot(a, b) + count(a, s);\n" +
+        "}\n";
+
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            Method m = Class.forName("com.sun.management.ThreadMXBean")
+                .getMethod("getThreadAllocatedBytes", long.class);
+            return ((Long) m.invoke(bean,
+                        Long.valueOf(Thread.currentThread().getId())))
+                       .longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void runTest(int optLevel)
+    {
+        Context cx = Context.enter();
+        try {
+            cx.setLanguageVersion(Context.VERSION_1_8);
+            cx.setOptimizationLevel(optLevel);
+            Scriptable scope = cx.initStandardObjects();
+            cx.evaluateString(scope, SCRIPT, "numeric.js", 1, null);
+            Function run = (Function) scope.get("run", scope);
+            Object[] args = new Object[0];
+            // Warm up
+            for (int i = 0; i < ROUNDS / 10; i++) {
+                run.call(cx, scope, scope, args);
+            }
+            long bytes = getAllocatedBytes();
+            long time = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                run.call(cx, scope, scope, args);
+            }
+            time = System.nanoTime() - time;
+            long iterations = (long) ROUNDS * SIZE * 3;
+            StringBuilder sb = new StringBuilder();
+            sb.append("Numeric loops, optimization level ").append(optLevel)
+              .append(": ").append(time / iterations).append(" ns");
+            if (bytes >= 0) {
+                bytes = getAllocatedBytes() - bytes;
+                sb.append(", ").append(bytes / iterations)
+                  .append(" bytes allocated");
+            }
+            System.out.println(sb.append(" per iteration"));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    @Test
+    public void testInterpreted()
+    {
+        runTest(-1);
+    }
+
+    @Test
+    public void testOptLevel9()
+    {
+        runTest(9);
+    }
+}
@@ -0,0 +1,119 @@
+package org.mozilla.javascript.benchmarks;
+
+import org.junit.Test;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Parser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how fast the scripts under the benchmarks directory, which must
+ * be the working directory, are parsed with comments and JsDoc recorded,
+ * with the default settings, and in the lean mode.
+ */
+public class ParserThroughputBenchmark
+{
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 20;
+
+    private static void findScripts(File dir, List<File> scripts)
+    {
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File f : files) {
+            if (f.isDirectory()) {
+                findScripts(f, scripts);
+            } else if (f.getName().endsWith(".js")) {
+                scripts.add(f);
+            }
+        }
+    }
+
+    private static String readScript(File script)
+        throws IOException
+    {
+        Reader rdr = new InputStreamReader(new FileInputStream(script),
+                                           "utf8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buf = new char[4096];
+            for (int n; (n = rdr.read(buf)) > 0; ) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            rdr.close();
+        }
+    }
+
+    private static CompilerEnvirons recording()
+    {
+        CompilerEnvirons env = defaults();
+        env.setRecordingComments(true);
+        env.setRecordingLocalJsDocComments(true);
+        return env;
+    }
+
+    private static CompilerEnvirons defaults()
+    {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setLanguageVersion(Context.VERSION_1_8);
+        return env;
+    }
+
+    /**
+     * Returns the fastest time, in nanoseconds, to parse all sources with a
+     * new environment from {@code mode}: 0 for recording, 1 for the
+     * defaults and 2 for lean.
+     */
+    private static long time(List<String> sources, List<File> scripts,
+                             int mode)
+    {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < sources.size(); i++) {
+                CompilerEnvirons env = mode == 0 ? recording()
+                    : mode == 1 ? defaults() : CompilerEnvirons.leanEnvirons();
+                new Parser(env).parse(sources.get(i),
+                                      scripts.get(i).getPath(), 1);
+            }
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testThroughput()
+        throws IOException
+    {
+        List<File> scripts = new ArrayList<File>();
+        findScripts(new File("."), scripts);
+        List<String> sources = new ArrayList<String>();
+        long chars = 0;
+        for (File script : scripts) {
+            String source = readScript(script);
+            sources.add(source);
+            chars += source.length();
+        }
+
+        String[] names = { "recording", "default", "lean" };
+        for (int mode = 0; mode < names.length; mode++) {
+            long nanos = time(sources, scripts, mode);
+            System.out.println("Parsed " + scripts.size() + " scripts ("
+                               + (chars >> 10) + " KB) " + names[mode]
+                               + ": " + (nanos / 1000000) + " ms, "
+                               + (chars * 1000 / nanos) + " M chars/s");
+        }
+    }
+}
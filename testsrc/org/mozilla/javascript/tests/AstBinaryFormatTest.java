@@ -0,0 +1,295 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstBinaryFormat;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ExpressionStatement;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.NodeVisitor;
+
+/**
+ * Checks that trees written with {@link AstBinaryFormat} are read back the
+ * same.
+ */
+public class AstBinaryFormatTest extends TestCase {
+
+    private static final String SOURCE =
+        "/* header */\n"
+        + "function f(a, b) {\n"
+        + "  var c = g(a, b[0], { p: 1, 'q': \"s\" }); // call\n"
+        + "  for (var i in c) { if (i) break; }\n"
+        + "  label: while (a--) { continue label; }\n"
+        + "  return c ? /re+/g : 1.5e3;\n"
+        + "}\n"
+        + "f(1, [2, , 3]);\n";
+
+    private static AstRoot parse(String source) {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(true);
+        return new Parser(env).parse(source, "test.js", 1);
+    }
+
+    private static List<AstNode> nodes(AstNode root) {
+        final List<AstNode> nodes = new ArrayList<AstNode>();
+        root.visit(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                nodes.add(node);
+                return true;
+            }
+        });
+        return nodes;
+    }
+
+    private static String json(AstNode root) throws IOException {
+        StringWriter out = new StringWriter();
+        root.writeJson(out);
+        return out.toString();
+    }
+
+    public void testRoundTrip() throws IOException {
+        AstRoot root = parse(SOURCE);
+        String json = json(root);
+        AstRoot read = (AstRoot) AstBinaryFormat.read(
+            AstBinaryFormat.write(root, AstBinaryFormat.IDS));
+        assertNull(read.getParent());
+        assertEquals(root.toSource(), read.toSource());
+        assertEquals(root.debugPrint(), read.debugPrint());
+        assertEquals(json, json(read));
+        assertEquals(2, read.getComments().size());
+        assertSame(read, read.getComments().first().getParent());
+
+        List<AstNode> before = nodes(root);
+        List<AstNode> after = nodes(read);
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            AstNode node = before.get(i);
+            AstNode nodeRead = after.get(i);
+            assertSame(node.getClass(), nodeRead.getClass());
+            assertEquals(node.getID(), nodeRead.getID());
+            assertEquals(node.getAbsolutePosition(),
+                         nodeRead.getAbsolutePosition());
+            assertEquals(node.getLineno(), nodeRead.getLineno());
+        }
+
+        FunctionNode f = (FunctionNode) read.getFirstChild();
+        assertSame(f, f.getSymbol("c").getContainingTable());
+        assertEquals(Arrays.asList("a", "b", "c", "i"),
+                     new ArrayList<String>(f.getSymbolTable().keySet()));
+        assertTrue(((FunctionNode) root.getFirstChild()).isStructurallyEqual(f));
+    }
+
+    public void testSubtreeWithJsDoc() throws IOException {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(true);
+        env.setRecordingLocalJsDocComments(true);
+        AstRoot root = new Parser(env).parse(
+            "/** Adds. */\n"
+            + "function f(a, b) {\n"
+            + "  /** The sum. */\n"
+            + "  var c = a + b;\n"
+            + "  return c;\n"
+            + "}\n"
+            + "/** Calls. */\n"
+            + "f(1, 2);\n", "test.js", 1);
+        AstRoot read = (AstRoot) AstBinaryFormat.read(
+            AstBinaryFormat.write(root, 0));
+        assertEquals(root.debugPrint(), read.debugPrint());
+        assertEquals("/** Adds. */",
+                     ((FunctionNode) read.getFirstChild()).getJsDoc());
+
+        for (AstNode node : Arrays.asList((AstNode) root.getFirstChild(),
+                                          (AstNode) root.getLastChild())) {
+            AstNode subtree = AstBinaryFormat.read(
+                AstBinaryFormat.write(node, 0));
+            assertEquals(node.toSource(), subtree.toSource());
+            assertTrue(node.isStructurallyEqual(subtree));
+            assertNull(subtree.getJsDoc());
+        }
+    }
+
+    public void testStream() throws IOException {
+        AstRoot root = parse(SOURCE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AstBinaryFormat.write(root, 0, out);
+        AstNode read = AstBinaryFormat.read(
+            new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(root.toSource(), read.toSource());
+    }
+
+    public void testNewIds() throws IOException {
+        AstRoot root = parse(SOURCE);
+        AstNode read = AstBinaryFormat.read(AstBinaryFormat.write(root, 0));
+        List<AstNode> before = nodes(root);
+        List<AstNode> after = nodes(read);
+        for (int i = 0; i < before.size(); i++) {
+            assertFalse(before.get(i).getID().equals(after.get(i).getID()));
+        }
+        assertTrue(AstBinaryFormat.write(root, 0).length
+                   < AstBinaryFormat.write(root, AstBinaryFormat.IDS).length);
+    }
+
+    public void testAnalysis() throws IOException {
+        AstRoot root = parse(SOURCE);
+        ExpressionStatement stmt = (ExpressionStatement) root.getLastChild();
+        stmt.getExpression().addCriterion("data", 7);
+        stmt.getExpression().addDependency("data", 8);
+        stmt.getExpression().addDependency("data", 9);
+
+        AstRoot read = (AstRoot) AstBinaryFormat.read(
+            AstBinaryFormat.write(root, AstBinaryFormat.ANALYSIS));
+        AstNode call = ((ExpressionStatement) read.getLastChild())
+            .getExpression();
+        assertEquals(Integer.valueOf(7), call.getCriteria().get("data"));
+        assertEquals(stmt.getExpression().getDependencies(),
+                     call.getDependencies());
+
+        read = (AstRoot) AstBinaryFormat.read(AstBinaryFormat.write(root, 0));
+        call = ((ExpressionStatement) read.getLastChild()).getExpression();
+        assertTrue(call.getCriteria().isEmpty());
+        assertTrue(call.getDependencies().isEmpty());
+    }
+
+    public void testRejectsBadData() {
+        byte[] data = AstBinaryFormat.write(parse(SOURCE), 0);
+        assertRejected(new byte[] { 1, 2, 3 });
+        assertRejected(Arrays.copyOf(data, data.length / 2));
+        byte[] magic = data.clone();
+        magic[0] ^= 1;
+        assertRejected(magic);
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            AstBinaryFormat.read(data);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testTruncatedAndFlipped() {
+        byte[] data = AstBinaryFormat.write(parse(SOURCE), AstBinaryFormat.IDS);
+        for (int size = 0; size < data.length; size++) {
+            assertRejected(Arrays.copyOf(data, size));
+        }
+        for (int i = 0; i < data.length; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte[] flipped = data.clone();
+                flipped[i] ^= 1 << bit;
+                assertRejected(flipped);
+            }
+        }
+    }
+
+    /** Offset of the checksum, after the magic number and the version. */
+    private static final int CHECKSUM = 5;
+
+    /** Updates the checksum of the data, as if it had been written so. */
+    private static byte[] withChecksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, CHECKSUM + 4, data.length - CHECKSUM - 4);
+        int value = (int) crc.getValue();
+        for (int i = 0; i < 4; i++) {
+            data[CHECKSUM + i] = (byte) (value >>> (24 - 8 * i));
+        }
+        return data;
+    }
+
+    public void testCorruptData() {
+        // Flipped bits that the checksum does not catch must still give an
+        // IOException or a tree. Printing the tree may reject values, such
+        // as an unknown operator, like for trees built by hand, but must
+        // not loop or overflow the stack.
+        byte[] data = AstBinaryFormat.write(parse(SOURCE),
+                                            AstBinaryFormat.IDS);
+        int trees = 0;
+        for (int i = CHECKSUM + 4; i < data.length; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte[] flipped = data.clone();
+                flipped[i] ^= 1 << bit;
+                AstNode read;
+                try {
+                    read = AstBinaryFormat.read(withChecksum(flipped));
+                } catch (IOException e) {
+                    continue;
+                }
+                trees++;
+                try {
+                    read.debugPrint();
+                    read.toSource();
+                } catch (RuntimeException e) {
+                    // rejected value
+                }
+            }
+        }
+        assertTrue(trees > 0);
+    }
+
+    static boolean foreignClassInitialized;
+
+    public static class NotANode {
+        static {
+            foreignClassInitialized = true;
+        }
+    }
+
+    public void testForeignClass() throws IOException {
+        String name = "org.mozilla.javascript.ast.AstRoot";
+        String other = NotANode.class.getName();
+        byte[] data = AstBinaryFormat.write(parse(SOURCE), 0);
+        // Class names are written as their length and then their chars,
+        // one byte each when they are ASCII and shorter than 128 chars
+        int at = indexOf(data, ((char) name.length() + name).getBytes("UTF-8"));
+        assertTrue(at > 0);
+        byte[] replacement = ((char) other.length() + other).getBytes("UTF-8");
+        byte[] forged = new byte[data.length - name.length()
+                                 + other.length()];
+        System.arraycopy(data, 0, forged, 0, at);
+        System.arraycopy(replacement, 0, forged, at, replacement.length);
+        System.arraycopy(data, at + name.length() + 1, forged,
+                         at + replacement.length,
+                         data.length - at - name.length() - 1);
+        assertRejected(withChecksum(forged));
+        assertFalse(foreignClassInitialized);
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        search:
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue search;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    public void testDeepTree() throws IOException {
+        StringBuilder sb = new StringBuilder("x = a");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(" + a");
+        }
+        AstRoot root = parse(sb + ";");
+        AstNode read = AstBinaryFormat.read(AstBinaryFormat.write(root, 0));
+        assertTrue(root.isStructurallyEqual(read));
+    }
+}
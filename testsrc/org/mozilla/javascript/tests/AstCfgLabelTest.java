@@ -0,0 +1,87 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ExpressionStatement;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.NodeVisitor;
+
+/**
+ * Checks CFG labels cut from the recorded source text against the labels
+ * generated with toSource().
+ */
+public class AstCfgLabelTest extends TestCase {
+
+    private static AstRoot parse(String source, boolean record) {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingSourceText(record);
+        return new Parser(env).parse(source, "test.js", 1);
+    }
+
+    private static List<String> labels(AstRoot root) {
+        final List<String> labels = new ArrayList<String>();
+        root.visitAll(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                labels.add(node.getCFGLabel());
+                return true;
+            }
+        });
+        return labels;
+    }
+
+    public void testSameAsToSourceForCanonicalSource() {
+        // Expressions already written the way toSource() writes them
+        String source = "a = b + c * d;\nf(\"x\", y[1], o.p);\n";
+        AstRoot root = parse(source, true);
+        assertEquals(source, root.getSourceText());
+        List<String> recorded = labels(root);
+        root.setSourceText(null);
+        List<String> generated = labels(root);
+        // The script label is fixed, and statement labels end with ';'
+        for (int i = 0; i < recorded.size(); i++) {
+            String g = generated.get(i);
+            if (g.endsWith(";")) {
+                g = g.substring(0, g.length() - 1);
+            }
+            assertTrue(recorded.get(i) + " vs " + g,
+                       recorded.get(i).startsWith(g));
+        }
+        assertEquals("f(\\\"x\\\", y[1], o.p)",
+                     ((ExpressionStatement) root.getLastChild())
+                         .getExpression().getCFGLabel());
+    }
+
+    public void testOriginalFormatting() throws IOException {
+        String source = "function  f( a,b ) {\n  return a\n    +b;\n}\n";
+        AstRoot root = parse(source, true);
+        FunctionNode fn = (FunctionNode) root.getFirstChild();
+        assertEquals("f(a,b)", fn.getCFGLabel());
+        AstNode ret = (AstNode) fn.getBody().getFirstChild();
+        assertEquals("return a    +b;", ret.getCFGLabel());
+
+        root.setSourceText(null);
+        assertEquals("return a + b;", ret.getCFGLabel());
+
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingSourceText(true);
+        root = new Parser(env).parse(new StringReader(source), "test.js", 1);
+        assertEquals(source, root.getSourceText());
+    }
+
+    public void testNotRecordedByDefault() {
+        assertNull(parse("a;", false).getSourceText());
+    }
+}
@@ -0,0 +1,138 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstCopier;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ExpressionStatement;
+import org.mozilla.javascript.ast.FunctionCall;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.Name;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.NumberLiteral;
+
+/**
+ * Checks deep copies of {@link AstNode} subtrees made by {@link AstCopier}.
+ */
+public class AstCopierTest extends TestCase {
+
+    private static final String SOURCE =
+        "// counts\n"
+        + "function f(a, b) {\n"
+        + "  var c = g(a, b[0], { p: 1 });\n"
+        + "  for (var i in c) { if (i) break; }\n"
+        + "  return c;\n"
+        + "}\n"
+        + "f(1, [2]);\n";
+
+    private static AstRoot parse(String source) {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(true);
+        return new Parser(env).parse(source, "test.js", 1);
+    }
+
+    private static List<AstNode> nodes(AstNode root) {
+        final List<AstNode> nodes = new ArrayList<AstNode>();
+        root.visit(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                nodes.add(node);
+                return true;
+            }
+        });
+        return nodes;
+    }
+
+    public void testCopiesTree() {
+        AstRoot root = parse(SOURCE);
+        AstRoot copy = AstCopier.copy(root, null, true);
+        assertEquals(root.toSource(), copy.toSource());
+        assertEquals(root.debugPrint(), copy.debugPrint());
+        assertTrue(root.isStructurallyEqual(copy));
+        assertEquals(1, copy.getComments().size());
+        assertSame(copy, copy.getComments().first().getParent());
+
+        List<AstNode> before = nodes(root);
+        List<AstNode> after = nodes(copy);
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            AstNode node = before.get(i);
+            AstNode nodeCopy = after.get(i);
+            assertNotSame(node, nodeCopy);
+            assertSame(node.getClass(), nodeCopy.getClass());
+            assertEquals(node.getID(), nodeCopy.getID());
+            assertEquals(node.getAbsolutePosition(),
+                         nodeCopy.getAbsolutePosition());
+            assertEquals(node.getLineno(), nodeCopy.getLineno());
+            if (i > 0) {
+                assertSame(after.get(before.indexOf(node.getParent())),
+                           nodeCopy.getParent());
+            }
+        }
+
+        // Scopes and symbols belong to the copy
+        FunctionNode f = (FunctionNode) copy.getFirstChild();
+        assertSame(f, f.getSymbol("c").getContainingTable());
+        assertNotSame(((FunctionNode) root.getFirstChild()).getSymbol("c"),
+                      f.getSymbol("c"));
+    }
+
+    public void testCopyIsIndependent() {
+        AstRoot root = parse(SOURCE);
+        String source = root.toSource();
+        ExpressionStatement stmt = (ExpressionStatement) root.getLastChild();
+        stmt.getExpression().addCriterion("data", 7);
+        ExpressionStatement copy = AstCopier.copy(stmt, null, true);
+        assertNull(copy.getParent());
+        assertEquals(stmt.getAbsolutePosition(), copy.getPosition());
+
+        FunctionCall call = (FunctionCall) copy.getExpression();
+        call.addArgument(new Name(0, "x"));
+        call.addCriterion("data", 8);
+        call.addDependency("data", 9);
+        ((NumberLiteral) call.getArguments().get(0)).setValue("3");
+        assertEquals(source, root.toSource());
+        assertEquals(Integer.valueOf(7),
+                     stmt.getExpression().getCriteria().get("data"));
+        assertTrue(stmt.getExpression().getDependencies().isEmpty());
+        assertEquals("f(3, [2], x);\n", copy.toSource());
+    }
+
+    public void testNewIds() {
+        AstRoot root = parse(SOURCE);
+        FunctionNode f = (FunctionNode) root.getFirstChild();
+        FunctionNode copy = AstCopier.copy(f, root, false);
+        assertSame(root, copy.getParent());
+        assertEquals(f.getPosition(), copy.getPosition());
+        List<AstNode> before = nodes(f);
+        List<AstNode> after = nodes(copy);
+        for (int i = 0; i < before.size(); i++) {
+            assertFalse(before.get(i).getID().equals(after.get(i).getID()));
+            if (i > 0) {
+                assertTrue(after.get(i - 1).getID() < after.get(i).getID());
+            }
+        }
+        // The structural hashes are kept, as the copy has the same structure
+        assertEquals(f.getStructuralHash(), copy.getStructuralHash());
+    }
+
+    public void testDeepTree() {
+        StringBuilder sb = new StringBuilder("x = a");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(" + a");
+        }
+        AstRoot root = parse(sb + ";");
+        AstRoot copy = AstCopier.copy(root, null, true);
+        assertTrue(root.isStructurallyEqual(copy));
+        assertEquals(root.getStructuralHash(), copy.getStructuralHash());
+    }
+}
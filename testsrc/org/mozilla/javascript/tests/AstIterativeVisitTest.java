@@ -0,0 +1,112 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.PostOrderVisitor;
+
+/**
+ * Checks that {@link AstNode#visitIteratively} visits nodes like
+ * {@link AstNode#visit}, on trees too deep for the recursive visit.
+ */
+public class AstIterativeVisitTest extends TestCase {
+
+    private static final String SOURCE =
+        "// comment\n"
+        + "function f(a, b) {\n"
+        + "  var c = g(a, b[0], { p: function() { return 1; } });\n"
+        + "  for (var i in c) { if (i) break; else continue; }\n"
+        + "  return c ? a : b;\n"
+        + "}\n"
+        + "f(1, [2]);\n";
+
+    private static AstRoot parse(String source) {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(true);
+        return new Parser(env).parse(source, "test.js", 1);
+    }
+
+    /** Records the visited nodes, and skips the children of functions. */
+    private static class Recorder implements PostOrderVisitor {
+        final List<AstNode> pre = new ArrayList<AstNode>();
+        final List<AstNode> post = new ArrayList<AstNode>();
+        final List<AstNode> open = new ArrayList<AstNode>();
+
+        public boolean visit(AstNode node) {
+            pre.add(node);
+            open.add(node);
+            return node.getType() != Token.FUNCTION;
+        }
+
+        public void postVisit(AstNode node) {
+            // Every node is done after its children and before its siblings
+            assertSame(open.remove(open.size() - 1), node);
+            post.add(node);
+        }
+    }
+
+    public void testSameOrderAsVisit() {
+        AstRoot root = parse(SOURCE);
+        final List<AstNode> recursive = new ArrayList<AstNode>();
+        root.visit(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                recursive.add(node);
+                return node.getType() != Token.FUNCTION
+                    || node.getParent() == null;
+            }
+        });
+        final List<AstNode> iterative = new ArrayList<AstNode>();
+        root.visitIteratively(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                iterative.add(node);
+                return node.getType() != Token.FUNCTION
+                    || node.getParent() == null;
+            }
+        });
+        assertEquals(recursive, iterative);
+    }
+
+    public void testPostVisit() {
+        AstRoot root = parse(SOURCE);
+        Recorder recorder = new Recorder();
+        root.visitAll(recorder);
+        // Comments are only passed to visit
+        assertEquals(1, recorder.open.size());
+        assertEquals(recorder.pre.size() - 1, recorder.post.size());
+        assertSame(root, recorder.post.get(recorder.post.size() - 1));
+        assertSame(root.getComments().first(),
+                   recorder.pre.get(recorder.pre.size() - 1));
+
+        // Skipped children are neither visited nor done
+        FunctionNode f = (FunctionNode) root.getFirstChild();
+        assertTrue(recorder.post.contains(f));
+        assertFalse(recorder.pre.contains(f.getBody()));
+    }
+
+    public void testDeepTree() {
+        StringBuilder sb = new StringBuilder("x = a");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(" + (b ? c : d)");
+        }
+        AstRoot root = parse(sb + ";");
+        root.checkParentLinks();
+        Recorder recorder = new Recorder();
+        root.visitAll(recorder);
+        assertTrue(recorder.open.isEmpty());
+        assertEquals(recorder.pre.size(), recorder.post.size());
+        assertEquals(5 + 20000 * 6, recorder.pre.size());
+    }
+}
@@ -0,0 +1,98 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.NodeVisitor;
+
+/**
+ * Checks that streaming an AST as Esprima JSON gives the same text as
+ * building the JSON tree.
+ */
+public class AstJsonWriterTest extends TestCase {
+
+    private static final String SOURCE =
+        "// comment\n"
+        + "var a = 1, b = 2.5, c, e = 1e400, s = 'str', r = /ab+c/gi;\n"
+        + "function named(p, q) { if (p) return; else if (q) { return q; }"
+        + " return [p, q, 3]; }\n"
+        + "var anon = function() { yield 1; yield; };\n"
+        + "lbl: for (var i = 0; i < 10; i++) { if (i) continue lbl;"
+        + " else break lbl; }\n"
+        + "for (;;) { break; }\n"
+        + "for (k in a) ;\n"
+        + "do { a--; } while (a > 0);\n"
+        + "with (a) { b; }\n"
+        + "switch (a) { case 1: b; break; default: c; }\n"
+        + "try { throw new Error('x'); } catch (err) { debugger; }"
+        + " finally { a = null; }\n"
+        + "var o = { p: 1, 'q': [1, 2], 3: function() { return this; } };\n"
+        + "a = b ? c : (d); a += 1; a = !a; a = typeof a; delete o.p; ++a;\n"
+        + "a = a in o && a instanceof Object || a === true;\n"
+        + "a = o[a] + o.p - 1 * 2 >>> 10;\n";
+
+    private static AstRoot parse() {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingComments(true);
+        env.setLanguageVersion(180);
+        AstRoot root = new Parser(env).parse(SOURCE, "test.js", 1);
+        root.visitAll(new NodeVisitor() {
+            int count;
+            public boolean visit(AstNode node) {
+                if (++count % 5 == 0) {
+                    node.addCriterion("data", count);
+                    node.addDependency("control", count * 2);
+                    node.addDependency("control", count + 1);
+                }
+                return true;
+            }
+        });
+        return root;
+    }
+
+    public void testSameAsTree() throws IOException {
+        AstRoot root = parse();
+        StringWriter writer = new StringWriter();
+        root.writeJson(writer);
+        assertEquals(root.getJsonObject().toString(), writer.toString());
+    }
+
+    public void testTreeValues() {
+        JsonObject json = parse().getJsonObject();
+        JsonObject decl = json.getAsJsonArray("body").get(0)
+            .getAsJsonObject().getAsJsonArray("declarations").get(3)
+            .getAsJsonObject();
+        JsonPrimitive value = decl.getAsJsonObject("init")
+            .getAsJsonPrimitive("value");
+        assertTrue(value.isNumber());
+        assertTrue(Double.isInfinite(value.getAsDouble()));
+        assertTrue(decl.has("criteria"));
+    }
+
+    public void testFields() throws IOException {
+        AstRoot root = parse();
+        StringWriter writer = new StringWriter();
+        root.writeJson(writer);
+        String json = writer.toString();
+        assertTrue(json.startsWith("{\"type\":\"Program\",\"body\":["));
+        assertTrue(json.endsWith(",\"sourceType\":\"script\",\"criteria\":{},"
+                                 + "\"dependencies\":{},\"change\":\"UNKNOWN\","
+                                 + "\"change-noprop\":\"UNKNOWN\"}"));
+        assertTrue(json.contains("\"value\":Infinity"));
+        assertTrue(json.contains("\"criteria\":{\"data\":5},"
+                                 + "\"dependencies\":{\"control\":[6,10]}"));
+    }
+}
@@ -0,0 +1,104 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.Name;
+
+/**
+ * Checks the criteria and dependencies stored on {@link AstNode}s.
+ */
+public class AstNodeRelationsTest extends TestCase {
+
+    public void testEmpty() {
+        AstNode node = new Name(0, "a");
+        assertTrue(node.getCriteria().isEmpty());
+        assertTrue(node.getDependencies().isEmpty());
+        assertEquals("{}", node.getCriteriaAsJson().toString());
+        assertEquals("{}", node.getDependenciesAsJson().toString());
+    }
+
+    public void testCriteria() {
+        AstNode node = new Name(0, "a");
+        node.addCriterion("data", 1000);
+        node.addCriterion(new String("call"), 2);
+        node.addCriterion("data", 1001);
+        assertEquals(2, node.getCriteria().size());
+        assertEquals(Integer.valueOf(1001), node.getCriteria().get("data"));
+        assertEquals(Integer.valueOf(2), node.getCriteria().get("call"));
+        assertNull(node.getCriteria().get("control"));
+        assertEquals("{\"data\":1001,\"call\":2}",
+                     node.getCriteriaAsJson().toString());
+    }
+
+    public void testDependencies() {
+        AstNode node = new Name(0, "a");
+        node.addCriterion("data", 1000);
+        node.addDependency("data", 1000);
+        assertTrue(node.getDependencies().isEmpty());
+
+        node.addDependency("data", 7);
+        node.addDependency("data", 3);
+        node.addDependency("data", 7);
+        node.addDependency("control", 1000);
+        node.addDependency("data", 500);
+        assertEquals(2, node.getDependencies().size());
+        List<Integer> data =
+            new ArrayList<Integer>(node.getDependencies().get("data"));
+        assertEquals(Arrays.asList(3, 7, 500), data);
+        assertTrue(node.getDependencies().get("control").contains(1000));
+        assertEquals("{\"data\":[3,7,500],\"control\":[1000]}",
+                     node.getDependenciesAsJson().toString());
+    }
+
+    public void testChangingMaps() {
+        AstNode node = new Name(0, "a");
+        assertNull(node.getCriteria().remove("data"));
+        node.getCriteria().put("data", 1);
+        node.getCriteria().put("call", 2);
+        node.getCriteria().put("control", 3);
+        assertEquals(Integer.valueOf(2), node.getCriteria().remove("call"));
+        Iterator<Map.Entry<String, Integer>> entries =
+            node.getCriteria().entrySet().iterator();
+        assertEquals("data", entries.next().getKey());
+        entries.remove();
+        assertEquals("control", entries.next().getKey());
+        assertFalse(entries.hasNext());
+        assertEquals("{\"control\":3}", node.getCriteriaAsJson().toString());
+
+        Map<String, Set<Integer>> dependencies = node.getDependencies();
+        assertNull(dependencies.remove("data"));
+        dependencies.put("data", new HashSet<Integer>(Arrays.asList(5, 6)));
+        node.addDependency("data", 4);
+        node.addDependency("call", 9);
+        node.addDependency("call", 8);
+        assertTrue(dependencies.get("call").remove(9));
+        assertFalse(dependencies.get("call").remove(9));
+        Iterator<Integer> ids = dependencies.get("call").iterator();
+        assertEquals(Integer.valueOf(8), ids.next());
+        ids.remove();
+        assertTrue(dependencies.get("call").isEmpty());
+        assertNotNull(dependencies.remove("call"));
+        assertEquals(Arrays.asList(4, 5, 6), new ArrayList<Integer>(
+            new TreeSet<Integer>(dependencies.get("data"))));
+        dependencies.clear();
+        assertEquals("{}", node.getDependenciesAsJson().toString());
+
+        AstNode other = new Name(0, "b");
+        assertTrue(other.getCriteria().isEmpty());
+        assertTrue(other.getDependencies().isEmpty());
+    }
+}
@@ -0,0 +1,150 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.Assignment;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ExpressionStatement;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.Name;
+import org.mozilla.javascript.ast.ObjectLiteral;
+import org.mozilla.javascript.ast.ObjectProperty;
+import org.mozilla.javascript.ast.ReturnStatement;
+import org.mozilla.javascript.ast.XmlMemberGet;
+import org.mozilla.javascript.ast.XmlRef;
+
+/**
+ * Checks the structural hashes of {@link AstNode} subtrees and the index of
+ * them kept by {@link AstRoot}.
+ */
+public class AstStructuralHashTest extends TestCase {
+
+    private static final String BEFORE =
+        "function f(a) { return a + 1; }\n"
+        + "function g(b) { return b - 1; }\n";
+
+    private static final String AFTER =
+        "var x = 2;\n"
+        + "function g(b) {\n  return b - 1;\n}\n"
+        + "function f(a) { return a + 2; }\n";
+
+    private static AstRoot parse(String source) {
+        return new Parser(new CompilerEnvirons()).parse(source, "test.js", 1);
+    }
+
+    public void testMatchesAcrossVersions() {
+        AstRoot before = parse(BEFORE);
+        AstRoot after = parse(AFTER);
+        FunctionNode f = (FunctionNode) before.getFirstChild();
+        FunctionNode g = (FunctionNode) before.getLastChild();
+
+        // g only moved and changed formatting
+        List<AstNode> matches = after.findStructurallyEqual(g);
+        assertEquals(1, matches.size());
+        assertEquals(FunctionNode.class, matches.get(0).getClass());
+        assertEquals("g", ((FunctionNode) matches.get(0)).getName());
+        assertTrue(g.isStructurallyEqual(matches.get(0)));
+
+        // f changed, but its name and parameter did not
+        assertTrue(after.findStructurallyEqual(f).isEmpty());
+        FunctionNode newF = (FunctionNode) after.getLastChild();
+        assertFalse(f.isStructurallyEqual(newF));
+        assertTrue(f.getFunctionName().isStructurallyEqual(
+                       newF.getFunctionName()));
+        assertEquals(f.getParams().get(0).getStructuralHash(),
+                     newF.getParams().get(0).getStructuralHash());
+
+        // Both "a" names of f match
+        assertEquals(2, before.findStructurallyEqual(
+                         f.getParams().get(0)).size());
+    }
+
+    public void testInvalidatedOnChange() {
+        AstRoot before = parse(BEFORE);
+        AstRoot after = parse(AFTER);
+        FunctionNode f = (FunctionNode) before.getFirstChild();
+        FunctionNode newF = (FunctionNode) after.getLastChild();
+        int rootHash = before.getStructuralHash();
+        assertTrue(after.findStructurallyEqual(f).isEmpty());
+
+        // "a + 2" in the new version: change the literal of the old one
+        ReturnStatement ret = (ReturnStatement) f.getBody().getFirstChild();
+        AstNode sum = ret.getReturnValue();
+        ReturnStatement newRet =
+            (ReturnStatement) newF.getBody().getFirstChild();
+        ret.setReturnValue(newRet.getReturnValue().clone(ret));
+        assertTrue(rootHash != before.getStructuralHash());
+        assertEquals(1, after.findStructurallyEqual(f).size());
+
+        ret.setReturnValue(sum);
+        assertEquals(rootHash, before.getStructuralHash());
+        ((Name) f.getParams().get(0)).setIdentifier("c");
+        assertTrue(rootHash != before.getStructuralHash());
+        assertTrue(before.findStructurallyEqual(
+                       new Name(0, "a")).size() == 1);
+    }
+
+    private static AstNode expression(String source) {
+        return ((ExpressionStatement) parse(source).getFirstChild())
+            .getExpression();
+    }
+
+    public void testAttributeAccess() {
+        AstNode element = expression("x..a;");
+        AstNode attribute = expression("x..@a;");
+        assertFalse(element.isStructurallyEqual(attribute));
+        assertTrue(element.getStructuralHash()
+                   != attribute.getStructuralHash());
+        assertTrue(attribute.isStructurallyEqual(expression("x..@a;")));
+
+        XmlRef ref = (XmlRef) ((XmlMemberGet) element).getRight();
+        ref.setAtPos(0);
+        assertTrue(element.isStructurallyEqual(attribute));
+        assertEquals(attribute.getStructuralHash(),
+                     element.getStructuralHash());
+    }
+
+    private static ObjectLiteral object(String source) {
+        return (ObjectLiteral) ((Assignment) expression("o = " + source + ";"))
+            .getRight();
+    }
+
+    public void testAccessorProperties() {
+        ObjectLiteral plain = object("{a: function(v) {}}");
+        ObjectLiteral getter = object("{get a(v) {}}");
+        ObjectLiteral setter = object("{set a(v) {}}");
+        assertFalse(getter.isStructurallyEqual(setter));
+        assertTrue(getter.getStructuralHash() != setter.getStructuralHash());
+        assertFalse(plain.isStructurallyEqual(getter));
+
+        // The accessors only differ from each other in their kind
+        ObjectProperty prop = getter.getElements().get(0);
+        prop.setIsSetter();
+        assertTrue(getter.isStructurallyEqual(setter));
+        assertEquals(setter.getStructuralHash(), getter.getStructuralHash());
+        prop.setIsGetter();
+        assertFalse(getter.isStructurallyEqual(setter));
+        assertEquals(object("{get a(v) {}}").getStructuralHash(),
+                     getter.getStructuralHash());
+    }
+
+    public void testDeepTree() {
+        StringBuilder sb = new StringBuilder("x = a");
+        for (int i = 0; i < 20000; i++) {
+            sb.append(" + a");
+        }
+        AstRoot left = parse(sb + ";");
+        AstRoot right = parse("y = 0;\n" + sb + ";");
+        ExpressionStatement stmt = (ExpressionStatement) left.getFirstChild();
+        assertEquals(1, right.findStructurallyEqual(stmt).size());
+    }
+}
@@ -0,0 +1,129 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.BatchParser;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.UniqueIDs;
+
+/**
+ * Checks that {@link BatchParser} numbers the nodes of parallel parses as if
+ * the sources were parsed one after another.
+ */
+public class BatchParserTest extends TestCase {
+
+    private static List<String> sources(int count) {
+        List<String> sources = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j <= i % 7; j++) {
+                sb.append("function f").append(j).append("(a, b) {\n")
+                  .append("  var x = a * ").append(i).append(" + b;\n")
+                  .append("  if (x > ").append(j).append(") return [x, 'y'];\n")
+                  .append("  return { k: x, f: function() { return x; } };\n")
+                  .append("}\n");
+            }
+            sources.add(sb.toString());
+        }
+        return sources;
+    }
+
+    private static List<Integer> ids(AstRoot root) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        root.visitAll(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                ids.add(node.getID());
+                return true;
+            }
+        });
+        return ids;
+    }
+
+    public void testIdsMatchSequentialParse() {
+        List<String> sources = sources(50);
+        CompilerEnvirons env = new CompilerEnvirons();
+
+        List<List<Integer>> expected = new ArrayList<List<Integer>>();
+        List<String> expectedSource = new ArrayList<String>();
+        UniqueIDs ids = new UniqueIDs();
+        for (String source : sources) {
+            Parser parser = new Parser(env);
+            parser.setIdAllocator(ids);
+            AstRoot root = parser.parse(source, null, 1);
+            expected.add(ids(root));
+            expectedSource.add(root.toSource());
+        }
+
+        for (int run = 0; run < 3; run++) {
+            List<AstRoot> roots =
+                new BatchParser(env, 4).parse(sources, null);
+            assertEquals(sources.size(), roots.size());
+            Set<Integer> seen = new HashSet<Integer>();
+            for (int i = 0; i < roots.size(); i++) {
+                List<Integer> actual = ids(roots.get(i));
+                assertEquals(expected.get(i), actual);
+                assertEquals(expectedSource.get(i), roots.get(i).toSource());
+                for (Integer id : actual) {
+                    assertTrue("duplicate id " + id, seen.add(id));
+                }
+            }
+        }
+    }
+
+    private static AstRoot parse(UniqueIDs ids, String source) {
+        Parser parser = new Parser(new CompilerEnvirons());
+        parser.setIdAllocator(ids);
+        return parser.parse(source, null, 1);
+    }
+
+    public void testShiftRenumbersTrackedNodes() {
+        // A plain allocator keeps no nodes, so only new ids move
+        UniqueIDs ids = new UniqueIDs();
+        AstRoot root = parse(ids, "var a = b + 1;");
+        List<Integer> before = ids(root);
+        assertEquals(Integer.valueOf(1), before.get(0));
+        ids.shift(100);
+        assertEquals(before, ids(root));
+        int size = ids.size();
+        assertEquals(Integer.valueOf(101 + size),
+                     parse(ids, "c;").getID());
+
+        ids = UniqueIDs.tracking();
+        root = parse(ids, "var a = b + 1;");
+        assertEquals(before, ids(root));
+        ids.shift(100);
+        List<Integer> shifted = ids(root);
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i) + 100, shifted.get(i).intValue());
+        }
+        ids.forgetNodes();
+        ids.shift(100);
+        assertEquals(shifted, ids(root));
+    }
+
+    public void testFirstErrorIsThrown() {
+        List<String> sources = Arrays.asList("var a = 1;", "var = ;", "b(");
+        List<String> names = Arrays.asList("a.js", "b.js", "c.js");
+        try {
+            new BatchParser(new CompilerEnvirons(), 2).parse(sources, names);
+            fail();
+        } catch (EvaluatorException e) {
+            assertEquals("b.js", e.sourceName());
+        }
+    }
+}
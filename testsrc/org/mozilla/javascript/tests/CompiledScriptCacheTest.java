@@ -0,0 +1,189 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.DefiningClassLoader;
+import org.mozilla.javascript.DiskCompiledScriptCache;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+/**
+ * Checks that compiled scripts are stored in and reloaded from a
+ * {@link DiskCompiledScriptCache}, and that damaged or excess entries are
+ * dropped.
+ */
+public class CompiledScriptCacheTest extends TestCase {
+
+    private File directory;
+
+    private static class CountingCache extends DiskCompiledScriptCache {
+        int hits;
+        int puts;
+
+        CountingCache(File directory, long maxSize) {
+            super(directory, maxSize);
+        }
+
+        @Override
+        public Object[] get(String key) {
+            Object[] classFiles = super.get(key);
+            if (classFiles != null) {
+                hits++;
+            }
+            return classFiles;
+        }
+
+        @Override
+        public void put(String key, Object[] classFiles) {
+            puts++;
+            super.put(key, classFiles);
+        }
+    }
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = File.createTempFile("rhino-cache", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        for (File file : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private static Object run(Context cx, String source) {
+        ScriptableObject scope = cx.initStandardObjects();
+        Script script = cx.compileString(source, "test.js", 1, null);
+        return script.exec(cx, scope);
+    }
+
+    public void testContextCompile() {
+        CountingCache cache = new CountingCache(directory, 1 << 20);
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(0);
+            cx.setCompiledScriptCache(cache);
+            String source = "function f(x) { return x * 2; } f(21)";
+            assertEquals("42", Context.toString(run(cx, source)));
+            assertEquals(0, cache.hits);
+            assertEquals(1, cache.puts);
+            // A new cache instance reads the entry written by the first one
+            cache = new CountingCache(directory, 1 << 20);
+            cx.setCompiledScriptCache(cache);
+            assertEquals("42", Context.toString(run(cx, source)));
+            assertEquals(1, cache.hits);
+            assertEquals(0, cache.puts);
+
+            cx.setOptimizationLevel(9);
+            assertEquals("42", Context.toString(run(cx, source)));
+            assertEquals(1, cache.hits);
+
+            ScriptableObject scope = cx.initStandardObjects();
+            for (int i = 0; i != 2; ++i) {
+                Function fn = cx.compileFunction(scope,
+                    "function g(a) { return a + 1; }", "test.js", 1, null);
+                assertEquals("2", Context.toString(
+                    fn.call(cx, scope, scope, new Object[] { 1 })));
+            }
+            assertEquals(2, cache.hits);
+
+            // The interpreter does not use the cache
+            cx.setOptimizationLevel(-1);
+            assertEquals("42", Context.toString(run(cx, source)));
+            assertEquals(2, cache.puts);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testCorruptedEntry() throws IOException {
+        CountingCache cache = new CountingCache(directory, 1 << 20);
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(0);
+            cx.setCompiledScriptCache(cache);
+            run(cx, "1 + 1");
+            File[] files = directory.listFiles();
+            assertEquals(1, files.length);
+            RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+            try {
+                raf.seek(raf.length() / 2);
+                int b = raf.read();
+                raf.seek(raf.length() / 2);
+                raf.write(b ^ 0xFF);
+            } finally {
+                raf.close();
+            }
+            assertEquals("2", Context.toString(run(cx, "1 + 1")));
+            assertEquals(0, cache.hits);
+            assertEquals(2, cache.puts);
+            assertEquals("2", Context.toString(run(cx, "1 + 1")));
+            assertEquals(1, cache.hits);
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testEviction() {
+        CompilerEnvirons env = new CompilerEnvirons();
+        ClassCompiler compiler = new ClassCompiler(env);
+        Object[] classFiles = compiler.compileToClassFiles(
+            "var x = 1;", "test.js", 1, "Test");
+        long entrySize = ((byte[])classFiles[1]).length + 100;
+
+        DiskCompiledScriptCache cache
+            = new DiskCompiledScriptCache(directory, 3 * entrySize);
+        for (int i = 0; i != 10; ++i) {
+            cache.put("key" + i, classFiles);
+            assertTrue(cache.getSize() <= cache.getMaxSize());
+        }
+        assertNotNull(cache.get("key9"));
+        assertTrue(directory.listFiles().length <= 3);
+    }
+
+    public void testClassCompiler() throws Exception {
+        CompilerEnvirons env = new CompilerEnvirons();
+        ClassCompiler compiler = new ClassCompiler(env);
+        CountingCache cache = new CountingCache(directory, 1 << 20);
+        compiler.setCompiledScriptCache(cache);
+        String source = "'cached ' + (6 * 7)";
+        Object[] first = compiler.compileToClassFiles(source, "test.js", 1,
+                                                      "CachedScript");
+        Object[] second = compiler.compileToClassFiles(source, "test.js", 1,
+                                                       "CachedScript");
+        assertEquals(1, cache.hits);
+        assertEquals("CachedScript", second[0]);
+        assertTrue(java.util.Arrays.equals((byte[])first[1],
+                                           (byte[])second[1]));
+        compiler.compileToClassFiles(source, "test.js", 1, "OtherScript");
+        assertEquals(1, cache.hits);
+
+        Class<?> cl = new DefiningClassLoader().defineClass(
+            (String)second[0], (byte[])second[1]);
+        Context cx = Context.enter();
+        try {
+            Script script = (Script)cl.newInstance();
+            Object result = script.exec(cx, cx.initStandardObjects());
+            assertEquals("cached 42", Context.toString(result));
+        } finally {
+            Context.exit();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.IncrementalParser;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.NodeVisitor;
+
+/**
+ * Checks that a tree updated by {@link IncrementalParser} matches a full
+ * parse of the edited source.
+ */
+public class IncrementalParserTest extends TestCase {
+
+    private static final String SOURCE =
+        "/** Adds. */\n"
+        + "function add(a, b) {\n"
+        + "  var sum = a + b;\n"
+        + "  return sum;\n"
+        + "}\n"
+        + "var o = { f: function(x) { if (x) { return x * 2; } return 0; } };\n"
+        + "// trailing\n"
+        + "add(o.f(1), 2)\n";
+
+    private static CompilerEnvirons env() {
+        CompilerEnvirons env = new CompilerEnvirons();
+        env.setRecordingSourceText(true);
+        env.setRecordingComments(true);
+        env.setRecordingLocalJsDocComments(true);
+        // For expression closures
+        env.setLanguageVersion(180);
+        return env;
+    }
+
+    private static AstRoot parse(String source) {
+        return new Parser(env()).parse(source, "test.js", 1);
+    }
+
+    private static String dump(AstRoot root) {
+        final StringBuilder sb = new StringBuilder(root.debugPrint());
+        root.visitAll(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                sb.append(node.getLineno()).append(' ');
+                return true;
+            }
+        });
+        return sb.toString();
+    }
+
+    private static IncrementalParser.Result edit(AstRoot root, String from,
+                                                 String to) {
+        String source = root.getSourceText();
+        int offset = source.indexOf(from);
+        assertTrue(offset >= 0);
+        IncrementalParser.Result result = new IncrementalParser(env())
+            .reparse(root, offset, from.length(), to);
+        String edited = source.substring(0, offset) + to
+            + source.substring(offset + from.length());
+        assertEquals(edited, result.getRoot().getSourceText());
+        assertEquals(dump(parse(edited)), dump(result.getRoot()));
+        return result;
+    }
+
+    private static List<AstNode> nodes(AstRoot root) {
+        final List<AstNode> nodes = new ArrayList<AstNode>();
+        root.visit(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                nodes.add(node);
+                return true;
+            }
+        });
+        return nodes;
+    }
+
+    public void testReparsesStatementInFunction() {
+        AstRoot root = parse(SOURCE);
+        FunctionNode add = (FunctionNode) root.getFirstChild();
+        AstNode ret = (AstNode) add.getBody().getLastChild();
+        AstNode call = (AstNode) root.getLastChild();
+        Integer callId = call.getID();
+
+        IncrementalParser.Result result = edit(root, "a + b", "a +\n  b * 2");
+        assertFalse(result.isFullReparse());
+        assertSame(root, result.getRoot());
+        assertEquals(1, result.getReplacedNodes().size());
+        assertEquals("var sum = a + b;",
+                     result.getReplacedNodes().get(0).toSource().trim());
+        assertEquals(1, result.getInsertedNodes().size());
+        assertSame(add.getBody(),
+                   result.getInsertedNodes().get(0).getParent());
+        // Nodes after the edit are kept and moved
+        assertSame(ret, add.getBody().getLastChild());
+        assertSame(call, root.getLastChild());
+        assertEquals(callId, call.getID());
+        assertEquals(9, call.getLineno());
+        assertEquals("add(o.f(1), 2)", call.getCFGLabel());
+    }
+
+    public void testReparsesInnermostFunction() {
+        AstRoot root = parse(SOURCE);
+        List<AstNode> before = nodes(root);
+        IncrementalParser.Result result =
+            edit(root, "0", "1; x++");
+        assertFalse(result.isFullReparse());
+        assertEquals(2, result.getInsertedNodes().size());
+        List<AstNode> after = nodes(root);
+        int kept = 0;
+        for (AstNode node : after) {
+            if (before.contains(node)) {
+                kept++;
+            }
+        }
+        // Only the last return statement and its subtree are new
+        assertEquals(before.size() - 2, kept);
+        assertEquals(after.size() - 5, kept);
+    }
+
+    public void testKeepsComments() {
+        AstRoot root = parse(SOURCE);
+        edit(root, "var sum", "// sum\n  var /* the */ sum");
+        assertEquals(4, root.getComments().size());
+        assertEquals("// trailing", root.getComments().last().getValue());
+        assertEquals(8, root.getComments().last().getLineno());
+    }
+
+    public void testFallsBackWhenStatementsMayJoin() {
+        AstRoot root = parse("function f() {\n  a++\n  (c);\n}\n");
+        // "a = b" would continue into "(c)", so the whole function is
+        // reparsed
+        IncrementalParser.Result result = edit(root, "++", " = b");
+        assertFalse(result.isFullReparse());
+        assertTrue(result.getReplacedNodes().get(0) instanceof FunctionNode);
+    }
+
+    /**
+     * Checks that the edit is rejected, as a full parse of the edited source
+     * rejects it.
+     */
+    private static void assertRejected(String source, String from, String to) {
+        AstRoot root = parse(source);
+        int offset = source.indexOf(from);
+        assertTrue(offset >= 0);
+        try {
+            new IncrementalParser(env()).reparse(root, offset, from.length(),
+                                                 to);
+            fail(to + " in " + source);
+        } catch (EvaluatorException e) {
+            // expected
+        }
+    }
+
+    public void testStrictMode() {
+        String[] sources = {
+            "\"use strict\";\nfunction g(o) {\n  var a = 1;\n  a = 2;\n}\n",
+            "function g(o) {\n  \"use strict\";\n  var a = 1;\n  a = 2;\n}\n",
+            "function h() {\n  'use strict';\n  function g(o) {\n"
+            + "    var a = 1;\n    a = 2;\n  }\n}\n"
+        };
+        for (String source : sources) {
+            assertRejected(source, "a = 2;", "with (o) { a = 3; }");
+            assertRejected(source, "a = 2;", "a = 010;");
+            assertRejected(source, "2", "010");
+            // Edits that are valid in strict mode are still reparsed on
+            // their own
+            IncrementalParser.Result result =
+                edit(parse(source), "2", "3");
+            assertFalse(result.isFullReparse());
+            assertFalse(result.getReplacedNodes().get(0)
+                        instanceof FunctionNode);
+        }
+    }
+
+    public void testEditingDirectives() {
+        assertRejected("function g(o) {\n  'use sloppy';\n  a = 010;\n}\n",
+                       "sloppy", "strict");
+        assertRejected("function g(o) {\n  a = 1;\n  with (o) {}\n}\n",
+                       "a = 1", "'use strict'; a = 1");
+    }
+
+    public void testExpressionClosure() {
+        AstRoot root = parse("var x = 1;\nvar f = function(a) a + 1;\n"
+                             + "var g = 2;\n");
+        edit(root, "a + 1", "a + 2 * a");
+        root = parse("function h() {\n  var x = 1;\n"
+                     + "  var f = function(a) a + 1;\n}\n");
+        edit(root, "a + 1", "a - 1");
+        // Closures after the edit move too
+        edit(root, "x = 1", "x =\n    12");
+        root = parse("function h() {\n  var x = 1;\n}\n"
+                     + "var f = function(a) a + 1;\n");
+        assertFalse(edit(root, "1;", "2 +\n 3;").isFullReparse());
+    }
+
+    public void testFullReparse() {
+        AstRoot root = parse(SOURCE);
+        // The edit spans two top-level statements
+        IncrementalParser.Result result = edit(root, "}\nvar o", "}\nvar p");
+        assertTrue(result.isFullReparse());
+        assertNotSame(root, result.getRoot());
+        assertSame(root, result.getReplacedNodes().get(0));
+
+        // The new first token could join the statement to the one before
+        root = parse("a = b\ncd = 1;\n");
+        result = edit(root, "d =", " in");
+        assertTrue(result.isFullReparse());
+    }
+
+    public void testRequiresSourceText() {
+        AstRoot root = new Parser(new CompilerEnvirons()).parse("a;", "t", 1);
+        try {
+            new IncrementalParser(new CompilerEnvirons()).reparse(root, 0, 1,
+                                                                  "b");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.InterpreterDataCache;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks that scripts compiled in interpreted mode are served from the
+ * process-wide {@link InterpreterDataCache} and still run independently.
+ */
+public class InterpreterDataCacheTest extends TestCase {
+
+    private final InterpreterDataCache cache
+        = InterpreterDataCache.getInstance();
+
+    @Override
+    protected void setUp() {
+        cache.clear();
+        cache.setMaxSize(4);
+    }
+
+    @Override
+    protected void tearDown() {
+        cache.setMaxSize(0);
+        cache.clear();
+    }
+
+    private static Object eval(Context cx, String source, String name) {
+        ScriptableObject scope = cx.initStandardObjects();
+        return cx.evaluateString(scope, source, name, 1, null);
+    }
+
+    public void testHitsAndMisses() {
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(-1);
+            String source = "var n = (typeof n == 'number') ? n + 1 : 1;"
+                            + " var o = {a: n}; o.a";
+            for (int i = 0; i != 3; ++i) {
+                assertEquals("1", Context.toString(eval(cx, source, "a.js")));
+            }
+            assertEquals(2, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+
+            // Different location or settings compile again
+            eval(cx, source, "b.js");
+            cx.setLanguageVersion(Context.VERSION_1_8);
+            eval(cx, source, "a.js");
+            assertEquals(3, cache.getMissCount());
+            assertEquals(3, cache.size());
+
+            // Compiled code is not cached
+            cx.setOptimizationLevel(0);
+            eval(cx, source, "a.js");
+            assertEquals(2, cache.getHitCount());
+            assertEquals(3, cache.getMissCount());
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testFunctions() {
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(-1);
+            ScriptableObject scope = cx.initStandardObjects();
+            String source = "function inc(x) { return x + 1; }";
+            Function f1 = cx.compileFunction(scope, source, "f.js", 1, null);
+            Function f2 = cx.compileFunction(scope, source, "f.js", 1, null);
+            assertNotSame(f1, f2);
+            assertEquals(1, cache.getHitCount());
+            assertEquals("2", Context.toString(
+                f2.call(cx, scope, scope, new Object[] { 1 })));
+            // A script with the same source is a different entry
+            cx.evaluateString(scope, source, "f.js", 1, null);
+            assertEquals(2, cache.getMissCount());
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testEviction() {
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(-1);
+            for (int i = 0; i != 6; ++i) {
+                eval(cx, "'s" + i + "'", "e.js");
+            }
+            assertEquals(4, cache.size());
+            assertEquals(2, cache.getEvictionCount());
+            eval(cx, "'s5'", "e.js");
+            assertEquals(1, cache.getHitCount());
+            eval(cx, "'s0'", "e.js");
+            assertEquals(7, cache.getMissCount());
+
+            cache.setMaxSize(1);
+            assertEquals(1, cache.size());
+            assertEquals(6, cache.getEvictionCount());
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testDisabled() {
+        cache.setMaxSize(0);
+        Context cx = Context.enter();
+        try {
+            cx.setOptimizationLevel(-1);
+            eval(cx, "1", "d.js");
+            eval(cx, "1", "d.js");
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getMissCount());
+        } finally {
+            Context.exit();
+        }
+    }
+}
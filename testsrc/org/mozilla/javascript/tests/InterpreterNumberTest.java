@@ -0,0 +1,76 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the interpreter's unboxed number paths for array elements and
+ * lengths against the generic property access they bypass.
+ */
+public class InterpreterNumberTest extends TestCase {
+
+    public void testElements() {
+        Utils.assertScript("3,2.5,,,1,x",
+            "var a = [1, 2.5, 3];\n"
+            + "var r = [a[2], a[1], a[3], a[1.5], a[-0]];\n"
+            + "Array.prototype[4] = 'x';\n"
+            + "r.push(a[4]);\n"
+            + "delete Array.prototype[4];\n"
+            + "r.join()");
+        Utils.assertScript("5|1,2,3,4,5,1.5|1.5|6,,8",
+            "var a = [1, 2, 3];\n"
+            + "var r = [a[3] = 4, a[4] = 5];\n"
+            + "a[5] = 1.5;\n"
+            + "r.push(a.join(), a[5]);\n"
+            + "var b = [6];\n"
+            + "b[2] = 8;\n"
+            + "r.push(b.join());\n"
+            + "r.slice(1).join('|')");
+        Utils.assertScript("1,2|2",
+            "var b = [1, 2];\n"
+            + "Object.preventExtensions(b);\n"
+            + "b[2] = 3;\n"
+            + "[b.join(), b.length].join('|')");
+    }
+
+    public void testIncrementDecrement() {
+        Utils.assertScript("1,3,3,0.5,NaN|2,2,1.5,NaN",
+            "var a = [1, 2, 0.5, 'x'];\n"
+            + "var r = [a[0]++, ++a[1], a[1]--, a[2]++, a[3]--];\n"
+            + "[r.join(), a.join()].join('|')");
+        Utils.assertScript("2,,NaN",
+            "var a = [1];\n"
+            + "a[0]++;\n"
+            + "a[2]++;\n"
+            + "[a[0], a[1], a[2]].join()");
+    }
+
+    public void testPropertyIncrementDecrement() {
+        // Properties take the generic path, which the element and length
+        // paths have to agree with
+        Utils.assertScript("1,3,3,NaN,2|2,2,NaN,NaN,3",
+            "var o = {x: 1, y: 2, s: 'x'};\n"
+            + "var r = [o.x++, ++o.y, o.y--, o.s--];\n"
+            + "var a = [1, 2];\n"
+            + "r.push(a.length++);\n"
+            + "[r.join(), [o.x, o.y, o.s, o.z++, a.length]].join('|')");
+    }
+
+    public void testLength() {
+        Utils.assertScript("3,5,0,7,2,3",
+            "var a = [1, 2, 3];\n"
+            + "var s = 'hello';\n"
+            + "var r = [a.length, s.length, ''.length];\n"
+            + "a[6] = 1;\n"
+            + "r.push(a.length);\n"
+            + "a.length = 2;\n"
+            + "r.push(a.length, new String('abc').length);\n"
+            + "r.join()");
+        Utils.assertScript("3,",
+            "String.prototype.length = 10;\n"
+            + "[('abc').length, (5).length].join()");
+    }
+}
@@ -0,0 +1,83 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Runs scripts compiled with {@link Context#FEATURE_INVOKEDYNAMIC}, whose
+ * property, name and addition sites are linked by bootstrap methods.
+ */
+public class InvokeDynamicTest extends TestCase {
+
+    private static final ContextFactory INDY_FACTORY = new ContextFactory() {
+        @Override
+        protected boolean hasFeature(Context cx, int featureIndex) {
+            if (featureIndex == Context.FEATURE_INVOKEDYNAMIC) {
+                return true;
+            }
+            return super.hasFeature(cx, featureIndex);
+        }
+    };
+
+    public void testProperties() {
+        Utils.assertScript(INDY_FACTORY, "15,5,42,p",
+            "function P(x, y) { this.x = x; this.y = y; }\n"
+            + "function ga(o) { return o.a; }\n"
+            + "var t = 0;\n"
+            + "for (var i = 0; i < 5; i++) { var p = new P(i, 1); t += p.x + p.y; }\n"
+            + "var o = {a: 1}; o.a += 4; var r = [t, ga(o)];\n"
+            + "Object.defineProperty(o, 'a', {get: function() { return 42; }});\n"
+            + "r.push(ga(o));\n"
+            + "var z = {}; z.__proto__ = {a: 'p'}; r.push(ga(z));\n"
+            + "r.join()");
+    }
+
+    public void testNamesAndCalls() {
+        Utils.assertScript(INDY_FACTORY, "a,b,local,gone",
+            "function f() { return 'a'; }\n"
+            + "function call() { return f(); }\n"
+            + "var r = [call()];\n"
+            + "f = function() { return 'b'; }; r.push(call());\n"
+            + "r.push((function() { function f() { return 'local'; } return f(); })());\n"
+            + "function read() { try { return g; } catch (e) { return 'gone'; } }\n"
+            + "g = 1; read(); delete g; r.push(read());\n"
+            + "r.join()");
+    }
+
+    public void testAddition() {
+        Utils.assertScript(INDY_FACTORY, "3,ab,1b,a2,3,x[object Object]",
+            "function add(a, b) { return a + b; }\n"
+            + "var r = [add(1, 2), add('a', 'b'), add(1, 'b'), add('a', 2)];\n"
+            + "function addStr(a, b) { return a + b; }\n"
+            + "addStr('a', 'b'); r.push(addStr(1, 2), addStr('x', {}));\n"
+            + "r.join()");
+    }
+
+    public void testSharedScript() {
+        final ContextAction action = new ContextAction() {
+            public Object run(Context cx) {
+                Script script = cx.compileString(
+                    "function get() { return v.p + v.p; } get()",
+                    "test.js", 1, null);
+                for (int i = 0; i != 3; ++i) {
+                    ScriptableObject scope = cx.initStandardObjects();
+                    cx.evaluateString(scope, "var v = {p: " + i + "}",
+                                      "init.js", 1, null);
+                    assertEquals(String.valueOf(2 * i),
+                                 Context.toString(script.exec(cx, scope)));
+                }
+                return null;
+            }
+        };
+        Utils.runWithAllOptimizationLevels(INDY_FACTORY, action);
+    }
+}
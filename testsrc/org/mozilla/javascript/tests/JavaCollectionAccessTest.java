@@ -0,0 +1,172 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.NativeJavaList;
+import org.mozilla.javascript.NativeJavaMap;
+import org.mozilla.javascript.NativeJavaObject;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks the script views of Java lists and maps enabled with
+ * {@link Context#FEATURE_JAVA_COLLECTION_ACCESS}.
+ */
+public class JavaCollectionAccessTest extends TestCase {
+
+    private static final ContextFactory COLLECTION_FACTORY =
+        new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_JAVA_COLLECTION_ACCESS) {
+                    return true;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+
+    private List<Object> list;
+    private Map<Object, Object> map;
+
+    @Override
+    protected void setUp() {
+        list = new ArrayList<Object>();
+        list.add("a");
+        list.add("b");
+        map = new LinkedHashMap<Object, Object>();
+        map.put("x", "1");
+        map.put(Integer.valueOf(2), "2");
+        map.put(Long.valueOf(3), "3");
+    }
+
+    private Object evaluate(ContextFactory factory, final String source) {
+        return factory.call(new ContextAction() {
+            public Object run(Context cx) {
+                ScriptableObject scope = cx.initStandardObjects();
+                ScriptableObject.putProperty(scope, "list",
+                                             Context.javaToJS(list, scope));
+                ScriptableObject.putProperty(scope, "map",
+                                             Context.javaToJS(map, scope));
+                Object result = cx.evaluateString(scope, source, "test.js",
+                                                  1, null);
+                return result instanceof String ? result
+                                                : Context.toString(result);
+            }
+        });
+    }
+
+    private Object evaluate(String source) {
+        return evaluate(COLLECTION_FACTORY, source);
+    }
+
+    public void testDisabledByDefault() {
+        assertEquals("false", evaluate(new ContextFactory(),
+                                       "'length' in list"));
+        assertEquals("true", evaluate("'length' in list"));
+    }
+
+    public void testList() {
+        assertEquals("2,a,b,,2",
+                     evaluate("[list.length, list[0], list[1], list[2],"
+                              + " list.size()].join()"));
+        assertEquals("0,1|a,b",
+                     evaluate("var k = [], v = [];"
+                              + " for (var i in list) k.push(i);"
+                              + " for each (var e in list) v.push(e);"
+                              + " k.join() + '|' + v.join()"));
+        evaluate("list[0] = 'c'; list[3] = 4; list.add('e')");
+        assertEquals(5, list.size());
+        assertEquals("c", list.get(0));
+        assertNull(list.get(2));
+        assertEquals(4, ((Number) list.get(3)).intValue());
+        assertEquals("2", evaluate("list.length = 2; list.length"));
+        assertEquals(2, list.size());
+        assertEquals("RangeError",
+                     evaluate("try { list.length = -1 }"
+                              + " catch (e) { e.name }"));
+    }
+
+    public void testListPaddingLimit() {
+        assertEquals("RangeError,RangeError,RangeError",
+                     evaluate("var r = [];"
+                              + " try { list[2147483646] = 1 }"
+                              + " catch (e) { r.push(e.name) }"
+                              + " try { list.length = 2e9 }"
+                              + " catch (e) { r.push(e.name) }"
+                              + " try { list[-1] = 1 }"
+                              + " catch (e) { r.push(e.name) }"
+                              + " r.join()"));
+        assertEquals(2, list.size());
+        evaluate("list[1000] = 'z'");
+        assertEquals(1001, list.size());
+    }
+
+    public void testReadOnlyList() {
+        list = Collections.unmodifiableList(list);
+        assertEquals("caught",
+                     evaluate("try { list[0] = 'c' } catch (e) { 'caught' }"));
+    }
+
+    public void testMap() {
+        assertEquals("1,2,,3,true,false",
+                     evaluate("[map.x, map[2], map[3], map.size(),"
+                              + " 'x' in map, 'y' in map].join()"));
+        assertEquals("x,2|1,2",
+                     evaluate("var k = [], v = [];"
+                              + " for (var i in map) k.push(i);"
+                              + " for each (var e in map) v.push(e);"
+                              + " k.join() + '|' + v.join()"));
+        evaluate("map.y = 'z'; map[5] = 'w'; delete map.x");
+        assertEquals("z", map.get("y"));
+        assertEquals("w", map.get("5"));
+        assertFalse(map.containsKey(Integer.valueOf(5)));
+        assertFalse(map.containsKey("x"));
+        evaluate("map[2] = 'v'");
+        assertEquals("v", map.get(Integer.valueOf(2)));
+        assertFalse(map.containsKey("2"));
+    }
+
+    public void testNumericStringKeys() {
+        Map<Object, Object> strings = new HashMap<Object, Object>();
+        strings.put("1", "one");
+        map = strings;
+        assertEquals("1:one|one,one,true",
+                     evaluate("var k = [], v = [];"
+                              + " for (var i in map) k.push(i + ':' + map[i]);"
+                              + " for each (var e in map) v.push(e);"
+                              + " k.join() + '|' + [v, map[1], 1 in map]"));
+        evaluate("map[2] = 'two'; map['3'] = 'three'; delete map[1]");
+        assertEquals("two", map.get("2"));
+        assertEquals("three", map.get("3"));
+        assertFalse(map.containsKey("1"));
+        assertEquals(2, map.size());
+    }
+
+    public void testWrappers() {
+        COLLECTION_FACTORY.call(new ContextAction() {
+            public Object run(Context cx) {
+                ScriptableObject scope = cx.initStandardObjects();
+                assertTrue(Context.javaToJS(list, scope)
+                           instanceof NativeJavaList);
+                assertTrue(Context.javaToJS(map, scope)
+                           instanceof NativeJavaMap);
+                Object set = Context.javaToJS(map.keySet(), scope);
+                assertEquals(NativeJavaObject.class, set.getClass());
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,146 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.ClassCache;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.WrappedException;
+
+/**
+ * Checks that Java methods called through generated invokers, see
+ * {@link ClassCache#setInvokerOptimizationEnabled}, behave like the ones
+ * called with reflection.
+ */
+public class JavaInvokerTest extends TestCase {
+
+    public static class Calc {
+        public int total;
+
+        public int add(int a, int b) { return a + b; }
+        public double half(double d) { return d / 2; }
+        public long twice(long l) { return 2 * l; }
+        public boolean not(boolean b) { return !b; }
+        public char first(String s) { return s.charAt(0); }
+        public float toFloat(short s, byte b) { return s + b; }
+        public String concat(String a, Object b) { return a + b; }
+        public int length(int[] array) { return array.length; }
+        public List<String> list(String a) {
+            List<String> list = new ArrayList<String>();
+            list.add(a);
+            return list;
+        }
+        public void increment() { total++; }
+        public String over(int i) { return "int"; }
+        public String over(String s) { return "string"; }
+        public String join(String... parts) { return parts.length + ""; }
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+        public String caller() {
+            return new Throwable().getStackTrace()[1].getClassName();
+        }
+        public static int square(int i) { return i * i; }
+    }
+
+    private static final String SCRIPT =
+        "var c = new Packages." + Calc.class.getName() + "();\n"
+        + "var r = [];\n"
+        + "r.push(c.add(1, 2), c.add('3', 4.7), c.half(5), c.twice(21));\n"
+        + "r.push(c.not(false), c.first('xy'), c.toFloat(300, 2));\n"
+        + "r.push(c.concat('a', 1), c.concat(2, null), c.concat('b', c));\n"
+        + "r.push(c.length([1, 2, 3]), c.list('x').get(0), c.over(1));\n"
+        + "r.push(c.over('s'), c.join('a', 'b'), c.square(9));\n"
+        + "c.increment(); c.increment(); r.push(c.total);\n"
+        + "r.push(c.toString === c.toString, String(c.hashCode()) == c.hashCode());\n"
+        + "r.push(c.add(1, 2) === 3, c.add(c.add(1, 1), 1));\n"
+        + "r.join(',').replace(/@[0-9a-f]+/, '');\n";
+
+    private static Object evaluate(final String source, final boolean enable) {
+        return new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                ScriptableObject scope = cx.initStandardObjects();
+                ClassCache.get(scope).setInvokerOptimizationEnabled(enable);
+                return cx.evaluateString(scope, source, "test.js", 1, null);
+            }
+        });
+    }
+
+    public void testSameResults() {
+        Object expected = evaluate(SCRIPT, false);
+        assertEquals(expected, evaluate(SCRIPT, true));
+        assertEquals("3,7,2.5,42,true,120,302,a1.0,2null,b"
+                     + Calc.class.getName()
+                     + ",3,x,int,string,2,81,2,true,true,true,3", expected);
+    }
+
+    public void testCallsWithoutReflection() {
+        String script = "String(new Packages." + Calc.class.getName()
+            + "().caller())";
+        assertTrue(evaluate(script, true).toString().startsWith("invoker"));
+        assertFalse(evaluate(script, false).toString().startsWith("invoker"));
+    }
+
+    public void testErrors() {
+        String calc = "new Packages." + Calc.class.getName() + "()";
+        for (boolean enable : new boolean[] { false, true }) {
+            try {
+                evaluate(calc + ".fail('boom')", enable);
+                fail();
+            } catch (WrappedException ex) {
+                assertEquals("boom", ex.getWrappedException().getMessage());
+            }
+            try {
+                // byte out of range
+                evaluate(calc + ".toFloat(1, 1000)", enable);
+                fail();
+            } catch (EvaluatorException ex) {
+                assertTrue(ex.getMessage().contains("1000"));
+            }
+            assertEquals("caught",
+                         evaluate("try { " + calc + ".fail('x') } "
+                                  + "catch (e) { 'caught' }", enable));
+        }
+    }
+
+    public void testUnexportedImplementations() {
+        // The path is an instance of a class in a package of the JDK that
+        // is not exported, so its methods are called through the public
+        // Path interface. The time zone may also be a public class in such
+        // a package, whose methods neither invokers nor reflection can call.
+        String script =
+            "var p = java.nio.file.Paths.get('dir', 'file');\n"
+            + "var tz = java.util.TimeZone.getDefault();\n"
+            + "var r = [String(p.getFileName()), p.isAbsolute()];\n"
+            + "try { r.push(tz.getRawOffset() == tz.getOffset(0)"
+            + " || 'offset') } catch (e) { r.push('caught') }\n"
+            + "try { r.push(tz.getRawOffset() == tz.getOffset(0)"
+            + " || 'offset') } catch (e) { r.push('caught') }\n"
+            + "r.join()";
+        Object expected = evaluate(script, false);
+        assertTrue(expected.toString().startsWith("file,false,"));
+        assertEquals(expected, evaluate(script, true));
+    }
+
+    public void testDisabledByDefault() {
+        new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                ClassCache cache = ClassCache.get(cx.initStandardObjects());
+                assertFalse(cache.isInvokerOptimizationEnabled());
+                cache.setInvokerOptimizationEnabled(true);
+                assertTrue(cache.isInvokerOptimizationEnabled());
+                return null;
+            }
+        });
+    }
+}
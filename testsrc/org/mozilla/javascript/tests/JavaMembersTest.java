@@ -0,0 +1,101 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.NativeJavaClass;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks the members of Java objects, which are reflected when they are
+ * first used.
+ */
+public class JavaMembersTest extends TestCase {
+
+    public static class Bean {
+        public int x = 7;
+        public static int count = 3;
+        private String name = "bean";
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public boolean isReady() { return true; }
+        public void setOnly(int i) { }
+        public String getURL() { return "url"; }
+        public int x() { return 8; }
+        public static int twice(int i) { return 2 * i; }
+    }
+
+    private static Object evaluate(final String source) {
+        return new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                ScriptableObject scope = cx.initStandardObjects();
+                ScriptableObject.putProperty(scope, "b", Context.javaToJS(
+                    new Bean(), scope));
+                return cx.evaluateString(scope, source, "test.js", 1, null);
+            }
+        });
+    }
+
+    public void testMembers() {
+        assertEquals("bean,true,7,8,,6,3,true,false",
+                     evaluate("[b.name, b.ready, Number(b.x), b.x(),"
+                              + " b.only, b.twice(3), b.count,"
+                              + " 'name' in b, 'nothing' in b].join()"));
+        assertEquals("other", evaluate("b.name = 'other'; String(b.getName())"));
+    }
+
+    public void testMissingMembers() {
+        // Names are only reflected if the class has a member or bean
+        // property for them
+        assertEquals("undefined,false,false,false,url,true,false",
+                     evaluate("[typeof b.nothing, 'Only' in b, 'uRL' in b,"
+                              + " 'getNothing' in b, b.URL, 'only' in b,"
+                              + " b.nothing === b.URL].join()"));
+        assertEquals("url", evaluate("b.nothing; String(b.URL)"));
+    }
+
+    public void testIds() {
+        String ids = (String) evaluate(
+            "b.name; var ids = []; for (var id in b) ids.push(id);"
+            + " ids.sort().join()");
+        Set<String> set = new HashSet<String>(Arrays.asList(ids.split(",")));
+        for (String id : new String[] { "name", "getName", "setName",
+                                        "ready", "isReady", "only", "x",
+                                        "getClass" })
+        {
+            assertTrue(id, set.contains(id));
+        }
+        // Lookups after the enumeration find the same members
+        assertEquals(Boolean.TRUE,
+                     evaluate("for (var id in b) {} b.ready && b.x() == 8"));
+    }
+
+    public void testScopesDoNotShareFunctions() {
+        new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                Scriptable first = cx.initStandardObjects();
+                Scriptable second = cx.initStandardObjects();
+                Object m1 = new NativeJavaClass(first, Bean.class)
+                    .get("twice", first);
+                Object m2 = new NativeJavaClass(second, Bean.class)
+                    .get("twice", second);
+                assertNotSame(m1, m2);
+                assertSame(ScriptableObject.getFunctionPrototype(second),
+                           ((Scriptable) m2).getPrototype());
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,75 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+
+/**
+ * Checks that overloaded Java methods resolve the same way whether or not
+ * the overload cache of the method already knows the argument types.
+ */
+public class JavaOverloadCacheTest extends TestCase {
+
+    public static class Overloads {
+        public String f(int i) { return "int"; }
+        public String f(String s) { return "String"; }
+        public String f(boolean b) { return "boolean"; }
+        public String f(Object o) { return "Object"; }
+        public String f(int[] a) { return "int[]"; }
+        public String f(Overloads o) { return "Overloads"; }
+        public String f(int i, String s) { return "int,String"; }
+        public String f(boolean b, Overloads o) { return "boolean,Overloads"; }
+        public String f(int i, int j, int k) { return "int,int,int"; }
+    }
+
+    private static Object evaluate(final String source) {
+        return new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                return cx.evaluateString(cx.initStandardObjects(), source,
+                                         "test.js", 1, null);
+            }
+        });
+    }
+
+    public void testResolution() {
+        // Many shapes, called in rounds, so later rounds hit the cache
+        String script =
+            "var o = new Packages." + Overloads.class.getName() + "();\n"
+            + "var args = [[1], ['s'], [true], [{}], [o], [[1]],\n"
+            + "            [java.lang.Integer.valueOf(2)],\n"
+            + "            [1, 's'], [true, o], [1, 2, 3], ['1', 2, 3]];\n"
+            + "var out = [];\n"
+            + "for (var round = 0; round < 3; round++) {\n"
+            + "  var r = [];\n"
+            + "  for (var i = 0; i < args.length; i++) {\n"
+            + "    r.push(String(o.f.apply(o, args[i])));\n"
+            + "  }\n"
+            + "  out.push(r.join(' '));\n"
+            + "}\n"
+            + "out.join('|');\n";
+        String round = "int String boolean Object Overloads int[]"
+            + " Object int,String boolean,Overloads"
+            + " int,int,int int,int,int";
+        assertEquals(round + "|" + round + "|" + round, evaluate(script));
+    }
+
+    public void testNoMatchIsCached() {
+        String call = "new Packages." + Overloads.class.getName()
+            + "().f(1, 2, 3, 4)";
+        for (int i = 0; i < 2; i++) {
+            try {
+                evaluate(call + ";" + call);
+                fail();
+            } catch (Exception ex) {
+                assertTrue(ex.getMessage(),
+                           ex.getMessage().contains("Can't find method"));
+            }
+        }
+    }
+}
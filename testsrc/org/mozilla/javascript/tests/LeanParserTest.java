@@ -0,0 +1,109 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.ast.AstCopier;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.UniqueIDs;
+
+/**
+ * Checks parses with {@link CompilerEnvirons#setLeanParsing}.
+ */
+public class LeanParserTest extends TestCase {
+
+    private static final String SOURCE =
+        "/** Adds. */\n"
+        + "function add(a, b) {\n"
+        + "  // sum\n"
+        + "  return a + b;\n"
+        + "}\n"
+        + "var x = add(1, { p: [2, 3] });\n";
+
+    private static List<AstNode> nodes(AstRoot root) {
+        final List<AstNode> nodes = new ArrayList<AstNode>();
+        root.visitAll(new NodeVisitor() {
+            public boolean visit(AstNode node) {
+                nodes.add(node);
+                return true;
+            }
+        });
+        return nodes;
+    }
+
+    public void testSameTree() {
+        CompilerEnvirons recording = new CompilerEnvirons();
+        recording.setRecordingComments(true);
+        recording.setRecordingLocalJsDocComments(true);
+        AstRoot full = new Parser(recording).parse(SOURCE, "test.js", 1);
+
+        CompilerEnvirons env = CompilerEnvirons.leanEnvirons();
+        assertTrue(env.isLeanParsing());
+        AstRoot lean = new Parser(env).parse(SOURCE, "test.js", 1);
+        assertEquals(full.toSource(), lean.toSource());
+        assertEquals(2, full.getComments().size());
+        assertNull(lean.getComments());
+        assertNull(((FunctionNode) lean.getFirstChild()).getJsDoc());
+    }
+
+    public void testLeanTurnsOffRecording() {
+        CompilerEnvirons env = CompilerEnvirons.ideEnvirons();
+        env.setRecordingLocalJsDocComments(true);
+        env.setLeanParsing(true);
+        assertFalse(env.isRecordingComments());
+        assertFalse(env.isRecordingLocalJsDocComments());
+        assertFalse(env.isIdeMode());
+    }
+
+    public void testIdsAssignedOnDemand() {
+        AstRoot root = new Parser(CompilerEnvirons.leanEnvirons())
+            .parse(SOURCE, "test.js", 1);
+        Set<Integer> ids = new HashSet<Integer>();
+        for (AstNode node : nodes(root)) {
+            Integer id = node.getID();
+            assertNotNull(id);
+            assertTrue(ids.add(id));
+            assertSame(id, node.getID());
+        }
+    }
+
+    public void testClonesKeepIds() {
+        AstRoot root = new Parser(CompilerEnvirons.leanEnvirons())
+            .parse(SOURCE, "test.js", 1);
+        FunctionNode f = (FunctionNode) root.getFirstChild();
+        AstNode clone = f.clone(root);
+        assertEquals(f.getID(), clone.getID());
+        AstNode body = f.getBody();
+        assertEquals(body.getID(), body.clone().getID());
+
+        List<AstNode> before = nodes(root);
+        List<AstNode> after = nodes(AstCopier.copy(root, null, true));
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getID(), after.get(i).getID());
+        }
+    }
+
+    public void testIdAllocator() {
+        Parser parser = new Parser(CompilerEnvirons.leanEnvirons());
+        UniqueIDs ids = new UniqueIDs();
+        parser.setIdAllocator(ids);
+        AstRoot root = parser.parse(SOURCE, "test.js", 1);
+        // An allocator numbers the nodes while they are created
+        assertEquals(Integer.valueOf(1), root.getID());
+        assertEquals(ids.size(), nodes(root).size());
+    }
+}
@@ -0,0 +1,65 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks that cached lookups of names bound in the top scope see bindings
+ * that are added, deleted and redefined, and do not leak between scopes.
+ */
+public class NameCacheTest extends TestCase {
+
+    public void testRedefinedBindings() {
+        Utils.assertScript("1,2,gone,getter,3",
+            "function read() { try { return g; } catch (e) { return 'gone'; } }\n"
+            + "var r = [];\n"
+            + "g = 1; r.push(read());\n"
+            + "g = 2; r.push(read());\n"
+            + "delete g; r.push(read());\n"
+            + "Object.defineProperty(this, 'g', {get: function() { return 'getter'; },"
+            + " configurable: true});\n"
+            + "r.push(read());\n"
+            + "Object.defineProperty(this, 'g', {value: 3});\n"
+            + "r.push(read());\n"
+            + "r.join()");
+    }
+
+    public void testFunctionCalls() {
+        Utils.assertScript("a,b,local,b",
+            "function f() { return 'a'; }\n"
+            + "function call() { return f(); }\n"
+            + "var r = [call()];\n"
+            + "f = function() { return 'b'; }; r.push(call());\n"
+            + "function outer() {\n"
+            + "  function f() { return 'local'; }\n"
+            + "  return function() { return f(); };\n"
+            + "}\n"
+            + "r.push(outer()(), call());\n"
+            + "r.join()");
+    }
+
+    public void testSharedScript() {
+        final ContextAction action = new ContextAction() {
+            public Object run(Context cx) {
+                Script script = cx.compileString(
+                    "function get() { return v; } get()", "test.js", 1, null);
+                for (int i = 0; i != 3; ++i) {
+                    ScriptableObject scope = cx.initStandardObjects();
+                    scope.put("v", scope, "scope" + i);
+                    assertEquals("scope" + i,
+                                 Context.toString(script.exec(cx, scope)));
+                }
+                return null;
+            }
+        };
+        Utils.runWithAllOptimizationLevels(action);
+    }
+}
@@ -0,0 +1,116 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.NativeArray;
+
+/**
+ * Checks that arrays holding only numbers behave the same as other arrays
+ * while their elements are stored unboxed, and when they stop being so.
+ */
+public class NativeArrayElementKindsTest extends TestCase {
+
+    public void testNumbers() {
+        Utils.assertScript("5050,100,1.5,2.5,-Infinity,NaN",
+            "var a = [], sum = 0;\n"
+            + "for (var i = 1; i <= 100; i++) a.push(i);\n"
+            + "for (var i = 0; i < a.length; i++) sum += a[i];\n"
+            + "var b = [0.5, 1];\n"
+            + "b[0] += 1; b[1] = b[0] + 1;\n"
+            + "var c = [-0, NaN];\n"
+            + "[sum, a.length, b[0], b[1], 1 / c[0], c[1]].join()");
+        Utils.assertScript("2,-1,-1,1,0,-1",
+            "var a = [3, 1.5, 7, NaN];\n"
+            + "[a.indexOf(7), a.indexOf('7'), a.indexOf(NaN),\n"
+            + " a.lastIndexOf(1.5), [-0].indexOf(0), a.indexOf(3, 1)].join()");
+    }
+
+    public void testTransitions() {
+        Utils.assertScript("1,2.5,x,,true|5|1,2.5,x",
+            "var a = [1];\n"
+            + "a.push(2.5);\n"
+            + "a[2] = 'x';\n"
+            + "a.push(undefined, true);\n"
+            + "var r = [a.join(), a.length];\n"
+            + "a.length = 3;\n"
+            + "r.push(a.join());\n"
+            + "r.join('|')");
+        Utils.assertScript("1,,3|false|3|1,2,|true",
+            "var a = [1, 2, 3];\n"
+            + "delete a[1];\n"
+            + "var r = [a.join(), 1 in a, a.length];\n"
+            + "var b = [1, 2];\n"
+            + "b.length = 3;\n"
+            + "r.push(b.join(), 0 in b);\n"
+            + "r.join('|')");
+        Utils.assertScript("1,,3|1,,,|4",
+            "var a = [1];\n"
+            + "a[2] = 3;\n"
+            + "var b = [1];\n"
+            + "b[3] = undefined;\n"
+            + "[a.join(), b.join(), b.length].join('|')");
+    }
+
+    public void testArrayMethods() {
+        Utils.assertScript("4,3,2,1|1|2,3,4|0,2,3,4|0,2,9,8,3,4|8,3,4|1,2,3,4",
+            "var a = [1, 2, 3, 4];\n"
+            + "var r = [a.reverse().join()];\n"
+            + "a.reverse();\n"
+            + "r.push(a.shift());\n"
+            + "r.push(a.join());\n"
+            + "a.unshift(0);\n"
+            + "r.push(a.join());\n"
+            + "a.splice(2, 0, 9, 8);\n"
+            + "r.push(a.join());\n"
+            + "r.push(a.splice(3).join());\n"
+            + "r.push([1, 2].concat([3], 4).join());\n"
+            + "r.join('|')");
+        Utils.assertScript("1,10,2,21|21,10,2,1|2,10|1.5,a,2",
+            "var a = [10, 2, 21, 1];\n"
+            + "a.sort();\n"
+            + "var r = [a.join()];\n"
+            + "r.push(a.sort(function(x, y) { return y - x; }).join());\n"
+            + "r.push(a.slice(1, 3).reverse().join());\n"
+            + "r.push([1.5].concat(['a'], [2]).join());\n"
+            + "r.join('|')");
+        Utils.assertScript("3|x,1,2|1,2|2",
+            "var a = [1, 2];\n"
+            + "var r = [a.push(3)];\n"
+            + "a.pop();\n"
+            + "a.unshift('x');\n"
+            + "r.push(a.join());\n"
+            + "a.shift();\n"
+            + "r.push(a.join(), a.pop());\n"
+            + "r.join('|')");
+    }
+
+    public void testObjectFunctions() {
+        Utils.assertScript("0,1,2|true|0,1,2,x|7|1",
+            "var a = [5, 6.5, 7];\n"
+            + "var keys = [];\n"
+            + "for (var k in a) keys.push(k);\n"
+            + "var d = Object.getOwnPropertyDescriptor(a, 1);\n"
+            + "var r = [keys.join(), d.writable && d.value == 6.5];\n"
+            + "a.x = 1;\n"
+            + "r.push(Object.keys(a).join());\n"
+            + "Object.defineProperty(a, 0, { value: 7 });\n"
+            + "r.push(a[0], a.length - 2);\n"
+            + "r.join('|')");
+    }
+
+    public void testBoxedTypes() {
+        NativeArray ints = new NativeArray(new Object[] { 1, 2 });
+        assertEquals(Integer.valueOf(2), ints.get(1, ints));
+        NativeArray doubles = new NativeArray(new Object[] { 1, 2.5 });
+        assertEquals(Double.valueOf(1), doubles.get(0, doubles));
+        assertEquals(Double.valueOf(2.5), doubles.get(1, doubles));
+        doubles.put(2, doubles, "x");
+        assertEquals(Double.valueOf(2.5), doubles.get(1, doubles));
+        assertEquals("x", doubles.get(2, doubles));
+        assertEquals(3, doubles.getLength());
+    }
+}
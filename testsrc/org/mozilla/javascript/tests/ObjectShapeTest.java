@@ -0,0 +1,176 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks that plain objects keeping their properties in a shared shape
+ * behave like objects using slots, including across the operations that
+ * move an object from its shape to slots.
+ */
+public class ObjectShapeTest extends TestCase {
+
+    public void testEnumerationOrder() {
+        Utils.assertScript("b,a,c|c,a|a,c,b",
+            "var r = [];\n"
+            + "var o = {b: 1, a: 2}; o.c = 3;\n"
+            + "r.push(Object.keys(o));\n"
+            + "delete o.b; r.push(Object.keys(o).reverse());\n"
+            + "var p = {a: 1, c: 2}; p.b = 3; var k = [];\n"
+            + "for (var n in p) k.push(n);\n"
+            + "r.push(k);\n"
+            + "r.join('|')");
+    }
+
+    public void testConversions() {
+        Utils.assertScript("1,2,x,true,3,4,1,65",
+            "var r = [];\n"
+            + "var a = {x: 1}; a[0] = 'x'; r.push(a.x);\n"
+            + "var b = {x: 2}; Object.defineProperty(b, 'y', {get: function() { return 'x'; }});\n"
+            + "r.push(b.x, b.y);\n"
+            + "var c = {x: 3}; Object.seal(c); r.push(Object.isSealed(c), c.x);\n"
+            + "var d = {x: 1}; Object.freeze(d); d.x = 4; d.y = 5; r.push(d.x === 1 ? 4 : 0);\n"
+            + "var e = {x: 1}; Object.preventExtensions(e); e.y = 2; r.push(e.x + (e.y === undefined ? 0 : 1));\n"
+            + "var f = {}; for (var i = 0; i < 65; i++) f['p' + i] = i;\n"
+            + "r.push(Object.keys(f).length);\n"
+            + "r.join()");
+    }
+
+    public void testAttributes() {
+        Context cx = Context.enter();
+        try {
+            ScriptableObject scope = cx.initStandardObjects();
+            NativeObject obj = new NativeObject();
+            obj.defineProperty("hidden", "h", ScriptableObject.DONTENUM);
+            obj.defineProperty("fixed", "f", ScriptableObject.READONLY);
+            obj.put("plain", obj, "p");
+            obj.put("fixed", obj, "changed");
+            assertEquals("f", obj.get("fixed", obj));
+            assertEquals(ScriptableObject.DONTENUM,
+                         obj.getAttributes("hidden"));
+            assertEquals(2, obj.getIds().length);
+            assertEquals(3, obj.getAllIds().length);
+            scope.put("obj", scope, obj);
+            Object result = cx.evaluateString(scope,
+                "obj.fixed = 1; delete obj.plain;"
+                + " obj.hidden + obj.fixed + Object.keys(obj)",
+                "test.js", 1, null);
+            assertEquals("hffixed", Context.toString(result));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    private static boolean hasShape(ScriptableObject obj) throws Exception {
+        Field shape = ScriptableObject.class.getDeclaredField("shape");
+        shape.setAccessible(true);
+        return shape.get(obj) != null;
+    }
+
+    public void testReadsKeepShape() throws Exception {
+        Context cx = Context.enter();
+        try {
+            ScriptableObject scope = cx.initStandardObjects();
+            NativeObject obj = (NativeObject)cx.evaluateString(scope,
+                "var obj = {a: 1}; obj", "test.js", 1, null);
+            assertTrue(hasShape(obj));
+            Object result = cx.evaluateString(scope,
+                "var d = Object.getOwnPropertyDescriptor(obj, 'a');\n"
+                + "[d.value, d.writable, d.enumerable, d.configurable,\n"
+                + " Object.getOwnPropertyDescriptor(obj, 'b'),\n"
+                + " obj.propertyIsEnumerable('a'), obj.propertyIsEnumerable('b'),\n"
+                + " obj.__lookupGetter__('a'), obj.__lookupSetter__('b'),\n"
+                + " obj.hasOwnProperty('a'), obj.hasOwnProperty('b')].join()",
+                "test.js", 1, null);
+            assertEquals("1,true,true,true,,true,false,,,true,false",
+                         Context.toString(result));
+            assertEquals(ScriptableObject.EMPTY, obj.getAttributes("a"));
+            try {
+                obj.getAttributes("b");
+                fail();
+            } catch (EvaluatorException e) {
+                // absent
+            }
+            assertFalse(obj.isConst("a"));
+            assertFalse(obj.isConst("b"));
+            assertNull(obj.getGetterOrSetter("b", 0, false));
+            assertTrue(hasShape(obj));
+
+            cx.evaluateString(scope, "Object.defineProperty(obj, 'a', {value: 2})",
+                              "test.js", 1, null);
+            assertFalse(hasShape(obj));
+            assertEquals(Integer.valueOf(2), obj.get("a", obj));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testSerialization() throws Exception {
+        Context cx = Context.enter();
+        try {
+            ScriptableObject scope = cx.initStandardObjects();
+            Object obj = cx.evaluateString(scope, "({a: 1, b: 'two'})",
+                                           "test.js", 1, null);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(obj);
+            out.close();
+            ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()));
+            NativeObject copy = (NativeObject)in.readObject();
+            assertEquals(2, copy.getIds().length);
+            assertEquals("two", copy.get("b", copy));
+            copy.put("c", copy, "three");
+            assertEquals("three", copy.get("c", copy));
+        } finally {
+            Context.exit();
+        }
+    }
+
+    public void testConcurrentPuts() throws Exception {
+        final NativeObject obj = new NativeObject();
+        final int threadCount = 4;
+        final int propertyCount = 15;
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t != threadCount; ++t) {
+            final String prefix = "t" + t + "_";
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i != propertyCount; ++i) {
+                        obj.put(prefix + i, obj, Integer.valueOf(i));
+                        obj.put(prefix + 0, obj, Integer.valueOf(-i));
+                    }
+                }
+            };
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threadCount * propertyCount, obj.getIds().length);
+        for (int t = 0; t != threadCount; ++t) {
+            assertEquals(Integer.valueOf(1 - propertyCount),
+                         obj.get("t" + t + "_0", obj));
+            for (int i = 1; i != propertyCount; ++i) {
+                assertEquals(Integer.valueOf(i), obj.get("t" + t + "_" + i, obj));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that property accesses served by the inline caches of compiled
+ * code see the same values as the uncached runtime paths, including after
+ * the shape of an object changed.
+ */
+public class PropertyCacheTest extends TestCase {
+
+    public void testOwnProperties() {
+        Utils.assertScript("15",
+            "function P(x, y) { this.x = x; this.y = y; }\n"
+            + "var t = 0;\n"
+            + "for (var i = 0; i < 5; i++) { var p = new P(i, 1); t += p.x + p.y; }\n"
+            + "t");
+    }
+
+    public void testPolymorphicSite() {
+        Utils.assertScript("1,3,5,7,9,11",
+            "var objs = [{a:1}, {b:2, a:3}, {c:1, b:1, a:5},\n"
+            + "            {d:1, a:7}, {e:1, a:9}, {f:1, a:11}];\n"
+            + "var r = [];\n"
+            + "for (var i = 0; i < objs.length; i++) r.push(objs[i].a);\n"
+            + "r.join()");
+    }
+
+    public void testShapeChanges() {
+        Utils.assertScript("1,,5,42",
+            "function ga(o) { return o.a; }\n"
+            + "var r = [];\n"
+            + "var o = {a: 1, b: 2};\n"
+            + "r.push(ga(o)); delete o.a; r.push(ga(o));\n"
+            + "o.a = 5; r.push(ga(o));\n"
+            + "Object.defineProperty(o, 'a', {get: function() { return 42; }});\n"
+            + "r.push(ga(o));\n"
+            + "r.join()");
+    }
+
+    public void testAssignments() {
+        Utils.assertScript("10,11,11,1,3",
+            "function sa(o, v) { o.a = v; return o.a; }\n"
+            + "var r = [];\n"
+            + "var w = {a: 1};\n"
+            + "r.push(sa(w, 10), sa(w, 11));\n"
+            + "Object.defineProperty(w, 'a', {writable: false});\n"
+            + "r.push(sa(w, 12));\n"
+            + "var f = {a: 1}; Object.freeze(f); r.push(sa(f, 2));\n"
+            + "var c = {a: 1}; c.a += 2; r.push(c.a);\n"
+            + "r.join()");
+    }
+
+    public void testPrototypeProperties() {
+        Utils.assertScript("p1,p2,own,3",
+            "function ga(o) { return o.a; }\n"
+            + "var r = [];\n"
+            + "var z = {}; z.__proto__ = {a: 'p1'}; r.push(ga(z));\n"
+            + "z.__proto__ = {a: 'p2'}; r.push(ga(z));\n"
+            + "z.a = 'own'; r.push(ga(z));\n"
+            + "function F() { this.v = 3; }\n"
+            + "F.prototype.m = function() { return this.v; };\n"
+            + "r.push(new F().m());\n"
+            + "r.join()");
+    }
+}
@@ -0,0 +1,57 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that patterns which make the backtracking matcher take exponential
+ * time are matched by the automaton instead, with the same match and parens.
+ */
+public class RegExpBacktrackLimitTest extends TestCase {
+
+    // Scripts can call repeat(s, n) to build long subjects
+    private static void assertScript(String expected, String script) {
+        Utils.assertScript(expected,
+            "function repeat(s, n) { return new Array(n + 1).join(s); }\n"
+            + script);
+    }
+
+    public void testNestedQuantifiers() {
+        assertScript("false,false,,false",
+            "var a = repeat('a', 40);\n"
+            + "[/(a+)+b/.test(a + 'c'),\n"
+            + " /^(\\w+\\s?)*$/.test(repeat('word ', 20) + '!'),\n"
+            + " /(x+x+)+y/.exec(repeat('x', 40)),\n"
+            + " /(a|aa)+$/.test(a + 'b')].join()");
+    }
+
+    public void testMatchAfterLimit() {
+        assertScript("0,41,,a,39",
+            "var m = /(a+)+c|(a)(a*)d/.exec(repeat('a', 40) + 'd');\n"
+            + "[m.index, m[0].length, m[1], m[2], m[3].length].join()");
+        assertScript("32,ab,a,b",
+            "var m = /((?:a|b)+?)+(b)/.exec('x' + repeat('a', 30) + '!ab');\n"
+            + "[m.index, m[0], m[1], m[2]].join()");
+        assertScript("a,,,a",
+            "/(a+)+(a{27})$|^(a)/.exec(repeat('a', 30) + '!').join()");
+    }
+
+    public void testGlobalReplace() {
+        assertScript(repeat("<aaaa-:a>", 3) + repeat("a", 30) + "!",
+            "var s = repeat('aaaa-', 3) + repeat('a', 30) + '!';\n"
+            + "s.replace(/(a|aa)+-/g, function (m, p) {\n"
+            + "  return '<' + m + ':' + p + '>';\n"
+            + "})");
+    }
+
+    private static String repeat(String s, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,125 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.ErrorReporter;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Checks that regular expressions sharing compiled programs keep their
+ * own flags and state, and that patterns with warnings still report them.
+ */
+public class RegExpCacheTest extends TestCase {
+
+    public void testFlagsAndFlatPatterns() {
+        Utils.assertScript("a-c|a.c|true,false|3,0|A-A-",
+            "var r = [];\n"
+            + "r.push('abc'.replace(new RegExp('b'), '-'));\n"
+            // the string pattern is matched literally, the same source
+            // as a regular expression matches any character
+            + "r.push('a.c'.replace('.', '.'));\n"
+            + "r.push([new RegExp('x', 'i').test('X'), new RegExp('x').test('X')]);\n"
+            + "var g1 = new RegExp('a', 'g'), g2 = new RegExp('a', 'g');\n"
+            + "g1.exec('aaa'); g1.exec('aaa'); g1.exec('aaa');\n"
+            + "r.push([g1.lastIndex, g2.lastIndex]);\n"
+            + "r.push('a-a-'.replace(/a/g, 'A'));\n"
+            + "r.join('|')");
+    }
+
+    public void testRepeatedDynamicPatterns() {
+        Utils.assertScript("300",
+            "var n = 0;\n"
+            + "for (var i = 0; i < 300; i++) {\n"
+            + "  var re = new RegExp('^(\\\\d+)-' + (i % 3) + '$');\n"
+            + "  if (re.test('12-' + (i % 3))) n++;\n"
+            + "}\n"
+            + "n");
+    }
+
+    public void testConcurrentUse() throws InterruptedException {
+        final String script =
+            "var ok = 0;\n"
+            + "for (var i = 0; i < 200; i++) {\n"
+            + "  var m = /([a-z]+)@([a-z]+)\\.com/.exec('x user' + 'abcde'.charAt(i % 5) + '@host.com');\n"
+            + "  var c = new RegExp('[0-9]', 'g');\n"
+            + "  if (m && m[2] == 'host' && 'a1b2'.replace(c, '') == 'ab') ok++;\n"
+            + "}\n"
+            + "ok";
+        final int threadCount = 4;
+        final String[] results = new String[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t != threadCount; ++t) {
+            final int index = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    Context cx = Context.enter();
+                    try {
+                        cx.setOptimizationLevel(index % 2 == 0 ? -1 : 0);
+                        ScriptableObject scope = cx.initStandardObjects();
+                        results[index] = Context.toString(cx.evaluateString(
+                            scope, script, "test.js", 1, null));
+                    } finally {
+                        Context.exit();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertEquals("200", result);
+        }
+    }
+
+    public void testWarningsReportedEveryTime() {
+        final int[] warnings = new int[1];
+        final ContextFactory strict = new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_STRICT_MODE) {
+                    return true;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+        Context cx = strict.enterContext();
+        try {
+            cx.setErrorReporter(new ErrorReporter() {
+                public void warning(String message, String sourceName,
+                                    int line, String lineSource,
+                                    int lineOffset) {
+                    warnings[0]++;
+                }
+                public void error(String message, String sourceName,
+                                  int line, String lineSource,
+                                  int lineOffset) {
+                    fail(message);
+                }
+                public EvaluatorException runtimeError(String message,
+                                                       String sourceName,
+                                                       int line,
+                                                       String lineSource,
+                                                       int lineOffset) {
+                    return new EvaluatorException(message);
+                }
+            });
+            ScriptableObject scope = cx.initStandardObjects();
+            cx.evaluateString(scope,
+                "for (var i = 0; i < 3; i++) new RegExp('a\\\\2(b)');",
+                "test.js", 1, null);
+            assertEquals(3, warnings[0]);
+        } finally {
+            Context.exit();
+        }
+    }
+}
@@ -4,6 +4,8 @@
 
 package org.mozilla.javascript.tests;
 
+import junit.framework.Assert;
+
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextAction;
 import org.mozilla.javascript.ContextFactory;
@@ -75,4 +77,33 @@ public class Utils
 		};
 		Utils.runWithOptimizationLevel(action, optimizationLevel);
 	}
+
+	/**
+	 * Evaluates the script in a fresh scope as "test.js" with all available
+	 * optimization levels, and checks that its result converts to the
+	 * expected string.
+	 */
+	public static void assertScript(final String expected, final String script)
+	{
+		assertScript(new ContextFactory(), expected, script);
+	}
+
+	/**
+	 * Evaluates the script in a fresh scope as "test.js" with all available
+	 * optimization levels, and checks that its result converts to the
+	 * expected string.
+	 */
+	public static void assertScript(final ContextFactory contextFactory, final String expected, final String script)
+	{
+		final ContextAction action = new ContextAction()
+		{
+			public Object run(Context cx) {
+				final Scriptable scope = cx.initStandardObjects();
+				final Object result = cx.evaluateString(scope, script, "test.js", 1, null);
+				Assert.assertEquals(expected, Context.toString(result));
+				return null;
+			}
+		};
+		runWithAllOptimizationLevels(contextFactory, action);
+	}
 }
@@ -0,0 +1,106 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.WrapFactory;
+
+/**
+ * Checks the reuse of Java object wrappers with
+ * {@link WrapFactory#setWrapperCacheSize(int)}.
+ */
+public class WrapperCacheTest extends TestCase {
+
+    private static Object evaluate(final int cacheSize, final String source) {
+        return new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                WrapFactory wf = new WrapFactory();
+                wf.setWrapperCacheSize(cacheSize);
+                cx.setWrapFactory(wf);
+                ScriptableObject scope = cx.initStandardObjects();
+                List<Object> list = new ArrayList<Object>();
+                list.add(new StringBuilder("a"));
+                list.add(new StringBuilder("b"));
+                ScriptableObject.putProperty(scope, "list",
+                                             Context.javaToJS(list, scope));
+                return cx.evaluateString(scope, source, "test.js", 1, null);
+            }
+        });
+    }
+
+    private static Object[] pair(int cacheSize, String first, String second) {
+        Scriptable array = (Scriptable) evaluate(cacheSize,
+            "[" + first + ", " + second + "]");
+        return new Object[] { array.get(0, array), array.get(1, array) };
+    }
+
+    public void testSameWrapper() {
+        Object[] wrappers = pair(0, "list.get(0)", "list.get(0)");
+        assertNotSame(wrappers[0], wrappers[1]);
+        wrappers = pair(16, "list.get(0)", "list.get(0)");
+        assertSame(wrappers[0], wrappers[1]);
+        wrappers = pair(16, "list.get(0)", "list.get(1)");
+        assertNotSame(wrappers[0], wrappers[1]);
+        // Slots are checked, so objects never get the wrong wrapper
+        assertEquals("a,b,a,b", evaluate(16,
+            "var s = [];"
+            + "for (var i = 0; i < 4; i++) s.push(list.get(i % 2));"
+            + "s.join()"));
+    }
+
+    public void testConstructedObjects() {
+        Object[] wrappers = pair(16, "sb = new java.lang.StringBuilder('x')",
+                                 "list.add(sb) && list.get(2)");
+        assertSame(wrappers[0], wrappers[1]);
+    }
+
+    public void testScopesAndSizes() {
+        new ContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                WrapFactory wf = new WrapFactory();
+                assertEquals(0, wf.getWrapperCacheSize());
+                wf.setWrapperCacheSize(10);
+                assertEquals(16, wf.getWrapperCacheSize());
+                Scriptable first = cx.initStandardObjects();
+                Scriptable second = cx.initStandardObjects();
+                Object obj = new Object();
+                Object w1 = wf.wrap(cx, first, obj, null);
+                assertSame(w1, wf.wrap(cx, first, obj, null));
+                // The first wrapper is kept whatever the static type
+                assertSame(w1, wf.wrap(cx, first, obj, Object.class));
+                assertNotSame(w1, wf.wrap(cx, second, obj, null));
+                wf.setWrapperCacheSize(0);
+                assertNotSame(wf.wrap(cx, first, obj, null),
+                              wf.wrap(cx, first, obj, null));
+                return null;
+            }
+        });
+    }
+
+    public void testSizeLimits() {
+        WrapFactory wf = new WrapFactory();
+        wf.setWrapperCacheSize(1);
+        assertEquals(1, wf.getWrapperCacheSize());
+        int[] badSizes = { -1, (1 << 30) + 1, Integer.MAX_VALUE };
+        for (int size : badSizes) {
+            try {
+                wf.setWrapperCacheSize(size);
+                fail();
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+            assertEquals(1, wf.getWrapperCacheSize());
+        }
+    }
+}